@@ -0,0 +1,36 @@
+package main;
+
+import main.compileError.CompileError;
+import main.symbolTable.SymbolTable;
+import main.symbolTable.utils.Stack;
+
+import java.util.ArrayList;
+
+public class CompilationContext {
+    private final SymbolTable root = new SymbolTable();
+    private SymbolTable top = new SymbolTable();
+    private final Stack<SymbolTable> stack = new Stack<>();
+    private final ArrayList<CompileError> nameErrors = new ArrayList<>();
+
+    public SymbolTable getRoot() {
+        return root;
+    }
+
+    public SymbolTable getTop() {
+        return top;
+    }
+
+    public void pushScope(SymbolTable symbolTable) {
+        if (top != null)
+            stack.push(top);
+        top = symbolTable;
+    }
+
+    public void popScope() {
+        top = stack.pop();
+    }
+
+    public ArrayList<CompileError> getNameErrors() {
+        return nameErrors;
+    }
+}
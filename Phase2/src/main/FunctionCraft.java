@@ -26,10 +26,11 @@ public class FunctionCraft {
         CommonTokenStream tokens = new CommonTokenStream(flLexer);
         FunctionCraftParser flParser = new FunctionCraftParser(tokens);
         Program program = flParser.program().flProgram;
-        NameAnalyzer nameAnalyzer = new NameAnalyzer();
+        CompilationContext context = new CompilationContext();
+        NameAnalyzer nameAnalyzer = new NameAnalyzer(context);
         nameAnalyzer.visit(program);
-        nameAnalyzer.nameErrors.sort(Comparator.comparingInt(CompileError::getLine));
-        for(CompileError compileError : nameAnalyzer.nameErrors){
+        context.getNameErrors().sort(Comparator.comparingInt(CompileError::getLine));
+        for(CompileError compileError : context.getNameErrors()){
             System.out.println(compileError.getErrorMessage());
         }
         DependencyDetector dependencyDetector = new DependencyDetector();
@@ -38,7 +39,7 @@ public class FunctionCraft {
         for(CompileError circularDependency : dependencyDetector.dependencyError){
             System.out.println(circularDependency.getErrorMessage());
         }
-        if(nameAnalyzer.nameErrors.size() + dependencyDetector.dependencyError.size() == 0){
+        if(context.getNameErrors().size() + dependencyDetector.dependencyError.size() == 0){
             AstPrinter astPrinter = new AstPrinter();
             astPrinter.visit(program);
         }
@@ -3,33 +3,21 @@ package main.symbolTable;
 import main.symbolTable.exceptions.ItemAlreadyExists;
 import main.symbolTable.exceptions.ItemNotFound;
 import main.symbolTable.item.SymbolTableItem;
-import main.symbolTable.utils.Stack;
 
 import java.util.HashMap;
 import java.util.Map;
 
 public class SymbolTable {
-    public static SymbolTable top;
-    public static SymbolTable root;
-    private static Stack<SymbolTable> stack = new Stack<>();
     private Map<String, SymbolTableItem> items;
     public SymbolTable makeSymbolTableSnapshot(){
         SymbolTable snapshot = new SymbolTable();
-        for(var item : SymbolTable.top.items.entrySet()){
+        for(var item : this.items.entrySet()){
             try {
                 snapshot.put(item.getValue());
             } catch (ItemAlreadyExists e){}
         }
         return snapshot;
     }
-    public static void push(SymbolTable symbolTable) {
-        if (top != null)
-            stack.push(top);
-        top = symbolTable;
-    }
-    public static void pop() {
-        top = stack.pop();
-    }
     public SymbolTable() {
         this.items = new HashMap<>();
     }
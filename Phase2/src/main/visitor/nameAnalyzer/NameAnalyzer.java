@@ -1,5 +1,6 @@
 package main.visitor.nameAnalyzer;
 
+import main.CompilationContext;
 import main.ast.nodes.Program;
 import main.ast.nodes.declaration.FunctionDeclaration;
 import main.ast.nodes.declaration.MainDeclaration;
@@ -22,20 +23,22 @@ import main.visitor.Visitor;
 import java.util.ArrayList;
 
 public class NameAnalyzer extends Visitor<Void> {
-    public ArrayList<CompileError> nameErrors = new ArrayList<>();
+    private final CompilationContext context;
+    private final ArrayList<CompileError> nameErrors;
+
+    public NameAnalyzer(CompilationContext context) {
+        this.context = context;
+        this.nameErrors = context.getNameErrors();
+    }
 
     @Override
     public Void visit(Program program) {
-        SymbolTable.root = new SymbolTable();
-        SymbolTable.top = new SymbolTable();
-
-        
         int duplicateFunctionId = 0;
         ArrayList<FunctionItem> functionItems = new ArrayList<>();
         for (FunctionDeclaration functionDeclaration : program.getFunctionDeclarations()) {
             FunctionItem functionItem = new FunctionItem(functionDeclaration);
             try {
-                SymbolTable.root.put(functionItem);
+                context.getRoot().put(functionItem);
                 functionItems.add(functionItem);
             } catch (ItemAlreadyExists e) {
                 nameErrors.add(new RedefinitionOfFunction(functionDeclaration.getLine(),
@@ -48,7 +51,7 @@ public class NameAnalyzer extends Visitor<Void> {
                 FunctionItem newItem = new FunctionItem(functionDeclaration);
                 functionItems.add(newItem);
                 try {
-                    SymbolTable.root.put(newItem);
+                    context.getRoot().put(newItem);
                 } catch (ItemAlreadyExists ignored) {
                 }
             }
@@ -60,7 +63,7 @@ public class NameAnalyzer extends Visitor<Void> {
         for (PatternDeclaration patternDeclaration : program.getPatternDeclarations()) {
             PatternItem patternItem = new PatternItem(patternDeclaration);
             try {
-                SymbolTable.root.put(patternItem);
+                context.getRoot().put(patternItem);
                 patternItems.add(patternItem);
             } catch (ItemAlreadyExists e) {
                 nameErrors.add(new RedefinitionOfPattern(patternDeclaration.getLine(),
@@ -73,7 +76,7 @@ public class NameAnalyzer extends Visitor<Void> {
                 PatternItem newItem = new PatternItem(patternDeclaration);
                 patternItems.add(newItem);
                 try {
-                    SymbolTable.root.put(newItem);
+                    context.getRoot().put(newItem);
                 } catch (ItemAlreadyExists ignored) {
                 }
             }
@@ -83,9 +86,9 @@ public class NameAnalyzer extends Visitor<Void> {
             FunctionItem functionItem = functionItems.get(visitingFunctionIndex);
             SymbolTable functionSymbolTable = new SymbolTable();
             functionItem.setFunctionSymbolTable(functionSymbolTable);
-            SymbolTable.push(functionSymbolTable);
+            context.pushScope(functionSymbolTable);
             functionDeclaration.accept(this);
-            SymbolTable.pop();
+            context.popScope();
             visitingFunctionIndex += 1;
         }
 
@@ -95,9 +98,9 @@ public class NameAnalyzer extends Visitor<Void> {
             PatternItem patternItem = patternItems.get(visitingPatternIndex);
             SymbolTable patternSymbolTable = new SymbolTable();
             patternItem.setPatternSymbolTable(patternSymbolTable);
-            SymbolTable.push(patternSymbolTable);
+            context.pushScope(patternSymbolTable);
             patternDeclaration.accept(this);
-            SymbolTable.pop();
+            context.popScope();
             visitingPatternIndex += 1;
         }
         //visitMain
@@ -108,7 +111,7 @@ public class NameAnalyzer extends Visitor<Void> {
     @Override
     public Void visit(Identifier identifier){
         try {
-            SymbolTable.top.getItem("VAR:" + identifier.getName());
+            context.getTop().getItem("VAR:" + identifier.getName());
         } catch (ItemNotFound e) {
             nameErrors.add(new VariableNotDeclared(identifier.getLine(),
                     identifier.getName()));
@@ -120,7 +123,7 @@ public class NameAnalyzer extends Visitor<Void> {
     public Void visit(VarDeclaration varDeclaration){
         VarItem varItem = new VarItem(varDeclaration.getName());
         try {
-            SymbolTable.top.put(varItem);
+            context.getTop().put(varItem);
         } catch (ItemAlreadyExists e) { 
             nameErrors.add(new DuplicateArg(varDeclaration.getLine(),
                     varDeclaration.getName().getName()));
@@ -149,7 +152,7 @@ public class NameAnalyzer extends Visitor<Void> {
     public Void visit(PatternDeclaration patternDeclaration){
         VarItem varItem = new VarItem(patternDeclaration.getTargetVariable());
         try {
-            SymbolTable.top.put(varItem);
+            context.getTop().put(varItem);
         } catch (ItemAlreadyExists e) {}
         if(patternDeclaration.getTargetVariable().getName().equals(patternDeclaration.getPatternName().getName().split("#")[0])){
             nameErrors.add(new IdenticalArgPatternName(patternDeclaration.getLine(),
@@ -188,18 +191,18 @@ public class NameAnalyzer extends Visitor<Void> {
         }
 
 
-        SymbolTable dummySymbolTable = SymbolTable.top.makeSymbolTableSnapshot();
-        SymbolTable.push(dummySymbolTable);
+        SymbolTable dummySymbolTable = context.getTop().makeSymbolTableSnapshot();
+        context.pushScope(dummySymbolTable);
         for(Statement thenStmt : ifStatement.getThenBody()){
             thenStmt.accept(this);
         }
-        SymbolTable.pop();
-        dummySymbolTable = SymbolTable.top.makeSymbolTableSnapshot();
-        SymbolTable.push(dummySymbolTable);
+        context.popScope();
+        dummySymbolTable = context.getTop().makeSymbolTableSnapshot();
+        context.pushScope(dummySymbolTable);
         for(Statement elseStmt : ifStatement.getElseBody()){
             elseStmt.accept(this);
         }
-        SymbolTable.pop();
+        context.popScope();
 
         return null;
     }
@@ -226,8 +229,8 @@ public class NameAnalyzer extends Visitor<Void> {
     @Override
     public Void visit(LoopDoStatement loopDoStatement){ 
 
-        SymbolTable dummySymbolTable = SymbolTable.top.makeSymbolTableSnapshot();
-        SymbolTable.push(dummySymbolTable);
+        SymbolTable dummySymbolTable = context.getTop().makeSymbolTableSnapshot();
+        context.pushScope(dummySymbolTable);
         for(Expression cond : loopDoStatement.getLoopConditions()){
             cond.accept(this);
         }
@@ -236,7 +239,7 @@ public class NameAnalyzer extends Visitor<Void> {
         }
         if (loopDoStatement.getLoopRetStmt() != null)
             loopDoStatement.getLoopRetStmt().accept(this);
-        SymbolTable.pop();
+        context.popScope();
         return null;
     }
 
@@ -247,10 +250,10 @@ public class NameAnalyzer extends Visitor<Void> {
             range.accept(this);
         }
 
-        SymbolTable dummySymbolTable = SymbolTable.top.makeSymbolTableSnapshot();
-        SymbolTable.push(dummySymbolTable);
+        SymbolTable dummySymbolTable = context.getTop().makeSymbolTableSnapshot();
+        context.pushScope(dummySymbolTable);
         try {
-            SymbolTable.top.put(new VarItem(forStatement.getIteratorId()));
+            context.getTop().put(new VarItem(forStatement.getIteratorId()));
         } catch (ItemAlreadyExists e) {}
 
         for(Expression cond : forStatement.getLoopBodyExpressions()){
@@ -264,7 +267,7 @@ public class NameAnalyzer extends Visitor<Void> {
             forStatement.getReturnStatement().accept(this);
         }
 
-        SymbolTable.pop();
+        context.popScope();
         return null;
     }
 
@@ -295,7 +298,7 @@ public class NameAnalyzer extends Visitor<Void> {
         if (assignStatement.getAssignOperator() == AssignOperator.ASSIGN){
             VarItem varItem = new VarItem(assignStatement.getAssignedId());
             try {
-                SymbolTable.top.put(varItem);
+                context.getTop().put(varItem);
             } catch (ItemAlreadyExists e){}
         }
         else {
@@ -337,7 +340,7 @@ public class NameAnalyzer extends Visitor<Void> {
     public Void visit(AccessExpression accessExpression){
         if(accessExpression.isFunctionCall() && accessExpression.getAccessedExpression() instanceof Identifier id){
             try {
-                if(SymbolTable.root.getItem("Function:" + id.getName()) instanceof FunctionItem functionItem){
+                if(context.getRoot().getItem("Function:" + id.getName()) instanceof FunctionItem functionItem){
                     int defaultArgCounter = 0;
                     for(VarDeclaration arg : functionItem.getFunctionDeclaration().getArgs()){
                         if(arg.getDefaultVal() != null) defaultArgCounter++;
@@ -385,15 +388,15 @@ public class NameAnalyzer extends Visitor<Void> {
 
     @Override
     public Void visit(LambdaExpression lambdaExpression){
-        SymbolTable functionSymbolTable = SymbolTable.top.makeSymbolTableSnapshot();
-        SymbolTable.push(functionSymbolTable);
+        SymbolTable functionSymbolTable = context.getTop().makeSymbolTableSnapshot();
+        context.pushScope(functionSymbolTable);
         for(VarDeclaration arg : lambdaExpression.getDeclarationArgs()){
             arg.accept(this);
         }
         for(Statement stm : lambdaExpression.getBody()){
             stm.accept(this);
         }
-        SymbolTable.pop();
+        context.popScope();
         return null;
     }
 
@@ -407,7 +410,7 @@ public class NameAnalyzer extends Visitor<Void> {
     @Override
     public Void visit(FunctionPointer functionPointer){
         try{
-            if(!(SymbolTable.root.getItem("Function:" + functionPointer.getId().getName()) instanceof FunctionItem)){
+            if(!(context.getRoot().getItem("Function:" + functionPointer.getId().getName()) instanceof FunctionItem)){
                 nameErrors.add(new FunctionNotDeclared(functionPointer.getLine(),
                         functionPointer.getId().getName()));
             }
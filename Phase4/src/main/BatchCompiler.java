@@ -0,0 +1,129 @@
+package main;
+
+import main.compileError.CompileError;
+import org.antlr.v4.runtime.CharStreams;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public class BatchCompiler {
+    private static final String OUTPUT_ROOT = "./codeGenOutput/";
+    private static final String SOURCE_EXTENSION = ".fl";
+
+    public static class Result {
+        private final String source;
+        private final String outputPath;
+        private final int errorCount;
+        private final long millis;
+        private final String failure;
+
+        public Result(String source, String outputPath, int errorCount, long millis, String failure) {
+            this.source = source;
+            this.outputPath = outputPath;
+            this.errorCount = errorCount;
+            this.millis = millis;
+            this.failure = failure;
+        }
+
+        public boolean passed() {
+            return failure == null && errorCount == 0;
+        }
+
+        public String getSummary() {
+            String status = failure != null ? "FAILED" : errorCount == 0 ? "OK" : "ERRORS";
+            String summary = String.format("%-7s %6d ms  %3d error(s)  %s -> %s", status, millis, errorCount,
+                    source, outputPath);
+            if (failure != null)
+                summary += "  (" + failure + ")";
+            return summary;
+        }
+    }
+
+    public static boolean run(List<String> inputs, boolean emitJasmin, int inlineBudget) {
+        List<File> sources = collectSources(inputs);
+        Map<File, String> outputPaths = assignOutputPaths(sources);
+
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for (File source : sources)
+            tasks.add(() -> compileOne(source, outputPaths.get(source), emitJasmin, inlineBudget));
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        List<Result> results = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        try {
+            for (Future<Result> future : pool.invokeAll(tasks))
+                results.add(future.get());
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        int passed = 0;
+        for (Result result : results) {
+            System.out.println(result.getSummary());
+            if (result.passed())
+                passed++;
+        }
+        System.out.println("---------------------------" + passed + "/" + results.size() + " compiled cleanly in "
+                + elapsed + " ms---------------------------");
+        return passed == results.size();
+    }
+
+    private static Result compileOne(File source, String outputPath, boolean emitJasmin, int inlineBudget) {
+        long start = System.currentTimeMillis();
+        try {
+            List<CompileError> typeErrors = FunctionCraft.compile(CharStreams.fromFileName(source.getPath()), outputPath,
+                    emitJasmin, inlineBudget);
+            FunctionCraft.writeErrors(typeErrors, outputPath + "typeCheckErrors.txt", false);
+            return new Result(source.getPath(), outputPath, typeErrors.size(), System.currentTimeMillis() - start, null);
+        } catch (Exception e) {
+            return new Result(source.getPath(), outputPath, 0, System.currentTimeMillis() - start, e.toString());
+        }
+    }
+
+    private static List<File> collectSources(List<String> inputs) {
+        List<File> sources = new ArrayList<>();
+        for (String input : inputs) {
+            File file = new File(input);
+            if (file.isDirectory())
+                collectDirectory(file, sources);
+            else
+                sources.add(file);
+        }
+        return sources;
+    }
+
+    private static void collectDirectory(File directory, List<File> sources) {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory())
+                collectDirectory(file, sources);
+            else if (file.getName().endsWith(SOURCE_EXTENSION))
+                sources.add(file);
+        }
+    }
+
+    private static Map<File, String> assignOutputPaths(List<File> sources) {
+        Map<File, String> outputPaths = new HashMap<>();
+        Set<String> taken = new HashSet<>();
+        for (File source : sources) {
+            String name = source.getName();
+            if (name.endsWith(SOURCE_EXTENSION))
+                name = name.substring(0, name.length() - SOURCE_EXTENSION.length());
+            String unique = name;
+            for (int i = 1; !taken.add(unique); i++)
+                unique = name + "_" + i;
+            outputPaths.put(source, OUTPUT_ROOT + unique + "/");
+        }
+        return outputPaths;
+    }
+}
@@ -0,0 +1,73 @@
+package main;
+
+import main.ast.nodes.expression.Identifier;
+import main.ast.type.Type;
+import main.compileError.CompileError;
+import main.symbolTable.SymbolTable;
+import main.symbolTable.exceptions.ItemAlreadyExists;
+import main.symbolTable.item.FunctionItem;
+import main.symbolTable.item.PatternItem;
+import main.symbolTable.item.VarItem;
+import main.symbolTable.utils.Stack;
+import main.symbolTable.utils.SymbolIds;
+
+import java.util.ArrayList;
+
+public class CompilationContext {
+    private final SymbolTable root = new SymbolTable();
+    private SymbolTable top = new SymbolTable();
+    private final Stack<SymbolTable> stack = new Stack<>();
+    private final ArrayList<CompileError> typeErrors = new ArrayList<>();
+
+    public SymbolTable getRoot() {
+        return root;
+    }
+
+    public SymbolTable getTop() {
+        return top;
+    }
+
+    public void pushScope(SymbolTable symbolTable) {
+        if (top != null)
+            stack.push(top);
+        top = symbolTable;
+    }
+
+    public void popScope() {
+        top = stack.pop();
+    }
+
+    public FunctionItem findFunction(int symbolId) {
+        return (FunctionItem) root.lookup(FunctionItem.keyOf(symbolId));
+    }
+
+    // a name nobody interned cannot belong to a declared function, so looking it up leaves the id table alone
+    public FunctionItem findFunction(String name) {
+        int symbolId = SymbolIds.find(name);
+        return symbolId == SymbolIds.NONE ? null : findFunction(symbolId);
+    }
+
+    public PatternItem findPattern(int symbolId) {
+        return (PatternItem) root.lookup(PatternItem.keyOf(symbolId));
+    }
+
+    public VarItem findVar(int symbolId) {
+        return (VarItem) top.lookup(VarItem.keyOf(symbolId));
+    }
+
+    // assignment defines the variable in the current scope unless it is already visible, in which case it is retyped
+    public void defineVar(Identifier identifier, Type type) {
+        VarItem varItem = findVar(identifier.getSymbolId());
+        if (varItem == null) {
+            varItem = new VarItem(identifier);
+            try {
+                top.put(varItem);
+            } catch (ItemAlreadyExists ignored) {}
+        }
+        varItem.setType(type);
+    }
+
+    public ArrayList<CompileError> getTypeErrors() {
+        return typeErrors;
+    }
+}
@@ -1,69 +1,149 @@
 package main;
 
 import main.ast.nodes.Program;
+import main.bytecode.AssemblerException;
 import main.compileError.CompileError;
 import main.visitor.codeGenerator.CodeGenerator;
+import main.visitor.optimizer.ConstantFolder;
+import main.visitor.optimizer.Inliner;
+import main.visitor.optimizer.LambdaLifter;
+import main.visitor.optimizer.LoopInvariantMover;
 import main.visitor.type.TypeChecker;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import parsers.FunctionCraftLexer;
 import parsers.FunctionCraftParser;
 
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.io.*;
+import java.util.List;
 
 public class FunctionCraft {
     public static void main(String[] args) throws IOException {
-        CharStream reader = CharStreams.fromFileName(args[0]);
-        FunctionCraftLexer flLexer = new FunctionCraftLexer(reader);
-        CommonTokenStream tokens = new CommonTokenStream(flLexer);
-        FunctionCraftParser flParser = new FunctionCraftParser(tokens);
-        Program program = flParser.program().flProgram;
-        TypeChecker typeChecker = new TypeChecker();
-        typeChecker.visit(program);
-        typeChecker.typeErrors.sort(Comparator.comparingInt(CompileError::getLine));
-        FileWriter fileWriter = new FileWriter("./samples/typeCheckErrors.txt");
-        PrintWriter printWriter = new PrintWriter(fileWriter);
-        for (CompileError compileError : typeChecker.typeErrors) {
-            printWriter.println(compileError.getErrorMessage());
-            System.out.println(compileError.getErrorMessage());
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        // --jasmin also writes the jasmin sources of the generated classes next to them
+        boolean emitJasmin = arguments.remove("--jasmin");
+        // --fork runs the program in a fresh jvm instead of loading it into this one, --timeout implies it
+        boolean fork = arguments.remove("--fork");
+        long timeoutMillis = 0;
+        int timeoutIndex = arguments.indexOf("--timeout");
+        if (timeoutIndex >= 0) {
+            timeoutMillis = Long.parseLong(arguments.get(timeoutIndex + 1));
+            arguments.subList(timeoutIndex, timeoutIndex + 2).clear();
         }
-        fileWriter.close();
+        // --inline-budget caps the size of the functions copied into their callers, 0 turns inlining off
+        int inlineBudget = Inliner.DEFAULT_BUDGET;
+        int budgetIndex = arguments.indexOf("--inline-budget");
+        if (budgetIndex >= 0) {
+            inlineBudget = Integer.parseInt(arguments.get(budgetIndex + 1));
+            arguments.subList(budgetIndex, budgetIndex + 2).clear();
+        }
+        if (!arguments.isEmpty() && arguments.getFirst().equals("--batch")) {
+            boolean allPassed = BatchCompiler.run(arguments.subList(1, arguments.size()), emitJasmin, inlineBudget);
+            if (!allPassed)
+                System.exit(1);
+            return;
+        }
+        List<CompileError> typeErrors;
+        try {
+            typeErrors = compile(CharStreams.fromFileName(arguments.getFirst()), "./codeGenOutput/", emitJasmin, inlineBudget);
+        } catch (AssemblerException | UncheckedIOException e) {
+            System.out.println("code generation failed: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        writeErrors(typeErrors, "./samples/typeCheckErrors.txt", true);
 
-        CodeGenerator codeGenerator = new CodeGenerator(typeChecker);
-        codeGenerator.visit(program);
+        System.out.println("---------------------------Compilation Successful---------------------------");
+        // only a separate jvm can be killed when the program runs out of time
+        boolean passed;
+        if (fork || timeoutMillis > 0)
+            passed = ProgramRunner.runForked("./codeGenOutput/", timeoutMillis);
+        else
+            passed = ProgramRunner.runInProcess("./codeGenOutput/", System.out, System.err);
+        if (!passed)
+            System.exit(1);
+    }
 
-        runJasminCode();
+    public static List<CompileError> compile(CharStream reader, String outputPath) {
+        return compile(reader, outputPath, false);
     }
 
-    private static void runJasminCode() {
-        try {
-            System.out.println("---------------------------Compilation Successful---------------------------");
-            File dir = new File("./codeGenOutput");
-            Runtime.getRuntime().exec("java -jar jasmin.jar *.j", null, dir);
+    public static List<CompileError> compile(CharStream reader, String outputPath, boolean emitJasmin) {
+        return compile(reader, outputPath, emitJasmin, Inliner.DEFAULT_BUDGET);
+    }
+
+    public static List<CompileError> compile(CharStream reader, String outputPath, boolean emitJasmin, int inlineBudget) {
+        return compile(parse(reader), outputPath, emitJasmin, inlineBudget);
+    }
+
+    public static List<CompileError> compile(Program program, String outputPath, boolean emitJasmin, int inlineBudget) {
+        new LambdaLifter().visit(program);
+        CompilationContext context = new CompilationContext();
+        TypeChecker typeChecker = new TypeChecker(context);
+        typeChecker.visit(program);
+        context.getTypeErrors().sort(Comparator.comparingInt(CompileError::getLine));
+        Inliner inliner = new Inliner(context, typeChecker, inlineBudget);
+        inliner.visit(program);
+        new ConstantFolder().visit(program);
+        new LoopInvariantMover(typeChecker).visit(program);
+
+        CodeGenerator codeGenerator = new CodeGenerator(context, typeChecker, outputPath, emitJasmin);
+        codeGenerator.visit(program);
+        if (emitJasmin) {
             try {
-                Thread.sleep(500);
-            } catch (InterruptedException ignored) {}
-            Process process = Runtime.getRuntime().exec("java Main", null, dir);
-            printResults(process.getInputStream());
-            printResults(process.getErrorStream());
-        } catch (IOException e) {
-            e.printStackTrace();
+                Files.writeString(Path.of(outputPath, "inlining.txt"), inliner.getReport());
+            } catch (IOException e) {
+                // ignore
+            }
         }
+        return context.getTypeErrors();
     }
 
-    private static void printResults(InputStream stream) {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-        String line;
+    public static void writeErrors(List<CompileError> errors, String path, boolean echo) throws IOException {
+        FileWriter fileWriter = new FileWriter(path);
+        PrintWriter printWriter = new PrintWriter(fileWriter);
+        for (CompileError compileError : errors) {
+            printWriter.println(compileError.getErrorMessage());
+            if (echo)
+                System.out.println(compileError.getErrorMessage());
+        }
+        printWriter.flush();
+        fileWriter.close();
+    }
+
+    static Program parse(CharStream reader) {
+        FunctionCraftLexer flLexer = new FunctionCraftLexer(reader);
+        CommonTokenStream tokens = new CommonTokenStream(flLexer);
+        FunctionCraftParser flParser = new FunctionCraftParser(tokens);
+        // the grammar actions build the AST themselves, so the parse tree is never needed
+        flParser.setBuildParseTree(false);
+        flParser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        flParser.removeErrorListeners();
+        flParser.setErrorHandler(new BailErrorStrategy());
         try {
-            while ((line = reader.readLine()) != null)
-                System.out.println(line);
-        } catch (IOException e) {
-            e.printStackTrace();
+            return flParser.program().flProgram;
+        } catch (ParseCancellationException e) {
+            // SLL could not decide (or the input really is malformed), retry with full LL and normal error reporting
+            tokens.seek(0);
+            flParser.reset();
+            flParser.addErrorListener(ConsoleErrorListener.INSTANCE);
+            flParser.setErrorHandler(new DefaultErrorStrategy());
+            flParser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return flParser.program().flProgram;
         }
     }
 }
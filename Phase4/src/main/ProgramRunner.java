@@ -0,0 +1,99 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+public class ProgramRunner {
+    private static final String MAIN_CLASS = "Main";
+    // System.out and System.err are global, so only one program can own them at a time
+    private static final Object streamLock = new Object();
+
+    // loads the generated classes from the output folder only, never from the compiler's own classpath
+    private static class GeneratedClassLoader extends ClassLoader {
+        private final File directory;
+
+        GeneratedClassLoader(File directory) {
+            super(ClassLoader.getPlatformClassLoader());
+            this.directory = directory;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            File classFile = new File(directory, name.replace('.', '/') + ".class");
+            if (!classFile.isFile())
+                throw new ClassNotFoundException(name);
+            try {
+                byte[] bytes = Files.readAllBytes(classFile.toPath());
+                return defineClass(name, bytes, 0, bytes.length);
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
+    // runs Main inside this jvm and waits for it to finish; returns false if the program failed.
+    // a thread running generated code cannot be stopped, so a program that may not finish has to run forked
+    public static boolean runInProcess(String outputPath, PrintStream out, PrintStream err) {
+        Method main;
+        try {
+            Class<?> mainClass = new GeneratedClassLoader(new File(outputPath)).loadClass(MAIN_CLASS);
+            main = mainClass.getMethod("main", String[].class);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            err.println("could not load " + MAIN_CLASS + ": " + e);
+            return false;
+        }
+
+        synchronized (streamLock) {
+            PrintStream originalOut = System.out;
+            PrintStream originalErr = System.err;
+            System.setOut(out);
+            System.setErr(err);
+            try {
+                main.invoke(null, (Object) new String[0]);
+                return true;
+            } catch (InvocationTargetException e) {
+                err.print("Exception in thread \"main\" ");
+                e.getCause().printStackTrace(err);
+                return false;
+            } catch (IllegalAccessException e) {
+                err.println(e);
+                return false;
+            } finally {
+                out.flush();
+                err.flush();
+                System.setOut(originalOut);
+                System.setErr(originalErr);
+            }
+        }
+    }
+
+    // runs Main in a separate jvm that shares this process's stdout and stderr, so neither pipe can fill up
+    public static boolean runForked(String outputPath, long timeoutMillis) {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", ".", MAIN_CLASS)
+                .directory(new File(outputPath))
+                .inheritIO();
+        try {
+            Process process = builder.start();
+            if (timeoutMillis <= 0)
+                return process.waitFor() == 0;
+            if (!process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                System.err.println("timed out after " + timeoutMillis + " ms");
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
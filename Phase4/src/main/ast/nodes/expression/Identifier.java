@@ -1,12 +1,18 @@
 package main.ast.nodes.expression;
 
+import main.symbolTable.utils.SymbolIds;
 import main.visitor.IVisitor;
 
 public class Identifier extends Expression{
     private String name;
-    public Identifier(String name){this.name = name;}
-    public void setName(String name) {this.name = name;}
+    private int symbolId;
+    public Identifier(String name){setName(name);}
+    public final void setName(String name) {
+        this.name = name;
+        this.symbolId = SymbolIds.intern(name);
+    }
     public String getName(){return this.name;}
+    public int getSymbolId(){return this.symbolId;}
     @Override
     public String toString(){return "Identifier:" + this.name;}
     @Override
@@ -9,6 +9,9 @@ import java.util.ArrayList;
 public class LambdaExpression extends Expression{
     ArrayList<VarDeclaration> declarationArgs = new ArrayList<>();
     ArrayList<Statement> body = new ArrayList<>();
+    // once lifted, the function holding the body and the values it captures, passed ahead of its own arguments
+    Identifier functionName;
+    ArrayList<Expression> captures = new ArrayList<>();
 //    ArrayList<Expression> args =  new ArrayList<>();
     public LambdaExpression(ArrayList<VarDeclaration> declarationArgs, ArrayList<Statement> body
                             ){
@@ -40,6 +43,18 @@ public class LambdaExpression extends Expression{
     public ArrayList<VarDeclaration> getDeclarationArgs() {
         return declarationArgs;
     }
+    public Identifier getFunctionName() {
+        return functionName;
+    }
+    public void setFunctionName(Identifier functionName) {
+        this.functionName = functionName;
+    }
+    public ArrayList<Expression> getCaptures() {
+        return captures;
+    }
+    public void setCaptures(ArrayList<Expression> captures) {
+        this.captures = captures;
+    }
     @Override
     public String toString(){return "LambdaExpression";}
     @Override
@@ -0,0 +1,9 @@
+package main.bytecode;
+
+public class AssemblerException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public AssemblerException(int line, String message) {
+        super("line " + line + ": " + message);
+    }
+}
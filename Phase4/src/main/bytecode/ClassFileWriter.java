@@ -0,0 +1,126 @@
+package main.bytecode;
+
+import main.bytecode.ir.ClassDefinition;
+import main.bytecode.ir.FieldDefinition;
+import main.bytecode.ir.MethodDefinition;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ClassFileWriter {
+    // java 21, the release the compiler itself needs (see README.md); methods carry stack map frames
+    // for the type checking verifier
+    public static final int MAJOR_VERSION = 65;
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_PRIVATE = 0x0002;
+    public static final int ACC_PROTECTED = 0x0004;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+    public static final int ACC_SYNCHRONIZED = 0x0020;
+    public static final int ACC_VOLATILE = 0x0040;
+    public static final int ACC_TRANSIENT = 0x0080;
+    public static final int ACC_NATIVE = 0x0100;
+    public static final int ACC_INTERFACE = 0x0200;
+    public static final int ACC_ABSTRACT = 0x0400;
+
+    private ClassFileWriter() {}
+
+    public static byte[] write(ClassDefinition classDefinition) {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(classDefinition.getName());
+        int superClass = pool.classRef(classDefinition.getSuperName());
+        List<Integer> interfaces = new ArrayList<>();
+        for (String interfaceName : classDefinition.getInterfaces())
+            interfaces.add(pool.classRef(interfaceName));
+
+        ByteArrayOutputStream members = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(members);
+        try {
+            // members are encoded first since they add to the constant pool, which has to come before them
+            out.writeShort(classDefinition.getFields().size());
+            for (FieldDefinition field : classDefinition.getFields())
+                writeField(pool, field, out);
+            out.writeShort(classDefinition.getMethods().size());
+            for (MethodDefinition method : classDefinition.getMethods())
+                out.write(new MethodWriter(pool, classDefinition, method).toByteArray());
+            // the only class attribute is the table of bootstrap methods that invokedynamic call sites name
+            if (pool.hasBootstrapMethods()) {
+                out.writeShort(1);
+                pool.writeBootstrapMethods(out);
+            } else {
+                out.writeShort(0);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream classFile = new DataOutputStream(bytes);
+            classFile.writeInt(0xCAFEBABE);
+            classFile.writeShort(0);
+            classFile.writeShort(MAJOR_VERSION);
+            pool.writeTo(classFile);
+            classFile.writeShort(classDefinition.getAccess());
+            classFile.writeShort(thisClass);
+            classFile.writeShort(superClass);
+            classFile.writeShort(interfaces.size());
+            for (int index : interfaces)
+                classFile.writeShort(index);
+            members.writeTo(classFile);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static int accessFlag(String keyword) {
+        return switch (keyword) {
+            case "public" -> ACC_PUBLIC;
+            case "private" -> ACC_PRIVATE;
+            case "protected" -> ACC_PROTECTED;
+            case "static" -> ACC_STATIC;
+            case "final" -> ACC_FINAL;
+            case "synchronized" -> ACC_SYNCHRONIZED;
+            case "super" -> ACC_SUPER;
+            case "volatile" -> ACC_VOLATILE;
+            case "transient" -> ACC_TRANSIENT;
+            case "native" -> ACC_NATIVE;
+            case "interface" -> ACC_INTERFACE;
+            case "abstract" -> ACC_ABSTRACT;
+            default -> -1;
+        };
+    }
+
+    public static String accessKeywords(int access, boolean isClass) {
+        StringBuilder keywords = new StringBuilder();
+        String[] names = {"public", "private", "protected", "static", "final", isClass ? "super" : "synchronized",
+                "volatile", "transient", "native", "", "abstract"};
+        for (int i = 0; i < names.length; i++)
+            if ((access & (1 << i)) != 0 && !names[i].isEmpty() && !(isClass && names[i].equals("super")))
+                keywords.append(names[i]).append(' ');
+        return keywords.toString();
+    }
+
+    private static void writeField(ConstantPool pool, FieldDefinition field, DataOutputStream out) throws IOException {
+        out.writeShort(field.access());
+        out.writeShort(pool.utf8(field.name()));
+        out.writeShort(pool.utf8(field.descriptor()));
+        if (field.constantValue() == null) {
+            out.writeShort(0);
+            return;
+        }
+        out.writeShort(1);
+        out.writeShort(pool.utf8("ConstantValue"));
+        out.writeInt(2);
+        out.writeShort(switch (field.constantValue()) {
+            case Integer i -> pool.integer(i);
+            case Float f -> pool.floatValue(f);
+            case Long l -> pool.longValue(l);
+            case Double d -> pool.doubleValue(d);
+            case String s -> pool.string(s);
+            default -> throw new IllegalArgumentException("unsupported constant " + field.constantValue());
+        });
+    }
+}
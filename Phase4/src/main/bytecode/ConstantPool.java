@@ -0,0 +1,249 @@
+package main.bytecode;
+
+import main.bytecode.ir.Handle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ConstantPool {
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int INVOKE_DYNAMIC = 18;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final Map<String, Integer> indices = new HashMap<>();
+    // entries of the BootstrapMethods attribute: the bootstrap handle followed by its static arguments
+    private final List<int[]> bootstrapMethods = new ArrayList<>();
+    private final Map<String, Integer> bootstrapIndices = new HashMap<>();
+    private int count = 1;
+
+    public int utf8(String value) {
+        Integer index = indices.get("U" + value);
+        if (index != null)
+            return index;
+        try {
+            out.writeByte(UTF8);
+            out.writeUTF(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return register("U" + value, 1);
+    }
+
+    public int integer(int value) {
+        Integer index = indices.get("I" + value);
+        if (index != null)
+            return index;
+        writeEntry(INTEGER, value);
+        return register("I" + value, 1);
+    }
+
+    public int floatValue(float value) {
+        int bits = Float.floatToIntBits(value);
+        Integer index = indices.get("F" + bits);
+        if (index != null)
+            return index;
+        writeEntry(FLOAT, bits);
+        return register("F" + bits, 1);
+    }
+
+    public int longValue(long value) {
+        Integer index = indices.get("J" + value);
+        if (index != null)
+            return index;
+        try {
+            out.writeByte(LONG);
+            out.writeLong(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return register("J" + value, 2);
+    }
+
+    public int doubleValue(double value) {
+        long bits = Double.doubleToLongBits(value);
+        Integer index = indices.get("D" + bits);
+        if (index != null)
+            return index;
+        try {
+            out.writeByte(DOUBLE);
+            out.writeLong(bits);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return register("D" + bits, 2);
+    }
+
+    public int classRef(String internalName) {
+        Integer index = indices.get("C" + internalName);
+        if (index != null)
+            return index;
+        int name = utf8(internalName);
+        writeEntry(CLASS, name, -1);
+        return register("C" + internalName, 1);
+    }
+
+    public int string(String value) {
+        Integer index = indices.get("S" + value);
+        if (index != null)
+            return index;
+        int utf = utf8(value);
+        writeEntry(STRING, utf, -1);
+        return register("S" + value, 1);
+    }
+
+    public int nameAndType(String name, String descriptor) {
+        String key = "N" + name + " " + descriptor;
+        Integer index = indices.get(key);
+        if (index != null)
+            return index;
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        writeEntry(NAME_AND_TYPE, nameIndex, descriptorIndex);
+        return register(key, 1);
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(FIELD_REF, owner, name, descriptor);
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return memberRef(METHOD_REF, owner, name, descriptor);
+    }
+
+    public int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(INTERFACE_METHOD_REF, owner, name, descriptor);
+    }
+
+    public int methodHandle(Handle handle) {
+        String key = "H" + handle.kind() + handle.owner() + "." + handle.name() + " " + handle.descriptor();
+        Integer index = indices.get(key);
+        if (index != null)
+            return index;
+        int reference = methodRef(handle.owner(), handle.name(), handle.descriptor());
+        try {
+            out.writeByte(METHOD_HANDLE);
+            out.writeByte(handle.kind());
+            out.writeShort(reference);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return register(key, 1);
+    }
+
+    public int invokeDynamic(Handle bootstrap, List<Object> arguments, String name, String descriptor) {
+        int bootstrapIndex = bootstrapMethod(bootstrap, arguments);
+        String key = "D" + bootstrapIndex + " " + name + " " + descriptor;
+        Integer index = indices.get(key);
+        if (index != null)
+            return index;
+        int nameAndTypeIndex = nameAndType(name, descriptor);
+        writeEntry(INVOKE_DYNAMIC, bootstrapIndex, nameAndTypeIndex);
+        return register(key, 1);
+    }
+
+    public boolean hasBootstrapMethods() {
+        return !bootstrapMethods.isEmpty();
+    }
+
+    public void writeBootstrapMethods(DataOutputStream stream) throws IOException {
+        int name = utf8("BootstrapMethods");
+        int length = 2;
+        for (int[] method : bootstrapMethods)
+            length += 2 * method.length + 2;
+        stream.writeShort(name);
+        stream.writeInt(length);
+        stream.writeShort(bootstrapMethods.size());
+        for (int[] method : bootstrapMethods) {
+            stream.writeShort(method[0]);
+            stream.writeShort(method.length - 1);
+            for (int i = 1; i < method.length; i++)
+                stream.writeShort(method[i]);
+        }
+    }
+
+    private int bootstrapMethod(Handle bootstrap, List<Object> arguments) {
+        int[] method = new int[arguments.size() + 1];
+        method[0] = methodHandle(bootstrap);
+        for (int i = 0; i < arguments.size(); i++)
+            method[i + 1] = switch (arguments.get(i)) {
+                case Integer value -> integer(value);
+                case String value -> string(value);
+                case Handle value -> methodHandle(value);
+                default -> throw new IllegalArgumentException("unsupported bootstrap argument " + arguments.get(i));
+            };
+        String key = Arrays.toString(method);
+        Integer index = bootstrapIndices.get(key);
+        if (index != null)
+            return index;
+        bootstrapMethods.add(method);
+        bootstrapIndices.put(key, bootstrapMethods.size() - 1);
+        return bootstrapMethods.size() - 1;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void writeTo(DataOutputStream stream) throws IOException {
+        stream.writeShort(count);
+        bytes.writeTo(stream);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        String key = tag + owner + "." + name + " " + descriptor;
+        Integer index = indices.get(key);
+        if (index != null)
+            return index;
+        int ownerIndex = classRef(owner);
+        int nameAndTypeIndex = nameAndType(name, descriptor);
+        writeEntry(tag, ownerIndex, nameAndTypeIndex);
+        return register(key, 1);
+    }
+
+    private void writeEntry(int tag, int value) {
+        try {
+            out.writeByte(tag);
+            out.writeInt(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeEntry(int tag, int first, int second) {
+        try {
+            out.writeByte(tag);
+            out.writeShort(first);
+            if (second >= 0)
+                out.writeShort(second);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int register(String key, int slots) {
+        int index = count;
+        indices.put(key, index);
+        count += slots;
+        if (count > 0xFFFF)
+            throw new IllegalStateException("constant pool overflow");
+        return index;
+    }
+}
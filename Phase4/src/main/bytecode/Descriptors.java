@@ -0,0 +1,42 @@
+package main.bytecode;
+
+public final class Descriptors {
+    private Descriptors() {}
+
+    // number of local slots taken by the arguments of a method descriptor
+    public static int argumentSlots(String descriptor) {
+        int slots = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            if (c == 'J' || c == 'D') {
+                slots += 2;
+                i++;
+            } else {
+                slots++;
+                i = skipType(descriptor, i);
+            }
+        }
+        return slots;
+    }
+
+    public static int returnSlots(String descriptor) {
+        return slotsOf(descriptor.substring(descriptor.indexOf(')') + 1));
+    }
+
+    public static int slotsOf(String fieldDescriptor) {
+        return switch (fieldDescriptor.charAt(0)) {
+            case 'V' -> 0;
+            case 'J', 'D' -> 2;
+            default -> 1;
+        };
+    }
+
+    private static int skipType(String descriptor, int i) {
+        while (descriptor.charAt(i) == '[')
+            i++;
+        if (descriptor.charAt(i) == 'L')
+            i = descriptor.indexOf(';', i);
+        return i + 1;
+    }
+}
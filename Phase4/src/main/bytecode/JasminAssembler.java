@@ -0,0 +1,276 @@
+package main.bytecode;
+
+import main.bytecode.ir.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// parses the subset of jasmin the utility classes use into class definitions
+public class JasminAssembler {
+    private int lineNumber = 0;
+    private String className;
+    private int classAccess = ClassFileWriter.ACC_SUPER;
+    private ClassDefinition classDefinition;
+    private MethodDefinition method;
+    private final Map<String, Label> labels = new HashMap<>();
+
+    private JasminAssembler() {}
+
+    public static ClassDefinition assemble(String source) {
+        JasminAssembler assembler = new JasminAssembler();
+        for (String line : source.split("\n")) {
+            assembler.lineNumber++;
+            List<String> tokens = tokenize(line);
+            if (!tokens.isEmpty())
+                assembler.handle(tokens);
+        }
+        if (assembler.method != null)
+            throw new AssemblerException(assembler.lineNumber, "missing .end method");
+        return assembler.classDefinition();
+    }
+
+    private void handle(List<String> tokens) {
+        String first = tokens.getFirst();
+        if (first.startsWith(".")) {
+            directive(first, tokens);
+            return;
+        }
+        if (first.endsWith(":") && !first.startsWith("\"")) {
+            requireMethod().add(labelOf(first.substring(0, first.length() - 1)));
+            tokens = tokens.subList(1, tokens.size());
+            if (tokens.isEmpty())
+                return;
+        }
+        instruction(tokens);
+    }
+
+    private void directive(String name, List<String> tokens) {
+        switch (name) {
+            case ".class", ".interface" -> {
+                int i = 1;
+                for (; i < tokens.size() - 1; i++)
+                    classAccess |= access(tokens.get(i));
+                if (name.equals(".interface"))
+                    classAccess = (classAccess & ~ClassFileWriter.ACC_SUPER) | ClassFileWriter.ACC_INTERFACE | ClassFileWriter.ACC_ABSTRACT;
+                className = operand(tokens, i);
+            }
+            case ".super" -> {
+                if (classDefinition != null)
+                    throw new AssemblerException(lineNumber, ".super must come before any member");
+                classDefinition = new ClassDefinition(classAccess, requireClassName(), operand(tokens, 1));
+            }
+            case ".implements" -> classDefinition().getInterfaces().add(operand(tokens, 1));
+            case ".field" -> {
+                int i = 1;
+                int access = 0;
+                for (; i < tokens.size() && access(tokens.get(i)) >= 0 && !isFieldNameAt(tokens, i); i++)
+                    access |= access(tokens.get(i));
+                String fieldName = operand(tokens, i);
+                String descriptor = operand(tokens, i + 1);
+                Object value = null;
+                if (tokens.size() > i + 2) {
+                    if (!tokens.get(i + 2).equals("="))
+                        throw new AssemblerException(lineNumber, "expected '=' in field declaration");
+                    value = constantOf(operand(tokens, i + 3), descriptor.equals("J") || descriptor.equals("D"));
+                }
+                classDefinition().getFields().add(new FieldDefinition(access, fieldName, descriptor, value));
+            }
+            case ".method" -> {
+                if (method != null)
+                    throw new AssemblerException(lineNumber, "nested .method");
+                int i = 1;
+                int access = 0;
+                for (; i < tokens.size() - 1; i++)
+                    access |= access(tokens.get(i));
+                String signature = operand(tokens, i);
+                int paren = signature.indexOf('(');
+                if (paren <= 0)
+                    throw new AssemblerException(lineNumber, "bad method signature " + signature);
+                method = classDefinition().addMethod(access, signature.substring(0, paren), signature.substring(paren));
+                labels.clear();
+            }
+            case ".limit" -> {
+                int value = parseInt(operand(tokens, 2));
+                switch (operand(tokens, 1)) {
+                    case "stack" -> requireMethod().setMaxStack(value);
+                    case "locals" -> requireMethod().setMaxLocals(value);
+                    default -> throw new AssemblerException(lineNumber, "unknown limit " + tokens.get(1));
+                }
+            }
+            case ".catch" -> {
+                // .catch <class|all> from <label> to <label> using <label>
+                if (tokens.size() != 8)
+                    throw new AssemblerException(lineNumber, "malformed .catch");
+                String type = tokens.get(1);
+                requireMethod().getTryCatchBlocks().add(new TryCatchBlock(labelOf(tokens.get(3)), labelOf(tokens.get(5)),
+                        labelOf(tokens.get(7)), type.equals("all") ? null : type));
+            }
+            case ".end" -> {
+                if (!operand(tokens, 1).equals("method"))
+                    throw new AssemblerException(lineNumber, "unsupported .end " + tokens.get(1));
+                requireMethod();
+                method = null;
+            }
+            case ".source", ".line", ".var", ".throws", ".signature", ".bytecode", ".debug" -> {}
+            default -> throw new AssemblerException(lineNumber, "unsupported directive " + name);
+        }
+    }
+
+    private void instruction(List<String> tokens) {
+        String mnemonic = tokens.getFirst();
+        if (!Opcodes.exists(mnemonic))
+            throw new AssemblerException(lineNumber, "unknown instruction " + mnemonic);
+        int opcode = Opcodes.codeOf(mnemonic);
+        requireMethod().add(switch (Opcodes.kindOf(mnemonic)) {
+            case NONE -> simpleInstruction(opcode);
+            case LOCAL -> new VarInstruction(opcode, parseInt(operand(tokens, 1)));
+            case BYTE, SHORT -> new IntInstruction(opcode, parseInt(operand(tokens, 1)));
+            case CONSTANT -> new ConstantInstruction(constantOf(operand(tokens, 1), opcode == Opcodes.LDC2_W));
+            case JUMP -> new JumpInstruction(opcode, labelOf(operand(tokens, 1)));
+            case IINC -> new IincInstruction(parseInt(operand(tokens, 1)), parseInt(operand(tokens, 2)));
+            case CLASS -> new TypeInstruction(opcode, operand(tokens, 1));
+            case FIELD -> {
+                String reference = operand(tokens, 1);
+                int slash = reference.lastIndexOf('/');
+                if (slash <= 0)
+                    throw new AssemblerException(lineNumber, "bad field reference " + reference);
+                yield new FieldInstruction(opcode, reference.substring(0, slash), reference.substring(slash + 1), operand(tokens, 2));
+            }
+            case METHOD, INTERFACE_METHOD -> {
+                String reference = operand(tokens, 1);
+                int paren = reference.indexOf('(');
+                int slash = paren < 0 ? -1 : reference.lastIndexOf('/', paren);
+                if (slash <= 0)
+                    throw new AssemblerException(lineNumber, "bad method reference " + reference);
+                yield new MethodInstruction(opcode, reference.substring(0, slash), reference.substring(slash + 1, paren),
+                        reference.substring(paren));
+            }
+            // jasmin has no syntax for bootstrap methods
+            case INVOKE_DYNAMIC -> throw new AssemblerException(lineNumber, "invokedynamic is not supported");
+            case NEWARRAY -> new IntInstruction(opcode, Opcodes.arrayTypeOf(operand(tokens, 1)));
+            case MULTIANEWARRAY -> new MultiANewArrayInstruction(operand(tokens, 1), parseInt(operand(tokens, 2)));
+        });
+    }
+
+    // xload_n and xstore_n become plain loads and stores so every local access looks the same in the ir
+    private static Instruction simpleInstruction(int opcode) {
+        if (opcode >= Opcodes.ILOAD_0 && opcode <= Opcodes.ALOAD_3)
+            return new VarInstruction(Opcodes.ILOAD + (opcode - Opcodes.ILOAD_0) / 4, (opcode - Opcodes.ILOAD_0) % 4);
+        if (opcode >= Opcodes.ISTORE_0 && opcode <= Opcodes.ASTORE_3)
+            return new VarInstruction(Opcodes.ISTORE + (opcode - Opcodes.ISTORE_0) / 4, (opcode - Opcodes.ISTORE_0) % 4);
+        return new SimpleInstruction(opcode);
+    }
+
+    private Label labelOf(String name) {
+        return labels.computeIfAbsent(name, Label::new);
+    }
+
+    private ClassDefinition classDefinition() {
+        if (classDefinition == null)
+            classDefinition = new ClassDefinition(classAccess, requireClassName(), "java/lang/Object");
+        return classDefinition;
+    }
+
+    private String requireClassName() {
+        if (className == null)
+            throw new AssemblerException(lineNumber, "missing .class directive");
+        return className;
+    }
+
+    private MethodDefinition requireMethod() {
+        if (method == null)
+            throw new AssemblerException(lineNumber, "code outside of a method");
+        return method;
+    }
+
+    private int access(String keyword) {
+        return ClassFileWriter.accessFlag(keyword);
+    }
+
+    // a field may be called "final" or "static", so the name is whatever comes right before the descriptor
+    private boolean isFieldNameAt(List<String> tokens, int i) {
+        return i + 1 < tokens.size() && (i + 2 == tokens.size() || tokens.get(i + 2).equals("="));
+    }
+
+    private String operand(List<String> tokens, int index) {
+        if (index >= tokens.size())
+            throw new AssemblerException(lineNumber, "missing operand for " + tokens.getFirst());
+        return tokens.get(index);
+    }
+
+    private int parseInt(String token) {
+        try {
+            return Integer.decode(token);
+        } catch (NumberFormatException e) {
+            throw new AssemblerException(lineNumber, "expected a number but found " + token);
+        }
+    }
+
+    private Object constantOf(String token, boolean twoSlots) {
+        if (token.startsWith("\""))
+            return token.substring(1, token.length() - 1);
+        try {
+            boolean isFloating = !token.startsWith("0x") && (token.contains(".") || token.contains("e") || token.contains("E"));
+            if (twoSlots)
+                return isFloating ? (Object) Double.parseDouble(token) : (Object) Long.decode(token);
+            return isFloating ? (Object) Float.parseFloat(token) : (Object) Integer.decode(token);
+        } catch (NumberFormatException e) {
+            throw new AssemblerException(lineNumber, "bad constant " + token);
+        }
+    }
+
+    // resolves the backslash escapes jasmin accepts inside string constants
+    public static String unescape(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '\\' || i + 1 == text.length()) {
+                result.append(c);
+                continue;
+            }
+            char escaped = text.charAt(++i);
+            switch (escaped) {
+                case 'n' -> result.append('\n');
+                case 't' -> result.append('\t');
+                case 'r' -> result.append('\r');
+                case 'b' -> result.append('\b');
+                case 'f' -> result.append('\f');
+                case 'u' -> {
+                    result.append((char) Integer.parseInt(text.substring(i + 1, i + 5), 16));
+                    i += 4;
+                }
+                default -> result.append(escaped);
+            }
+        }
+        return result.toString();
+    }
+
+    // splits a line on whitespace, keeping quoted strings whole (already unescaped, quotes kept as a marker)
+    private static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        int n = line.length();
+        while (i < n) {
+            char c = line.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == ';') {
+                break;
+            } else if (c == '"') {
+                int end = i + 1;
+                while (end < n && line.charAt(end) != '"')
+                    end += line.charAt(end) == '\\' ? 2 : 1;
+                tokens.add("\"" + unescape(line.substring(i + 1, Math.min(end, n))) + "\"");
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < n && !Character.isWhitespace(line.charAt(i)))
+                    i++;
+                tokens.add(line.substring(start, i));
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,46 @@
+package main.bytecode;
+
+import main.bytecode.ir.*;
+
+// prints class definitions back as jasmin, used for the --jasmin debug output
+public class JasminPrinter {
+    private JasminPrinter() {}
+
+    public static String print(ClassDefinition classDefinition) {
+        StringBuilder text = new StringBuilder(1 << 16);
+        boolean isInterface = (classDefinition.getAccess() & ClassFileWriter.ACC_INTERFACE) != 0;
+        int classAccess = classDefinition.getAccess() & ~(isInterface ? ClassFileWriter.ACC_ABSTRACT : 0);
+        text.append(isInterface ? ".interface " : ".class ")
+                .append(ClassFileWriter.accessKeywords(classAccess, true))
+                .append(classDefinition.getName()).append('\n');
+        text.append(".super ").append(classDefinition.getSuperName()).append('\n');
+        for (String interfaceName : classDefinition.getInterfaces())
+            text.append(".implements ").append(interfaceName).append('\n');
+        for (FieldDefinition field : classDefinition.getFields()) {
+            text.append(".field ").append(ClassFileWriter.accessKeywords(field.access(), false))
+                    .append(field.name()).append(' ').append(field.descriptor());
+            if (field.constantValue() != null)
+                text.append(" = ").append(new ConstantInstruction(field.constantValue()).getOperandText());
+            text.append('\n');
+        }
+        for (MethodDefinition method : classDefinition.getMethods())
+            printMethod(method, text);
+        return text.toString();
+    }
+
+    private static void printMethod(MethodDefinition method, StringBuilder text) {
+        text.append(".method ").append(ClassFileWriter.accessKeywords(method.getAccess(), false))
+                .append(method.getName()).append(method.getDescriptor()).append('\n');
+        if (method.hasCode()) {
+            if (method.getMaxStack() >= 0)
+                text.append(".limit stack ").append(method.getMaxStack()).append('\n');
+            if (method.getMaxLocals() >= 0)
+                text.append(".limit locals ").append(method.getMaxLocals()).append('\n');
+            for (TryCatchBlock tryCatch : method.getTryCatchBlocks())
+                text.append(tryCatch).append('\n');
+            for (Instruction instruction : method.getInstructions())
+                text.append(instruction instanceof Label ? "\t" : "\t\t").append(instruction).append('\n');
+        }
+        text.append(".end method\n");
+    }
+}
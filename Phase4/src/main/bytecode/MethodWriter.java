@@ -0,0 +1,371 @@
+package main.bytecode;
+
+import main.bytecode.analysis.Frame;
+import main.bytecode.analysis.FrameComputer;
+import main.bytecode.analysis.StackAnalyzer;
+import main.bytecode.analysis.VerificationType;
+import main.bytecode.ir.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// encodes one method definition into a method_info structure
+class MethodWriter {
+    private record Fixup(JumpInstruction jump, int instructionStart, int operandStart, Label label, boolean wide) {}
+
+    private final ConstantPool pool;
+    private final ClassDefinition owner;
+    private final MethodDefinition method;
+    private byte[] code = new byte[256];
+    private int length = 0;
+    private final Map<Label, Integer> offsets = new HashMap<>();
+    private final List<Fixup> fixups = new ArrayList<>();
+    // where each new instruction landed, for uninitialized entries in the stack map
+    private final Map<Instruction, Integer> creatorOffsets = new IdentityHashMap<>();
+    private int usedLocals;
+    private int widenedJumps = 0;
+
+    MethodWriter(ConstantPool pool, ClassDefinition owner, MethodDefinition method) {
+        this.pool = pool;
+        this.owner = owner;
+        this.method = method;
+        this.usedLocals = Descriptors.argumentSlots(method.getDescriptor()) + (method.isStatic() ? 0 : 1);
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(method.getAccess());
+            out.writeShort(pool.utf8(method.getName()));
+            out.writeShort(pool.utf8(method.getDescriptor()));
+            if (!method.hasCode()) {
+                out.writeShort(0);
+                return bytes.toByteArray();
+            }
+            FrameComputer frames = encodeWithReachableJumps();
+            resolveJumps();
+            byte[] stackMap = frames.getFrames().isEmpty() ? null : stackMapTable(frames);
+            List<TryCatchBlock> handlers = method.getTryCatchBlocks();
+            out.writeShort(1);
+            out.writeShort(pool.utf8("Code"));
+            out.writeInt(12 + length + handlers.size() * 8 + (stackMap == null ? 0 : 6 + stackMap.length));
+            // without a declared limit the locals come from the highest slot used and the stack from a walk over the code
+            out.writeShort(method.getMaxStack() >= 0 ? method.getMaxStack() : StackAnalyzer.computeMaxStack(method));
+            out.writeShort(method.getMaxLocals() >= 0 ? method.getMaxLocals() : usedLocals);
+            out.writeInt(length);
+            out.write(code, 0, length);
+            out.writeShort(handlers.size());
+            for (TryCatchBlock handler : handlers) {
+                out.writeShort(offsetOf(handler.start()));
+                out.writeShort(offsetOf(handler.end()));
+                out.writeShort(offsetOf(handler.handler()));
+                out.writeShort(handler.exceptionClass() == null ? 0 : pool.classRef(handler.exceptionClass()));
+            }
+            if (stackMap == null) {
+                out.writeShort(0);
+            } else {
+                out.writeShort(1);
+                out.writeShort(pool.utf8("StackMapTable"));
+                out.writeInt(stackMap.length);
+                out.write(stackMap);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // a jump that cannot reach its target in 16 bits is widened and the whole body encoded again,
+    // widening only ever moves targets further away so this settles
+    private FrameComputer encodeWithReachableJumps() {
+        MethodDefinition current = method;
+        while (true) {
+            FrameComputer frames = FrameComputer.compute(owner, current);
+            length = 0;
+            offsets.clear();
+            fixups.clear();
+            creatorOffsets.clear();
+            for (Instruction instruction : frames.getCode())
+                encode(instruction);
+            Set<JumpInstruction> far = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Fixup fixup : fixups)
+                if (!fixup.wide() && !fitsShort(offsetOf(fixup.label()) - fixup.instructionStart()))
+                    far.add(fixup.jump());
+            if (far.isEmpty())
+                return frames;
+            current = widen(current, frames.getCode(), far);
+        }
+    }
+
+    // goto becomes goto_w, a conditional jump is inverted to hop over a goto_w to its target
+    private MethodDefinition widen(MethodDefinition original, List<Instruction> code, Set<JumpInstruction> far) {
+        MethodDefinition widened = new MethodDefinition(original.getAccess(), original.getName(), original.getDescriptor());
+        widened.getTryCatchBlocks().addAll(original.getTryCatchBlocks());
+        widened.setMaxStack(original.getMaxStack());
+        widened.setMaxLocals(original.getMaxLocals());
+        for (Instruction instruction : code) {
+            if (!(instruction instanceof JumpInstruction jump) || !far.contains(jump)) {
+                widened.add(instruction);
+                continue;
+            }
+            if (jump.getOpcode() == Opcodes.GOTO || jump.getOpcode() == Opcodes.JSR) {
+                widened.add(new JumpInstruction(jump.getOpcode() == Opcodes.GOTO ? Opcodes.GOTO_W : Opcodes.JSR_W, jump.getTarget()));
+                continue;
+            }
+            Label skip = new Label(jump.getTarget().getName() + "$near" + widenedJumps++);
+            widened.add(new JumpInstruction(Opcodes.negate(jump.getOpcode()), skip));
+            widened.add(new JumpInstruction(Opcodes.GOTO_W, jump.getTarget()));
+            widened.add(skip);
+        }
+        return widened;
+    }
+
+    private static boolean fitsShort(int offset) {
+        return offset >= Short.MIN_VALUE && offset <= Short.MAX_VALUE;
+    }
+
+    private void encode(Instruction instruction) {
+        switch (instruction) {
+            case Label label -> {
+                if (offsets.put(label, length) != null)
+                    throw new IllegalStateException("label " + label.getName() + " placed twice in " + method.getName());
+            }
+            case VarInstruction var -> local(var.getOpcode(), var.getSlot(), var.getWidth());
+            case IincInstruction iinc -> iinc(iinc.getSlot(), iinc.getDelta());
+            case IntInstruction intInstruction -> {
+                put1(intInstruction.getOpcode());
+                if (intInstruction.getOpcode() == Opcodes.SIPUSH)
+                    put2(intInstruction.getOperand());
+                else
+                    put1(intInstruction.getOperand());
+            }
+            case ConstantInstruction constant -> constant(constant.getValue());
+            case JumpInstruction jump -> {
+                int start = length;
+                boolean wide = jump.getOpcode() == Opcodes.GOTO_W || jump.getOpcode() == Opcodes.JSR_W;
+                put1(jump.getOpcode());
+                fixups.add(new Fixup(jump, start, length, jump.getTarget(), wide));
+                if (wide)
+                    put4(0);
+                else
+                    put2(0);
+            }
+            case TypeInstruction type -> {
+                if (type.getOpcode() == Opcodes.NEW)
+                    creatorOffsets.put(type, length);
+                put1(type.getOpcode());
+                put2(pool.classRef(type.getClassName()));
+            }
+            case FieldInstruction field -> {
+                put1(field.getOpcode());
+                put2(pool.fieldRef(field.getOwner(), field.getName(), field.getDescriptor()));
+            }
+            case MethodInstruction call -> {
+                put1(call.getOpcode());
+                if (call.getOpcode() == Opcodes.INVOKEINTERFACE) {
+                    put2(pool.interfaceMethodRef(call.getOwner(), call.getName(), call.getDescriptor()));
+                    put1(Descriptors.argumentSlots(call.getDescriptor()) + 1);
+                    put1(0);
+                } else {
+                    put2(pool.methodRef(call.getOwner(), call.getName(), call.getDescriptor()));
+                }
+            }
+            case InvokeDynamicInstruction call -> {
+                put1(Opcodes.INVOKEDYNAMIC);
+                put2(pool.invokeDynamic(call.getBootstrap(), call.getBootstrapArguments(), call.getName(), call.getDescriptor()));
+                put2(0);
+            }
+            case MultiANewArrayInstruction array -> {
+                put1(Opcodes.MULTIANEWARRAY);
+                put2(pool.classRef(array.getDescriptor()));
+                put1(array.getDimensions());
+            }
+            default -> put1(instruction.getOpcode());
+        }
+    }
+
+    // each frame is stored relative to the one before it, in the shortest form that describes it
+    private byte[] stackMapTable(FrameComputer frames) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(frames.getFrames().size());
+        List<VerificationType> previousLocals = frames.getInitialFrame().getFrameLocals();
+        int previousOffset = -1;
+        for (Map.Entry<Label, Frame> entry : frames.getFrames().entrySet()) {
+            int offset = offsetOf(entry.getKey());
+            int delta = offset - previousOffset - 1;
+            List<VerificationType> locals = entry.getValue().getFrameLocals();
+            List<VerificationType> stack = entry.getValue().getFrameStack();
+            int extraLocals = locals.size() - previousLocals.size();
+            boolean sameLocals = locals.equals(previousLocals);
+            if (sameLocals && stack.isEmpty()) {
+                if (delta < 64) {
+                    out.writeByte(delta);
+                } else {
+                    out.writeByte(251);
+                    out.writeShort(delta);
+                }
+            } else if (sameLocals && stack.size() == 1) {
+                if (delta < 64) {
+                    out.writeByte(64 + delta);
+                } else {
+                    out.writeByte(247);
+                    out.writeShort(delta);
+                }
+                writeType(stack.getFirst(), out);
+            } else if (stack.isEmpty() && extraLocals < 0 && extraLocals >= -3
+                    && previousLocals.subList(0, locals.size()).equals(locals)) {
+                out.writeByte(251 + extraLocals);
+                out.writeShort(delta);
+            } else if (stack.isEmpty() && extraLocals > 0 && extraLocals <= 3
+                    && locals.subList(0, previousLocals.size()).equals(previousLocals)) {
+                out.writeByte(251 + extraLocals);
+                out.writeShort(delta);
+                for (VerificationType type : locals.subList(previousLocals.size(), locals.size()))
+                    writeType(type, out);
+            } else {
+                out.writeByte(255);
+                out.writeShort(delta);
+                out.writeShort(locals.size());
+                for (VerificationType type : locals)
+                    writeType(type, out);
+                out.writeShort(stack.size());
+                for (VerificationType type : stack)
+                    writeType(type, out);
+            }
+            previousLocals = locals;
+            previousOffset = offset;
+        }
+        return bytes.toByteArray();
+    }
+
+    private void writeType(VerificationType type, DataOutputStream out) throws IOException {
+        // kinds are declared in tag order
+        out.writeByte(type.getKind().ordinal());
+        if (type.getKind() == VerificationType.Kind.OBJECT)
+            out.writeShort(pool.classRef(type.getClassName()));
+        else if (type.getKind() == VerificationType.Kind.UNINITIALIZED)
+            out.writeShort(creatorOffsets.get(type.getCreator()));
+    }
+
+    private void local(int opcode, int slot, int width) {
+        boolean isLoad = opcode >= Opcodes.ILOAD && opcode <= Opcodes.ALOAD;
+        boolean isStore = opcode >= Opcodes.ISTORE && opcode <= Opcodes.ASTORE;
+        usedLocals = Math.max(usedLocals, slot + width);
+        if (slot <= 3 && (isLoad || isStore)) {
+            // xload_n / xstore_n short forms
+            int base = isLoad ? Opcodes.ILOAD_0 + (opcode - Opcodes.ILOAD) * 4 : Opcodes.ISTORE_0 + (opcode - Opcodes.ISTORE) * 4;
+            put1(base + slot);
+        } else if (slot > 0xFF) {
+            put1(Opcodes.WIDE);
+            put1(opcode);
+            put2(slot);
+        } else {
+            put1(opcode);
+            put1(slot);
+        }
+    }
+
+    private void iinc(int slot, int delta) {
+        usedLocals = Math.max(usedLocals, slot + 1);
+        if (slot > 0xFF || delta < Byte.MIN_VALUE || delta > Byte.MAX_VALUE) {
+            put1(Opcodes.WIDE);
+            put1(Opcodes.IINC);
+            put2(slot);
+            put2(delta);
+        } else {
+            put1(Opcodes.IINC);
+            put1(slot);
+            put1(delta);
+        }
+    }
+
+    private void constant(Object value) {
+        int index;
+        boolean twoSlots = false;
+        switch (value) {
+            case Integer i -> index = pool.integer(i);
+            case Float f -> index = pool.floatValue(f);
+            case String s -> index = pool.string(s);
+            case Handle h -> index = pool.methodHandle(h);
+            case Long l -> {
+                index = pool.longValue(l);
+                twoSlots = true;
+            }
+            case Double d -> {
+                index = pool.doubleValue(d);
+                twoSlots = true;
+            }
+            default -> throw new IllegalArgumentException("unsupported constant " + value);
+        }
+        if (twoSlots) {
+            put1(Opcodes.LDC2_W);
+            put2(index);
+        } else if (index <= 0xFF) {
+            put1(Opcodes.LDC);
+            put1(index);
+        } else {
+            put1(Opcodes.LDC_W);
+            put2(index);
+        }
+    }
+
+    private void resolveJumps() {
+        for (Fixup fixup : fixups) {
+            int offset = offsetOf(fixup.label()) - fixup.instructionStart();
+            int position = fixup.operandStart();
+            if (fixup.wide()) {
+                code[position] = (byte) (offset >>> 24);
+                code[position + 1] = (byte) (offset >>> 16);
+                code[position + 2] = (byte) (offset >>> 8);
+                code[position + 3] = (byte) offset;
+            } else {
+                code[position] = (byte) (offset >>> 8);
+                code[position + 1] = (byte) offset;
+            }
+        }
+    }
+
+    private int offsetOf(Label label) {
+        Integer offset = offsets.get(label);
+        if (offset == null)
+            throw new IllegalStateException("undefined label " + label.getName() + " in " + method.getName());
+        return offset;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > code.length) {
+            byte[] grown = new byte[Math.max(code.length * 2, length + extra)];
+            System.arraycopy(code, 0, grown, 0, length);
+            code = grown;
+        }
+    }
+
+    private void put1(int value) {
+        ensure(1);
+        code[length++] = (byte) value;
+    }
+
+    private void put2(int value) {
+        ensure(2);
+        code[length++] = (byte) (value >>> 8);
+        code[length++] = (byte) value;
+    }
+
+    private void put4(int value) {
+        ensure(4);
+        code[length++] = (byte) (value >>> 24);
+        code[length++] = (byte) (value >>> 16);
+        code[length++] = (byte) (value >>> 8);
+        code[length++] = (byte) value;
+    }
+}
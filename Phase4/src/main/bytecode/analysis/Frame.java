@@ -0,0 +1,98 @@
+package main.bytecode.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// the types of the locals and the operand stack at one point of a method, both in slot form
+public class Frame {
+    private final List<VerificationType> locals;
+    private final List<VerificationType> stack;
+
+    public Frame() {
+        this(new ArrayList<>(), new ArrayList<>());
+    }
+
+    private Frame(List<VerificationType> locals, List<VerificationType> stack) {
+        this.locals = locals;
+        this.stack = stack;
+    }
+
+    public Frame copy() {
+        return new Frame(new ArrayList<>(locals), new ArrayList<>(stack));
+    }
+
+    public List<VerificationType> getLocals() {
+        return locals;
+    }
+
+    public List<VerificationType> getStack() {
+        return stack;
+    }
+
+    public VerificationType getLocal(int slot) {
+        return slot < locals.size() ? locals.get(slot) : VerificationType.TOP;
+    }
+
+    // stores one value, which takes two slots for longs and doubles
+    public void setLocal(int slot, List<VerificationType> value) {
+        while (locals.size() < slot + value.size())
+            locals.add(VerificationType.TOP);
+        // overwriting the second half of a long or double breaks the first
+        if (slot > 0 && locals.get(slot - 1).isWide())
+            locals.set(slot - 1, VerificationType.TOP);
+        for (int i = 0; i < value.size(); i++)
+            locals.set(slot + i, value.get(i));
+    }
+
+    public void push(VerificationType type) {
+        stack.add(type);
+    }
+
+    public void push(List<VerificationType> types) {
+        stack.addAll(types);
+    }
+
+    public VerificationType pop() {
+        if (stack.isEmpty())
+            throw new IllegalStateException("operand stack underflow");
+        return stack.removeLast();
+    }
+
+    public void pop(int slots) {
+        for (int i = 0; i < slots; i++)
+            pop();
+    }
+
+    // every occurrence of an uninitialized object becomes the constructed type once its <init> has run
+    public void initialize(VerificationType uninitialized, VerificationType initialized) {
+        locals.replaceAll(type -> type.equals(uninitialized) ? initialized : type);
+        stack.replaceAll(type -> type.equals(uninitialized) ? initialized : type);
+    }
+
+    // the locals as a stack map lists them: one entry per long or double and no trailing tops
+    public List<VerificationType> getFrameLocals() {
+        List<VerificationType> entries = compress(locals);
+        while (!entries.isEmpty() && entries.getLast() == VerificationType.TOP)
+            entries.removeLast();
+        return entries;
+    }
+
+    public List<VerificationType> getFrameStack() {
+        return compress(stack);
+    }
+
+    private static List<VerificationType> compress(List<VerificationType> slots) {
+        List<VerificationType> entries = new ArrayList<>();
+        for (int i = 0; i < slots.size(); i++) {
+            entries.add(slots.get(i));
+            if (slots.get(i).isWide())
+                i++;
+        }
+        return entries;
+    }
+
+    @Override
+    public String toString() {
+        return "locals " + getFrameLocals() + " stack " + getFrameStack();
+    }
+}
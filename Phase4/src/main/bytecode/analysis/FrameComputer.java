@@ -0,0 +1,351 @@
+package main.bytecode.analysis;
+
+import main.bytecode.Descriptors;
+import main.bytecode.Opcodes;
+import main.bytecode.ir.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// infers the type state at the start of every basic block for the stack map table;
+// unreachable code has no type state, so it is left out of the code handed to the writer
+public class FrameComputer {
+    private static final Map<String, String> superClasses = new HashMap<>();
+
+    private final ClassDefinition owner;
+    private final MethodDefinition method;
+    private final Frame initialFrame = new Frame();
+    private final List<Instruction> code = new ArrayList<>();
+    private final LinkedHashMap<Label, Frame> frames = new LinkedHashMap<>();
+
+    private FrameComputer(ClassDefinition owner, MethodDefinition method) {
+        this.owner = owner;
+        this.method = method;
+    }
+
+    public static FrameComputer compute(ClassDefinition owner, MethodDefinition method) {
+        FrameComputer computer = new FrameComputer(owner, method);
+        computer.run();
+        return computer;
+    }
+
+    // the frame the jvm derives from the descriptor, which the first stack map entry is relative to
+    public Frame getInitialFrame() {
+        return initialFrame;
+    }
+
+    public List<Instruction> getCode() {
+        return code;
+    }
+
+    // explicit frames in code order, keyed by the label that starts their block
+    public Map<Label, Frame> getFrames() {
+        return frames;
+    }
+
+    private void run() {
+        if (!method.isStatic()) {
+            boolean constructing = method.getName().equals("<init>") && !owner.getName().equals("java/lang/Object");
+            initialFrame.getLocals().add(constructing ? VerificationType.UNINITIALIZED_THIS : VerificationType.object(owner.getName()));
+        }
+        initialFrame.getLocals().addAll(VerificationType.ofArguments(method.getDescriptor()));
+
+        List<BasicBlock> blocks = method.getBasicBlocks();
+        if (blocks.isEmpty())
+            return;
+        Map<BasicBlock, VerificationType> caught = new HashMap<>();
+        Set<Label> targets = new HashSet<>();
+        for (TryCatchBlock tryCatch : method.getTryCatchBlocks()) {
+            targets.add(tryCatch.handler());
+            VerificationType exception = VerificationType.object(tryCatch.exceptionClass() == null ? "java/lang/Throwable" : tryCatch.exceptionClass());
+            for (BasicBlock block : blocks)
+                if (block.getInstructions().contains(tryCatch.handler()))
+                    caught.merge(block, exception, this::merge);
+        }
+
+        Frame[] entries = new Frame[blocks.size()];
+        entries[0] = initialFrame.copy();
+        Deque<BasicBlock> work = new ArrayDeque<>();
+        work.push(blocks.getFirst());
+        while (!work.isEmpty()) {
+            BasicBlock block = work.pop();
+            Frame frame = entries[block.getIndex()].copy();
+            for (Instruction instruction : block.getInstructions()) {
+                if (instruction instanceof Label)
+                    continue;
+                for (BasicBlock handler : block.getHandlers()) {
+                    Frame thrown = frame.copy();
+                    thrown.getStack().clear();
+                    thrown.push(caught.get(handler));
+                    if (mergeInto(entries, handler, thrown))
+                        work.push(handler);
+                }
+                if (instruction instanceof JumpInstruction jump)
+                    targets.add(jump.getTarget());
+                execute(instruction, frame);
+            }
+            for (BasicBlock successor : block.getSuccessors())
+                if (mergeInto(entries, successor, frame))
+                    work.push(successor);
+        }
+
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            Frame entry = entries[i];
+            if (entry == null) {
+                for (Instruction instruction : block.getInstructions())
+                    if (instruction instanceof Label)
+                        code.add(instruction);
+                continue;
+            }
+            code.addAll(block.getInstructions());
+            if (block.getLast() == null || !(block.getInstructions().getFirst() instanceof Label first))
+                continue;
+            boolean targeted = block.getInstructions().stream().anyMatch(instruction -> instruction instanceof Label label && targets.contains(label));
+            boolean fallsInto = i > 0 && entries[i - 1] != null && blocks.get(i - 1).getLast() != null
+                    && !blocks.get(i - 1).getLast().endsFlow();
+            if (targeted || (i > 0 && !fallsInto))
+                frames.put(first, entry);
+        }
+    }
+
+    private boolean mergeInto(Frame[] entries, BasicBlock block, Frame incoming) {
+        Frame entry = entries[block.getIndex()];
+        if (entry == null) {
+            entries[block.getIndex()] = incoming.copy();
+            return true;
+        }
+        if (entry.getStack().size() != incoming.getStack().size())
+            throw new IllegalStateException("inconsistent stack height at block " + block.getIndex() + " of " + method.getName());
+        boolean changed = false;
+        for (int i = 0; i < entry.getStack().size(); i++) {
+            VerificationType merged = merge(entry.getStack().get(i), incoming.getStack().get(i));
+            if (!merged.equals(entry.getStack().get(i))) {
+                entry.getStack().set(i, merged);
+                changed = true;
+            }
+        }
+        for (int i = 0; i < entry.getLocals().size(); i++) {
+            VerificationType merged = merge(entry.getLocals().get(i), incoming.getLocal(i));
+            if (!merged.equals(entry.getLocals().get(i))) {
+                entry.getLocals().set(i, merged);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private VerificationType merge(VerificationType a, VerificationType b) {
+        if (a.equals(b))
+            return a;
+        if (!a.isReference() || !b.isReference())
+            return VerificationType.TOP;
+        if (a == VerificationType.NULL)
+            return b;
+        if (b == VerificationType.NULL)
+            return a;
+        return VerificationType.object(commonSuperClass(a.getClassName(), b.getClassName()));
+    }
+
+    // arrays and interfaces meet at object, which is all the verifier asks of them anyway
+    private String commonSuperClass(String a, String b) {
+        if (a.startsWith("[") || b.startsWith("["))
+            return "java/lang/Object";
+        Set<String> ancestors = new HashSet<>();
+        for (String name = a; name != null; name = superClassOf(name))
+            ancestors.add(name);
+        for (String name = b; name != null; name = superClassOf(name))
+            if (ancestors.contains(name))
+                return name;
+        return "java/lang/Object";
+    }
+
+    private String superClassOf(String name) {
+        if (name.equals("java/lang/Object"))
+            return null;
+        if (name.equals(owner.getName()))
+            return owner.getSuperName();
+        synchronized (superClasses) {
+            return superClasses.computeIfAbsent(name, key -> {
+                try {
+                    Class<?> loaded = Class.forName(key.replace('/', '.'), false, ClassLoader.getPlatformClassLoader());
+                    Class<?> parent = loaded.getSuperclass();
+                    return parent == null ? "java/lang/Object" : parent.getName().replace('.', '/');
+                } catch (ClassNotFoundException | LinkageError e) {
+                    // classes we generate ourselves all extend object
+                    return "java/lang/Object";
+                }
+            });
+        }
+    }
+
+    private void execute(Instruction instruction, Frame frame) {
+        int opcode = instruction.getOpcode();
+        switch (instruction) {
+            case ConstantInstruction constant -> frame.push(switch (constant.getValue()) {
+                case Integer i -> List.of(VerificationType.INTEGER);
+                case Float f -> List.of(VerificationType.FLOAT);
+                case Long l -> List.of(VerificationType.LONG, VerificationType.TOP);
+                case Double d -> List.of(VerificationType.DOUBLE, VerificationType.TOP);
+                case Handle h -> List.of(VerificationType.object("java/lang/invoke/MethodHandle"));
+                default -> List.of(VerificationType.object("java/lang/String"));
+            });
+            case VarInstruction var -> {
+                if (opcode == Opcodes.RET)
+                    throw new IllegalStateException("jsr and ret cannot be described by stack map frames");
+                if (var.isLoad()) {
+                    frame.push(frame.getLocal(var.getSlot()));
+                    if (var.getWidth() == 2)
+                        frame.push(VerificationType.TOP);
+                } else {
+                    frame.pop(var.getWidth() - 1);
+                    VerificationType value = frame.pop();
+                    frame.setLocal(var.getSlot(), var.getWidth() == 2 ? List.of(value, VerificationType.TOP) : List.of(value));
+                }
+            }
+            case IincInstruction iinc -> {}
+            case IntInstruction intInstruction -> {
+                if (opcode == Opcodes.NEWARRAY) {
+                    frame.pop();
+                    // newarray type codes 4 to 11 in descriptor form
+                    frame.push(VerificationType.object("[" + "ZCFDBSIJ".charAt(intInstruction.getOperand() - 4)));
+                } else {
+                    frame.push(VerificationType.INTEGER);
+                }
+            }
+            case TypeInstruction type -> {
+                String className = type.getClassName();
+                switch (opcode) {
+                    case Opcodes.NEW -> frame.push(VerificationType.uninitialized(instruction));
+                    case Opcodes.ANEWARRAY -> {
+                        frame.pop();
+                        frame.push(VerificationType.object("[" + (className.startsWith("[") ? className : "L" + className + ";")));
+                    }
+                    case Opcodes.CHECKCAST -> {
+                        frame.pop();
+                        frame.push(VerificationType.object(className));
+                    }
+                    default -> {
+                        frame.pop();
+                        frame.push(VerificationType.INTEGER);
+                    }
+                }
+            }
+            case FieldInstruction field -> {
+                List<VerificationType> value = VerificationType.ofDescriptor(field.getDescriptor());
+                switch (opcode) {
+                    case Opcodes.GETSTATIC -> frame.push(value);
+                    case Opcodes.PUTSTATIC -> frame.pop(value.size());
+                    case Opcodes.GETFIELD -> {
+                        frame.pop();
+                        frame.push(value);
+                    }
+                    default -> frame.pop(value.size() + 1);
+                }
+            }
+            case MethodInstruction call -> {
+                frame.pop(Descriptors.argumentSlots(call.getDescriptor()));
+                if (opcode != Opcodes.INVOKESTATIC) {
+                    VerificationType receiver = frame.pop();
+                    if (call.getName().equals("<init>")) {
+                        if (receiver.getKind() == VerificationType.Kind.UNINITIALIZED_THIS)
+                            frame.initialize(receiver, VerificationType.object(owner.getName()));
+                        else if (receiver.getKind() == VerificationType.Kind.UNINITIALIZED)
+                            frame.initialize(receiver, VerificationType.object(((TypeInstruction) receiver.getCreator()).getClassName()));
+                    }
+                }
+                String descriptor = call.getDescriptor();
+                frame.push(VerificationType.ofDescriptor(descriptor.substring(descriptor.indexOf(')') + 1)));
+            }
+            case InvokeDynamicInstruction call -> {
+                frame.pop(Descriptors.argumentSlots(call.getDescriptor()));
+                String descriptor = call.getDescriptor();
+                frame.push(VerificationType.ofDescriptor(descriptor.substring(descriptor.indexOf(')') + 1)));
+            }
+            case MultiANewArrayInstruction array -> {
+                frame.pop(array.getDimensions());
+                frame.push(VerificationType.object(array.getDescriptor()));
+            }
+            case JumpInstruction jump -> {
+                if (opcode == Opcodes.JSR || opcode == Opcodes.JSR_W)
+                    throw new IllegalStateException("jsr and ret cannot be described by stack map frames");
+                frame.pop(-StackAnalyzer.effect(instruction));
+            }
+            default -> executeSimple(opcode, instruction, frame);
+        }
+    }
+
+    private void executeSimple(int opcode, Instruction instruction, Frame frame) {
+        switch (opcode) {
+            case Opcodes.ACONST_NULL -> frame.push(VerificationType.NULL);
+            case Opcodes.AALOAD -> {
+                frame.pop();
+                VerificationType array = frame.pop();
+                frame.push(array.getKind() == VerificationType.Kind.OBJECT
+                        ? VerificationType.ofDescriptor(array.getClassName().substring(1))
+                        : List.of(VerificationType.NULL));
+            }
+            case Opcodes.DUP -> {
+                VerificationType v1 = frame.pop();
+                frame.push(List.of(v1, v1));
+            }
+            case Opcodes.DUP_X1 -> {
+                VerificationType v1 = frame.pop(), v2 = frame.pop();
+                frame.push(List.of(v1, v2, v1));
+            }
+            case Opcodes.DUP_X2 -> {
+                VerificationType v1 = frame.pop(), v2 = frame.pop(), v3 = frame.pop();
+                frame.push(List.of(v1, v3, v2, v1));
+            }
+            case Opcodes.DUP2 -> {
+                VerificationType v1 = frame.pop(), v2 = frame.pop();
+                frame.push(List.of(v2, v1, v2, v1));
+            }
+            case Opcodes.DUP2_X1 -> {
+                VerificationType v1 = frame.pop(), v2 = frame.pop(), v3 = frame.pop();
+                frame.push(List.of(v2, v1, v3, v2, v1));
+            }
+            case Opcodes.DUP2_X2 -> {
+                VerificationType v1 = frame.pop(), v2 = frame.pop(), v3 = frame.pop(), v4 = frame.pop();
+                frame.push(List.of(v2, v1, v4, v3, v2, v1));
+            }
+            case Opcodes.SWAP -> {
+                VerificationType v1 = frame.pop(), v2 = frame.pop();
+                frame.push(List.of(v1, v2));
+            }
+            default -> {
+                List<VerificationType> result = resultOf(opcode);
+                frame.pop(result.size() - StackAnalyzer.effect(instruction));
+                frame.push(result);
+            }
+        }
+    }
+
+    private static List<VerificationType> resultOf(int opcode) {
+        if (opcode >= Opcodes.IADD && opcode <= Opcodes.DNEG)
+            return slotsOf("IJFD".charAt((opcode - Opcodes.IADD) % 4));
+        if (opcode >= Opcodes.ISHL && opcode <= Opcodes.LXOR)
+            return slotsOf((opcode - Opcodes.ISHL) % 2 == 0 ? 'I' : 'J');
+        return switch (opcode) {
+            case Opcodes.ICONST_M1, Opcodes.ICONST_0, Opcodes.ICONST_1, Opcodes.ICONST_2, Opcodes.ICONST_3,
+                 Opcodes.ICONST_4, Opcodes.ICONST_5, Opcodes.IALOAD, Opcodes.BALOAD, Opcodes.CALOAD, Opcodes.SALOAD,
+                 Opcodes.L2I, Opcodes.F2I, Opcodes.D2I, Opcodes.I2B, Opcodes.I2C, Opcodes.I2S,
+                 Opcodes.LCMP, Opcodes.FCMPL, Opcodes.FCMPG, Opcodes.DCMPL, Opcodes.DCMPG, Opcodes.ARRAYLENGTH -> slotsOf('I');
+            case Opcodes.LCONST_0, Opcodes.LCONST_1, Opcodes.LALOAD, Opcodes.I2L, Opcodes.F2L, Opcodes.D2L -> slotsOf('J');
+            case Opcodes.FCONST_0, Opcodes.FCONST_1, Opcodes.FCONST_2, Opcodes.FALOAD, Opcodes.I2F, Opcodes.L2F, Opcodes.D2F -> slotsOf('F');
+            case Opcodes.DCONST_0, Opcodes.DCONST_1, Opcodes.DALOAD, Opcodes.I2D, Opcodes.L2D, Opcodes.F2D -> slotsOf('D');
+            default -> List.of();
+        };
+    }
+
+    private static List<VerificationType> slotsOf(char descriptor) {
+        return VerificationType.ofDescriptor(String.valueOf(descriptor));
+    }
+}
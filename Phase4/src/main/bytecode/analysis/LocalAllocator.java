@@ -0,0 +1,168 @@
+package main.bytecode.analysis;
+
+import main.bytecode.Descriptors;
+import main.bytecode.Opcodes;
+import main.bytecode.ir.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// maps the virtual locals of a method onto as few slots as possible;
+// slots past the parameters are treated as virtual and two of them share a slot when never live at the same time
+public class LocalAllocator {
+    private final MethodDefinition method;
+    private final int parameterSlots;
+    // virtual slot -> dense index, in order of first appearance
+    private final Map<Integer, Integer> indexOf = new LinkedHashMap<>();
+    private final List<Integer> widths = new ArrayList<>();
+
+    private LocalAllocator(MethodDefinition method) {
+        this.method = method;
+        this.parameterSlots = Descriptors.argumentSlots(method.getDescriptor()) + (method.isStatic() ? 0 : 1);
+    }
+
+    // rewrites every local access of the method and returns the number of slots now in use
+    public static int allocate(MethodDefinition method) {
+        return new LocalAllocator(method).run();
+    }
+
+    private int run() {
+        for (Instruction instruction : method.getInstructions()) {
+            int slot = slotOf(instruction);
+            if (slot >= parameterSlots && !indexOf.containsKey(slot)) {
+                indexOf.put(slot, indexOf.size());
+                widths.add(instruction instanceof VarInstruction var ? var.getWidth() : 1);
+            }
+        }
+        if (indexOf.isEmpty())
+            return parameterSlots;
+
+        BitSet[] interference = interference();
+        int[] assigned = new int[indexOf.size()];
+        int maxLocals = parameterSlots;
+        for (int v = 0; v < assigned.length; v++) {
+            BitSet taken = new BitSet();
+            for (int other = interference[v].nextSetBit(0); other >= 0 && other < v; other = interference[v].nextSetBit(other + 1))
+                taken.set(assigned[other], assigned[other] + widths.get(other));
+            int slot = parameterSlots;
+            while (taken.get(slot, slot + widths.get(v)).cardinality() > 0)
+                slot++;
+            assigned[v] = slot;
+            maxLocals = Math.max(maxLocals, slot + widths.get(v));
+        }
+
+        for (Instruction instruction : method.getInstructions()) {
+            Integer v = indexOf.get(slotOf(instruction));
+            if (v == null)
+                continue;
+            if (instruction instanceof VarInstruction var)
+                var.setSlot(assigned[v]);
+            else if (instruction instanceof IincInstruction iinc)
+                iinc.setSlot(assigned[v]);
+        }
+        return maxLocals;
+    }
+
+    // two virtuals interfere when one is written while the other is still live
+    private BitSet[] interference() {
+        List<BasicBlock> blocks = method.getBasicBlocks();
+        int count = indexOf.size();
+        BitSet[] uses = new BitSet[blocks.size()];
+        BitSet[] defs = new BitSet[blocks.size()];
+        BitSet[] liveIn = new BitSet[blocks.size()];
+        BitSet[] liveOut = new BitSet[blocks.size()];
+        for (BasicBlock block : blocks) {
+            BitSet use = new BitSet(count);
+            BitSet def = new BitSet(count);
+            for (Instruction instruction : block.getInstructions()) {
+                Integer v = indexOf.get(slotOf(instruction));
+                if (v == null)
+                    continue;
+                if (reads(instruction) && !def.get(v))
+                    use.set(v);
+                if (writes(instruction))
+                    def.set(v);
+            }
+            uses[block.getIndex()] = use;
+            defs[block.getIndex()] = def;
+            liveIn[block.getIndex()] = new BitSet(count);
+            liveOut[block.getIndex()] = new BitSet(count);
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = blocks.size() - 1; i >= 0; i--) {
+                BasicBlock block = blocks.get(i);
+                BitSet out = new BitSet(count);
+                for (BasicBlock successor : block.getSuccessors())
+                    out.or(liveIn[successor.getIndex()]);
+                for (BasicBlock handler : block.getHandlers())
+                    out.or(liveIn[handler.getIndex()]);
+                BitSet in = (BitSet) out.clone();
+                in.andNot(defs[i]);
+                in.or(uses[i]);
+                // whatever a handler reads must survive the whole protected block
+                for (BasicBlock handler : block.getHandlers())
+                    in.or(liveIn[handler.getIndex()]);
+                if (!out.equals(liveOut[i]) || !in.equals(liveIn[i])) {
+                    liveOut[i] = out;
+                    liveIn[i] = in;
+                    changed = true;
+                }
+            }
+        }
+
+        BitSet[] interference = new BitSet[count];
+        for (int v = 0; v < count; v++)
+            interference[v] = new BitSet(count);
+        for (BasicBlock block : blocks) {
+            BitSet live = (BitSet) liveOut[block.getIndex()].clone();
+            BitSet handlerLive = new BitSet(count);
+            for (BasicBlock handler : block.getHandlers())
+                handlerLive.or(liveIn[handler.getIndex()]);
+            List<Instruction> code = block.getInstructions();
+            for (int k = code.size() - 1; k >= 0; k--) {
+                Instruction instruction = code.get(k);
+                Integer v = indexOf.get(slotOf(instruction));
+                if (v == null)
+                    continue;
+                if (writes(instruction)) {
+                    BitSet clash = (BitSet) live.clone();
+                    clash.or(handlerLive);
+                    clash.clear(v);
+                    for (int other = clash.nextSetBit(0); other >= 0; other = clash.nextSetBit(other + 1)) {
+                        interference[v].set(other);
+                        interference[other].set(v);
+                    }
+                    if (!reads(instruction))
+                        live.clear(v);
+                }
+                if (reads(instruction))
+                    live.set(v);
+            }
+        }
+        return interference;
+    }
+
+    private static int slotOf(Instruction instruction) {
+        if (instruction instanceof VarInstruction var)
+            return var.getSlot();
+        if (instruction instanceof IincInstruction iinc)
+            return iinc.getSlot();
+        return -1;
+    }
+
+    private static boolean reads(Instruction instruction) {
+        return instruction instanceof IincInstruction
+                || instruction instanceof VarInstruction var && (var.isLoad() || var.getOpcode() == Opcodes.RET);
+    }
+
+    private static boolean writes(Instruction instruction) {
+        return instruction instanceof IincInstruction || instruction instanceof VarInstruction var && var.isStore();
+    }
+}
@@ -0,0 +1,138 @@
+package main.bytecode.analysis;
+
+import main.bytecode.Descriptors;
+import main.bytecode.Opcodes;
+import main.bytecode.ir.*;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// computes the exact operand stack depth a method needs by following every path through it
+public class StackAnalyzer {
+    private StackAnalyzer() {}
+
+    public static int computeMaxStack(MethodDefinition method) {
+        List<Instruction> code = method.getInstructions();
+        Map<Label, Integer> labelIndex = new HashMap<>();
+        for (int i = 0; i < code.size(); i++)
+            if (code.get(i) instanceof Label label)
+                labelIndex.put(label, i);
+
+        int[] depthAt = new int[code.size() + 1];
+        Arrays.fill(depthAt, -1);
+        Deque<Integer> work = new ArrayDeque<>();
+        int max = 0;
+        if (!code.isEmpty()) {
+            depthAt[0] = 0;
+            work.push(0);
+        }
+        // a handler starts with just the exception on the stack
+        for (TryCatchBlock tryCatch : method.getTryCatchBlocks()) {
+            int handler = labelIndex.get(tryCatch.handler());
+            if (depthAt[handler] < 0) {
+                depthAt[handler] = 1;
+                work.push(handler);
+                max = Math.max(max, 1);
+            }
+        }
+
+        while (!work.isEmpty()) {
+            int index = work.pop();
+            int depth = depthAt[index];
+            while (index < code.size()) {
+                Instruction instruction = code.get(index);
+                int after = depth + effect(instruction);
+                max = Math.max(max, Math.max(depth, after));
+                if (instruction instanceof JumpInstruction jump) {
+                    int target = labelIndex.get(jump.getTarget());
+                    if (depthAt[target] < 0) {
+                        depthAt[target] = after;
+                        work.push(target);
+                    }
+                }
+                if (instruction.endsFlow())
+                    break;
+                index++;
+                if (depthAt[index] >= 0)
+                    break;
+                depthAt[index] = after;
+                depth = after;
+            }
+        }
+        return max;
+    }
+
+    // how far the instruction moves the stack top, in slots
+    public static int effect(Instruction instruction) {
+        int opcode = instruction.getOpcode();
+        switch (instruction) {
+            case Label label -> {
+                return 0;
+            }
+            case ConstantInstruction constant -> {
+                return opcode == Opcodes.LDC2_W ? 2 : 1;
+            }
+            case VarInstruction var -> {
+                if (opcode == Opcodes.RET)
+                    return 0;
+                return var.isLoad() ? var.getWidth() : -var.getWidth();
+            }
+            case FieldInstruction field -> {
+                int size = Descriptors.slotsOf(field.getDescriptor());
+                return switch (opcode) {
+                    case Opcodes.GETSTATIC -> size;
+                    case Opcodes.PUTSTATIC -> -size;
+                    case Opcodes.GETFIELD -> size - 1;
+                    default -> -size - 1;
+                };
+            }
+            case MethodInstruction call -> {
+                int arguments = Descriptors.argumentSlots(call.getDescriptor()) + (opcode == Opcodes.INVOKESTATIC ? 0 : 1);
+                return Descriptors.returnSlots(call.getDescriptor()) - arguments;
+            }
+            case InvokeDynamicInstruction call -> {
+                return Descriptors.returnSlots(call.getDescriptor()) - Descriptors.argumentSlots(call.getDescriptor());
+            }
+            case MultiANewArrayInstruction array -> {
+                return 1 - array.getDimensions();
+            }
+            default -> {
+                return simpleEffect(opcode);
+            }
+        }
+    }
+
+    private static int simpleEffect(int opcode) {
+        if (opcode >= Opcodes.ACONST_NULL && opcode <= Opcodes.DCONST_1)
+            return opcode == Opcodes.LCONST_0 || opcode == Opcodes.LCONST_1 || opcode == Opcodes.DCONST_0 || opcode == Opcodes.DCONST_1 ? 2 : 1;
+        return switch (opcode) {
+            case Opcodes.NOP, Opcodes.SWAP, Opcodes.INEG, Opcodes.LNEG, Opcodes.FNEG, Opcodes.DNEG, Opcodes.IINC,
+                 Opcodes.I2F, Opcodes.L2D, Opcodes.F2I, Opcodes.D2L, Opcodes.I2B, Opcodes.I2C, Opcodes.I2S,
+                 Opcodes.LALOAD, Opcodes.DALOAD, Opcodes.GOTO, Opcodes.GOTO_W, Opcodes.RETURN,
+                 Opcodes.NEWARRAY, Opcodes.ANEWARRAY, Opcodes.ARRAYLENGTH, Opcodes.CHECKCAST, Opcodes.INSTANCEOF -> 0;
+            case Opcodes.BIPUSH, Opcodes.SIPUSH, Opcodes.DUP, Opcodes.DUP_X1, Opcodes.DUP_X2, Opcodes.I2L, Opcodes.I2D,
+                 Opcodes.F2L, Opcodes.F2D, Opcodes.NEW, Opcodes.JSR, Opcodes.JSR_W -> 1;
+            case Opcodes.DUP2, Opcodes.DUP2_X1, Opcodes.DUP2_X2 -> 2;
+            case Opcodes.IALOAD, Opcodes.FALOAD, Opcodes.AALOAD, Opcodes.BALOAD, Opcodes.CALOAD, Opcodes.SALOAD,
+                 Opcodes.POP, Opcodes.IADD, Opcodes.FADD, Opcodes.ISUB, Opcodes.FSUB, Opcodes.IMUL, Opcodes.FMUL,
+                 Opcodes.IDIV, Opcodes.FDIV, Opcodes.IREM, Opcodes.FREM, Opcodes.ISHL, Opcodes.ISHR, Opcodes.IUSHR,
+                 Opcodes.LSHL, Opcodes.LSHR, Opcodes.LUSHR, Opcodes.IAND, Opcodes.IOR, Opcodes.IXOR,
+                 Opcodes.L2I, Opcodes.L2F, Opcodes.D2I, Opcodes.D2F, Opcodes.FCMPL, Opcodes.FCMPG,
+                 Opcodes.IFEQ, Opcodes.IFNE, Opcodes.IFLT, Opcodes.IFGE, Opcodes.IFGT, Opcodes.IFLE,
+                 Opcodes.IFNULL, Opcodes.IFNONNULL, Opcodes.IRETURN, Opcodes.FRETURN, Opcodes.ARETURN,
+                 Opcodes.ATHROW, Opcodes.MONITORENTER, Opcodes.MONITOREXIT -> -1;
+            case Opcodes.POP2, Opcodes.LADD, Opcodes.DADD, Opcodes.LSUB, Opcodes.DSUB, Opcodes.LMUL, Opcodes.DMUL,
+                 Opcodes.LDIV, Opcodes.DDIV, Opcodes.LREM, Opcodes.DREM, Opcodes.LAND, Opcodes.LOR, Opcodes.LXOR,
+                 Opcodes.IF_ICMPEQ, Opcodes.IF_ICMPNE, Opcodes.IF_ICMPLT, Opcodes.IF_ICMPGE, Opcodes.IF_ICMPGT,
+                 Opcodes.IF_ICMPLE, Opcodes.IF_ACMPEQ, Opcodes.IF_ACMPNE, Opcodes.LRETURN, Opcodes.DRETURN -> -2;
+            case Opcodes.IASTORE, Opcodes.FASTORE, Opcodes.AASTORE, Opcodes.BASTORE, Opcodes.CASTORE, Opcodes.SASTORE,
+                 Opcodes.LCMP, Opcodes.DCMPL, Opcodes.DCMPG -> -3;
+            case Opcodes.LASTORE, Opcodes.DASTORE -> -4;
+            default -> throw new IllegalArgumentException("no stack effect known for " + Opcodes.nameOf(opcode));
+        };
+    }
+}
@@ -0,0 +1,110 @@
+package main.bytecode.analysis;
+
+import main.bytecode.ir.Instruction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// one entry of a stack map frame; longs and doubles are followed by a top in slot form
+public final class VerificationType {
+    public enum Kind { TOP, INTEGER, FLOAT, DOUBLE, LONG, NULL, UNINITIALIZED_THIS, OBJECT, UNINITIALIZED }
+
+    public static final VerificationType TOP = new VerificationType(Kind.TOP, null, null);
+    public static final VerificationType INTEGER = new VerificationType(Kind.INTEGER, null, null);
+    public static final VerificationType FLOAT = new VerificationType(Kind.FLOAT, null, null);
+    public static final VerificationType DOUBLE = new VerificationType(Kind.DOUBLE, null, null);
+    public static final VerificationType LONG = new VerificationType(Kind.LONG, null, null);
+    public static final VerificationType NULL = new VerificationType(Kind.NULL, null, null);
+    public static final VerificationType UNINITIALIZED_THIS = new VerificationType(Kind.UNINITIALIZED_THIS, null, null);
+
+    private final Kind kind;
+    // internal name for classes, descriptor for arrays
+    private final String className;
+    // the new instruction that created an uninitialized object
+    private final Instruction creator;
+
+    private VerificationType(Kind kind, String className, Instruction creator) {
+        this.kind = kind;
+        this.className = className;
+        this.creator = creator;
+    }
+
+    public static VerificationType object(String className) {
+        return new VerificationType(Kind.OBJECT, className, null);
+    }
+
+    public static VerificationType uninitialized(Instruction creator) {
+        return new VerificationType(Kind.UNINITIALIZED, null, creator);
+    }
+
+    // the slots a value of the given field descriptor takes
+    public static List<VerificationType> ofDescriptor(String descriptor) {
+        return switch (descriptor.charAt(0)) {
+            case 'V' -> List.of();
+            case 'Z', 'B', 'C', 'S', 'I' -> List.of(INTEGER);
+            case 'F' -> List.of(FLOAT);
+            case 'J' -> List.of(LONG, TOP);
+            case 'D' -> List.of(DOUBLE, TOP);
+            case 'L' -> List.of(object(descriptor.substring(1, descriptor.length() - 1)));
+            case '[' -> List.of(object(descriptor));
+            default -> throw new IllegalArgumentException("bad descriptor " + descriptor);
+        };
+    }
+
+    // the slots taken by the arguments of a method descriptor, in order
+    public static List<VerificationType> ofArguments(String methodDescriptor) {
+        List<VerificationType> slots = new ArrayList<>();
+        int i = 1;
+        while (methodDescriptor.charAt(i) != ')') {
+            int start = i;
+            while (methodDescriptor.charAt(i) == '[')
+                i++;
+            if (methodDescriptor.charAt(i) == 'L')
+                i = methodDescriptor.indexOf(';', i);
+            i++;
+            slots.addAll(ofDescriptor(methodDescriptor.substring(start, i)));
+        }
+        return slots;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public Instruction getCreator() {
+        return creator;
+    }
+
+    public boolean isWide() {
+        return kind == Kind.LONG || kind == Kind.DOUBLE;
+    }
+
+    public boolean isReference() {
+        return kind == Kind.OBJECT || kind == Kind.NULL;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof VerificationType type && kind == type.kind
+                && Objects.equals(className, type.className) && creator == type.creator;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, className, System.identityHashCode(creator));
+    }
+
+    @Override
+    public String toString() {
+        return switch (kind) {
+            case OBJECT -> className;
+            case UNINITIALIZED -> "uninitialized " + creator;
+            default -> kind.name().toLowerCase();
+        };
+    }
+}
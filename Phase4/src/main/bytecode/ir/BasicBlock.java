@@ -0,0 +1,60 @@
+package main.bytecode.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// a run of instructions entered only at the top and left only at the bottom
+public class BasicBlock {
+    private final int index;
+    private final List<Instruction> instructions = new ArrayList<>();
+    private final List<BasicBlock> successors = new ArrayList<>();
+    private final List<BasicBlock> predecessors = new ArrayList<>();
+    private final List<BasicBlock> handlers = new ArrayList<>();
+
+    public BasicBlock(int index) {
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    // normal successors, by fall through or jump
+    public List<BasicBlock> getSuccessors() {
+        return successors;
+    }
+
+    public List<BasicBlock> getPredecessors() {
+        return predecessors;
+    }
+
+    // exception handlers covering this block
+    public List<BasicBlock> getHandlers() {
+        return handlers;
+    }
+
+    public Instruction getLast() {
+        for (int i = instructions.size() - 1; i >= 0; i--)
+            if (!(instructions.get(i) instanceof Label))
+                return instructions.get(i);
+        return null;
+    }
+
+    void addSuccessor(BasicBlock successor) {
+        if (!successors.contains(successor)) {
+            successors.add(successor);
+            successor.predecessors.add(this);
+        }
+    }
+
+    void addHandler(BasicBlock handler) {
+        if (!handlers.contains(handler)) {
+            handlers.add(handler);
+            handler.predecessors.add(this);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package main.bytecode.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ClassDefinition {
+    private final int access;
+    private final String name;
+    private final String superName;
+    private final List<String> interfaces = new ArrayList<>();
+    private final List<FieldDefinition> fields = new ArrayList<>();
+    private final List<MethodDefinition> methods = new ArrayList<>();
+
+    public ClassDefinition(int access, String name, String superName) {
+        this.access = access;
+        this.name = name;
+        this.superName = superName;
+    }
+
+    public int getAccess() {
+        return access;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSuperName() {
+        return superName;
+    }
+
+    public List<String> getInterfaces() {
+        return interfaces;
+    }
+
+    public List<FieldDefinition> getFields() {
+        return fields;
+    }
+
+    public List<MethodDefinition> getMethods() {
+        return methods;
+    }
+
+    public MethodDefinition addMethod(int methodAccess, String methodName, String descriptor) {
+        MethodDefinition method = new MethodDefinition(methodAccess, methodName, descriptor);
+        methods.add(method);
+        return method;
+    }
+}
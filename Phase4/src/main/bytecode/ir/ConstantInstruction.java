@@ -0,0 +1,44 @@
+package main.bytecode.ir;
+
+import main.bytecode.Opcodes;
+
+// ldc of an Integer, Float, Long, Double, String or Handle; the writer picks ldc, ldc_w or ldc2_w
+public class ConstantInstruction extends Instruction {
+    private final Object value;
+
+    public ConstantInstruction(Object value) {
+        super(value instanceof Long || value instanceof Double ? Opcodes.LDC2_W : Opcodes.LDC);
+        this.value = value;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    // the operand as jasmin spells it, strings quoted and escaped
+    public String getOperandText() {
+        if (value instanceof String string)
+            return quote(string);
+        return value.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getMnemonic() + " " + getOperandText();
+    }
+
+    private static String quote(String string) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : string.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\t' -> quoted.append("\\t");
+                case '\r' -> quoted.append("\\r");
+                default -> quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,4 @@
+package main.bytecode.ir;
+
+// constantValue is null unless the field has a ConstantValue attribute
+public record FieldDefinition(int access, String name, String descriptor, Object constantValue) {}
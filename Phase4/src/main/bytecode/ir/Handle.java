@@ -0,0 +1,12 @@
+package main.bytecode.ir;
+
+// a method handle constant; kind is a reference kind from the class file format
+public record Handle(int kind, String owner, String name, String descriptor) {
+    public static final int REF_INVOKE_STATIC = 6;
+
+    @Override
+    public String toString() {
+        return "MethodHandle " + (kind == REF_INVOKE_STATIC ? "invokestatic" : String.valueOf(kind)) + " "
+                + owner + "/" + name + descriptor;
+    }
+}
@@ -0,0 +1,31 @@
+package main.bytecode.ir;
+
+import main.bytecode.Opcodes;
+
+public class IincInstruction extends Instruction {
+    private int slot;
+    private final int delta;
+
+    public IincInstruction(int slot, int delta) {
+        super(Opcodes.IINC);
+        this.slot = slot;
+        this.delta = delta;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+
+    @Override
+    public String toString() {
+        return getMnemonic() + " " + slot + " " + delta;
+    }
+}
@@ -0,0 +1,34 @@
+package main.bytecode.ir;
+
+import main.bytecode.Opcodes;
+
+public abstract class Instruction {
+    protected int opcode;
+
+    protected Instruction(int opcode) {
+        this.opcode = opcode;
+    }
+
+    public int getOpcode() {
+        return opcode;
+    }
+
+    public String getMnemonic() {
+        return Opcodes.nameOf(opcode);
+    }
+
+    // true for instructions after which control never falls through to the next one
+    public boolean endsFlow() {
+        return switch (opcode) {
+            case Opcodes.GOTO, Opcodes.GOTO_W, Opcodes.ATHROW, Opcodes.RET,
+                 Opcodes.IRETURN, Opcodes.LRETURN, Opcodes.FRETURN, Opcodes.DRETURN, Opcodes.ARETURN, Opcodes.RETURN -> true;
+            default -> false;
+        };
+    }
+
+    // the jasmin form of this instruction
+    @Override
+    public String toString() {
+        return getMnemonic();
+    }
+}
@@ -0,0 +1,24 @@
+package main.bytecode.ir;
+
+import main.bytecode.Opcodes;
+
+// bipush, sipush and newarray
+public class IntInstruction extends Instruction {
+    private final int operand;
+
+    public IntInstruction(int opcode, int operand) {
+        super(opcode);
+        this.operand = operand;
+    }
+
+    public int getOperand() {
+        return operand;
+    }
+
+    @Override
+    public String toString() {
+        if (opcode == Opcodes.NEWARRAY)
+            return getMnemonic() + " " + Opcodes.arrayTypeName(operand);
+        return getMnemonic() + " " + operand;
+    }
+}
@@ -0,0 +1,46 @@
+package main.bytecode.ir;
+
+import main.bytecode.Opcodes;
+
+import java.util.List;
+
+// invokedynamic; the bootstrap method links the call site the first time it runs
+public class InvokeDynamicInstruction extends Instruction {
+    private final String name;
+    private final String descriptor;
+    private final Handle bootstrap;
+    private final List<Object> bootstrapArguments;
+
+    public InvokeDynamicInstruction(String name, String descriptor, Handle bootstrap, List<Object> bootstrapArguments) {
+        super(Opcodes.INVOKEDYNAMIC);
+        this.name = name;
+        this.descriptor = descriptor;
+        this.bootstrap = bootstrap;
+        this.bootstrapArguments = bootstrapArguments;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public Handle getBootstrap() {
+        return bootstrap;
+    }
+
+    public List<Object> getBootstrapArguments() {
+        return bootstrapArguments;
+    }
+
+    @Override
+    public String toString() {
+        String call = getMnemonic() + " " + name + descriptor + " " + bootstrap.owner() + "/" + bootstrap.name()
+                + bootstrap.descriptor();
+        for (Object argument : bootstrapArguments)
+            call += " " + argument;
+        return call;
+    }
+}
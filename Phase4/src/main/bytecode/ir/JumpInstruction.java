@@ -0,0 +1,29 @@
+package main.bytecode.ir;
+
+import main.bytecode.Opcodes;
+
+public class JumpInstruction extends Instruction {
+    private Label target;
+
+    public JumpInstruction(int opcode, Label target) {
+        super(opcode);
+        this.target = target;
+    }
+
+    public Label getTarget() {
+        return target;
+    }
+
+    public void setTarget(Label target) {
+        this.target = target;
+    }
+
+    public boolean isConditional() {
+        return opcode != Opcodes.GOTO && opcode != Opcodes.GOTO_W && opcode != Opcodes.JSR && opcode != Opcodes.JSR_W;
+    }
+
+    @Override
+    public String toString() {
+        return getMnemonic() + " " + target.getName();
+    }
+}
@@ -0,0 +1,25 @@
+package main.bytecode.ir;
+
+// a position in a method body, kept in the instruction list like a zero-width instruction
+public class Label extends Instruction {
+    private final String name;
+
+    public Label(String name) {
+        super(-1);
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getMnemonic() {
+        return name + ":";
+    }
+
+    @Override
+    public String toString() {
+        return name + ":";
+    }
+}
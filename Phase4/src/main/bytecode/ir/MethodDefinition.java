@@ -0,0 +1,119 @@
+package main.bytecode.ir;
+
+import main.bytecode.ClassFileWriter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MethodDefinition {
+    private final int access;
+    private final String name;
+    private final String descriptor;
+    private List<Instruction> instructions = new ArrayList<>();
+    private final List<TryCatchBlock> tryCatchBlocks = new ArrayList<>();
+    // -1 means not declared
+    private int maxStack = -1;
+    private int maxLocals = -1;
+
+    public MethodDefinition(int access, String name, String descriptor) {
+        this.access = access;
+        this.name = name;
+        this.descriptor = descriptor;
+    }
+
+    public int getAccess() {
+        return access;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public boolean isStatic() {
+        return (access & ClassFileWriter.ACC_STATIC) != 0;
+    }
+
+    public boolean hasCode() {
+        return (access & (ClassFileWriter.ACC_ABSTRACT | ClassFileWriter.ACC_NATIVE)) == 0;
+    }
+
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    public void setInstructions(List<Instruction> instructions) {
+        this.instructions = instructions;
+    }
+
+    public void add(Instruction instruction) {
+        instructions.add(instruction);
+    }
+
+    public List<TryCatchBlock> getTryCatchBlocks() {
+        return tryCatchBlocks;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public void setMaxStack(int maxStack) {
+        this.maxStack = maxStack;
+    }
+
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    public void setMaxLocals(int maxLocals) {
+        this.maxLocals = maxLocals;
+    }
+
+    // splits the body at labels and after jumps, returns and throws; the first block is the entry
+    public List<BasicBlock> getBasicBlocks() {
+        List<BasicBlock> blocks = new ArrayList<>();
+        Map<Label, BasicBlock> blockOf = new HashMap<>();
+        BasicBlock current = null;
+        boolean onlyLabels = false;
+        for (Instruction instruction : instructions) {
+            boolean startsBlock = current == null || (instruction instanceof Label && !onlyLabels);
+            if (startsBlock) {
+                current = new BasicBlock(blocks.size());
+                blocks.add(current);
+                onlyLabels = true;
+            }
+            current.getInstructions().add(instruction);
+            if (instruction instanceof Label label) {
+                blockOf.put(label, current);
+                continue;
+            }
+            onlyLabels = false;
+            if (instruction instanceof JumpInstruction || instruction.endsFlow())
+                current = null;
+        }
+
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            Instruction last = block.getLast();
+            if (last instanceof JumpInstruction jump)
+                block.addSuccessor(blockOf.get(jump.getTarget()));
+            if ((last == null || !last.endsFlow()) && i + 1 < blocks.size())
+                block.addSuccessor(blocks.get(i + 1));
+        }
+
+        for (TryCatchBlock tryCatch : tryCatchBlocks) {
+            BasicBlock handler = blockOf.get(tryCatch.handler());
+            int start = blockOf.get(tryCatch.start()).getIndex();
+            int end = blockOf.get(tryCatch.end()).getIndex();
+            for (int i = start; i < end; i++)
+                blocks.get(i).addHandler(handler);
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,38 @@
+package main.bytecode.ir;
+
+import main.bytecode.Descriptors;
+import main.bytecode.Opcodes;
+
+// invokevirtual, invokespecial, invokestatic and invokeinterface
+public class MethodInstruction extends Instruction {
+    private final String owner;
+    private final String name;
+    private final String descriptor;
+
+    public MethodInstruction(int opcode, String owner, String name, String descriptor) {
+        super(opcode);
+        this.owner = owner;
+        this.name = name;
+        this.descriptor = descriptor;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    @Override
+    public String toString() {
+        String call = getMnemonic() + " " + owner + "/" + name + descriptor;
+        if (opcode == Opcodes.INVOKEINTERFACE)
+            call += " " + (Descriptors.argumentSlots(descriptor) + 1);
+        return call;
+    }
+}
@@ -0,0 +1,27 @@
+package main.bytecode.ir;
+
+import main.bytecode.Opcodes;
+
+public class MultiANewArrayInstruction extends Instruction {
+    private final String descriptor;
+    private final int dimensions;
+
+    public MultiANewArrayInstruction(String descriptor, int dimensions) {
+        super(Opcodes.MULTIANEWARRAY);
+        this.descriptor = descriptor;
+        this.dimensions = dimensions;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public String toString() {
+        return getMnemonic() + " " + descriptor + " " + dimensions;
+    }
+}
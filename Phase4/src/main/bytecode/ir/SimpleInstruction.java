@@ -0,0 +1,7 @@
+package main.bytecode.ir;
+
+public class SimpleInstruction extends Instruction {
+    public SimpleInstruction(int opcode) {
+        super(opcode);
+    }
+}
@@ -0,0 +1,10 @@
+package main.bytecode.ir;
+
+// exceptionClass is null for a handler that catches everything
+public record TryCatchBlock(Label start, Label end, Label handler, String exceptionClass) {
+    @Override
+    public String toString() {
+        return ".catch " + (exceptionClass == null ? "all" : exceptionClass) + " from " + start.getName()
+                + " to " + end.getName() + " using " + handler.getName();
+    }
+}
@@ -0,0 +1,20 @@
+package main.bytecode.ir;
+
+// new, anewarray, checkcast and instanceof
+public class TypeInstruction extends Instruction {
+    private final String className;
+
+    public TypeInstruction(int opcode, String className) {
+        super(opcode);
+        this.className = className;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    @Override
+    public String toString() {
+        return getMnemonic() + " " + className;
+    }
+}
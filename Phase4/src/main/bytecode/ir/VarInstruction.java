@@ -0,0 +1,42 @@
+package main.bytecode.ir;
+
+import main.bytecode.Opcodes;
+
+// xload, xstore and ret
+public class VarInstruction extends Instruction {
+    private int slot;
+
+    public VarInstruction(int opcode, int slot) {
+        super(opcode);
+        this.slot = slot;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    public boolean isLoad() {
+        return opcode >= Opcodes.ILOAD && opcode <= Opcodes.ALOAD;
+    }
+
+    public boolean isStore() {
+        return opcode >= Opcodes.ISTORE && opcode <= Opcodes.ASTORE;
+    }
+
+    // number of slots the value takes, 2 for longs and doubles
+    public int getWidth() {
+        return switch (opcode) {
+            case Opcodes.LLOAD, Opcodes.DLOAD, Opcodes.LSTORE, Opcodes.DSTORE -> 2;
+            default -> 1;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return getMnemonic() + " " + slot;
+    }
+}
@@ -0,0 +1,47 @@
+package main.bytecode.peephole;
+
+import main.bytecode.Opcodes;
+import main.bytecode.ir.Instruction;
+import main.bytecode.ir.JumpInstruction;
+import main.bytecode.ir.Label;
+
+import java.util.List;
+import java.util.Map;
+
+// a comparison turned into 0/1 and then tested again becomes a single jump:
+//   if<cond> L1, iconst_0, goto L2, L1:, iconst_1, L2:, ifeq L3  ->  if<!cond> L3
+public class BooleanBranchRule implements PeepholeRule {
+    @Override
+    public String getName() {
+        return "boolean-branch";
+    }
+
+    @Override
+    public boolean apply(List<Instruction> code, int index, Map<Label, Integer> labelUses) {
+        if (index + 6 >= code.size())
+            return false;
+        if (!(code.get(index) instanceof JumpInstruction compare) || !compare.isConditional())
+            return false;
+        if (!isInt(code.get(index + 1), 0) || !(code.get(index + 2) instanceof JumpInstruction skip)
+                || skip.getOpcode() != Opcodes.GOTO)
+            return false;
+        if (code.get(index + 3) != compare.getTarget() || !isInt(code.get(index + 4), 1) || code.get(index + 5) != skip.getTarget())
+            return false;
+        if (!(code.get(index + 6) instanceof JumpInstruction test)
+                || (test.getOpcode() != Opcodes.IFEQ && test.getOpcode() != Opcodes.IFNE))
+            return false;
+        // nothing else may jump into the middle of the pattern
+        if (labelUses.getOrDefault(compare.getTarget(), 0) != 1 || labelUses.getOrDefault(skip.getTarget(), 0) != 1)
+            return false;
+
+        int opcode = test.getOpcode() == Opcodes.IFEQ ? Opcodes.negate(compare.getOpcode()) : compare.getOpcode();
+        code.subList(index, index + 7).clear();
+        code.add(index, new JumpInstruction(opcode, test.getTarget()));
+        return true;
+    }
+
+    private static boolean isInt(Instruction instruction, int value) {
+        Integer constant = PeepholeOptimizer.intConstantOf(instruction);
+        return constant != null && constant == value;
+    }
+}
@@ -0,0 +1,30 @@
+package main.bytecode.peephole;
+
+import main.bytecode.Opcodes;
+import main.bytecode.ir.*;
+
+import java.util.List;
+import java.util.Map;
+
+// ldc of a small int becomes iconst_n, bipush or sipush
+public class ConstantLoadRule implements PeepholeRule {
+    @Override
+    public String getName() {
+        return "constant-load";
+    }
+
+    @Override
+    public boolean apply(List<Instruction> code, int index, Map<Label, Integer> labelUses) {
+        if (!(code.get(index) instanceof ConstantInstruction constant) || !(constant.getValue() instanceof Integer value))
+            return false;
+        if (value >= -1 && value <= 5)
+            code.set(index, new SimpleInstruction(Opcodes.ICONST_0 + value));
+        else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+            code.set(index, new IntInstruction(Opcodes.BIPUSH, value));
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+            code.set(index, new IntInstruction(Opcodes.SIPUSH, value));
+        else
+            return false;
+        return true;
+    }
+}
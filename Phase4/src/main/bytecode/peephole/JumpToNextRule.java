@@ -0,0 +1,30 @@
+package main.bytecode.peephole;
+
+import main.bytecode.Opcodes;
+import main.bytecode.ir.Instruction;
+import main.bytecode.ir.JumpInstruction;
+import main.bytecode.ir.Label;
+
+import java.util.List;
+import java.util.Map;
+
+// goto L immediately followed by L: is dropped
+public class JumpToNextRule implements PeepholeRule {
+    @Override
+    public String getName() {
+        return "jump-to-next";
+    }
+
+    @Override
+    public boolean apply(List<Instruction> code, int index, Map<Label, Integer> labelUses) {
+        if (!(code.get(index) instanceof JumpInstruction jump) || jump.getOpcode() != Opcodes.GOTO)
+            return false;
+        for (int i = index + 1; i < code.size() && code.get(i) instanceof Label label; i++) {
+            if (label == jump.getTarget()) {
+                code.remove(index);
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,26 @@
+package main.bytecode.peephole;
+
+import main.bytecode.Opcodes;
+import main.bytecode.ir.Instruction;
+import main.bytecode.ir.Label;
+import main.bytecode.ir.SimpleInstruction;
+
+import java.util.List;
+import java.util.Map;
+
+// ineg, iadd  ->  isub
+public class NegateAddRule implements PeepholeRule {
+    @Override
+    public String getName() {
+        return "negate-add";
+    }
+
+    @Override
+    public boolean apply(List<Instruction> code, int index, Map<Label, Integer> labelUses) {
+        if (PeepholeOptimizer.opcodeAt(code, index) != Opcodes.INEG || PeepholeOptimizer.opcodeAt(code, index + 1) != Opcodes.IADD)
+            return false;
+        code.set(index, new SimpleInstruction(Opcodes.ISUB));
+        code.remove(index + 1);
+        return true;
+    }
+}
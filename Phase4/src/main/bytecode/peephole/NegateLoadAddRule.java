@@ -0,0 +1,30 @@
+package main.bytecode.peephole;
+
+import main.bytecode.Opcodes;
+import main.bytecode.ir.Instruction;
+import main.bytecode.ir.Label;
+import main.bytecode.ir.SimpleInstruction;
+import main.bytecode.ir.VarInstruction;
+
+import java.util.List;
+import java.util.Map;
+
+// ineg, iload n, iadd  ->  iload n, swap, isub  (how -= on a variable is generated)
+public class NegateLoadAddRule implements PeepholeRule {
+    @Override
+    public String getName() {
+        return "negate-load-add";
+    }
+
+    @Override
+    public boolean apply(List<Instruction> code, int index, Map<Label, Integer> labelUses) {
+        if (PeepholeOptimizer.opcodeAt(code, index) != Opcodes.INEG || PeepholeOptimizer.opcodeAt(code, index + 1) != Opcodes.ILOAD
+                || PeepholeOptimizer.opcodeAt(code, index + 2) != Opcodes.IADD)
+            return false;
+        VarInstruction load = (VarInstruction) code.get(index + 1);
+        code.set(index, load);
+        code.set(index + 1, new SimpleInstruction(Opcodes.SWAP));
+        code.set(index + 2, new SimpleInstruction(Opcodes.ISUB));
+        return true;
+    }
+}
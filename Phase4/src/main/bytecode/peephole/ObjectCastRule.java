@@ -0,0 +1,26 @@
+package main.bytecode.peephole;
+
+import main.bytecode.Opcodes;
+import main.bytecode.ir.Instruction;
+import main.bytecode.ir.Label;
+import main.bytecode.ir.TypeInstruction;
+
+import java.util.List;
+import java.util.Map;
+
+// checkcast java/lang/Object can never fail and changes nothing for the verifier
+public class ObjectCastRule implements PeepholeRule {
+    @Override
+    public String getName() {
+        return "object-cast";
+    }
+
+    @Override
+    public boolean apply(List<Instruction> code, int index, Map<Label, Integer> labelUses) {
+        if (!(code.get(index) instanceof TypeInstruction cast) || cast.getOpcode() != Opcodes.CHECKCAST
+                || !cast.getClassName().equals("java/lang/Object"))
+            return false;
+        code.remove(index);
+        return true;
+    }
+}
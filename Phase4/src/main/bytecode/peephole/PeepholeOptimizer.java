@@ -0,0 +1,104 @@
+package main.bytecode.peephole;
+
+import main.bytecode.Opcodes;
+import main.bytecode.ir.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PeepholeOptimizer {
+    // the longest pattern any default rule matches, a rewrite rescans this far back for newly formed patterns
+    private static final int WINDOW = 6;
+
+    private final List<PeepholeRule> rules;
+    private final Map<String, Integer> rewrites = new LinkedHashMap<>();
+
+    public PeepholeOptimizer() {
+        this(defaultRules());
+    }
+
+    public PeepholeOptimizer(List<PeepholeRule> rules) {
+        this.rules = rules;
+        for (PeepholeRule rule : rules)
+            rewrites.put(rule.getName(), 0);
+    }
+
+    public static List<PeepholeRule> defaultRules() {
+        List<PeepholeRule> rules = new ArrayList<>();
+        rules.add(new ConstantLoadRule());
+        rules.add(new NegateAddRule());
+        rules.add(new NegateLoadAddRule());
+        rules.add(new ObjectCastRule());
+        rules.add(new BooleanBranchRule());
+        rules.add(new JumpToNextRule());
+        return rules;
+    }
+
+    public void optimize(ClassDefinition classDefinition) {
+        for (MethodDefinition method : classDefinition.getMethods())
+            optimize(method);
+    }
+
+    public void optimize(MethodDefinition method) {
+        List<Instruction> code = method.getInstructions();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            Map<Label, Integer> labelUses = countLabelUses(method);
+            for (int i = 0; i < code.size(); i++) {
+                for (PeepholeRule rule : rules) {
+                    if (rule.apply(code, i, labelUses)) {
+                        rewrites.merge(rule.getName(), 1, Integer::sum);
+                        changed = true;
+                        i = Math.max(-1, i - WINDOW);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    // rewrites per rule, in rule table order
+    public Map<String, Integer> getRewrites() {
+        return rewrites;
+    }
+
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : rewrites.entrySet())
+            report.append(String.format("%-20s %d%n", entry.getKey(), entry.getValue()));
+        return report.toString();
+    }
+
+    private static Map<Label, Integer> countLabelUses(MethodDefinition method) {
+        Map<Label, Integer> uses = new HashMap<>();
+        for (Instruction instruction : method.getInstructions())
+            if (instruction instanceof JumpInstruction jump)
+                uses.merge(jump.getTarget(), 1, Integer::sum);
+        for (TryCatchBlock tryCatch : method.getTryCatchBlocks()) {
+            uses.merge(tryCatch.start(), 1, Integer::sum);
+            uses.merge(tryCatch.end(), 1, Integer::sum);
+            uses.merge(tryCatch.handler(), 1, Integer::sum);
+        }
+        return uses;
+    }
+
+    static int opcodeAt(List<Instruction> code, int index) {
+        return index < code.size() ? code.get(index).getOpcode() : -2;
+    }
+
+    // the int an instruction pushes if it is a plain int constant
+    static Integer intConstantOf(Instruction instruction) {
+        if (instruction instanceof ConstantInstruction constant && constant.getValue() instanceof Integer value)
+            return value;
+        int opcode = instruction.getOpcode();
+        if (opcode >= Opcodes.ICONST_M1 && opcode <= Opcodes.ICONST_5)
+            return opcode - Opcodes.ICONST_0;
+        if (instruction instanceof IntInstruction push && opcode != Opcodes.NEWARRAY)
+            return push.getOperand();
+        return null;
+    }
+}
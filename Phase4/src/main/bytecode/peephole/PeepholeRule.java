@@ -0,0 +1,14 @@
+package main.bytecode.peephole;
+
+import main.bytecode.ir.Instruction;
+import main.bytecode.ir.Label;
+
+import java.util.List;
+import java.util.Map;
+
+public interface PeepholeRule {
+    String getName();
+
+    // tries to rewrite the code starting at index in place; labelUses counts the jumps to each label
+    boolean apply(List<Instruction> code, int index, Map<Label, Integer> labelUses);
+}
@@ -180,13 +180,30 @@ condition returns [ArrayList<Expression> conditionRet]:
     {
         $conditionRet = new ArrayList<Expression>();
     }
-    (LPAR e = expression
-     {$conditionRet.add($e.expRet);}
-     RPAR ((AND | OR) (LPAR)? c = condition
+    (o = orCondition {$conditionRet.add($o.orRet);})*;
+
+// || binds looser than &&, both group to the left
+orCondition returns [Expression orRet]:
+    a1 = andCondition {$orRet = $a1.andRet;}
+    (o = OR a2 = andCondition
      {
-        $conditionRet.addAll($c.conditionRet);
+        $orRet = new BinaryExpression($orRet, $a2.andRet, BinaryOperator.OR);
+        $orRet.setLine($o.line);
      }
-     (RPAR)?)*)*;
+    )*;
+
+andCondition returns [Expression andRet]:
+    p1 = conditionOperand {$andRet = $p1.operandRet;}
+    (a = AND p2 = conditionOperand
+     {
+        $andRet = new BinaryExpression($andRet, $p2.operandRet, BinaryOperator.AND);
+        $andRet.setLine($a.line);
+     }
+    )*;
+
+conditionOperand returns [Expression operandRet]:
+    LPAR e = expression RPAR {$operandRet = $e.expRet;}
+    | LPAR o = orCondition RPAR {$operandRet = $o.orRet;};
 
 putsStatement returns [PutStatement putRet]:
     p = PUTS LPAR e = expression
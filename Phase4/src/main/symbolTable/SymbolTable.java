@@ -1,45 +1,36 @@
 package main.symbolTable;
 
 import main.symbolTable.exceptions.ItemAlreadyExists;
-import main.symbolTable.exceptions.ItemNotFound;
 import main.symbolTable.item.SymbolTableItem;
-import main.symbolTable.utils.Stack;
-
-import java.util.HashMap;
-import java.util.Map;
+import main.symbolTable.utils.IntMap;
 
 public class SymbolTable {
-    public static SymbolTable top;
-    public static SymbolTable root;
-    private static Stack<SymbolTable> stack = new Stack<>();
-    private Map<String, SymbolTableItem> items;
-    public static void push(SymbolTable symbolTable) {
-        if (top != null)
-            stack.push(top);
-        top = symbolTable;
+    private final SymbolTable parent;
+    private final IntMap<SymbolTableItem> items;
+    public SymbolTable() {
+        this(null);
     }
-    public static void pop() {
-        top = stack.pop();
+    private SymbolTable(SymbolTable parent) {
+        this.parent = parent;
+        this.items = new IntMap<>();
     }
-    public SymbolTable() {
-        this.items = new HashMap<>();
+    // a block scope sees (and shares) every item of the enclosing scopes, while items put into it stay local
+    public SymbolTable makeChildScope() {
+        return new SymbolTable(this);
     }
     public void put(SymbolTableItem item) throws ItemAlreadyExists {
-        if (items.containsKey(item.getKey()))
+        if (lookup(item.getKey()) != null)
             throw new ItemAlreadyExists();
         items.put(item.getKey(), item);
     }
-    public SymbolTableItem getItem(String key) throws ItemNotFound {
-        SymbolTableItem symbolTableItem = this.items.get(key);
-        if( symbolTableItem != null ){
-            return symbolTableItem;
+    // null when the key is not visible from this scope; misses allocate nothing
+    public SymbolTableItem lookup(int key) {
+        for (SymbolTable scope = this; scope != null; scope = scope.parent) {
+            SymbolTableItem symbolTableItem = scope.items.get(key);
+            if (symbolTableItem != null)
+                return symbolTableItem;
         }
-        throw new ItemNotFound();
-    }
-    public SymbolTable copy() {
-        SymbolTable newSymbolTable = new SymbolTable();
-        newSymbolTable.items.putAll(this.items);
-        return newSymbolTable;
+        return null;
     }
 
 }
@@ -7,7 +7,7 @@ import main.symbolTable.SymbolTable;
 import java.util.ArrayList;
 
 public class FunctionItem extends SymbolTableItem{
-    public static final String START_KEY = "Function:";
+    private static final int KIND = 1;
     private SymbolTable functionSymbolTable;
     private FunctionDeclaration functionDeclaration;
     private ArrayList<Type> argumentTypes = new ArrayList<>();
@@ -30,7 +30,9 @@ public class FunctionItem extends SymbolTableItem{
     public FunctionItem(FunctionDeclaration functionDeclaration){
         this.functionDeclaration = functionDeclaration;
         this.name = this.functionDeclaration.getFunctionName().getName();
+        this.symbolId = this.functionDeclaration.getFunctionName().getSymbolId();
     }
+    public static int keyOf(int symbolId){return makeKey(symbolId, KIND);}
 
     public SymbolTable getFunctionSymbolTable() {
         return functionSymbolTable;
@@ -48,6 +50,6 @@ public class FunctionItem extends SymbolTableItem{
         this.functionDeclaration = functionDeclaration;
     }
     @Override
-    public String getKey() {return START_KEY + this.name;}
+    public int getKey() {return keyOf(this.symbolId);}
 
 }
@@ -5,7 +5,7 @@ import main.ast.type.Type;
 import main.symbolTable.SymbolTable;
 
 public class PatternItem extends SymbolTableItem{
-    public static final String START_KEY = "Pattern:";
+    private static final int KIND = 2;
     private SymbolTable patternSymbolTable;
     private PatternDeclaration patternDeclaration;
     private Type targetVarType;
@@ -21,7 +21,9 @@ public class PatternItem extends SymbolTableItem{
     public PatternItem(PatternDeclaration patternDeclaration){
         this.patternDeclaration = patternDeclaration;
         this.name = this.patternDeclaration.getPatternName().getName();
+        this.symbolId = this.patternDeclaration.getPatternName().getSymbolId();
     }
+    public static int keyOf(int symbolId){return makeKey(symbolId, KIND);}
 
     public SymbolTable getPatternSymbolTable() {
         return patternSymbolTable;
@@ -39,5 +41,5 @@ public class PatternItem extends SymbolTableItem{
         this.patternSymbolTable = patternSymbolTable;
     }
     @Override
-    public String getKey(){return START_KEY + this.name;}
+    public int getKey(){return keyOf(this.symbolId);}
 }
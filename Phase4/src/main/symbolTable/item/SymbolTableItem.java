@@ -1,8 +1,16 @@
 package main.symbolTable.item;
 
+import main.symbolTable.utils.SymbolIds;
+
 public abstract class SymbolTableItem {
     protected String name;
-    public abstract String getKey();
+    protected int symbolId;
+    public abstract int getKey();
+
+    // the low bits tell items of different kinds with the same name apart
+    protected static int makeKey(int symbolId, int kind) {
+        return (symbolId << 2) | kind;
+    }
 
     public String getName() {
         return name;
@@ -10,5 +18,10 @@ public abstract class SymbolTableItem {
 
     public void setName(String name) {
         this.name = name;
+        this.symbolId = SymbolIds.intern(name);
+    }
+
+    public int getSymbolId() {
+        return symbolId;
     }
 }
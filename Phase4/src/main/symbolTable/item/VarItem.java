@@ -4,7 +4,7 @@ import main.ast.nodes.expression.Identifier;
 import main.ast.type.Type;
 
 public class VarItem extends SymbolTableItem{
-    public static String START_KEY = "VAR:";
+    private static final int KIND = 0;
     private Type type;
 
     public Type getType() {
@@ -17,9 +17,11 @@ public class VarItem extends SymbolTableItem{
 
     public VarItem(Identifier identifier){
         this.name = identifier.getName();
+        this.symbolId = identifier.getSymbolId();
     }
+    public static int keyOf(int symbolId){return makeKey(symbolId, KIND);}
 
 
     @Override
-    public String getKey(){return START_KEY + this.name;}
+    public int getKey(){return keyOf(this.symbolId);}
 }
@@ -6,7 +6,7 @@ public class Graph {
     private final Map<String, List<String>> adjacencyList;
 
     public Graph() {
-        adjacencyList = new HashMap<>();
+        adjacencyList = new LinkedHashMap<>();
     }
 
     public void addEdge(String a, String b) {
@@ -48,6 +48,46 @@ public class Graph {
         beingVisited.remove(vertex);
         return false;
     }
+    // tarjan's algorithm; every vertex lands in exactly one component, callees before their callers
+    public List<List<String>> stronglyConnectedComponents() {
+        Set<String> vertices = new LinkedHashSet<>(adjacencyList.keySet());
+        adjacencyList.values().forEach(vertices::addAll);
+        Map<String, Integer> index = new HashMap<>();
+        Map<String, Integer> lowLink = new HashMap<>();
+        Deque<String> stack = new ArrayDeque<>();
+        Set<String> onStack = new HashSet<>();
+        List<List<String>> components = new ArrayList<>();
+        for (String vertex : vertices)
+            if (!index.containsKey(vertex))
+                strongConnect(vertex, index, lowLink, stack, onStack, components);
+        return components;
+    }
+
+    private void strongConnect(String vertex, Map<String, Integer> index, Map<String, Integer> lowLink,
+                               Deque<String> stack, Set<String> onStack, List<List<String>> components) {
+        index.put(vertex, index.size());
+        lowLink.put(vertex, index.get(vertex));
+        stack.push(vertex);
+        onStack.add(vertex);
+        for (String neighbor : adjacencyList.getOrDefault(vertex, Collections.emptyList())) {
+            if (!index.containsKey(neighbor)) {
+                strongConnect(neighbor, index, lowLink, stack, onStack, components);
+                lowLink.put(vertex, Math.min(lowLink.get(vertex), lowLink.get(neighbor)));
+            } else if (onStack.contains(neighbor)) {
+                lowLink.put(vertex, Math.min(lowLink.get(vertex), index.get(neighbor)));
+            }
+        }
+        if (lowLink.get(vertex).equals(index.get(vertex))) {
+            List<String> component = new ArrayList<>();
+            String member;
+            do {
+                member = stack.pop();
+                onStack.remove(member);
+                component.addFirst(member);
+            } while (!member.equals(vertex));
+            components.add(component);
+        }
+    }
     public Void printGraph(){
         for(String vertex : adjacencyList.keySet()){
             System.out.println(vertex + "----");
@@ -0,0 +1,65 @@
+package main.symbolTable.utils;
+
+public class IntMap<V> {
+    private static final int INITIAL_CAPACITY = 8;
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (values == null)
+            return null;
+        int mask = keys.length - 1;
+        for (int i = indexOf(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key)
+                return (V) values[i];
+        }
+        return null;
+    }
+
+    public void put(int key, V value) {
+        if (values == null) {
+            keys = new int[INITIAL_CAPACITY];
+            values = new Object[INITIAL_CAPACITY];
+        }
+        else if ((size + 1) * 2 > keys.length)
+            grow();
+        insert(key, value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void insert(int key, Object value) {
+        int mask = keys.length - 1;
+        int i = indexOf(key, mask);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++)
+            if (oldValues[i] != null)
+                insert(oldKeys[i], oldValues[i]);
+    }
+
+    private static int indexOf(int key, int mask) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,23 @@
+package main.symbolTable.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SymbolIds {
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextId = new AtomicInteger();
+    public static final int NONE = -1;
+
+    // the same name always maps to the same id, shared by every compilation in the process
+    public static int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null)
+            return id;
+        return ids.computeIfAbsent(name, k -> nextId.getAndIncrement());
+    }
+
+    // the id of a name that has been interned, NONE otherwise; never adds the name
+    public static int find(String name) {
+        return ids.getOrDefault(name, NONE);
+    }
+}
@@ -0,0 +1,58 @@
+package main.visitor.codeGenerator;
+
+import main.bytecode.ir.*;
+
+import java.util.List;
+
+// appends typed instructions to the body of the method being generated
+public class CodeBuilder {
+    private MethodDefinition method;
+
+    public void setMethod(MethodDefinition method) {
+        this.method = method;
+    }
+
+    public MethodDefinition getMethod() {
+        return method;
+    }
+
+    public void op(int opcode) {
+        method.add(new SimpleInstruction(opcode));
+    }
+
+    public void var(int opcode, int slot) {
+        method.add(new VarInstruction(opcode, slot));
+    }
+
+    public void iinc(int slot, int delta) {
+        method.add(new IincInstruction(slot, delta));
+    }
+
+    public void constant(Object value) {
+        method.add(new ConstantInstruction(value));
+    }
+
+    public void jump(int opcode, Label target) {
+        method.add(new JumpInstruction(opcode, target));
+    }
+
+    public void label(Label label) {
+        method.add(label);
+    }
+
+    public void type(int opcode, String className) {
+        method.add(new TypeInstruction(opcode, className));
+    }
+
+    public void field(int opcode, String owner, String name, String descriptor) {
+        method.add(new FieldInstruction(opcode, owner, name, descriptor));
+    }
+
+    public void invoke(int opcode, String owner, String name, String descriptor) {
+        method.add(new MethodInstruction(opcode, owner, name, descriptor));
+    }
+
+    public void invokeDynamic(String name, String descriptor, Handle bootstrap, List<Object> bootstrapArguments) {
+        method.add(new InvokeDynamicInstruction(name, descriptor, bootstrap, bootstrapArguments));
+    }
+}
@@ -1,11 +1,13 @@
 package main.visitor.codeGenerator;
 
+import main.CompilationContext;
 import main.ast.nodes.Program;
 import main.ast.nodes.declaration.FunctionDeclaration;
 import main.ast.nodes.declaration.MainDeclaration;
 import main.ast.nodes.declaration.VarDeclaration;
 import main.ast.nodes.expression.*;
 import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.operators.UnaryOperator;
 import main.ast.nodes.expression.value.FunctionPointer;
 import main.ast.nodes.expression.value.ListValue;
 import main.ast.nodes.expression.value.primitive.BoolValue;
@@ -19,47 +21,100 @@ import main.ast.type.Type;
 import main.ast.type.primitiveType.BoolType;
 import main.ast.type.primitiveType.IntType;
 import main.ast.type.primitiveType.StringType;
+import main.bytecode.ClassFileWriter;
+import main.bytecode.JasminAssembler;
+import main.bytecode.JasminPrinter;
+import main.bytecode.Opcodes;
+import main.bytecode.analysis.LocalAllocator;
+import main.bytecode.analysis.StackAnalyzer;
+import main.bytecode.ir.ClassDefinition;
+import main.bytecode.ir.Handle;
+import main.bytecode.ir.Label;
+import main.bytecode.ir.MethodDefinition;
+import main.bytecode.peephole.PeepholeOptimizer;
 import main.symbolTable.SymbolTable;
-import main.symbolTable.exceptions.ItemAlreadyExists;
-import main.symbolTable.exceptions.ItemNotFound;
 import main.symbolTable.item.FunctionItem;
-import main.symbolTable.item.VarItem;
+import main.symbolTable.utils.Graph;
 import main.visitor.Visitor;
 import main.visitor.type.TypeChecker;
 import org.stringtemplate.v4.ST;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-public class CodeGenerator extends Visitor<String> {
+public class CodeGenerator extends Visitor<Void> {
+    private static final String[] UTILITY_CLASSES = {"IntList", "BoolList", "Closure"};
+    private static final String UTILITY_CLASS_PATH = "utilities/codeGenerationUtilityClasses/";
+    // the utility classes never change, so they are assembled once per jvm
+    private static Map<String, byte[]> utilityClassFiles;
+
     private final String outputPath;
-    private FileWriter mainFile;
+    private final boolean emitJasmin;
+    private final ClassDefinition mainClass = new ClassDefinition(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_SUPER,
+            "Main", "java/lang/Object");
+    private final CodeBuilder code = new CodeBuilder();
+    private final PeepholeOptimizer peepholeOptimizer = new PeepholeOptimizer();
+    private final CompilationContext context;
     private final TypeChecker typeChecker;
     private final Set<String> visited;
-    private final ArrayList<String> endPoints = new ArrayList<String>();
-    private final ArrayList<String> startPoints = new ArrayList<String>();
+    private final ArrayList<Label> endPoints = new ArrayList<Label>();
+    private final ArrayList<Label> startPoints = new ArrayList<Label>();
     private FunctionItem curFunction;
+    // where a tail call to a function jumps, and the prefix its variables are kept under in the current method
+    private record TailTarget(Label start, String slotPrefix) {}
+    private Map<String, TailTarget> tailTargets = Collections.emptyMap();
+    // tail calls of the current function that become a jump instead of an invoke
+    private Set<AccessExpression> tailCalls = Collections.emptySet();
+    // names map to virtual slots, the allocator packs them into real ones once the method is done
     private final HashMap<String, Integer> slots = new HashMap<>();
+    private int reservedSlots = 0;
+    // a group method holds several bodies, so each keeps its variables apart
+    private String slotPrefix = "";
     private int curLabel = 0;
+    // numbers the hidden bound, list and index variables of for loops
+    private int curLoop = 0;
 
-    public CodeGenerator(TypeChecker typeChecker){
+    public CodeGenerator(CompilationContext context, TypeChecker typeChecker){
+        this(context, typeChecker, "./codeGenOutput/");
+    }
+    public CodeGenerator(CompilationContext context, TypeChecker typeChecker, String outputPath){
+        this(context, typeChecker, outputPath, false);
+    }
+    public CodeGenerator(CompilationContext context, TypeChecker typeChecker, String outputPath, boolean emitJasmin){
+        this.context = context;
         this.typeChecker = typeChecker;
         this.visited = typeChecker.visited;
-        outputPath = "./codeGenOutput/";
+        this.outputPath = outputPath;
+        this.emitJasmin = emitJasmin;
         prepareOutputFolder();
     }
     private int slotOf(String var) {
+        return virtualSlot(slotPrefix + var);
+    }
+    private int virtualSlot(String var) {
         if (!slots.containsKey(var)) {
-            slots.put(var, slots.size());
-            return slots.size() - 1;
+            slots.put(var, reservedSlots + slots.size());
+            return reservedSlots + slots.size() - 1;
         }
         return slots.get(var);
     }
-    public String getFreshLabel(){
-        String fresh = "Label_" + curLabel;
+    private Type typeOf(Expression expression){
+        Type type = typeChecker.expressionTypes.get(expression);
+        if (type == null && !typeChecker.expressionTypes.containsKey(expression))
+            return expression.accept(typeChecker);
+        return type;
+    }
+    public Label getFreshLabel(){
+        Label fresh = new Label("Label_" + curLabel);
         curLabel++;
         return fresh;
     }
@@ -68,8 +123,8 @@ public class CodeGenerator extends Visitor<String> {
         switch (element){
             case StringType stringType -> type += "Ljava/lang/String;";
             case IntType intType -> type += "Ljava/lang/Integer;";
-            case FptrType fptrType -> type += "LFptr;";
-            case ListType listType -> type += "Ljava/util/ArrayList;";
+            case FptrType fptrType -> type += "Ljava/lang/invoke/MethodHandle;";
+            case ListType listType -> type += "L" + listClass(listType) + ";";
             case BoolType boolType -> type += "Ljava/lang/Boolean;";
             case null, default -> {
                 type += "V";
@@ -82,8 +137,8 @@ public class CodeGenerator extends Visitor<String> {
         switch (element){
             case StringType stringType -> type += "Ljava/lang/String;";
             case IntType intType -> type += "I";
-            case FptrType fptrType -> type += "LFptr;";
-            case ListType listType -> type += "Ljava/util/ArrayList;";
+            case FptrType fptrType -> type += "Ljava/lang/invoke/MethodHandle;";
+            case ListType listType -> type += "L" + listClass(listType) + ";";
             case BoolType boolType -> type += "Z";
             case null, default -> {
                 type += "V";
@@ -97,38 +152,100 @@ public class CodeGenerator extends Visitor<String> {
             case StringType stringType -> className += "java/lang/String";
             case IntType intType -> className += "java/lang/Integer";
             case BoolType boolType -> className += "java/lang/Boolean";
+            case ListType listType -> className += listClass(listType);
+            case FptrType fptrType -> className += "java/lang/invoke/MethodHandle";
             case null -> className += "java/lang/Object";
             default -> {}
         }
         return className;
     }
+    // lists of ints and bools keep their elements unboxed in the runtime list classes
+    private String listClass(ListType listType){
+        return switch (listType.getType()) {
+            case IntType intType -> "IntList";
+            case BoolType boolType -> "BoolList";
+            case null, default -> "java/util/ArrayList";
+        };
+    }
+    private String elementDescriptor(ListType listType){
+        return switch (listType.getType()) {
+            case IntType intType -> "I";
+            case BoolType boolType -> "Z";
+            case null, default -> "Ljava/lang/Object;";
+        };
+    }
+    private boolean isBoxedList(ListType listType){
+        return listClass(listType).equals("java/util/ArrayList");
+    }
+    // only reached for lists whose element type could not be worked out
+    private void box(Type type){
+        if (type instanceof IntType)
+            code.invoke(Opcodes.INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;");
+        else if (type instanceof BoolType)
+            code.invoke(Opcodes.INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+    }
 
     private void prepareOutputFolder(){
-        String jasminPath = "utilities/jarFiles/jasmin.jar";
-        String listClassPath = "utilities/codeGenerationUtilityClasses/List.j";
-        String fptrClassPath = "utilities/codeGenerationUtilityClasses/Fptr.j";
         try{
             File directory = new File(this.outputPath);
             File[] files = directory.listFiles();
             if(files != null)
                 for (File file : files)
                     file.delete();
-            directory.mkdir();
+            directory.mkdirs();
         }
         catch(SecurityException e){
             // ignore
         }
-        copyFile(jasminPath, this.outputPath + "jasmin.jar");
-        copyFile(listClassPath, this.outputPath + "List.j");
-        copyFile(fptrClassPath, this.outputPath + "Fptr.j");
-
-        try {
-            String path = outputPath + "Main.j";
-            File file = new File(path);
-            file.createNewFile();
-            mainFile = new FileWriter(path);
-        } catch (IOException e){
-            // ignore
+        if (!emitJasmin)
+            return;
+        // jasmin sources are only kept around for debugging the generated code
+        copyFile("utilities/jarFiles/jasmin.jar", this.outputPath + "jasmin.jar");
+        for (String utilityClass : UTILITY_CLASSES)
+            copyFile(UTILITY_CLASS_PATH + utilityClass + ".j", this.outputPath + utilityClass + ".j");
+    }
+    private static synchronized Map<String, byte[]> getUtilityClassFiles(){
+        if (utilityClassFiles == null) {
+            // the generated code calls into every one of them, so a missing one fails the compile
+            Map<String, byte[]> classFiles = new HashMap<>();
+            for (String utilityClass : UTILITY_CLASSES) {
+                String path = UTILITY_CLASS_PATH + utilityClass + ".j";
+                try {
+                    String source = Files.readString(Path.of(path));
+                    classFiles.put(utilityClass, ClassFileWriter.write(JasminAssembler.assemble(source)));
+                } catch (IOException e){
+                    throw new UncheckedIOException("could not read utility class " + path, e);
+                }
+            }
+            utilityClassFiles = classFiles;
+        }
+        return utilityClassFiles;
+    }
+    public PeepholeOptimizer getPeepholeOptimizer(){
+        return peepholeOptimizer;
+    }
+    private void writeClassFiles(){
+        peepholeOptimizer.optimize(mainClass);
+        for (MethodDefinition method : mainClass.getMethods()) {
+            method.setMaxLocals(LocalAllocator.allocate(method));
+            method.setMaxStack(StackAnalyzer.computeMaxStack(method));
+        }
+        if (emitJasmin) {
+            try {
+                Files.writeString(Path.of(outputPath, "Main.j"), JasminPrinter.print(mainClass));
+                Files.writeString(Path.of(outputPath, "peephole.txt"), peepholeOptimizer.getReport());
+            } catch (IOException e){
+                // ignore
+            }
+        }
+        Map<String, byte[]> classFiles = new HashMap<>(getUtilityClassFiles());
+        classFiles.put("Main", ClassFileWriter.write(mainClass));
+        for (Map.Entry<String, byte[]> classFile : classFiles.entrySet()) {
+            try {
+                Files.write(Path.of(outputPath, classFile.getKey() + ".class"), classFile.getValue());
+            } catch (IOException e){
+                // ignore
+            }
         }
     }
     private void copyFile(String toBeCopied, String toBePasted){
@@ -147,251 +264,328 @@ public class CodeGenerator extends Visitor<String> {
             // ignore
         }
     }
-    private void addCommand(String command){
-        try {
-            command = String.join("\n\t\t", command.split("\n"));
-            if(command.startsWith("Label_"))
-                mainFile.write("\t" + command + "\n");
-            else if(command.startsWith("."))
-                mainFile.write(command + "\n");
-            else
-                mainFile.write("\t\t" + command + "\n");
-            mainFile.flush();
-        } catch (IOException e){
-            // ignore
-        }
+    private void beginMethod(int access, String name, String descriptor){
+        code.setMethod(mainClass.addMethod(access, name, descriptor));
     }
     private void handleMainClass(){
-        String commands = """
-                .method public static main([Ljava/lang/String;)V
-                .limit stack 128
-                .limit locals 128
-                new Main
-                invokespecial Main/<init>()V
-                return
-                .end method
-                """;
-        addCommand(commands);
+        beginMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, "main", "([Ljava/lang/String;)V");
+        code.type(Opcodes.NEW, "Main");
+        code.invoke(Opcodes.INVOKESPECIAL, "Main", "<init>", "()V");
+        code.op(Opcodes.RETURN);
     }
     @Override
-    public String visit(Program program){
-        String commands = """
-                .class public Main
-                .super java/lang/Object
-                """;
-        addCommand(commands);
+    public Void visit(Program program){
         handleMainClass();
 
+        Set<String> grouped = new HashSet<>();
+        for (List<String> group : findTailCallGroups()) {
+            emitGroup(group);
+            grouped.addAll(group);
+        }
         for(String funcName : this.visited) {
-            try {
-                this.curFunction = (FunctionItem) SymbolTable.root.getItem(FunctionItem.START_KEY +
-                        funcName);
+            this.curFunction = context.findFunction(funcName);
+            if (this.curFunction != null && !grouped.contains(funcName))
                 this.curFunction.getFunctionDeclaration().accept(this);
-            } catch(ItemNotFound ignored) {}
         }
 
         program.getMain().accept(this);
+        writeClassFiles();
         return null;
     }
     @Override
-    public String visit(FunctionDeclaration functionDeclaration){
+    public Void visit(FunctionDeclaration functionDeclaration){
         slots.clear();
-        SymbolTable.push(new SymbolTable());
-        String commands = "";
+        reservedSlots = 0;
+        slotPrefix = "";
+        context.pushScope(new SymbolTable());
         String args = "(";
         for (int i=0; i<this.curFunction.getArgumentTypes().size(); i++) {
             args += getSignatureType(this.curFunction.getArgumentTypes().get(i));
             slotOf(functionDeclaration.getArgs().get(i).getName().getName());
-            VarItem newVarItem = new VarItem(functionDeclaration.getArgs().get(i).getName());
-            newVarItem.setType(this.curFunction.getArgumentTypes().get(i));
-            try {
-                SymbolTable.top.put(newVarItem);
-            }catch (ItemAlreadyExists ignored){
-                VarItem item = null;
-                try {
-                    item = (VarItem) SymbolTable.top.getItem(VarItem.START_KEY + newVarItem.getName());
-                } catch (ItemNotFound ignored1) {}
-                assert item != null;
-                item.setType(this.curFunction.getArgumentTypes().get(i));
-            }
+            context.defineVar(functionDeclaration.getArgs().get(i).getName(), this.curFunction.getArgumentTypes().get(i));
         }
         args += ")";
         String returnType = getSignatureType(this.curFunction.getReturnType());
-        commands += ".method public static " + functionDeclaration.getFunctionName().getName();
-        commands += args + returnType + "\n";
-        commands += ".limit stack 128\n";
-        commands += ".limit locals 128\n";
+        beginMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, functionDeclaration.getFunctionName().getName(),
+                args + returnType);
+        Label functionStart = getFreshLabel();
+        code.label(functionStart);
+        String name = functionDeclaration.getFunctionName().getName();
+        tailTargets = Map.of(name, new TailTarget(functionStart, ""));
+        tailCalls = findTailCalls(curFunction, Set.of(name));
+        emitBody(functionDeclaration);
+        context.popScope();
+        return null;
+    }
+    private void emitBody(FunctionDeclaration functionDeclaration){
         boolean hasReturn = false;
         for(Statement bodyElement:functionDeclaration.getBody()) {
-            commands += bodyElement.accept(this) + "\n";
+            bodyElement.accept(this);
             if (bodyElement instanceof ReturnStatement){
                 hasReturn = true;
             }
         }
         if (!hasReturn) {
-            commands += "return\n";
+            code.op(Opcodes.RETURN);
         }
-        commands += ".end method\n";
-        addCommand(commands);
-        SymbolTable.pop();
-        return null;
     }
     @Override
-    public String visit(MainDeclaration mainDeclaration){
+    public Void visit(MainDeclaration mainDeclaration){
         slots.clear();
-
-        String commands = "";
-        commands += ".method public <init>()V\n";
-        commands += ".limit stack 128\n";
-        commands += ".limit locals 128\n";
-        commands += "aload_0\n";
-        commands += "invokespecial java/lang/Object/<init>()V\n";
+        // slot 0 holds this
+        reservedSlots = 1;
+        slotPrefix = "";
+        tailTargets = Collections.emptyMap();
+        tailCalls = Collections.emptySet();
+        beginMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V");
+        code.var(Opcodes.ALOAD, 0);
+        code.invoke(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
         for (var statement : mainDeclaration.getBody())
-            commands += statement.accept(this) + "\n";
-        commands += "return\n";
-        commands += ".end method\n";
-
-        addCommand(commands);
+            statement.accept(this);
+        code.op(Opcodes.RETURN);
         return null;
     }
-    public String visit(AccessExpression accessExpression){
-        List<String> commands = new ArrayList<String>();
+    // functions that tail call each other in a cycle, only calls between matching return types count
+    private List<List<String>> findTailCallGroups(){
+        Graph tailCallGraph = new Graph();
+        for (String caller : visited) {
+            FunctionItem function = context.findFunction(caller);
+            if (function == null)
+                continue;
+            String returnType = getSignatureType(function.getReturnType());
+            Set<String> targets = new HashSet<>();
+            for (String callee : visited)
+                if (context.findFunction(callee) != null
+                        && getSignatureType(context.findFunction(callee).getReturnType()).equals(returnType))
+                    targets.add(callee);
+            for (AccessExpression call : findTailCalls(function, targets))
+                tailCallGraph.addEdge(caller, ((Identifier) call.getAccessedExpression()).getName());
+        }
+        List<List<String>> groups = new ArrayList<>();
+        for (List<String> component : tailCallGraph.stronglyConnectedComponents())
+            if (component.size() > 1)
+                groups.add(component);
+        return groups;
+    }
+    // one method holds every member body behind a switch on slot 0, so tail calls between members are plain jumps;
+    // each member keeps a method of its own that enters the group at its body
+    private void emitGroup(List<String> members){
+        List<FunctionItem> functions = new ArrayList<>();
+        for (String member : members)
+            functions.add(context.findFunction(member));
+        String groupName = "group$" + String.join("$", members);
+        String params = "";
+        for (FunctionItem function : functions)
+            for (Type argumentType : function.getArgumentTypes())
+                params += getSignatureType(argumentType);
+        String returnType = getSignatureType(functions.getFirst().getReturnType());
+        String groupDescriptor = "(I" + params + ")" + returnType;
 
+        slots.clear();
+        reservedSlots = 1;
+        Map<String, TailTarget> targets = new HashMap<>();
+        List<Label> starts = new ArrayList<>();
+        for (String member : members) {
+            TailTarget target = new TailTarget(getFreshLabel(), member + "#");
+            for (VarDeclaration arg : context.findFunction(member).getFunctionDeclaration().getArgs())
+                virtualSlot(target.slotPrefix() + arg.getName().getName());
+            targets.put(member, target);
+            starts.add(target.start());
+        }
+        beginMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, groupName, groupDescriptor);
+        for (int i = 0; i < starts.size() - 1; i++) {
+            code.var(Opcodes.ILOAD, 0);
+            code.constant(i);
+            code.jump(Opcodes.IF_ICMPEQ, starts.get(i));
+        }
+        code.jump(Opcodes.GOTO, starts.getLast());
+        tailTargets = targets;
+        for (int i = 0; i < members.size(); i++) {
+            curFunction = functions.get(i);
+            FunctionDeclaration functionDeclaration = curFunction.getFunctionDeclaration();
+            slotPrefix = targets.get(members.get(i)).slotPrefix();
+            context.pushScope(new SymbolTable());
+            for (int j = 0; j < curFunction.getArgumentTypes().size(); j++)
+                context.defineVar(functionDeclaration.getArgs().get(j).getName(), curFunction.getArgumentTypes().get(j));
+            code.label(starts.get(i));
+            tailCalls = findTailCalls(curFunction, targets.keySet());
+            emitBody(functionDeclaration);
+            context.popScope();
+        }
+        slotPrefix = "";
+
+        for (int i = 0; i < members.size(); i++) {
+            String args = "(";
+            for (Type argumentType : functions.get(i).getArgumentTypes())
+                args += getSignatureType(argumentType);
+            args += ")";
+            beginMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, members.get(i), args + returnType);
+            code.constant(i);
+            int slot = 0;
+            for (int j = 0; j < functions.size(); j++) {
+                for (Type argumentType : functions.get(j).getArgumentTypes()) {
+                    boolean primitive = argumentType instanceof IntType || argumentType instanceof BoolType;
+                    if (j == i)
+                        code.var(primitive ? Opcodes.ILOAD : Opcodes.ALOAD, slot++);
+                    else if (primitive)
+                        code.constant(0);
+                    else
+                        code.op(Opcodes.ACONST_NULL);
+                }
+            }
+            code.invoke(Opcodes.INVOKESTATIC, "Main", groupName, groupDescriptor);
+            code.op(switch (returnType) {
+                case "V" -> Opcodes.RETURN;
+                case "I", "Z" -> Opcodes.IRETURN;
+                default -> Opcodes.ARETURN;
+            });
+        }
+    }
+    // calls to one of the targets whose result is returned as is, or that end a function returning nothing
+    private Set<AccessExpression> findTailCalls(FunctionItem function, Set<String> targets){
+        Set<AccessExpression> calls = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Statement> body = function.getFunctionDeclaration().getBody();
+        collectTailReturns(body, targets, calls);
+        if (getSignatureType(function.getReturnType()).equals("V"))
+            collectTailStatement(body, targets, calls);
+        return calls;
+    }
+    private void collectTailReturns(List<Statement> body, Set<String> targets, Set<AccessExpression> calls){
+        for (Statement statement : body) {
+            switch (statement) {
+                case ReturnStatement returnStatement when isDirectCall(returnStatement.getReturnExp(), targets) ->
+                        calls.add((AccessExpression) returnStatement.getReturnExp());
+                case IfStatement ifStatement -> {
+                    collectTailReturns(ifStatement.getThenBody(), targets, calls);
+                    collectTailReturns(ifStatement.getElseBody(), targets, calls);
+                }
+                case LoopDoStatement loopDoStatement -> collectTailReturns(loopDoStatement.getLoopBodyStmts(), targets, calls);
+                case ForStatement forStatement -> collectTailReturns(forStatement.getLoopBodyStmts(), targets, calls);
+                default -> {}
+            }
+        }
+    }
+    private void collectTailStatement(List<Statement> body, Set<String> targets, Set<AccessExpression> calls){
+        if (body.isEmpty())
+            return;
+        switch (body.getLast()) {
+            case ExpressionStatement expressionStatement when isDirectCall(expressionStatement.getExpression(), targets) ->
+                    calls.add((AccessExpression) expressionStatement.getExpression());
+            case IfStatement ifStatement -> {
+                collectTailStatement(ifStatement.getThenBody(), targets, calls);
+                collectTailStatement(ifStatement.getElseBody(), targets, calls);
+            }
+            default -> {}
+        }
+    }
+    // the type checker only types the callee when it is a function pointer
+    private boolean isDirectCall(Expression expression, Set<String> targets){
+        return expression instanceof AccessExpression call && call.isFunctionCall()
+                && call.getAccessedExpression() instanceof Identifier callee && targets.contains(callee.getName())
+                && !(typeChecker.expressionTypes.get(callee) instanceof FptrType);
+    }
+    // arguments are all evaluated before any parameter is overwritten, since they may read the old values
+    private void tailCall(AccessExpression call){
+        String name = ((Identifier) call.getAccessedExpression()).getName();
+        FunctionItem callee = context.findFunction(name);
+        TailTarget target = tailTargets.get(name);
+        List<VarDeclaration> params = callee.getFunctionDeclaration().getArgs();
+        for (Expression arg : call.getArguments())
+            arg.accept(this);
+        for (int i = call.getArguments().size(); i < params.size(); i++)
+            params.get(i).getDefaultVal().accept(this);
+        for (int i = params.size() - 1; i >= 0; i--) {
+            Type type = callee.getArgumentTypes().get(i);
+            code.var(type instanceof IntType || type instanceof BoolType ? Opcodes.ISTORE : Opcodes.ASTORE,
+                    virtualSlot(target.slotPrefix() + params.get(i).getName().getName()));
+        }
+        code.jump(Opcodes.GOTO, target.start());
+    }
+    public Void visit(AccessExpression accessExpression){
         if (accessExpression.isFunctionCall()) {
-            Identifier functionName = (Identifier)accessExpression.getAccessedExpression();
+            Expression callee = accessExpression.getAccessedExpression();
             String funcName = "";
-            Type funcType = functionName.accept(typeChecker);
+            Type funcType = typeOf(callee);
             FunctionItem functionItem = null;
             if (funcType instanceof FptrType fptr){
                 funcName += fptr.getFunctionName();
+                // the handle goes under the arguments, the pointed to function is only known at run time
+                callee.accept(this);
             }
             else {
-                funcName += functionName.getName();
+                funcName += ((Identifier) callee).getName();
             }
-            try {
-                functionItem = (FunctionItem) SymbolTable.root.getItem(FunctionItem.START_KEY +
-                        funcName);
-            } catch(ItemNotFound ignored) {}
+            functionItem = context.findFunction(funcName);
 
-            int argCount = 0;
+            // what a lambda captures is already bound into its handle
+            int argCount = typeChecker.capturedTypes.getOrDefault(funcName, List.of()).size();
             String args = "(";
             for (Expression arg : accessExpression.getArguments()){
-                Type argType = arg.accept(typeChecker);
+                Type argType = typeOf(arg);
                 args += getSignatureType(argType);
-                commands.add(arg.accept(this));
+                arg.accept(this);
                 argCount++;
             }
             for (int i = argCount; i < functionItem.getArgumentTypes().size(); i++){
                 args += getSignatureType(functionItem.getArgumentTypes().get(i));
-                commands.add(functionItem.getFunctionDeclaration().getArgs().get(i).getDefaultVal().accept(this));
+                functionItem.getFunctionDeclaration().getArgs().get(i).getDefaultVal().accept(this);
             }
             args += ")";
 
             String returnType = "";
             returnType += getSignatureType(functionItem.getReturnType());
-            commands.add("invokestatic Main/" + funcName + args + returnType);
-            return String.join("\n", commands);
-
+            if (funcType instanceof FptrType)
+                code.invoke(Opcodes.INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", args + returnType);
+            else
+                code.invoke(Opcodes.INVOKESTATIC, "Main", funcName, args + returnType);
         }
         else {
-            commands.add(accessExpression.getAccessedExpression().accept(this));
+            accessExpression.getAccessedExpression().accept(this);
             for (Expression expression : accessExpression.getDimentionalAccess()){
-                commands.add(expression.accept(this));
+                expression.accept(this);
             }
-            ListType type = (ListType)accessExpression.getAccessedExpression().accept(typeChecker);
-            commands.add("invokevirtual java/util/ArrayList/get(I)Ljava/lang/Object;");
-            commands.add("checkcast " + getClass(type.getType()));
-            if (type.getType() instanceof IntType)
-                commands.add("invokevirtual java/lang/Integer/intValue()I");
-            else if (type.getType() instanceof BoolType){
-                commands.add("invokevirtual java/lang/Boolean/booleanValue()Z");
-            }
-            return String.join("\n", commands);
+            ListType type = (ListType)typeOf(accessExpression.getAccessedExpression());
+            code.invoke(Opcodes.INVOKEVIRTUAL, listClass(type), "get", "(I)" + elementDescriptor(type));
+            if (isBoxedList(type))
+                code.type(Opcodes.CHECKCAST, getClass(type.getType()));
         }
-        //TODO
+        return null;
+    }
+    // the list and index are already on the stack, and are evaluated only once
+    private void updateListElement(AssignStatement assignStatement, int... operation){
+        code.op(Opcodes.DUP2);
+        code.invoke(Opcodes.INVOKEVIRTUAL, "IntList", "get", "(I)I");
+        assignStatement.getAssignExpression().accept(this);
+        for (int opcode : operation)
+            code.op(opcode);
+        code.invoke(Opcodes.INVOKEVIRTUAL, "IntList", "set", "(II)V");
     }
 
     @Override
-    public String visit(AssignStatement assignStatement){
-        List<String> commands = new ArrayList<>();
-        Type assignValueType = assignStatement.getAssignExpression().accept(typeChecker);
+    public Void visit(AssignStatement assignStatement){
+        Type assignValueType = typeOf(assignStatement.getAssignExpression());
 
         if(assignStatement.isAccessList()) {
-            commands.add(assignStatement.getAssignedId().accept(this));
-            commands.add(assignStatement.getAccessListExpression().accept(this));
+            assignStatement.getAssignedId().accept(this);
+            assignStatement.getAccessListExpression().accept(this);
 
             switch (assignStatement.getAssignOperator()){
                 case AssignOperator.ASSIGN -> {
-                    commands.add(assignStatement.getAssignExpression().accept(this));
-                    if (assignValueType instanceof IntType)
-                        commands.add("invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;");
-                    else if (assignValueType instanceof BoolType){
-                        commands.add("invokestatic java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;");
+                    assignStatement.getAssignExpression().accept(this);
+                    if (typeOf(assignStatement.getAssignedId()) instanceof ListType listType && !isBoxedList(listType))
+                        code.invoke(Opcodes.INVOKEVIRTUAL, listClass(listType), "set", "(I" + elementDescriptor(listType) + ")V");
+                    else {
+                        box(assignValueType);
+                        code.invoke(Opcodes.INVOKEVIRTUAL, "java/util/ArrayList", "set", "(ILjava/lang/Object;)Ljava/lang/Object;");
+                        // set hands back the element it replaced
+                        code.op(Opcodes.POP);
                     }
-                    commands.add("checkcast " + getClass(null));
-                    commands.add("invokevirtual java/util/ArrayList/set(ILjava/lang/Object;)Ljava/lang/Object;");
-                }
-                case AssignOperator.PLUS_ASSIGN -> {
-                    commands.add(assignStatement.getAssignedId().accept(this));
-                    commands.add(assignStatement.getAccessListExpression().accept(this));
-                    commands.add("invokevirtual java/util/ArrayList/get(I)Ljava/lang/Object;");
-                    commands.add("checkcast " + getClass(new IntType()));
-                    commands.add("invokevirtual java/lang/Integer/intValue()I");
-                    commands.add(assignStatement.getAssignExpression().accept(this));
-                    commands.add("iadd");
-                    commands.add("invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;");
-                    commands.add("checkcast " + getClass(null));
-                    commands.add("invokevirtual java/util/ArrayList/set(ILjava/lang/Object;)Ljava/lang/Object;");
-                }
-                case AssignOperator.MINUS_ASSIGN -> {
-                    commands.add(assignStatement.getAssignedId().accept(this));
-                    commands.add(assignStatement.getAccessListExpression().accept(this));
-                    commands.add("invokevirtual java/util/ArrayList/get(I)Ljava/lang/Object;");
-                    commands.add("checkcast " + getClass(new IntType()));
-                    commands.add("invokevirtual java/lang/Integer/intValue()I");
-                    commands.add(assignStatement.getAssignExpression().accept(this));
-                    commands.add("ineg");
-                    commands.add("iadd");
-                    commands.add("invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;");
-                    commands.add("checkcast " + getClass(null));
-                    commands.add("invokevirtual java/util/ArrayList/set(ILjava/lang/Object;)Ljava/lang/Object;");
-                }
-                case AssignOperator.DIVIDE_ASSIGN -> {
-                    commands.add(assignStatement.getAssignedId().accept(this));
-                    commands.add(assignStatement.getAccessListExpression().accept(this));
-                    commands.add("invokevirtual java/util/ArrayList/get(I)Ljava/lang/Object;");
-                    commands.add("checkcast " + getClass(new IntType()));
-                    commands.add("invokevirtual java/lang/Integer/intValue()I");
-                    commands.add(assignStatement.getAssignExpression().accept(this));
-                    commands.add("idiv");
-                    commands.add("invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;");
-                    commands.add("checkcast " + getClass(null));
-                    commands.add("invokevirtual java/util/ArrayList/set(ILjava/lang/Object;)Ljava/lang/Object;");
-                }
-                case AssignOperator.MULT_ASSIGN -> {
-                    commands.add(assignStatement.getAssignedId().accept(this));
-                    commands.add(assignStatement.getAccessListExpression().accept(this));
-                    commands.add("invokevirtual java/util/ArrayList/get(I)Ljava/lang/Object;");
-                    commands.add("checkcast " + getClass(new IntType()));
-                    commands.add("invokevirtual java/lang/Integer/intValue()I");
-                    commands.add(assignStatement.getAssignExpression().accept(this));
-                    commands.add("imul");
-                    commands.add("invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;");
-                    commands.add("checkcast " + getClass(null));
-                    commands.add("invokevirtual java/util/ArrayList/set(ILjava/lang/Object;)Ljava/lang/Object;");
-                }
-                case AssignOperator.MOD_ASSIGN -> {
-                    commands.add(assignStatement.getAssignedId().accept(this));
-                    commands.add(assignStatement.getAccessListExpression().accept(this));
-                    commands.add("invokevirtual java/util/ArrayList/get(I)Ljava/lang/Object;");
-                    commands.add("checkcast " + getClass(new IntType()));
-                    commands.add("invokevirtual java/lang/Integer/intValue()I");
-                    commands.add(assignStatement.getAssignExpression().accept(this));
-                    commands.add("irem");
-                    commands.add("invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;");
-                    commands.add("checkcast " + getClass(null));
-                    commands.add("invokevirtual java/util/ArrayList/set(ILjava/lang/Object;)Ljava/lang/Object;");
                 }
+                case AssignOperator.PLUS_ASSIGN -> updateListElement(assignStatement, Opcodes.IADD);
+                case AssignOperator.MINUS_ASSIGN -> updateListElement(assignStatement, Opcodes.INEG, Opcodes.IADD);
+                case AssignOperator.DIVIDE_ASSIGN -> updateListElement(assignStatement, Opcodes.IDIV);
+                case AssignOperator.MULT_ASSIGN -> updateListElement(assignStatement, Opcodes.IMUL);
+                case AssignOperator.MOD_ASSIGN -> updateListElement(assignStatement, Opcodes.IREM);
                 case null, default -> {
                 }
             }
@@ -399,343 +593,475 @@ public class CodeGenerator extends Visitor<String> {
         }
         else {
 
-            commands.add(assignStatement.getAssignExpression().accept(this));
+            assignStatement.getAssignExpression().accept(this);
+            int slot = slotOf(assignStatement.getAssignedId().getName());
             switch (assignStatement.getAssignOperator()){
                 case AssignOperator.ASSIGN -> {
-                    VarItem newVarItem = new VarItem(assignStatement.getAssignedId());
-                    newVarItem.setType(assignValueType);
-                    try {
-                        SymbolTable.top.put(newVarItem);
-                    }catch (ItemAlreadyExists ignored){
-                        VarItem item = null;
-                        try {
-                            item = (VarItem) SymbolTable.top.getItem(VarItem.START_KEY + newVarItem.getName());
-                        } catch (ItemNotFound ignored1) {}
-                        assert item != null;
-                        item.setType(assignValueType);
-                    }
-                    commands.add((assignValueType instanceof IntType || assignValueType instanceof BoolType ? "istore " : "astore ")
-                            + slotOf(assignStatement.getAssignedId().getName()));
+                    context.defineVar(assignStatement.getAssignedId(), assignValueType);
+                    code.var(assignValueType instanceof IntType || assignValueType instanceof BoolType ? Opcodes.ISTORE : Opcodes.ASTORE,
+                            slot);
 
                 }
                 case AssignOperator.PLUS_ASSIGN -> {
-                    commands.add("iload " + slotOf(assignStatement.getAssignedId().getName()));
-                    commands.add("iadd");
-                    commands.add("istore " + slotOf(assignStatement.getAssignedId().getName()));
+                    code.var(Opcodes.ILOAD, slot);
+                    code.op(Opcodes.IADD);
+                    code.var(Opcodes.ISTORE, slot);
                 }
                 case AssignOperator.MINUS_ASSIGN -> {
-                    commands.add("ineg");
-                    commands.add("iload " + slotOf(assignStatement.getAssignedId().getName()));
-                    commands.add("iadd");
-                    commands.add("istore " + slotOf(assignStatement.getAssignedId().getName()));
+                    code.op(Opcodes.INEG);
+                    code.var(Opcodes.ILOAD, slot);
+                    code.op(Opcodes.IADD);
+                    code.var(Opcodes.ISTORE, slot);
                 }
                 case AssignOperator.DIVIDE_ASSIGN -> {
-                    commands.add("iload " + slotOf(assignStatement.getAssignedId().getName()));
-                    commands.add("swap");
-                    commands.add("idiv");
-                    commands.add("istore " + slotOf(assignStatement.getAssignedId().getName()));
+                    code.var(Opcodes.ILOAD, slot);
+                    code.op(Opcodes.SWAP);
+                    code.op(Opcodes.IDIV);
+                    code.var(Opcodes.ISTORE, slot);
                 }
                 case AssignOperator.MULT_ASSIGN -> {
-                    commands.add("iload " + slotOf(assignStatement.getAssignedId().getName()));
-                    commands.add("imul");
-                    commands.add("istore " + slotOf(assignStatement.getAssignedId().getName()));
+                    code.var(Opcodes.ILOAD, slot);
+                    code.op(Opcodes.IMUL);
+                    code.var(Opcodes.ISTORE, slot);
                 }
                 case AssignOperator.MOD_ASSIGN -> {
-                    commands.add("iload " + slotOf(assignStatement.getAssignedId().getName()));
-                    commands.add("swap");
-                    commands.add("irem");
-                    commands.add("istore " + slotOf(assignStatement.getAssignedId().getName()));
+                    code.var(Opcodes.ILOAD, slot);
+                    code.op(Opcodes.SWAP);
+                    code.op(Opcodes.IREM);
+                    code.var(Opcodes.ISTORE, slot);
                 }
                 case null, default -> {
                 }
             }
         }
-        return String.join("\n", commands);
+        return null;
     }
     @Override
-    public String visit(IfStatement ifStatement){
-        //TODO
-        ArrayList<String> commands = new ArrayList<>();
-        for (Expression condition : ifStatement.getConditions()){
-            commands.add(condition.accept(this));
-        }
-        String thenLabel = getFreshLabel();
-        String elseLabel = getFreshLabel();
-        String exitLabel = getFreshLabel();
+    public Void visit(IfStatement ifStatement){
+        Label elseLabel = getFreshLabel();
+        Label exitLabel = getFreshLabel();
 
-        commands.add("ifeq" + " " + elseLabel);
-        commands.add(thenLabel + ":");
+        branchIfAnyFalse(ifStatement.getConditions(), elseLabel);
 
-        SymbolTable.push(SymbolTable.top.copy());
+        context.pushScope(context.getTop().makeChildScope());
         for (Statement statement : ifStatement.getThenBody())
-            commands.add(statement.accept(this));
-        SymbolTable.pop();
-        commands.add("goto " + exitLabel);
-        commands.add(elseLabel + ":");
+            statement.accept(this);
+        context.popScope();
         if (!ifStatement.getElseBody().isEmpty()) {
-            SymbolTable.push(SymbolTable.top.copy());
+            code.jump(Opcodes.GOTO, exitLabel);
+            code.label(elseLabel);
+            context.pushScope(context.getTop().makeChildScope());
             for (Statement statement : ifStatement.getElseBody())
-                commands.add(statement.accept(this));
-            SymbolTable.pop();
+                statement.accept(this);
+            context.popScope();
+            code.label(exitLabel);
         }
-
-        commands.add(exitLabel + ":");
-        return String.join("\n",commands);
+        else {
+            code.label(elseLabel);
+        }
+        return null;
     }
     @Override
-    public String visit(PutStatement putStatement){
-        List<String> commands = new ArrayList<>();
-
-        commands.add("getstatic java/lang/System/out Ljava/io/PrintStream;");
-        commands.add(putStatement.getExpression().accept(this));
-        Type type = putStatement.getExpression().accept(typeChecker);
+    public Void visit(PutStatement putStatement){
+        code.field(Opcodes.GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+        putStatement.getExpression().accept(this);
+        Type type = typeOf(putStatement.getExpression());
         if (type instanceof IntType || type instanceof BoolType)
-            commands.add("invokevirtual java/io/PrintStream/println(I)V");
+            code.invoke(Opcodes.INVOKEVIRTUAL, "java/io/PrintStream", "println", "(I)V");
         else if (type instanceof StringType)
-            commands.add("invokevirtual java/io/PrintStream/println(Ljava/lang/String;)V");
-        return String.join("\n", commands);
+            code.invoke(Opcodes.INVOKEVIRTUAL, "java/io/PrintStream", "println", "(Ljava/lang/String;)V");
+        return null;
     }
     @Override
-    public String visit(ReturnStatement returnStatement){
-        List<String> commands = new ArrayList<>();
-
+    public Void visit(ReturnStatement returnStatement){
         Expression returnExpr = returnStatement.getReturnExp();
         if(returnExpr == null) {
-            commands.add("return");
-            return String.join("\n",commands);
-
+            code.op(Opcodes.RETURN);
+            return null;
         }
-        Type type = returnExpr.accept(typeChecker);
+        if (tailCalls.contains(returnExpr)) {
+            tailCall((AccessExpression) returnExpr);
+            return null;
+        }
+        Type type = typeOf(returnExpr);
         if(type instanceof NoType) {
-            commands.add("return");
+            code.op(Opcodes.RETURN);
         }
         else {
-            commands.add(returnExpr.accept(this));
+            returnExpr.accept(this);
             if (type instanceof IntType || type instanceof BoolType)
-                commands.add("ireturn");
+                code.op(Opcodes.IRETURN);
             else
-                commands.add("areturn");
+                code.op(Opcodes.ARETURN);
         }
-
-        return String.join("\n",commands);
+        return null;
     }
     @Override
-    public String visit(ExpressionStatement expressionStatement){
-        return expressionStatement.getExpression().accept(this);
+    public Void visit(ExpressionStatement expressionStatement){
+        Expression expression = expressionStatement.getExpression();
+        if (tailCalls.contains(expression)) {
+            tailCall((AccessExpression) expression);
+            return null;
+        }
+        expression.accept(this);
+        // drop unused results so the stack is the same height on every path
+        if (leavesValue(expression))
+            code.op(Opcodes.POP);
+        return null;
+    }
+    private boolean leavesValue(Expression expression){
+        if (expression instanceof UnaryExpression unary && unary.getExpression() instanceof Identifier
+                && (unary.getOperator() == UnaryOperator.INC || unary.getOperator() == UnaryOperator.DEC))
+            return false;
+        return !getSignatureType(typeOf(expression)).equals("V");
     }
     @Override
-    public String visit(BinaryExpression binaryExpression){
-        ArrayList<String> commands = new ArrayList<>();
-        commands.add(binaryExpression.getFirstOperand().accept(this));
-        commands.add(binaryExpression.getSecondOperand().accept(this));
-        Type firstOperandType = binaryExpression.getFirstOperand().accept(typeChecker);
-
-        String enterLabel;
-        String exitLabel;
-        if (binaryExpression.getOperator() != BinaryOperator.PLUS && binaryExpression.getOperator() != BinaryOperator.MINUS
-                && binaryExpression.getOperator() != BinaryOperator.MULT && binaryExpression.getOperator() != BinaryOperator.DIVIDE )
-        {
-            enterLabel = getFreshLabel();
-            exitLabel = getFreshLabel();
-
-            switch (binaryExpression.getOperator()) {
-                case BinaryOperator.EQUAL -> {
-                    if (firstOperandType instanceof IntType || firstOperandType instanceof BoolType)
-                    {
-                        commands.add("if_icmpeq " + enterLabel);
-                    }
-                    else
-                    {
-                        commands.add("if_acmpeq " + enterLabel);
-                    }
+    public Void visit(BinaryExpression binaryExpression){
+        if (isComparison(binaryExpression.getOperator()) || isLogical(binaryExpression.getOperator())) {
+            Label enterLabel = getFreshLabel();
+            Label exitLabel = getFreshLabel();
+            branchIfTrue(binaryExpression, enterLabel);
+            code.constant(0);
+            code.jump(Opcodes.GOTO, exitLabel);
+            code.label(enterLabel);
+            code.constant(1);
+            code.label(exitLabel);
+            return null;
+        }
+        binaryExpression.getFirstOperand().accept(this);
+        binaryExpression.getSecondOperand().accept(this);
+        switch (binaryExpression.getOperator()) {
+            case BinaryOperator.PLUS -> code.op(Opcodes.IADD);
+            case BinaryOperator.MINUS -> code.op(Opcodes.ISUB);
+            case BinaryOperator.MULT -> code.op(Opcodes.IMUL);
+            case BinaryOperator.DIVIDE -> code.op(Opcodes.IDIV);
+            default -> {}
+        }
+        return null;
+    }
+    private boolean isComparison(BinaryOperator operator){
+        return switch (operator) {
+            case EQUAL, NOT_EQUAL, GREATER_THAN, LESS_THAN, GREATER_EQUAL_THAN, LESS_EQUAL_THAN -> true;
+            default -> false;
+        };
+    }
+    private boolean isLogical(BinaryOperator operator){
+        return operator == BinaryOperator.AND || operator == BinaryOperator.OR;
+    }
+    // the jump taken when the comparison holds, for operands already on the stack
+    private int comparisonJump(BinaryOperator operator, Type operandType){
+        boolean isInt = operandType instanceof IntType || operandType instanceof BoolType;
+        return switch (operator) {
+            case EQUAL -> isInt ? Opcodes.IF_ICMPEQ : Opcodes.IF_ACMPEQ;
+            case NOT_EQUAL -> isInt ? Opcodes.IF_ICMPNE : Opcodes.IF_ACMPNE;
+            case GREATER_THAN -> Opcodes.IF_ICMPGT;
+            case LESS_THAN -> Opcodes.IF_ICMPLT;
+            case GREATER_EQUAL_THAN -> Opcodes.IF_ICMPGE;
+            case LESS_EQUAL_THAN -> Opcodes.IF_ICMPLE;
+            default -> throw new IllegalArgumentException(operator + " is not a comparison");
+        };
+    }
+    // conditions are compiled straight into jumps instead of being turned into 0/1 and tested again
+    private void branch(Expression condition, boolean jumpIfTrue, Label target){
+        switch (condition) {
+            case BinaryExpression binary when isComparison(binary.getOperator()) -> {
+                binary.getFirstOperand().accept(this);
+                binary.getSecondOperand().accept(this);
+                int jump = comparisonJump(binary.getOperator(), typeOf(binary.getFirstOperand()));
+                code.jump(jumpIfTrue ? jump : Opcodes.negate(jump), target);
+            }
+            case BinaryExpression logical when isLogical(logical.getOperator()) -> {
+                // the right operand is only evaluated when the left one does not decide the result
+                boolean isAnd = logical.getOperator() == BinaryOperator.AND;
+                if (isAnd != jumpIfTrue) {
+                    branch(logical.getFirstOperand(), jumpIfTrue, target);
+                    branch(logical.getSecondOperand(), jumpIfTrue, target);
                 }
-                case BinaryOperator.NOT_EQUAL -> {
-                    if (firstOperandType instanceof IntType || firstOperandType instanceof BoolType)
-                    {
-                        commands.add("if_icmpne " + enterLabel);
-                    }
-                    else
-                    {
-                        commands.add("if_acmpne " + enterLabel);
-                    }
+                else {
+                    Label skipLabel = getFreshLabel();
+                    branch(logical.getFirstOperand(), !jumpIfTrue, skipLabel);
+                    branch(logical.getSecondOperand(), jumpIfTrue, target);
+                    code.label(skipLabel);
                 }
-                case BinaryOperator.GREATER_THAN -> commands.add("if_icmpgt " + enterLabel);
-                case BinaryOperator.LESS_THAN -> commands.add("if_icmplt " + enterLabel);
-                case BinaryOperator.GREATER_EQUAL_THAN -> commands.add("if_icmpge " + enterLabel);
-                case BinaryOperator.LESS_EQUAL_THAN -> commands.add("if_icmple " + enterLabel);
-                default -> {}
             }
-
-            commands.add("ldc 0");
-            commands.add("goto " + exitLabel);
-            commands.add(enterLabel + ":");
-            commands.add("ldc 1");
-            commands.add(exitLabel + ":");
-        }
-        else {
-            switch (binaryExpression.getOperator()) {
-                case BinaryOperator.PLUS -> commands.add("iadd");
-                case BinaryOperator.MINUS -> commands.add("isub");
-                case BinaryOperator.MULT -> commands.add("imul");
-                case BinaryOperator.DIVIDE -> commands.add("idiv");
-                default -> {}
+            case UnaryExpression unary when unary.getOperator() == UnaryOperator.NOT ->
+                    branch(unary.getExpression(), !jumpIfTrue, target);
+            case BoolValue bool -> {
+                if (bool.getBool() == jumpIfTrue)
+                    code.jump(Opcodes.GOTO, target);
+            }
+            default -> {
+                condition.accept(this);
+                code.jump(jumpIfTrue ? Opcodes.IFNE : Opcodes.IFEQ, target);
             }
         }
-        return String.join("\n", commands);
+    }
+    private void branchIfTrue(Expression condition, Label target){
+        branch(condition, true, target);
+    }
+    private void branchIfFalse(Expression condition, Label target){
+        branch(condition, false, target);
+    }
+    // a list of conditions (as in if, break if and next if) has to hold as a whole
+    private void branchIfAnyFalse(List<Expression> conditions, Label target){
+        for (Expression condition : conditions)
+            branchIfFalse(condition, target);
+    }
+    private void branchIfAllTrue(List<Expression> conditions, Label target){
+        if (conditions.isEmpty()) {
+            code.jump(Opcodes.GOTO, target);
+            return;
+        }
+        Label skipLabel = getFreshLabel();
+        for (int i = 0; i < conditions.size() - 1; i++)
+            branchIfFalse(conditions.get(i), skipLabel);
+        branchIfTrue(conditions.getLast(), target);
+        code.label(skipLabel);
     }
     @Override
-    public String visit(UnaryExpression unaryExpression){
-        List<String> commands = new ArrayList<>();
-        commands.add(unaryExpression.getExpression().accept(this));
+    public Void visit(UnaryExpression unaryExpression){
+        unaryExpression.getExpression().accept(this);
         switch (unaryExpression.getOperator()) {
             case MINUS -> {
-                commands.add("ineg");
+                code.op(Opcodes.INEG);
             }
             case NOT -> {
-                commands.add("ldc 1");
-                commands.add("ixor");
+                code.constant(1);
+                code.op(Opcodes.IXOR);
             }
             case INC -> {
-                commands.add("ldc 1");
-                commands.add("iadd");
+                code.constant(1);
+                code.op(Opcodes.IADD);
                 if (unaryExpression.getExpression() instanceof Identifier identifier)
-                    commands.add("istore " + slotOf(identifier.getName()));
+                    code.var(Opcodes.ISTORE, slotOf(identifier.getName()));
             }
             case DEC -> {
-                commands.add("ldc -1");
-                commands.add("iadd");
+                code.constant(-1);
+                code.op(Opcodes.IADD);
                 if (unaryExpression.getExpression() instanceof Identifier identifier)
-                    commands.add("istore " + slotOf(identifier.getName()));
+                    code.var(Opcodes.ISTORE, slotOf(identifier.getName()));
             }
         }
-        return String.join("\n", commands);
+        return null;
+    }
+    // a function pointer is a method handle constant, resolved once and then inlinable through invokeExact
+    private void loadFptr(String functionName){
+        FunctionItem functionItem = context.findFunction(functionName);
+        // a function that is never called has no method to point at
+        if (functionItem == null || !visited.contains(functionName)) {
+            code.op(Opcodes.ACONST_NULL);
+            return;
+        }
+        code.constant(new Handle(Handle.REF_INVOKE_STATIC, "Main", functionName, methodDescriptor(functionItem)));
     }
+    // a capturing lambda binds the values it captures to its function's handle through Closure.bind
+    private static final Handle CLOSURE_BOOTSTRAP = new Handle(Handle.REF_INVOKE_STATIC, "Closure", "bind",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;"
+                    + "Ljava/lang/invoke/MethodHandle;)Ljava/lang/invoke/CallSite;");
     @Override
-    public String visit(Identifier identifier){
-        String command = "aload";
-        Type type = identifier.accept(typeChecker);
-        if (type instanceof IntType || type instanceof BoolType)
-            command = "iload";
-
-        else if(type instanceof FptrType fptr){
-            String commands = "";
-            commands += "new Fptr\n";
-            commands += "dup\n";
-            commands += "aload_0\n";
-            commands += "ldc " + "\"" + fptr.getFunctionName() + "\"\n";
-            commands += "invokespecial Fptr/<init>(Ljava/lang/Object;Ljava/lang/String;)V\n";
-            return commands;
+    public Void visit(LambdaExpression lambdaExpression){
+        String functionName = lambdaExpression.getFunctionName().getName();
+        FunctionItem functionItem = context.findFunction(functionName);
+        if (functionItem == null || !visited.contains(functionName)) {
+            code.op(Opcodes.ACONST_NULL);
+            return null;
         }
-
-        return command + " " + slotOf(identifier.getName());
+        String captured = "(";
+        for (Expression capture : lambdaExpression.getCaptures()) {
+            capture.accept(this);
+            captured += getSignatureType(typeOf(capture));
+        }
+        code.invokeDynamic("bind", captured + ")Ljava/lang/invoke/MethodHandle;", CLOSURE_BOOTSTRAP,
+                List.of(new Handle(Handle.REF_INVOKE_STATIC, "Main", functionName, methodDescriptor(functionItem))));
+        return null;
+    }
+    private String methodDescriptor(FunctionItem functionItem){
+        String descriptor = "(";
+        for (Type argumentType : functionItem.getArgumentTypes())
+            descriptor += getSignatureType(argumentType);
+        return descriptor + ")" + getSignatureType(functionItem.getReturnType());
+    }
+    @Override
+    public Void visit(Identifier identifier){
+        int opcode = Opcodes.ALOAD;
+        Type type = typeOf(identifier);
+        if (type instanceof IntType || type instanceof BoolType)
+            opcode = Opcodes.ILOAD;
+        code.var(opcode, slotOf(identifier.getName()));
+        return null;
     }
     @Override
-    public String visit(LoopDoStatement loopDoStatement){
-        List<String> commands = new ArrayList<String>();
-        String startLabel =  getFreshLabel();
-        String endLabel =  getFreshLabel();
+    public Void visit(LoopDoStatement loopDoStatement){
+        Label startLabel =  getFreshLabel();
+        Label endLabel =  getFreshLabel();
         endPoints.add(endLabel);
         startPoints.add(startLabel);
-        commands.add(startLabel + ":");
-        SymbolTable.push(SymbolTable.top.copy());
+        code.label(startLabel);
+        context.pushScope(context.getTop().makeChildScope());
         for (Statement statement : loopDoStatement.getLoopBodyStmts()){
-            commands.add(statement.accept(this));
+            statement.accept(this);
         }
-        SymbolTable.pop();
-        commands.add("goto " + startLabel);
-        commands.add(endLabel + ":");
+        context.popScope();
+        code.jump(Opcodes.GOTO, startLabel);
+        code.label(endLabel);
         endPoints.removeLast();
         startPoints.removeLast();
-        return String.join("\n", commands);
+        return null;
     }
     @Override
-    public String visit(BreakStatement breakStatement){
-        List<String> commands = new ArrayList<String>();
-        commands.add("goto " + endPoints.getLast());
-        return String.join("\n", commands);
+    public Void visit(ForStatement forStatement){
+        Label startLabel = getFreshLabel();
+        Label nextLabel = getFreshLabel();
+        Label endLabel = getFreshLabel();
+        RangeExpression range = forStatement.getRangeExpression();
+        Type iteratorType = typeOf(range);
+        String loop = "for$" + curLoop++;
+        context.pushScope(context.getTop().makeChildScope());
+        context.defineVar(forStatement.getIteratorId(), iteratorType);
+        int iterator = slotOf(forStatement.getIteratorId().getName());
+        // the counter has a hidden slot of its own, so writes to the iterator in the body or in a nested loop
+        // over the same name do not change the iteration
+        int index = slotOf(loop + "$index");
+        int bound = slotOf(loop + "$bound");
+        if (range.getRangeType() == RangeType.DOUBLE_DOT) {
+            // both ends are inclusive and the upper one is read once
+            range.getRangeExpressions().getFirst().accept(this);
+            code.var(Opcodes.ISTORE, index);
+            range.getRangeExpressions().getLast().accept(this);
+            code.var(Opcodes.ISTORE, bound);
+            code.var(Opcodes.ILOAD, index);
+            code.var(Opcodes.ILOAD, bound);
+            code.jump(Opcodes.IF_ICMPGT, endLabel);
+            code.label(startLabel);
+            code.var(Opcodes.ILOAD, index);
+            code.var(Opcodes.ISTORE, iterator);
+        }
+        else {
+            // a literal range is built once as a list, then both walk it by index with the size read once
+            Expression list = range.getRangeExpressions().getFirst();
+            if (range.getRangeType() == RangeType.LIST) {
+                list = new ListValue(range.getRangeExpressions());
+                typeChecker.expressionTypes.put(list, new ListType(iteratorType));
+            }
+            ListType listType = (ListType) typeOf(list);
+            int listSlot = slotOf(loop + "$list");
+            list.accept(this);
+            code.op(Opcodes.DUP);
+            code.var(Opcodes.ASTORE, listSlot);
+            code.invoke(Opcodes.INVOKEVIRTUAL, listClass(listType), "size", "()I");
+            code.var(Opcodes.ISTORE, bound);
+            code.constant(0);
+            code.var(Opcodes.ISTORE, index);
+            code.var(Opcodes.ILOAD, bound);
+            code.jump(Opcodes.IFLE, endLabel);
+            code.label(startLabel);
+            code.var(Opcodes.ALOAD, listSlot);
+            code.var(Opcodes.ILOAD, index);
+            code.invoke(Opcodes.INVOKEVIRTUAL, listClass(listType), "get", "(I)" + elementDescriptor(listType));
+            if (isBoxedList(listType))
+                code.type(Opcodes.CHECKCAST, getClass(iteratorType));
+            code.var(iteratorType instanceof IntType || iteratorType instanceof BoolType ? Opcodes.ISTORE : Opcodes.ASTORE,
+                    iterator);
+        }
+        endPoints.add(endLabel);
+        startPoints.add(nextLabel);
+        for (Statement statement : forStatement.getLoopBodyStmts()){
+            statement.accept(this);
+        }
+        endPoints.removeLast();
+        startPoints.removeLast();
+        context.popScope();
+        code.label(nextLabel);
+        if (range.getRangeType() == RangeType.DOUBLE_DOT) {
+            // the exit test sits before the increment, so an upper bound of the largest int does not wrap around
+            code.var(Opcodes.ILOAD, index);
+            code.var(Opcodes.ILOAD, bound);
+            code.jump(Opcodes.IF_ICMPGE, endLabel);
+            code.iinc(index, 1);
+            code.jump(Opcodes.GOTO, startLabel);
+        }
+        else {
+            code.iinc(index, 1);
+            code.var(Opcodes.ILOAD, index);
+            code.var(Opcodes.ILOAD, bound);
+            code.jump(Opcodes.IF_ICMPLT, startLabel);
+        }
+        code.label(endLabel);
+        return null;
+    }
+    @Override
+    public Void visit(BreakStatement breakStatement){
+        branchIfAllTrue(breakStatement.getConditions(), endPoints.getLast());
+        return null;
     }
     @Override
-    public String visit(NextStatement nextStatement){
-        List<String> commands = new ArrayList<String>();
-        commands.add("goto " + startPoints.getLast());
-        return String.join("\n", commands);
+    public Void visit(NextStatement nextStatement){
+        branchIfAllTrue(nextStatement.getConditions(), startPoints.getLast());
+        return null;
     }
     @Override
-    public String visit(LenStatement lenStatement){
-        List<String> commands = new ArrayList<>();
-        commands.add(lenStatement.getExpression().accept(this));
-        if(lenStatement.getExpression().accept(typeChecker) instanceof ListType){
-            commands.add("invokevirtual java/util/ArrayList/size()I");
+    public Void visit(LenStatement lenStatement){
+        lenStatement.getExpression().accept(this);
+        if(typeOf(lenStatement.getExpression()) instanceof ListType listType){
+            code.invoke(Opcodes.INVOKEVIRTUAL, listClass(listType), "size", "()I");
         }
         else{
-            commands.add("invokevirtual java/lang/String/length()I");
+            code.invoke(Opcodes.INVOKEVIRTUAL, "java/lang/String", "length", "()I");
         }
-        return String.join("\n", commands);
+        return null;
     }
     @Override
-    public String visit(ChopStatement chopStatement){
-        List<String> commands = new ArrayList<>();
-        commands.add(chopStatement.getChopExpression().accept(this));
-        commands.add("dup");
-        commands.add("invokevirtual java/lang/String/length()I");
-        commands.add("ldc -1");
-        commands.add("iadd");
-        commands.add("ldc 0");
-        commands.add("swap");
-        commands.add("invokevirtual java/lang/String/substring(II)Ljava/lang/String;");
-        return String.join("\n", commands);
+    public Void visit(ChopStatement chopStatement){
+        chopStatement.getChopExpression().accept(this);
+        code.op(Opcodes.DUP);
+        code.invoke(Opcodes.INVOKEVIRTUAL, "java/lang/String", "length", "()I");
+        code.constant(-1);
+        code.op(Opcodes.IADD);
+        code.constant(0);
+        code.op(Opcodes.SWAP);
+        code.invoke(Opcodes.INVOKEVIRTUAL, "java/lang/String", "substring", "(II)Ljava/lang/String;");
+        return null;
     }
     @Override
-    public String visit(FunctionPointer functionPointer){
-        FptrType fptr = (FptrType) functionPointer.accept(typeChecker);
-        String commands = "";
-        commands += "new Fptr\n";
-        commands += "dup\n";
-        commands += "aload_0\n";
-        commands += "ldc " + "\"" + fptr.getFunctionName() + "\"\n";
-        commands += "invokespecial Fptr/<init>(Ljava/lang/Object;Ljava/lang/String;)V\n";
-        return commands;
+    public Void visit(FunctionPointer functionPointer){
+        FptrType fptr = (FptrType) typeOf(functionPointer);
+        loadFptr(fptr.getFunctionName());
+        return null;
     }
 
     @Override
-    public String visit(ListValue listValue){
-        List<String> commands = new ArrayList<>();
-        commands.add("new java/util/ArrayList");
-        commands.add("dup");
-        commands.add("invokespecial java/util/ArrayList/<init>()V");
-        commands.add("astore " + slotOf("_array_"));
+    public Void visit(ListValue listValue){
+        ListType listType = typeOf(listValue) instanceof ListType type ? type : new ListType(null);
+        code.type(Opcodes.NEW, listClass(listType));
+        code.op(Opcodes.DUP);
+        code.invoke(Opcodes.INVOKESPECIAL, listClass(listType), "<init>", "()V");
         for (Expression expression : listValue.getElements()){
-            commands.add("aload " + slotOf("_array_"));
-            commands.add(expression.accept(this));
-            Type type = expression.accept(typeChecker);
-            if (type instanceof IntType)
-                commands.add("invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;");
-            else if (type instanceof BoolType){
-                commands.add("invokestatic java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;");
+            code.op(Opcodes.DUP);
+            expression.accept(this);
+            if (!isBoxedList(listType)) {
+                code.invoke(Opcodes.INVOKEVIRTUAL, listClass(listType), "add", "(" + elementDescriptor(listType) + ")V");
+                continue;
             }
-            commands.add("invokevirtual java/util/ArrayList/add(Ljava/lang/Object;)Z");
-            commands.add("pop");
+            box(typeOf(expression));
+            code.invoke(Opcodes.INVOKEVIRTUAL, "java/util/ArrayList", "add", "(Ljava/lang/Object;)Z");
+            code.op(Opcodes.POP);
         }
-        commands.add("aload " + slotOf("_array_"));
-
-        return String.join("\n", commands);
+        return null;
     }
     @Override
-    public String visit(IntValue intValue){
-        List<String> commands = new ArrayList<>();
-        commands.add("ldc " + intValue.getIntVal());
-        return String.join("\n", commands);
+    public Void visit(IntValue intValue){
+        code.constant(intValue.getIntVal());
+        return null;
     }
     @Override
-    public String visit(BoolValue boolValue){
-        List<String> commands = new ArrayList<>();
-        commands.add("ldc " + (boolValue.getBool() ? 1 : 0));
-        return String.join("\n", commands);
+    public Void visit(BoolValue boolValue){
+        code.constant(boolValue.getBool() ? 1 : 0);
+        return null;
     }
     @Override
-    public String visit(StringValue stringValue){
-        String commands = "";
-        commands += ("ldc " + stringValue.getStr());
-        return commands;
+    public Void visit(StringValue stringValue){
+        String str = stringValue.getStr();
+        code.constant(JasminAssembler.unescape(str.substring(1, str.length() - 1)));
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,446 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Node;
+import main.ast.nodes.Program;
+import main.ast.nodes.declaration.FunctionDeclaration;
+import main.ast.nodes.declaration.VarDeclaration;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.operators.UnaryOperator;
+import main.ast.nodes.expression.value.FunctionPointer;
+import main.ast.nodes.expression.value.ListValue;
+import main.ast.nodes.expression.value.Value;
+import main.ast.nodes.expression.value.primitive.BoolValue;
+import main.ast.nodes.expression.value.primitive.FloatValue;
+import main.ast.nodes.expression.value.primitive.IntValue;
+import main.ast.nodes.expression.value.primitive.StringValue;
+import main.ast.nodes.statement.*;
+import main.bytecode.JasminAssembler;
+import main.visitor.Visitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// folds literal subexpressions and propagates variables known to hold a literal, between type checking and code generation;
+// expression visits return the node that replaces the visited one
+public class ConstantFolder extends Visitor<Expression> {
+    // the literal each variable holds at the current point of the function being folded
+    private Map<String, Value> constants = new HashMap<>();
+
+    @Override
+    public Expression visit(Program program){
+        for (FunctionDeclaration functionDeclaration : program.getFunctionDeclarations()) {
+            constants = new HashMap<>();
+            for (VarDeclaration arg : functionDeclaration.getArgs())
+                if (arg.getDefaultVal() != null)
+                    arg.setDefaultVal(fold(arg.getDefaultVal()));
+            functionDeclaration.setBody(foldBody(functionDeclaration.getBody()));
+        }
+        constants = new HashMap<>();
+        program.getMain().setBody(foldBody(program.getMain().getBody()));
+        return null;
+    }
+
+    private Expression fold(Expression expression){
+        return expression == null ? null : expression.accept(this);
+    }
+
+    private ArrayList<Statement> foldBody(List<Statement> body){
+        ArrayList<Statement> folded = new ArrayList<>();
+        for (Statement statement : body)
+            folded.addAll(foldStatement(statement));
+        return folded;
+    }
+
+    // a statement can fold away entirely, or into the body of the branch that is always taken
+    private List<Statement> foldStatement(Statement statement){
+        switch (statement) {
+            case AssignStatement assign -> foldAssign(assign);
+            case IfStatement ifStatement -> {
+                return foldIf(ifStatement);
+            }
+            case LoopDoStatement loop -> {
+                Map<String, Value> before = enterLoop(loop.getLoopBodyStmts(), null);
+                loop.setLoopBodyStmts(foldBody(loop.getLoopBodyStmts()));
+                constants = before;
+            }
+            case ForStatement forStatement -> {
+                RangeExpression range = forStatement.getRangeExpression();
+                range.setRangeExpressions(foldAll(range.getRangeExpressions()));
+                Map<String, Value> before = enterLoop(forStatement.getLoopBodyStmts(), forStatement.getIteratorId().getName());
+                forStatement.setLoopBodyStmts(foldBody(forStatement.getLoopBodyStmts()));
+                constants = before;
+            }
+            case BreakStatement breakStatement -> {
+                ArrayList<Expression> conditions = foldConditions(breakStatement.getConditions());
+                if (conditions == null)
+                    return List.of();
+                breakStatement.setConditions(conditions);
+            }
+            case NextStatement nextStatement -> {
+                ArrayList<Expression> conditions = foldConditions(nextStatement.getConditions());
+                if (conditions == null)
+                    return List.of();
+                nextStatement.setConditions(conditions);
+            }
+            case ReturnStatement returnStatement -> {
+                if (returnStatement.getReturnExp() != null)
+                    returnStatement.setReturnExp(fold(returnStatement.getReturnExp()));
+            }
+            case PutStatement putStatement -> putStatement.setExpression(fold(putStatement.getExpression()));
+            case ExpressionStatement expressionStatement -> expressionStatement.setExpression(fold(expressionStatement.getExpression()));
+            case PushStatement pushStatement -> {
+                // a pushed to variable is written, so it has to stay a variable and is unknown from here on
+                if (!(pushStatement.getInitial() instanceof Identifier))
+                    pushStatement.setInitial(fold(pushStatement.getInitial()));
+                pushStatement.setToBeAdded(fold(pushStatement.getToBeAdded()));
+                if (pushStatement.getInitial() instanceof Identifier identifier)
+                    constants.remove(identifier.getName());
+            }
+            default -> {}
+        }
+        return List.of(statement);
+    }
+
+    private void foldAssign(AssignStatement assign){
+        if (assign.isAccessList()) {
+            assign.setAccessListExpression(fold(assign.getAccessListExpression()));
+            assign.setAssignExpression(fold(assign.getAssignExpression()));
+            return;
+        }
+        Expression value = fold(assign.getAssignExpression());
+        assign.setAssignExpression(value);
+        String name = assign.getAssignedId().getName();
+        Value known = null;
+        if (assign.getAssignOperator() == AssignOperator.ASSIGN) {
+            if (isLiteral(value))
+                known = (Value) value;
+        }
+        else if (constants.get(name) instanceof IntValue current && value instanceof IntValue operand) {
+            // x op= literal on a known x is just an assignment of the result
+            known = switch (assign.getAssignOperator()) {
+                case PLUS_ASSIGN -> intValue(current.getIntVal() + operand.getIntVal(), value);
+                case MINUS_ASSIGN -> intValue(current.getIntVal() - operand.getIntVal(), value);
+                case MULT_ASSIGN -> intValue(current.getIntVal() * operand.getIntVal(), value);
+                case DIVIDE_ASSIGN -> operand.getIntVal() == 0 ? null : intValue(current.getIntVal() / operand.getIntVal(), value);
+                case MOD_ASSIGN -> operand.getIntVal() == 0 ? null : intValue(current.getIntVal() % operand.getIntVal(), value);
+                default -> null;
+            };
+            if (known != null) {
+                assign.setAssignOperator(AssignOperator.ASSIGN);
+                assign.setAssignExpression(known);
+            }
+        }
+        if (known != null)
+            constants.put(name, known);
+        else
+            constants.remove(name);
+    }
+
+    private List<Statement> foldIf(IfStatement ifStatement){
+        ArrayList<Expression> conditions = foldConditions(ifStatement.getConditions());
+        if (conditions == null)
+            return foldBody(ifStatement.getElseBody());
+        if (conditions.isEmpty())
+            return foldBody(ifStatement.getThenBody());
+        ifStatement.getConditions().clear();
+        ifStatement.getConditions().addAll(conditions);
+
+        Map<String, Value> before = constants;
+        constants = new HashMap<>(before);
+        ifStatement.setThenBody(foldBody(ifStatement.getThenBody()));
+        Map<String, Value> afterThen = constants;
+        constants = new HashMap<>(before);
+        ifStatement.setElseBody(foldBody(ifStatement.getElseBody()));
+        // only what both branches agree on survives the join
+        constants.entrySet().removeIf(entry -> !sameLiteral(entry.getValue(), afterThen.get(entry.getKey())));
+        return List.of(ifStatement);
+    }
+
+    // drops conditions that always hold; null when one that is evaluated first never holds
+    private ArrayList<Expression> foldConditions(List<Expression> conditions){
+        ArrayList<Expression> kept = new ArrayList<>();
+        for (Expression condition : conditions) {
+            Expression folded = fold(condition);
+            if (folded instanceof BoolValue bool) {
+                if (bool.getBool())
+                    continue;
+                if (kept.isEmpty())
+                    return null;
+            }
+            kept.add(folded);
+        }
+        return kept;
+    }
+
+    // anything the body writes is unknown on the back edge, so it is unknown from the top of the loop on
+    private Map<String, Value> enterLoop(List<Statement> body, String iterator){
+        Set<String> written = new HashSet<>();
+        for (Statement statement : body)
+            collectWritten(statement, written);
+        if (iterator != null)
+            written.add(iterator);
+        constants.keySet().removeAll(written);
+        return new HashMap<>(constants);
+    }
+
+    static void collectWritten(Node node, Set<String> written){
+        walk(node, visited -> {
+            switch (visited) {
+                case AssignStatement assign when !assign.isAccessList() -> written.add(assign.getAssignedId().getName());
+                case UnaryExpression unary when (unary.getOperator() == UnaryOperator.INC || unary.getOperator() == UnaryOperator.DEC)
+                        && unary.getExpression() instanceof Identifier identifier -> written.add(identifier.getName());
+                case PushStatement push when push.getInitial() instanceof Identifier identifier -> written.add(identifier.getName());
+                case ForStatement forStatement -> written.add(forStatement.getIteratorId().getName());
+                default -> {}
+            }
+        });
+    }
+
+    // runs the action on the node and everything evaluated under it; lambda bodies are not part of the enclosing code
+    static void walk(Node node, Consumer<Node> action){
+        if (node == null)
+            return;
+        action.accept(node);
+        switch (node) {
+            case AssignStatement assign -> {
+                walk(assign.getAccessListExpression(), action);
+                walk(assign.getAssignExpression(), action);
+            }
+            case UnaryExpression unary -> walk(unary.getExpression(), action);
+            case PushStatement push -> {
+                walk(push.getInitial(), action);
+                walk(push.getToBeAdded(), action);
+            }
+            case IfStatement ifStatement -> {
+                ifStatement.getConditions().forEach(condition -> walk(condition, action));
+                ifStatement.getThenBody().forEach(statement -> walk(statement, action));
+                ifStatement.getElseBody().forEach(statement -> walk(statement, action));
+            }
+            case LoopDoStatement loop -> loop.getLoopBodyStmts().forEach(statement -> walk(statement, action));
+            case ForStatement forStatement -> {
+                walk(forStatement.getRangeExpression(), action);
+                forStatement.getLoopBodyStmts().forEach(statement -> walk(statement, action));
+            }
+            case BreakStatement breakStatement -> breakStatement.getConditions().forEach(condition -> walk(condition, action));
+            case NextStatement nextStatement -> nextStatement.getConditions().forEach(condition -> walk(condition, action));
+            case ReturnStatement returnStatement -> walk(returnStatement.getReturnExp(), action);
+            case PutStatement putStatement -> walk(putStatement.getExpression(), action);
+            case ExpressionStatement expressionStatement -> walk(expressionStatement.getExpression(), action);
+            case BinaryExpression binary -> {
+                walk(binary.getFirstOperand(), action);
+                walk(binary.getSecondOperand(), action);
+            }
+            case AccessExpression access -> {
+                walk(access.getAccessedExpression(), action);
+                access.getArguments().forEach(argument -> walk(argument, action));
+                access.getDimentionalAccess().forEach(index -> walk(index, action));
+            }
+            case ListValue list -> list.getElements().forEach(element -> walk(element, action));
+            case AppendExpression append -> {
+                walk(append.getAppendee(), action);
+                append.getAppendeds().forEach(appended -> walk(appended, action));
+            }
+            case RangeExpression range -> range.getRangeExpressions().forEach(bound -> walk(bound, action));
+            case LenStatement len -> walk(len.getExpression(), action);
+            case ChopStatement chop -> walk(chop.getChopExpression(), action);
+            case ChompStatement chomp -> walk(chomp.getChompExpression(), action);
+            case MatchPatternStatement match -> walk(match.getMatchArgument(), action);
+            case LambdaExpression lambda -> lambda.getCaptures().forEach(capture -> walk(capture, action));
+            default -> {}
+        }
+    }
+
+    @Override
+    public Expression visit(Identifier identifier){
+        Value known = constants.get(identifier.getName());
+        if (known == null)
+            return identifier;
+        return copy(known, identifier);
+    }
+    @Override
+    public Expression visit(BinaryExpression binaryExpression){
+        BinaryOperator operator = binaryExpression.getOperator();
+        Expression left = fold(binaryExpression.getFirstOperand());
+        // the right side of && and || only runs when the left does not decide, so only a literal left can drop it
+        if ((operator == BinaryOperator.AND || operator == BinaryOperator.OR) && left instanceof BoolValue bool)
+            return bool.getBool() == (operator == BinaryOperator.AND) ? fold(binaryExpression.getSecondOperand()) : left;
+        Expression right = fold(binaryExpression.getSecondOperand());
+        binaryExpression.setFirstOperand(left);
+        binaryExpression.setSecondOperand(right);
+
+        if (left instanceof IntValue a && right instanceof IntValue b) {
+            int x = a.getIntVal(), y = b.getIntVal();
+            return switch (operator) {
+                case PLUS -> intValue(x + y, binaryExpression);
+                case MINUS -> intValue(x - y, binaryExpression);
+                case MULT -> intValue(x * y, binaryExpression);
+                // division by zero has to fail at run time
+                case DIVIDE -> y == 0 ? binaryExpression : intValue(x / y, binaryExpression);
+                case EQUAL -> boolValue(x == y, binaryExpression);
+                case NOT_EQUAL -> boolValue(x != y, binaryExpression);
+                case GREATER_THAN -> boolValue(x > y, binaryExpression);
+                case LESS_THAN -> boolValue(x < y, binaryExpression);
+                case GREATER_EQUAL_THAN -> boolValue(x >= y, binaryExpression);
+                case LESS_EQUAL_THAN -> boolValue(x <= y, binaryExpression);
+                default -> binaryExpression;
+            };
+        }
+        if (left instanceof BoolValue a && right instanceof BoolValue b) {
+            return switch (operator) {
+                case EQUAL -> boolValue(a.getBool() == b.getBool(), binaryExpression);
+                case NOT_EQUAL -> boolValue(a.getBool() != b.getBool(), binaryExpression);
+                default -> binaryExpression;
+            };
+        }
+        return binaryExpression;
+    }
+    @Override
+    public Expression visit(UnaryExpression unaryExpression){
+        UnaryOperator operator = unaryExpression.getOperator();
+        if (operator == UnaryOperator.INC || operator == UnaryOperator.DEC) {
+            // the operand is written back, so it has to stay a variable
+            if (unaryExpression.getExpression() instanceof Identifier identifier)
+                constants.remove(identifier.getName());
+            else
+                unaryExpression.setExpression(fold(unaryExpression.getExpression()));
+            return unaryExpression;
+        }
+        Expression operand = fold(unaryExpression.getExpression());
+        unaryExpression.setExpression(operand);
+        if (operator == UnaryOperator.MINUS && operand instanceof IntValue intValue)
+            return intValue(-intValue.getIntVal(), unaryExpression);
+        if (operator == UnaryOperator.NOT && operand instanceof BoolValue bool)
+            return boolValue(!bool.getBool(), unaryExpression);
+        return unaryExpression;
+    }
+    @Override
+    public Expression visit(AccessExpression accessExpression){
+        // a called name is a function, not a variable
+        if (!accessExpression.isFunctionCall())
+            accessExpression.setAccessedExpression(fold(accessExpression.getAccessedExpression()));
+        accessExpression.setArguments(foldAll(accessExpression.getArguments()));
+        accessExpression.setDimentionalAccess(foldAll(accessExpression.getDimentionalAccess()));
+        return accessExpression;
+    }
+    @Override
+    public Expression visit(LenStatement lenStatement){
+        Expression operand = fold(lenStatement.getExpression());
+        lenStatement.setExpression(operand);
+        if (operand instanceof StringValue string)
+            return intValue(unquote(string).length(), lenStatement);
+        return lenStatement;
+    }
+    @Override
+    public Expression visit(ChopStatement chopStatement){
+        chopStatement.setChopExpression(fold(chopStatement.getChopExpression()));
+        return chopStatement;
+    }
+    @Override
+    public Expression visit(ChompStatement chompStatement){
+        chompStatement.setChompExpression(fold(chompStatement.getChompExpression()));
+        return chompStatement;
+    }
+    @Override
+    public Expression visit(AppendExpression appendExpression){
+        appendExpression.setAppendee(fold(appendExpression.getAppendee()));
+        appendExpression.setAppendeds(foldAll(appendExpression.getAppendeds()));
+        return appendExpression;
+    }
+    @Override
+    public Expression visit(MatchPatternStatement matchPatternStatement){
+        matchPatternStatement.setMatchArgument(fold(matchPatternStatement.getMatchArgument()));
+        return matchPatternStatement;
+    }
+    @Override
+    public Expression visit(RangeExpression rangeExpression){
+        rangeExpression.setRangeExpressions(foldAll(rangeExpression.getRangeExpressions()));
+        return rangeExpression;
+    }
+    @Override
+    public Expression visit(ListValue listValue){
+        listValue.setElements(foldAll(listValue.getElements()));
+        return listValue;
+    }
+    @Override
+    public Expression visit(LambdaExpression lambdaExpression){
+        lambdaExpression.setCaptures(foldAll(lambdaExpression.getCaptures()));
+        return lambdaExpression;
+    }
+    @Override
+    public Expression visit(FunctionPointer functionPointer){
+        return functionPointer;
+    }
+    @Override
+    public Expression visit(BoolValue boolValue){
+        return boolValue;
+    }
+    @Override
+    public Expression visit(IntValue intValue){
+        return intValue;
+    }
+    @Override
+    public Expression visit(StringValue stringValue){
+        return stringValue;
+    }
+    @Override
+    public Expression visit(FloatValue floatValue){
+        return floatValue;
+    }
+
+    private ArrayList<Expression> foldAll(List<Expression> expressions){
+        ArrayList<Expression> folded = new ArrayList<>();
+        for (Expression expression : expressions)
+            folded.add(fold(expression));
+        return folded;
+    }
+
+    private static boolean isLiteral(Expression expression){
+        return expression instanceof IntValue || expression instanceof BoolValue || expression instanceof StringValue;
+    }
+
+    private static boolean sameLiteral(Value a, Value b){
+        return switch (a) {
+            case IntValue x when b instanceof IntValue y -> x.getIntVal() == y.getIntVal();
+            case BoolValue x when b instanceof BoolValue y -> x.getBool().equals(y.getBool());
+            case StringValue x when b instanceof StringValue y -> x.getStr().equals(y.getStr());
+            case null, default -> false;
+        };
+    }
+
+    // every use gets its own node, since later passes key their tables by node identity
+    private static Value copy(Value value, Node at){
+        return switch (value) {
+            case IntValue intValue -> intValue(intValue.getIntVal(), at);
+            case BoolValue boolValue -> boolValue(boolValue.getBool(), at);
+            case StringValue stringValue -> {
+                StringValue string = new StringValue(stringValue.getStr());
+                string.setLine(at.getLine());
+                yield string;
+            }
+            default -> value;
+        };
+    }
+
+    private static IntValue intValue(int value, Node at){
+        IntValue intValue = new IntValue(value);
+        intValue.setLine(at.getLine());
+        return intValue;
+    }
+
+    private static BoolValue boolValue(boolean value, Node at){
+        BoolValue boolValue = new BoolValue(value);
+        boolValue.setLine(at.getLine());
+        return boolValue;
+    }
+
+    private static String unquote(StringValue string){
+        String text = string.getStr();
+        return JasminAssembler.unescape(text.substring(1, text.length() - 1));
+    }
+}
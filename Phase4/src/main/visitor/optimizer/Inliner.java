@@ -0,0 +1,462 @@
+package main.visitor.optimizer;
+
+import main.CompilationContext;
+import main.ast.nodes.Program;
+import main.ast.nodes.declaration.FunctionDeclaration;
+import main.ast.nodes.declaration.VarDeclaration;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.operators.UnaryOperator;
+import main.ast.nodes.expression.value.FunctionPointer;
+import main.ast.nodes.expression.value.ListValue;
+import main.ast.nodes.expression.value.primitive.BoolValue;
+import main.ast.nodes.expression.value.primitive.FloatValue;
+import main.ast.nodes.expression.value.primitive.IntValue;
+import main.ast.nodes.expression.value.primitive.StringValue;
+import main.ast.nodes.statement.*;
+import main.ast.type.FptrType;
+import main.ast.type.NoType;
+import main.ast.type.Type;
+import main.symbolTable.item.FunctionItem;
+import main.visitor.Visitor;
+import main.visitor.type.TypeChecker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// copies the bodies of small functions into their call sites, between type checking and constant folding;
+// expression visits return the node that replaces the visited one
+public class Inliner extends Visitor<Expression> {
+    // most nodes a function body may have and still be copied into its callers
+    public static final int DEFAULT_BUDGET = 16;
+
+    private final CompilationContext context;
+    private final Set<String> visited;
+    // copies are typed like the nodes they are copied from, so the code generator never types them again
+    private final Map<Expression, Type> expressionTypes;
+    private final int budget;
+    // whether each function that has been looked at can be inlined, its own calls are inlined first
+    private final Map<String, Boolean> inlinable = new HashMap<>();
+    private final Set<String> inProgress = new HashSet<>();
+    private final StringBuilder report = new StringBuilder();
+    private String caller = "main";
+    // statements the call sites of the current statement need run right before it
+    private List<Statement> hoisted = new ArrayList<>();
+    private int copies = 0;
+
+    public Inliner(CompilationContext context, TypeChecker typeChecker){
+        this(context, typeChecker, DEFAULT_BUDGET);
+    }
+    public Inliner(CompilationContext context, TypeChecker typeChecker, int budget){
+        this.context = context;
+        this.visited = typeChecker.visited;
+        this.expressionTypes = typeChecker.expressionTypes;
+        this.budget = budget;
+    }
+
+    public String getReport(){
+        return report.toString();
+    }
+
+    @Override
+    public Expression visit(Program program){
+        for (FunctionDeclaration functionDeclaration : program.getFunctionDeclarations())
+            if (visited.contains(functionDeclaration.getFunctionName().getName()))
+                prepare(functionDeclaration.getFunctionName().getName());
+        caller = "main";
+        program.getMain().setBody(inlineBody(program.getMain().getBody()));
+        return null;
+    }
+
+    // callees are prepared before their callers, so helper chains collapse bottom up;
+    // a call back into a function still being prepared is recursion and stays a call
+    private boolean prepare(String name){
+        if (inlinable.containsKey(name))
+            return inlinable.get(name);
+        if (!inProgress.add(name))
+            return false;
+        FunctionItem functionItem = context.findFunction(name);
+        String outerCaller = caller;
+        caller = name;
+        functionItem.getFunctionDeclaration().setBody(inlineBody(functionItem.getFunctionDeclaration().getBody()));
+        caller = outerCaller;
+        inProgress.remove(name);
+        inlinable.put(name, fitsInline(functionItem));
+        return inlinable.get(name);
+    }
+
+    // only straight line bodies of local assignments ending in a return, with nothing but the result observable
+    private boolean fitsInline(FunctionItem functionItem){
+        Type returnType = functionItem.getReturnType();
+        List<Statement> body = functionItem.getFunctionDeclaration().getBody();
+        if (returnType == null || returnType instanceof NoType || body.isEmpty()
+                || !(body.getLast() instanceof ReturnStatement last) || last.getReturnExp() == null)
+            return false;
+        if (!isPure(last.getReturnExp()))
+            return false;
+        int size = 1 + size(last.getReturnExp());
+        for (Statement statement : body.subList(0, body.size() - 1)) {
+            if (!(statement instanceof AssignStatement assign) || assign.isAccessList() || !isPure(assign.getAssignExpression()))
+                return false;
+            size += 1 + size(assign.getAssignExpression());
+        }
+        for (VarDeclaration arg : functionItem.getFunctionDeclaration().getArgs())
+            if (arg.getDefaultVal() != null && !isPure(arg.getDefaultVal()))
+                return false;
+        return size <= budget;
+    }
+
+    private ArrayList<Statement> inlineBody(List<Statement> body){
+        ArrayList<Statement> inlined = new ArrayList<>();
+        for (Statement statement : body) {
+            List<Statement> outer = hoisted;
+            hoisted = new ArrayList<>();
+            inlineStatement(statement);
+            inlined.addAll(hoisted);
+            inlined.add(statement);
+            hoisted = outer;
+        }
+        return inlined;
+    }
+
+    private void inlineStatement(Statement statement){
+        switch (statement) {
+            case AssignStatement assign -> {
+                if (assign.isAccessList()) {
+                    assign.setAccessListExpression(inline(assign.getAccessListExpression()));
+                    assign.setAssignExpression(inline(assign.getAssignExpression()));
+                }
+                else
+                    assign.setAssignExpression(leading(assign.getAssignExpression()));
+            }
+            case IfStatement ifStatement -> {
+                ArrayList<Expression> conditions = inlineConditions(ifStatement.getConditions());
+                ifStatement.getConditions().clear();
+                ifStatement.getConditions().addAll(conditions);
+                ifStatement.setThenBody(inlineBody(ifStatement.getThenBody()));
+                ifStatement.setElseBody(inlineBody(ifStatement.getElseBody()));
+            }
+            case LoopDoStatement loop -> loop.setLoopBodyStmts(inlineBody(loop.getLoopBodyStmts()));
+            case ForStatement forStatement -> {
+                forStatement.getRangeExpression().setRangeExpressions(inlineAll(forStatement.getRangeExpression().getRangeExpressions()));
+                forStatement.setLoopBodyStmts(inlineBody(forStatement.getLoopBodyStmts()));
+            }
+            case BreakStatement breakStatement -> breakStatement.setConditions(inlineConditions(breakStatement.getConditions()));
+            case NextStatement nextStatement -> nextStatement.setConditions(inlineConditions(nextStatement.getConditions()));
+            case ReturnStatement returnStatement -> {
+                if (returnStatement.getReturnExp() != null)
+                    returnStatement.setReturnExp(leading(returnStatement.getReturnExp()));
+            }
+            case PutStatement putStatement -> putStatement.setExpression(leading(putStatement.getExpression()));
+            case ExpressionStatement expressionStatement -> expressionStatement.setExpression(leading(expressionStatement.getExpression()));
+            case PushStatement pushStatement -> {
+                pushStatement.setInitial(inline(pushStatement.getInitial()));
+                pushStatement.setToBeAdded(inline(pushStatement.getToBeAdded()));
+            }
+            default -> {}
+        }
+    }
+
+    // later conditions only run when the earlier ones hold, so only the first is evaluated unconditionally
+    private ArrayList<Expression> inlineConditions(List<Expression> conditions){
+        ArrayList<Expression> inlined = new ArrayList<>();
+        for (Expression condition : conditions)
+            inlined.add(inlined.isEmpty() ? leading(condition) : inline(condition));
+        return inlined;
+    }
+
+    // a call that its statement evaluates before anything else can have the callee's statements hoisted above the statement
+    private Expression leading(Expression expression){
+        if (expression instanceof AccessExpression call && call.isFunctionCall()) {
+            call.setArguments(inlineAll(call.getArguments()));
+            String name = directCallee(call);
+            if (name != null && prepare(name))
+                return expand(call, !substitutable(call));
+            return call;
+        }
+        return inline(expression);
+    }
+
+    private Expression inline(Expression expression){
+        return expression == null ? null : expression.accept(this);
+    }
+
+    private ArrayList<Expression> inlineAll(List<Expression> expressions){
+        ArrayList<Expression> inlined = new ArrayList<>();
+        for (Expression expression : expressions)
+            inlined.add(inline(expression));
+        return inlined;
+    }
+
+    // the type checker only types the callee when it is a function pointer
+    private String directCallee(AccessExpression call){
+        if (call.getAccessedExpression() instanceof Identifier callee && visited.contains(callee.getName())
+                && context.findFunction(callee.getName()) != null && !(expressionTypes.get(callee) instanceof FptrType))
+            return callee.getName();
+        return null;
+    }
+
+    private List<Expression> actualArguments(AccessExpression call, FunctionDeclaration callee){
+        List<Expression> arguments = new ArrayList<>(call.getArguments());
+        for (int i = arguments.size(); i < callee.getArgs().size(); i++)
+            arguments.add(callee.getArgs().get(i).getDefaultVal());
+        return arguments;
+    }
+
+    // a lone return can replace the call in place when no argument has an effect or may throw,
+    // since the result may drop an argument or use them out of order,
+    // and none that is used more than once costs anything to evaluate again
+    private boolean substitutable(AccessExpression call){
+        FunctionDeclaration callee = context.findFunction(directCallee(call)).getFunctionDeclaration();
+        if (callee.getBody().size() != 1)
+            return false;
+        Expression result = ((ReturnStatement) callee.getBody().getFirst()).getReturnExp();
+        List<Expression> arguments = actualArguments(call, callee);
+        for (int i = 0; i < arguments.size(); i++) {
+            Expression argument = arguments.get(i);
+            if (!isPure(argument) || mayThrow(argument))
+                return false;
+            if (!isTrivial(argument) && countUses(result, callee.getArgs().get(i).getName().getName()) > 1)
+                return false;
+        }
+        return true;
+    }
+
+    // parameters bind to the argument itself where that is safe, to a fresh local otherwise;
+    // fresh locals are only ever made when the call leads its statement
+    private Expression expand(AccessExpression call, boolean hoist){
+        String name = directCallee(call);
+        FunctionDeclaration callee = context.findFunction(name).getFunctionDeclaration();
+        List<Expression> arguments = actualArguments(call, callee);
+        boolean argumentsPure = arguments.stream().allMatch(Inliner::isPure);
+        Set<String> written = new HashSet<>();
+        for (Statement statement : callee.getBody())
+            if (statement instanceof AssignStatement assign)
+                written.add(assign.getAssignedId().getName());
+
+        copies++;
+        String prefix = name + "$" + copies + "$";
+        Map<String, Expression> bound = new HashMap<>();
+        Map<String, String> renamed = new HashMap<>();
+        for (int i = 0; i < arguments.size(); i++) {
+            String param = callee.getArgs().get(i).getName().getName();
+            Expression argument = arguments.get(i);
+            boolean literal = isTrivial(argument) && !(argument instanceof Identifier);
+            if (!hoist || (!written.contains(param) && (literal || (argument instanceof Identifier && argumentsPure))))
+                bound.put(param, argument);
+            else {
+                renamed.put(param, prefix + param);
+                hoisted.add(assign(prefix + param, argument, AssignOperator.ASSIGN, call));
+            }
+        }
+        for (Statement statement : callee.getBody().subList(0, callee.getBody().size() - 1)) {
+            AssignStatement assign = (AssignStatement) statement;
+            String local = assign.getAssignedId().getName();
+            renamed.putIfAbsent(local, prefix + local);
+            hoisted.add(assign(renamed.get(local), copy(assign.getAssignExpression(), bound, renamed),
+                    assign.getAssignOperator(), call));
+        }
+        report.append(String.format("%-20s %-20s line %d%n", caller, name, call.getLine()));
+        return copy(((ReturnStatement) callee.getBody().getLast()).getReturnExp(), bound, renamed);
+    }
+
+    private static AssignStatement assign(String name, Expression value, AssignOperator operator, Expression at){
+        Identifier target = new Identifier(name);
+        target.setLine(at.getLine());
+        AssignStatement assign = new AssignStatement(false, target, value, operator);
+        assign.setLine(at.getLine());
+        return assign;
+    }
+
+    // every use gets its own node, since later passes key their tables by node identity
+    private Expression copy(Expression expression, Map<String, Expression> bound, Map<String, String> renamed){
+        if (expression instanceof Identifier identifier && bound.containsKey(identifier.getName()))
+            return copy(bound.get(identifier.getName()), Map.of(), Map.of());
+        Expression copied = switch (expression) {
+            case Identifier identifier -> new Identifier(renamed.getOrDefault(identifier.getName(), identifier.getName()));
+            case IntValue intValue -> new IntValue(intValue.getIntVal());
+            case BoolValue boolValue -> new BoolValue(boolValue.getBool());
+            case StringValue stringValue -> new StringValue(stringValue.getStr());
+            case BinaryExpression binary -> new BinaryExpression(copy(binary.getFirstOperand(), bound, renamed),
+                    copy(binary.getSecondOperand(), bound, renamed), binary.getOperator());
+            case UnaryExpression unary -> new UnaryExpression(copy(unary.getExpression(), bound, renamed), unary.getOperator());
+            case AccessExpression access -> {
+                AccessExpression element = new AccessExpression(copy(access.getAccessedExpression(), bound, renamed), new ArrayList<>());
+                ArrayList<Expression> indices = new ArrayList<>();
+                for (Expression index : access.getDimentionalAccess())
+                    indices.add(copy(index, bound, renamed));
+                element.setDimentionalAccess(indices);
+                yield element;
+            }
+            case LenStatement len -> new LenStatement(copy(len.getExpression(), bound, renamed));
+            case ChopStatement chop -> new ChopStatement(copy(chop.getChopExpression(), bound, renamed));
+            case ChompStatement chomp -> new ChompStatement(copy(chomp.getChompExpression(), bound, renamed));
+            default -> throw new IllegalStateException("cannot copy " + expression);
+        };
+        copied.setLine(expression.getLine());
+        if (expressionTypes.containsKey(expression))
+            expressionTypes.put(copied, expressionTypes.get(expression));
+        return copied;
+    }
+
+    // the operands of an expression that does nothing besides producing its value, null for anything else
+    static List<Expression> pureOperands(Expression expression){
+        return switch (expression) {
+            case null -> null;
+            case Identifier identifier -> List.of();
+            case IntValue intValue -> List.of();
+            case BoolValue boolValue -> List.of();
+            case StringValue stringValue -> List.of();
+            case BinaryExpression binary -> List.of(binary.getFirstOperand(), binary.getSecondOperand());
+            case UnaryExpression unary when unary.getOperator() == UnaryOperator.MINUS
+                    || unary.getOperator() == UnaryOperator.NOT -> List.of(unary.getExpression());
+            case AccessExpression access when !access.isFunctionCall() -> {
+                List<Expression> operands = new ArrayList<>(access.getDimentionalAccess());
+                operands.addFirst(access.getAccessedExpression());
+                yield operands;
+            }
+            case LenStatement len -> List.of(len.getExpression());
+            case ChopStatement chop -> List.of(chop.getChopExpression());
+            case ChompStatement chomp -> List.of(chomp.getChompExpression());
+            default -> null;
+        };
+    }
+
+    static boolean isPure(Expression expression){
+        List<Expression> operands = pureOperands(expression);
+        return operands != null && operands.stream().allMatch(Inliner::isPure);
+    }
+
+    // whether evaluating a pure expression can end in an exception
+    static boolean mayThrow(Expression expression){
+        if (throwsItself(expression))
+            return true;
+        for (Expression operand : pureOperands(expression))
+            if (mayThrow(operand))
+                return true;
+        return false;
+    }
+
+    static boolean throwsItself(Expression expression){
+        return switch (expression) {
+            case BinaryExpression binary when binary.getOperator() == BinaryOperator.DIVIDE ->
+                    !(binary.getSecondOperand() instanceof IntValue divisor && divisor.getIntVal() != 0);
+            case AccessExpression access -> !access.isFunctionCall();
+            case ChopStatement chop -> true;
+            case ChompStatement chomp -> true;
+            default -> false;
+        };
+    }
+
+    static boolean isTrivial(Expression expression){
+        return expression instanceof Identifier || expression instanceof IntValue
+                || expression instanceof BoolValue || expression instanceof StringValue;
+    }
+
+    private static int size(Expression expression){
+        int size = 1;
+        for (Expression operand : pureOperands(expression))
+            size += size(operand);
+        return size;
+    }
+
+    private static int countUses(Expression expression, String name){
+        int uses = expression instanceof Identifier identifier && identifier.getName().equals(name) ? 1 : 0;
+        for (Expression operand : pureOperands(expression))
+            uses += countUses(operand, name);
+        return uses;
+    }
+
+    @Override
+    public Expression visit(AccessExpression accessExpression){
+        if (!accessExpression.isFunctionCall()) {
+            accessExpression.setAccessedExpression(inline(accessExpression.getAccessedExpression()));
+            accessExpression.setDimentionalAccess(inlineAll(accessExpression.getDimentionalAccess()));
+            return accessExpression;
+        }
+        accessExpression.setArguments(inlineAll(accessExpression.getArguments()));
+        String name = directCallee(accessExpression);
+        if (name != null && prepare(name) && substitutable(accessExpression))
+            return expand(accessExpression, false);
+        return accessExpression;
+    }
+    @Override
+    public Expression visit(BinaryExpression binaryExpression){
+        binaryExpression.setFirstOperand(inline(binaryExpression.getFirstOperand()));
+        binaryExpression.setSecondOperand(inline(binaryExpression.getSecondOperand()));
+        return binaryExpression;
+    }
+    @Override
+    public Expression visit(UnaryExpression unaryExpression){
+        unaryExpression.setExpression(inline(unaryExpression.getExpression()));
+        return unaryExpression;
+    }
+    @Override
+    public Expression visit(LenStatement lenStatement){
+        lenStatement.setExpression(inline(lenStatement.getExpression()));
+        return lenStatement;
+    }
+    @Override
+    public Expression visit(ChopStatement chopStatement){
+        chopStatement.setChopExpression(inline(chopStatement.getChopExpression()));
+        return chopStatement;
+    }
+    @Override
+    public Expression visit(ChompStatement chompStatement){
+        chompStatement.setChompExpression(inline(chompStatement.getChompExpression()));
+        return chompStatement;
+    }
+    @Override
+    public Expression visit(AppendExpression appendExpression){
+        appendExpression.setAppendee(inline(appendExpression.getAppendee()));
+        appendExpression.setAppendeds(inlineAll(appendExpression.getAppendeds()));
+        return appendExpression;
+    }
+    @Override
+    public Expression visit(MatchPatternStatement matchPatternStatement){
+        matchPatternStatement.setMatchArgument(inline(matchPatternStatement.getMatchArgument()));
+        return matchPatternStatement;
+    }
+    @Override
+    public Expression visit(RangeExpression rangeExpression){
+        rangeExpression.setRangeExpressions(inlineAll(rangeExpression.getRangeExpressions()));
+        return rangeExpression;
+    }
+    @Override
+    public Expression visit(ListValue listValue){
+        listValue.setElements(inlineAll(listValue.getElements()));
+        return listValue;
+    }
+    @Override
+    public Expression visit(Identifier identifier){
+        return identifier;
+    }
+    @Override
+    public Expression visit(LambdaExpression lambdaExpression){
+        return lambdaExpression;
+    }
+    @Override
+    public Expression visit(FunctionPointer functionPointer){
+        return functionPointer;
+    }
+    @Override
+    public Expression visit(BoolValue boolValue){
+        return boolValue;
+    }
+    @Override
+    public Expression visit(IntValue intValue){
+        return intValue;
+    }
+    @Override
+    public Expression visit(StringValue stringValue){
+        return stringValue;
+    }
+    @Override
+    public Expression visit(FloatValue floatValue){
+        return floatValue;
+    }
+}
@@ -0,0 +1,405 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Node;
+import main.ast.nodes.Program;
+import main.ast.nodes.declaration.FunctionDeclaration;
+import main.ast.nodes.declaration.VarDeclaration;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.operators.UnaryOperator;
+import main.ast.nodes.expression.value.FunctionPointer;
+import main.ast.nodes.expression.value.ListValue;
+import main.ast.nodes.expression.value.primitive.BoolValue;
+import main.ast.nodes.expression.value.primitive.FloatValue;
+import main.ast.nodes.expression.value.primitive.IntValue;
+import main.ast.nodes.expression.value.primitive.StringValue;
+import main.ast.nodes.statement.*;
+import main.visitor.Visitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// turns every lambda into a function of its own before type checking, so later passes only ever see functions;
+// the locals a lambda uses are passed ahead of its own arguments, and one that is written again after being
+// captured lives in a one element list shared by the function and the lambda.
+// expression visits return the node that replaces the visited one
+public class LambdaLifter extends Visitor<Expression> {
+    private Program program;
+    // what each lambda of the body being lifted captures, by the name it has in that body
+    private final Map<LambdaExpression, Set<String>> captures = new IdentityHashMap<>();
+    // captured variables moved into a cell, mapped to the name of the cell
+    private Map<String, String> cells = new HashMap<>();
+    // the assignment that first sets a variable, and so creates its cell
+    private final Map<String, AssignStatement> firstWrites = new HashMap<>();
+    private final Set<AssignStatement> topLevel = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<String, Integer> writes = new HashMap<>();
+    private final Set<String> writtenInLambdas = new HashSet<>();
+    // written by ++, -- or a for loop, which element writes cannot stand in for
+    private final Set<String> notCellable = new HashSet<>();
+    private Set<String> defined;
+    // lambdas inside a lambda are lifted later, from the function their enclosing lambda becomes
+    private int lambdaDepth = 0;
+    private int lambdas = 0;
+
+    @Override
+    public Expression visit(Program program){
+        this.program = program;
+        program.getMain().setBody(liftBody(new ArrayList<>(), program.getMain().getBody()));
+        // functions made from lambdas are appended as they are found and lifted in turn
+        for (int i = 0; i < program.getFunctionDeclarations().size(); i++) {
+            FunctionDeclaration functionDeclaration = program.getFunctionDeclarations().get(i);
+            functionDeclaration.setBody(liftBody(functionDeclaration.getArgs(), functionDeclaration.getBody()));
+        }
+        return null;
+    }
+
+    private ArrayList<Statement> liftBody(List<VarDeclaration> args, ArrayList<Statement> body){
+        captures.clear();
+        firstWrites.clear();
+        writes.clear();
+        writtenInLambdas.clear();
+        notCellable.clear();
+        defined = new HashSet<>();
+        Set<String> params = new LinkedHashSet<>();
+        for (VarDeclaration arg : args)
+            params.add(arg.getName().getName());
+        defined.addAll(params);
+        scanBody(body);
+        if (captures.isEmpty())
+            return body;
+
+        cells = new HashMap<>();
+        for (Set<String> captured : captures.values())
+            for (String name : captured)
+                if (needsCell(name, params.contains(name)))
+                    cells.put(name, name + "$cell");
+        ArrayList<Statement> lifted = new ArrayList<>();
+        for (String param : params)
+            if (cells.containsKey(param))
+                lifted.add(newCell(param, new Identifier(param), body.isEmpty() ? 0 : body.getFirst().getLine()));
+        for (Statement statement : body) {
+            // a parameter's cell is made on entry, a local's where it is first set
+            if (statement instanceof AssignStatement assign && !assign.isAccessList()
+                    && cells.containsKey(assign.getAssignedId().getName()) && !params.contains(assign.getAssignedId().getName())
+                    && firstWrites.get(assign.getAssignedId().getName()) == assign)
+                lifted.add(newCell(assign.getAssignedId().getName(), lift(assign.getAssignExpression()), assign.getLine()));
+            else
+                lifted.add(liftStatement(statement));
+        }
+        cells = new HashMap<>();
+        return lifted;
+    }
+
+    // a variable that never changes once captured is simply copied into the lambda
+    private boolean needsCell(String name, boolean isParam){
+        if (notCellable.contains(name))
+            return false;
+        AssignStatement first = firstWrites.get(name);
+        if (!isParam && (first == null || first.getAssignOperator() != AssignOperator.ASSIGN || !topLevel.contains(first)))
+            return false;
+        return writtenInLambdas.contains(name) || writes.getOrDefault(name, 0) > (isParam ? 0 : 1);
+    }
+
+    private AssignStatement newCell(String name, Expression value, int line){
+        ListValue cell = new ListValue(new ArrayList<>(List.of(value)));
+        cell.setLine(line);
+        Identifier target = new Identifier(cells.get(name));
+        target.setLine(line);
+        AssignStatement assign = new AssignStatement(false, target, cell, AssignOperator.ASSIGN);
+        assign.setLine(line);
+        return assign;
+    }
+
+    // finds the lambdas of the body and what they capture, in order, so only variables set before a lambda is
+    // made are captured by it
+    private void scanBody(List<Statement> body){
+        topLevel.clear();
+        for (Statement statement : body)
+            if (statement instanceof AssignStatement assign)
+                topLevel.add(assign);
+        body.forEach(this::scanStatement);
+    }
+
+    private void scanStatement(Statement statement){
+        switch (statement) {
+            case AssignStatement assign -> {
+                scanExpression(assign.getAccessListExpression());
+                scanExpression(assign.getAssignExpression());
+                if (!assign.isAccessList()) {
+                    String name = assign.getAssignedId().getName();
+                    firstWrites.putIfAbsent(name, assign);
+                    writes.merge(name, 1, Integer::sum);
+                    defined.add(name);
+                }
+            }
+            case IfStatement ifStatement -> {
+                ifStatement.getConditions().forEach(this::scanExpression);
+                ifStatement.getThenBody().forEach(this::scanStatement);
+                ifStatement.getElseBody().forEach(this::scanStatement);
+            }
+            case LoopDoStatement loop -> loop.getLoopBodyStmts().forEach(this::scanStatement);
+            case ForStatement forStatement -> {
+                scanExpression(forStatement.getRangeExpression());
+                String name = forStatement.getIteratorId().getName();
+                notCellable.add(name);
+                defined.add(name);
+                forStatement.getLoopBodyStmts().forEach(this::scanStatement);
+            }
+            default -> scanExpression(statement);
+        }
+    }
+
+    private void scanExpression(Node node){
+        ConstantFolder.walk(node, visited -> {
+            switch (visited) {
+                case UnaryExpression unary when (unary.getOperator() == UnaryOperator.INC || unary.getOperator() == UnaryOperator.DEC)
+                        && unary.getExpression() instanceof Identifier identifier -> {
+                    notCellable.add(identifier.getName());
+                    writes.merge(identifier.getName(), 1, Integer::sum);
+                }
+                case LambdaExpression lambda -> {
+                    Set<String> used = new LinkedHashSet<>();
+                    usedIn(lambda, used);
+                    used.retainAll(defined);
+                    captures.put(lambda, used);
+                }
+                default -> {}
+            }
+        });
+    }
+
+    // every name the lambda or a lambda inside it uses, other than its own parameters
+    private void usedIn(LambdaExpression lambda, Set<String> used){
+        Set<String> params = new HashSet<>();
+        for (VarDeclaration arg : lambda.getDeclarationArgs())
+            params.add(arg.getName().getName());
+        Set<String> inner = new LinkedHashSet<>();
+        for (Statement statement : lambda.getBody())
+            ConstantFolder.walk(statement, visited -> {
+                switch (visited) {
+                    case Identifier identifier -> inner.add(identifier.getName());
+                    case AssignStatement assign -> {
+                        inner.add(assign.getAssignedId().getName());
+                        if (!assign.isAccessList())
+                            writtenInLambdas.add(assign.getAssignedId().getName());
+                    }
+                    case ForStatement forStatement -> {
+                        inner.add(forStatement.getIteratorId().getName());
+                        notCellable.add(forStatement.getIteratorId().getName());
+                    }
+                    case UnaryExpression unary when (unary.getOperator() == UnaryOperator.INC || unary.getOperator() == UnaryOperator.DEC)
+                            && unary.getExpression() instanceof Identifier identifier -> notCellable.add(identifier.getName());
+                    case LambdaExpression nested -> usedIn(nested, inner);
+                    default -> {}
+                }
+            });
+        inner.removeAll(params);
+        used.addAll(inner);
+    }
+
+    private Expression lift(Expression expression){
+        return expression == null ? null : expression.accept(this);
+    }
+
+    private ArrayList<Expression> liftAll(List<Expression> expressions){
+        ArrayList<Expression> lifted = new ArrayList<>();
+        for (Expression expression : expressions)
+            lifted.add(lift(expression));
+        return lifted;
+    }
+
+    private ArrayList<Statement> liftStatements(List<Statement> statements){
+        ArrayList<Statement> lifted = new ArrayList<>();
+        for (Statement statement : statements)
+            lifted.add(liftStatement(statement));
+        return lifted;
+    }
+
+    // a write to a variable in a cell becomes a write to the cell's only element
+    private Statement liftStatement(Statement statement){
+        switch (statement) {
+            case AssignStatement assign -> {
+                assign.setAccessListExpression(lift(assign.getAccessListExpression()));
+                assign.setAssignExpression(lift(assign.getAssignExpression()));
+                String cell = cells.get(assign.getAssignedId().getName());
+                if (!assign.isAccessList() && cell != null) {
+                    Identifier target = new Identifier(cell);
+                    target.setLine(assign.getLine());
+                    AssignStatement element = new AssignStatement(true, target, assign.getAssignExpression(),
+                            assign.getAssignOperator());
+                    element.setAccessListExpression(new IntValue(0));
+                    element.setLine(assign.getLine());
+                    return element;
+                }
+            }
+            case IfStatement ifStatement -> {
+                ArrayList<Expression> conditions = liftAll(ifStatement.getConditions());
+                ifStatement.getConditions().clear();
+                ifStatement.getConditions().addAll(conditions);
+                ifStatement.setThenBody(liftStatements(ifStatement.getThenBody()));
+                ifStatement.setElseBody(liftStatements(ifStatement.getElseBody()));
+            }
+            case LoopDoStatement loop -> loop.setLoopBodyStmts(liftStatements(loop.getLoopBodyStmts()));
+            case ForStatement forStatement -> {
+                forStatement.getRangeExpression().setRangeExpressions(liftAll(forStatement.getRangeExpression().getRangeExpressions()));
+                forStatement.setLoopBodyStmts(liftStatements(forStatement.getLoopBodyStmts()));
+            }
+            case BreakStatement breakStatement -> breakStatement.setConditions(liftAll(breakStatement.getConditions()));
+            case NextStatement nextStatement -> nextStatement.setConditions(liftAll(nextStatement.getConditions()));
+            case ReturnStatement returnStatement -> {
+                if (returnStatement.getReturnExp() != null)
+                    returnStatement.setReturnExp(lift(returnStatement.getReturnExp()));
+            }
+            case PutStatement putStatement -> putStatement.setExpression(lift(putStatement.getExpression()));
+            case ExpressionStatement expressionStatement -> expressionStatement.setExpression(lift(expressionStatement.getExpression()));
+            case PushStatement pushStatement -> {
+                pushStatement.setInitial(lift(pushStatement.getInitial()));
+                pushStatement.setToBeAdded(lift(pushStatement.getToBeAdded()));
+            }
+            default -> {}
+        }
+        return statement;
+    }
+
+    @Override
+    public Expression visit(LambdaExpression lambdaExpression){
+        // a parameter of the lambda hides the variable of the same name around it
+        Map<String, String> outer = cells;
+        cells = new HashMap<>(cells);
+        for (VarDeclaration arg : lambdaExpression.getDeclarationArgs())
+            cells.remove(arg.getName().getName());
+        lambdaDepth++;
+        lambdaExpression.setBody(liftStatements(lambdaExpression.getBody()));
+        lambdaDepth--;
+        cells = outer;
+        if (lambdaDepth > 0)
+            return lambdaExpression;
+
+        String name = "lambda$" + lambdas++;
+        int line = lambdaExpression.getLine();
+        FunctionDeclaration function = new FunctionDeclaration();
+        Identifier functionName = new Identifier(name);
+        functionName.setLine(line);
+        function.setFunctionName(functionName);
+        function.setLine(line);
+        ArrayList<Expression> captured = new ArrayList<>();
+        for (String variable : captures.get(lambdaExpression)) {
+            String passed = cells.getOrDefault(variable, variable);
+            Identifier param = new Identifier(passed);
+            param.setLine(line);
+            function.addArg(new VarDeclaration(param));
+            Identifier capture = new Identifier(passed);
+            capture.setLine(line);
+            captured.add(capture);
+        }
+        for (VarDeclaration arg : lambdaExpression.getDeclarationArgs())
+            function.addArg(arg);
+        function.setBody(lambdaExpression.getBody());
+        program.addFunctionDeclaration(function);
+
+        // without captures the lambda is a plain function pointer, made once
+        if (captured.isEmpty()) {
+            Identifier pointed = new Identifier(name);
+            pointed.setLine(line);
+            FunctionPointer pointer = new FunctionPointer(pointed);
+            pointer.setLine(line);
+            return pointer;
+        }
+        lambdaExpression.setFunctionName(new Identifier(name));
+        lambdaExpression.setCaptures(captured);
+        lambdaExpression.setBody(new ArrayList<>());
+        return lambdaExpression;
+    }
+    @Override
+    public Expression visit(Identifier identifier){
+        String cell = cells.get(identifier.getName());
+        if (cell == null)
+            return identifier;
+        Identifier list = new Identifier(cell);
+        list.setLine(identifier.getLine());
+        AccessExpression element = new AccessExpression(list, new ArrayList<>());
+        element.setDimentionalAccess(new ArrayList<>(List.of(new IntValue(0))));
+        element.setLine(identifier.getLine());
+        return element;
+    }
+    @Override
+    public Expression visit(BinaryExpression binaryExpression){
+        binaryExpression.setFirstOperand(lift(binaryExpression.getFirstOperand()));
+        binaryExpression.setSecondOperand(lift(binaryExpression.getSecondOperand()));
+        return binaryExpression;
+    }
+    @Override
+    public Expression visit(UnaryExpression unaryExpression){
+        unaryExpression.setExpression(lift(unaryExpression.getExpression()));
+        return unaryExpression;
+    }
+    @Override
+    public Expression visit(AccessExpression accessExpression){
+        accessExpression.setAccessedExpression(lift(accessExpression.getAccessedExpression()));
+        accessExpression.setArguments(liftAll(accessExpression.getArguments()));
+        accessExpression.setDimentionalAccess(liftAll(accessExpression.getDimentionalAccess()));
+        return accessExpression;
+    }
+    @Override
+    public Expression visit(LenStatement lenStatement){
+        lenStatement.setExpression(lift(lenStatement.getExpression()));
+        return lenStatement;
+    }
+    @Override
+    public Expression visit(ChopStatement chopStatement){
+        chopStatement.setChopExpression(lift(chopStatement.getChopExpression()));
+        return chopStatement;
+    }
+    @Override
+    public Expression visit(ChompStatement chompStatement){
+        chompStatement.setChompExpression(lift(chompStatement.getChompExpression()));
+        return chompStatement;
+    }
+    @Override
+    public Expression visit(AppendExpression appendExpression){
+        appendExpression.setAppendee(lift(appendExpression.getAppendee()));
+        appendExpression.setAppendeds(liftAll(appendExpression.getAppendeds()));
+        return appendExpression;
+    }
+    @Override
+    public Expression visit(MatchPatternStatement matchPatternStatement){
+        matchPatternStatement.setMatchArgument(lift(matchPatternStatement.getMatchArgument()));
+        return matchPatternStatement;
+    }
+    @Override
+    public Expression visit(RangeExpression rangeExpression){
+        rangeExpression.setRangeExpressions(liftAll(rangeExpression.getRangeExpressions()));
+        return rangeExpression;
+    }
+    @Override
+    public Expression visit(ListValue listValue){
+        listValue.setElements(liftAll(listValue.getElements()));
+        return listValue;
+    }
+    @Override
+    public Expression visit(FunctionPointer functionPointer){
+        return functionPointer;
+    }
+    @Override
+    public Expression visit(BoolValue boolValue){
+        return boolValue;
+    }
+    @Override
+    public Expression visit(IntValue intValue){
+        return intValue;
+    }
+    @Override
+    public Expression visit(StringValue stringValue){
+        return stringValue;
+    }
+    @Override
+    public Expression visit(FloatValue floatValue){
+        return floatValue;
+    }
+}
@@ -0,0 +1,283 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Node;
+import main.ast.nodes.Program;
+import main.ast.nodes.declaration.FunctionDeclaration;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.value.FunctionPointer;
+import main.ast.nodes.expression.value.ListValue;
+import main.ast.nodes.expression.value.primitive.BoolValue;
+import main.ast.nodes.expression.value.primitive.FloatValue;
+import main.ast.nodes.expression.value.primitive.IntValue;
+import main.ast.nodes.expression.value.primitive.StringValue;
+import main.ast.nodes.statement.*;
+import main.ast.type.Type;
+import main.ast.type.primitiveType.StringType;
+import main.visitor.Visitor;
+import main.visitor.type.TypeChecker;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// moves expressions that give the same value on every iteration in front of their loop, after constant folding;
+// expression visits return the node that replaces the visited one
+public class LoopInvariantMover extends Visitor<Expression> {
+    // the moved value is kept in a fresh local typed like the expression it replaces
+    private final Map<Expression, Type> expressionTypes;
+    // what the loop being processed writes, and whether anything in it may change the contents of a list
+    private Set<String> written;
+    private boolean listsChange;
+    // statements that run once before the loop, in order
+    private List<Statement> preheader;
+    // an expression that may throw is only moved when it would have run first thing on the first iteration anyway
+    private boolean runsFirst;
+    private boolean mayHaveThrown;
+    private int temps = 0;
+
+    public LoopInvariantMover(TypeChecker typeChecker){
+        this.expressionTypes = typeChecker.expressionTypes;
+    }
+
+    @Override
+    public Expression visit(Program program){
+        for (FunctionDeclaration functionDeclaration : program.getFunctionDeclarations())
+            functionDeclaration.setBody(moveBody(functionDeclaration.getBody()));
+        program.getMain().setBody(moveBody(program.getMain().getBody()));
+        return null;
+    }
+
+    // inner loops go first, so what they move out lands in the outer body and can keep moving
+    private ArrayList<Statement> moveBody(List<Statement> body){
+        ArrayList<Statement> moved = new ArrayList<>();
+        for (Statement statement : body) {
+            switch (statement) {
+                case LoopDoStatement loop -> {
+                    loop.setLoopBodyStmts(moveBody(loop.getLoopBodyStmts()));
+                    moved.addAll(hoist(loop.getLoopBodyStmts(), null, true));
+                }
+                case ForStatement forStatement -> {
+                    forStatement.setLoopBodyStmts(moveBody(forStatement.getLoopBodyStmts()));
+                    // a for loop may not run at all
+                    moved.addAll(hoist(forStatement.getLoopBodyStmts(), forStatement.getIteratorId().getName(), false));
+                }
+                case IfStatement ifStatement -> {
+                    ifStatement.setThenBody(moveBody(ifStatement.getThenBody()));
+                    ifStatement.setElseBody(moveBody(ifStatement.getElseBody()));
+                }
+                default -> {}
+            }
+            moved.add(statement);
+        }
+        return moved;
+    }
+
+    private List<Statement> hoist(List<Statement> body, String iterator, boolean runsAtLeastOnce){
+        written = new HashSet<>();
+        List<Node> listChanges = new ArrayList<>();
+        for (Statement statement : body) {
+            ConstantFolder.collectWritten(statement, written);
+            // a call can reach any list it is handed
+            ConstantFolder.walk(statement, node -> {
+                if (node instanceof PushStatement || node instanceof AppendExpression
+                        || (node instanceof AssignStatement assign && assign.isAccessList())
+                        || (node instanceof AccessExpression access && access.isFunctionCall()))
+                    listChanges.add(node);
+            });
+        }
+        if (iterator != null)
+            written.add(iterator);
+        listsChange = !listChanges.isEmpty();
+        preheader = new ArrayList<>();
+        mayHaveThrown = false;
+        // local assignments at the top of the body run before anything observable
+        boolean leading = runsAtLeastOnce;
+        for (Statement statement : body) {
+            leading = leading && statement instanceof AssignStatement assign && !assign.isAccessList()
+                    && Inliner.isPure(assign.getAssignExpression());
+            runsFirst = leading;
+            moveStatement(statement);
+        }
+        return preheader;
+    }
+
+    // nested loops were handled on their own, what they still hold is written in them and so in this loop too
+    private void moveStatement(Statement statement){
+        switch (statement) {
+            case AssignStatement assign -> {
+                assign.setAccessListExpression(move(assign.getAccessListExpression()));
+                assign.setAssignExpression(move(assign.getAssignExpression()));
+            }
+            case IfStatement ifStatement -> {
+                ArrayList<Expression> conditions = moveAll(ifStatement.getConditions());
+                ifStatement.getConditions().clear();
+                ifStatement.getConditions().addAll(conditions);
+                ifStatement.getThenBody().forEach(this::moveStatement);
+                ifStatement.getElseBody().forEach(this::moveStatement);
+            }
+            case ForStatement forStatement -> forStatement.getRangeExpression().setRangeExpressions(
+                    moveAll(forStatement.getRangeExpression().getRangeExpressions()));
+            case BreakStatement breakStatement -> breakStatement.setConditions(moveAll(breakStatement.getConditions()));
+            case NextStatement nextStatement -> nextStatement.setConditions(moveAll(nextStatement.getConditions()));
+            case ReturnStatement returnStatement -> {
+                if (returnStatement.getReturnExp() != null)
+                    returnStatement.setReturnExp(move(returnStatement.getReturnExp()));
+            }
+            case PutStatement putStatement -> putStatement.setExpression(move(putStatement.getExpression()));
+            case ExpressionStatement expressionStatement -> expressionStatement.setExpression(move(expressionStatement.getExpression()));
+            case PushStatement pushStatement -> {
+                pushStatement.setInitial(move(pushStatement.getInitial()));
+                pushStatement.setToBeAdded(move(pushStatement.getToBeAdded()));
+            }
+            default -> {}
+        }
+    }
+
+    private Expression move(Expression expression){
+        if (expression == null)
+            return null;
+        Type type = expressionTypes.get(expression);
+        if (type != null && !Inliner.isTrivial(expression) && isInvariant(expression)
+                && (!Inliner.mayThrow(expression) || (runsFirst && !mayHaveThrown))) {
+            String name = "licm$" + temps++;
+            Identifier target = new Identifier(name);
+            target.setLine(expression.getLine());
+            AssignStatement assign = new AssignStatement(false, target, expression, AssignOperator.ASSIGN);
+            assign.setLine(expression.getLine());
+            preheader.add(assign);
+            Identifier temp = new Identifier(name);
+            temp.setLine(expression.getLine());
+            expressionTypes.put(temp, type);
+            return temp;
+        }
+        Expression moved = expression.accept(this);
+        // the operands were moved or left on their own, this only covers the node itself
+        if (Inliner.throwsItself(expression))
+            mayHaveThrown = true;
+        return moved;
+    }
+
+    private ArrayList<Expression> moveAll(List<Expression> expressions){
+        ArrayList<Expression> moved = new ArrayList<>();
+        for (Expression expression : expressions)
+            moved.add(move(expression));
+        return moved;
+    }
+
+    private boolean isInvariant(Expression expression){
+        List<Expression> operands = Inliner.pureOperands(expression);
+        if (operands == null)
+            return false;
+        if (expression instanceof Identifier identifier && written.contains(identifier.getName()))
+            return false;
+        if (listsChange && readsList(expression))
+            return false;
+        for (Expression operand : operands)
+            if (!isInvariant(operand))
+                return false;
+        return true;
+    }
+
+    // strings never change in place, so only element reads and lengths of lists depend on list contents
+    private boolean readsList(Expression expression){
+        Expression read = switch (expression) {
+            case AccessExpression access -> access.getAccessedExpression();
+            case LenStatement len -> len.getExpression();
+            default -> null;
+        };
+        return read != null && !(expressionTypes.get(read) instanceof StringType);
+    }
+
+    @Override
+    public Expression visit(BinaryExpression binaryExpression){
+        binaryExpression.setFirstOperand(move(binaryExpression.getFirstOperand()));
+        // the right side of && and || does not always run
+        boolean before = runsFirst;
+        if (binaryExpression.getOperator() == BinaryOperator.AND || binaryExpression.getOperator() == BinaryOperator.OR)
+            runsFirst = false;
+        binaryExpression.setSecondOperand(move(binaryExpression.getSecondOperand()));
+        runsFirst = before;
+        return binaryExpression;
+    }
+    @Override
+    public Expression visit(UnaryExpression unaryExpression){
+        unaryExpression.setExpression(move(unaryExpression.getExpression()));
+        return unaryExpression;
+    }
+    @Override
+    public Expression visit(AccessExpression accessExpression){
+        if (!accessExpression.isFunctionCall())
+            accessExpression.setAccessedExpression(move(accessExpression.getAccessedExpression()));
+        accessExpression.setArguments(moveAll(accessExpression.getArguments()));
+        accessExpression.setDimentionalAccess(moveAll(accessExpression.getDimentionalAccess()));
+        return accessExpression;
+    }
+    @Override
+    public Expression visit(LenStatement lenStatement){
+        lenStatement.setExpression(move(lenStatement.getExpression()));
+        return lenStatement;
+    }
+    @Override
+    public Expression visit(ChopStatement chopStatement){
+        chopStatement.setChopExpression(move(chopStatement.getChopExpression()));
+        return chopStatement;
+    }
+    @Override
+    public Expression visit(ChompStatement chompStatement){
+        chompStatement.setChompExpression(move(chompStatement.getChompExpression()));
+        return chompStatement;
+    }
+    @Override
+    public Expression visit(AppendExpression appendExpression){
+        appendExpression.setAppendee(move(appendExpression.getAppendee()));
+        appendExpression.setAppendeds(moveAll(appendExpression.getAppendeds()));
+        return appendExpression;
+    }
+    @Override
+    public Expression visit(MatchPatternStatement matchPatternStatement){
+        matchPatternStatement.setMatchArgument(move(matchPatternStatement.getMatchArgument()));
+        return matchPatternStatement;
+    }
+    @Override
+    public Expression visit(RangeExpression rangeExpression){
+        rangeExpression.setRangeExpressions(moveAll(rangeExpression.getRangeExpressions()));
+        return rangeExpression;
+    }
+    @Override
+    public Expression visit(ListValue listValue){
+        listValue.setElements(moveAll(listValue.getElements()));
+        return listValue;
+    }
+    @Override
+    public Expression visit(Identifier identifier){
+        return identifier;
+    }
+    @Override
+    public Expression visit(LambdaExpression lambdaExpression){
+        lambdaExpression.setCaptures(moveAll(lambdaExpression.getCaptures()));
+        return lambdaExpression;
+    }
+    @Override
+    public Expression visit(FunctionPointer functionPointer){
+        return functionPointer;
+    }
+    @Override
+    public Expression visit(BoolValue boolValue){
+        return boolValue;
+    }
+    @Override
+    public Expression visit(IntValue intValue){
+        return intValue;
+    }
+    @Override
+    public Expression visit(StringValue stringValue){
+        return stringValue;
+    }
+    @Override
+    public Expression visit(FloatValue floatValue){
+        return floatValue;
+    }
+}
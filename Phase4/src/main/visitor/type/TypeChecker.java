@@ -1,5 +1,6 @@
 package main.visitor.type;
 
+import main.CompilationContext;
 import main.ast.nodes.Program;
 import main.ast.nodes.declaration.*;
 import main.ast.nodes.expression.*;
@@ -19,95 +20,124 @@ import main.visitor.Visitor;
 import java.util.*;
 
 public class TypeChecker extends Visitor<Type> {
-    public ArrayList<CompileError> typeErrors = new ArrayList<>();
+    private final CompilationContext context;
+    private final ArrayList<CompileError> typeErrors;
     private final Stack<Set<Type>> returnTypesStack = new Stack<>();
     public final Set<String> visited = new HashSet<>();
+    // inferred type of every expression checked so far, keyed by node identity so later passes can read it back
+    public final Map<Expression, Type> expressionTypes = new IdentityHashMap<>();
+    // types of what each lifted lambda captures, passed ahead of the arguments of every call through it
+    public final Map<String, List<Type>> capturedTypes = new HashMap<>();
+    // functions whose body is being checked right now, a call to one of them is recursion
+    private final Set<String> inProgress = new HashSet<>();
+    // pointers stored where another function's pointer was before that function was ever called, by its name
+    private final Map<String, Set<String>> pointedLater = new HashMap<>();
+    // recursive calls met before their callee had a known return type, in the current round
+    private int unresolvedCalls = 0;
+
+    public TypeChecker(CompilationContext context){
+        this.context = context;
+        this.typeErrors = context.getTypeErrors();
+    }
+
+    private Type annotate(Expression expression, Type type){
+        expressionTypes.put(expression, type);
+        return type;
+    }
 
     @Override
     public Type visit(Program program){
-        SymbolTable.root = new SymbolTable();
-        SymbolTable.top = new SymbolTable();
         for(FunctionDeclaration functionDeclaration : program.getFunctionDeclarations()){
             FunctionItem functionItem = new FunctionItem(functionDeclaration);
             try {
-                SymbolTable.root.put(functionItem);
+                context.getRoot().put(functionItem);
             }catch (ItemAlreadyExists ignored){}
         }
         for(PatternDeclaration patternDeclaration : program.getPatternDeclarations()){
             PatternItem patternItem = new PatternItem(patternDeclaration);
             try{
-                SymbolTable.root.put(patternItem);
+                context.getRoot().put(patternItem);
             }catch (ItemAlreadyExists ignored){}
         }
-        program.getMain().accept(this);
+        // a recursive call is typed before the returns that fix its type are seen, so rounds repeat
+        // from scratch while they keep learning return types; only the last round's errors count
+        int firstError = typeErrors.size();
+        while (true) {
+            int knownBefore = knownReturnTypes(program);
+            unresolvedCalls = 0;
+            visited.clear();
+            expressionTypes.clear();
+            typeErrors.subList(firstError, typeErrors.size()).clear();
+            program.getMain().accept(this);
+            if (unresolvedCalls == 0 || knownReturnTypes(program) == knownBefore)
+                break;
+        }
 
         return null;
     }
+    private int knownReturnTypes(Program program){
+        int known = 0;
+        for (FunctionDeclaration functionDeclaration : program.getFunctionDeclarations()) {
+            FunctionItem functionItem = context.findFunction(functionDeclaration.getFunctionName().getSymbolId());
+            if (functionItem != null && functionItem.getReturnType() != null)
+                known++;
+        }
+        return known;
+    }
     @Override
     public Type visit(FunctionDeclaration functionDeclaration){
-        if (visited.contains(functionDeclaration.getFunctionName().getName())) {
-            try {
-                return ((FunctionItem) SymbolTable.root.getItem(FunctionItem.START_KEY +
-                        functionDeclaration.getFunctionName().getName())).getReturnType();
-            } catch (ItemNotFound e) {}
+        FunctionItem functionItem = context.findFunction(functionDeclaration.getFunctionName().getSymbolId());
+        String name = functionDeclaration.getFunctionName().getName();
+        if (visited.contains(name) && functionItem != null) {
+            if (functionItem.getReturnType() != null)
+                return functionItem.getReturnType();
+            // a finished function without a return type simply returns nothing
+            if (inProgress.contains(name))
+                unresolvedCalls++;
+            return new NoType();
         }
-        SymbolTable.push(new SymbolTable());
+        context.pushScope(new SymbolTable());
         returnTypesStack.push(new HashSet<>());
-        visited.add(functionDeclaration.getFunctionName().getName());
-        try {
-            FunctionItem functionItem = (FunctionItem) SymbolTable.root.getItem(FunctionItem.START_KEY +
-                    functionDeclaration.getFunctionName().getName());
+        visited.add(name);
+        inProgress.add(name);
+        if (functionItem != null) {
             ArrayList<Type> currentArgTypes = functionItem.getArgumentTypes();
-            for (int i = 0; i < functionDeclaration.getArgs().size(); i++) {
-                VarItem argItem = new VarItem(functionDeclaration.getArgs().get(i).getName());
-                argItem.setType(currentArgTypes.get(i));
-                try {
-                    SymbolTable.top.put(argItem);
-                }catch (ItemAlreadyExists ignored){
-                    var item = (VarItem) SymbolTable.top.getItem(VarItem.START_KEY + argItem.getName());
-                    item.setType(currentArgTypes.get(i));
-                }
-            }
-        }catch (ItemNotFound ignored){}
+            for (int i = 0; i < functionDeclaration.getArgs().size(); i++)
+                context.defineVar(functionDeclaration.getArgs().get(i).getName(), currentArgTypes.get(i));
+        }
         for(Statement statement : functionDeclaration.getBody())
             statement.accept(this);
+        inProgress.remove(name);
 
         Set<Type> returnStmtsTypes = returnTypesStack.pop();
         if(returnStmtsTypes.size() > 1){
             typeErrors.add(new FunctionInconsistentReturnTypes(functionDeclaration.getLine(),
                     functionDeclaration.getFunctionName().getName()));
-            SymbolTable.pop();
+            context.popScope();
             return new NoType();
         }
         else if(returnStmtsTypes.size() == 1){
-            SymbolTable.pop();
-            try {
-                ((FunctionItem) SymbolTable.root.getItem(FunctionItem.START_KEY +
-                        functionDeclaration.getFunctionName().getName())).setReturnType(returnStmtsTypes.iterator().next());
-            } catch (ItemNotFound e) {}
+            context.popScope();
+            if (functionItem != null)
+                functionItem.setReturnType(returnStmtsTypes.iterator().next());
             return returnStmtsTypes.iterator().next();
         }
         else {
-            SymbolTable.pop();
+            context.popScope();
             return new NoType();
         }
     }
     @Override
     public Type visit(PatternDeclaration patternDeclaration){
-        SymbolTable.push(new SymbolTable());
+        context.pushScope(new SymbolTable());
         returnTypesStack.push(new HashSet<>());
-        try {
-            PatternItem patternItem = (PatternItem) SymbolTable.root.getItem(PatternItem.START_KEY +
-                    patternDeclaration.getPatternName().getName());
-            VarItem varItem = new VarItem(patternDeclaration.getTargetVariable());
-            varItem.setType(patternItem.getTargetVarType());
-            try {
-                SymbolTable.top.put(varItem);
-            }catch (ItemAlreadyExists ignored){}
+        PatternItem patternItem = context.findPattern(patternDeclaration.getPatternName().getSymbolId());
+        if (patternItem != null) {
+            context.defineVar(patternDeclaration.getTargetVariable(), patternItem.getTargetVarType());
             for(Expression expression : patternDeclaration.getConditions()){
                 if(!(expression.accept(this) instanceof BoolType)){
                     typeErrors.add(new ConditionIsNotBool(expression.getLine()));
-                    SymbolTable.pop();
+                    context.popScope();
                     return new NoType();
                 }
             }
@@ -117,13 +147,13 @@ public class TypeChecker extends Visitor<Type> {
             if(returnStmtsTypes.size() != 1){
                 typeErrors.add(new PatternInconsistentReturnTypes(patternDeclaration.getLine(),
                         patternDeclaration.getPatternName().getName()));
-                SymbolTable.pop();
+                context.popScope();
                 return new NoType();
             }
-            SymbolTable.pop();
+            context.popScope();
             return returnStmtsTypes.iterator().next();
-        }catch (ItemNotFound ignored){}
-        SymbolTable.pop();
+        }
+        context.popScope();
         return new NoType();
     }
     @Override
@@ -141,9 +171,20 @@ public class TypeChecker extends Visitor<Type> {
             for(Expression expression:accessExpression.getArguments()){
                 argTypes.add(expression.accept(this));
             }
-            Identifier functionName = (Identifier)accessExpression.getAccessedExpression();
-            try {
-                FunctionItem functionItem = (FunctionItem) SymbolTable.root.getItem(FunctionItem.START_KEY + functionName.getName());
+            // anything other than a name, like the element of a lambda's cell, can only hold a function pointer
+            FunctionItem functionItem = null;
+            if(accessExpression.getAccessedExpression() instanceof Identifier functionName)
+                functionItem = context.findFunction(functionName.getSymbolId());
+            if(functionItem == null){
+                Type nonFunctionType = accessExpression.getAccessedExpression().accept(this);
+                if(! (nonFunctionType instanceof FptrType fptrType)){
+                    typeErrors.add(new IsNotCallable(accessExpression.getLine()));
+                    return annotate(accessExpression, new NoType());
+                }
+                functionItem = context.findFunction(fptrType.getFunctionName());
+                argTypes.addAll(0, capturedTypes.getOrDefault(fptrType.getFunctionName(), List.of()));
+            }
+            if(functionItem != null){
                 List<VarDeclaration> defaultVals = functionItem.getFunctionDeclaration().getArgs().
                         stream().
                         filter(a->a.getDefaultVal() != null).toList();
@@ -152,38 +193,23 @@ public class TypeChecker extends Visitor<Type> {
                     argTypes.add(defaultVals.get(i).getDefaultVal().accept(this));
                     i -= 1;
                 }
+                if (functionItem.getArgumentTypes() != null)
+                    for (int k = 0; k < Math.min(argTypes.size(), functionItem.getArgumentTypes().size()); k++)
+                        if (argTypes.get(k) instanceof FptrType passed
+                                && functionItem.getArgumentTypes().get(k) instanceof FptrType known)
+                            visitPointedFunction(passed, known);
                 functionItem.setArgumentTypes(argTypes);
-                return functionItem.getFunctionDeclaration().accept(this);
-            }
-            catch (ItemNotFound e){
-                Type nonFunctionType = accessExpression.getAccessedExpression().accept(this);
-                if(! (nonFunctionType instanceof FptrType fptrType)){
-                    typeErrors.add(new IsNotCallable(accessExpression.getLine()));
-                    return new NoType();
-                }
-                else{
-                    try {
-                        FunctionItem functionItem = (FunctionItem) SymbolTable.root.getItem(FunctionItem.START_KEY + fptrType.getFunctionName());
-                        List<VarDeclaration> defaultVals = functionItem.getFunctionDeclaration().getArgs().
-                                stream().
-                                filter(a->a.getDefaultVal() != null).toList();
-                        int i = defaultVals.size() - 1;
-                        while(argTypes.size() < functionItem.getFunctionDeclaration().getArgs().size()){
-                            argTypes.add(defaultVals.get(i).getDefaultVal().accept(this));
-                            i -= 1;
-                        }
-                        functionItem.setArgumentTypes(argTypes);
-                        return functionItem.getFunctionDeclaration().accept(this);
-                    }catch (ItemNotFound ignored){}
-
-                }
+                FptrType called = new FptrType(functionItem.getFunctionDeclaration().getFunctionName().getName());
+                for (String pointed : pointedLater.getOrDefault(called.getFunctionName(), Set.of()))
+                    visitPointedFunction(new FptrType(pointed), called);
+                return annotate(accessExpression, functionItem.getFunctionDeclaration().accept(this));
             }
         }
         else{
             Type accessedType = accessExpression.getAccessedExpression().accept(this);
             if(!(accessedType instanceof StringType) && !(accessedType instanceof ListType)){
                 typeErrors.add(new IsNotIndexable(accessExpression.getLine()));
-                return new NoType();
+                return annotate(accessExpression, new NoType());
             }
             Set<Type> accessTypes = new HashSet<>();
             for(Expression expression : accessExpression.getDimentionalAccess()){
@@ -191,24 +217,47 @@ public class TypeChecker extends Visitor<Type> {
             }
             if(! (accessTypes.stream().toList().getFirst() instanceof IntType)){
                 typeErrors.add(new AccessIndexIsNotInt(accessExpression.getLine()));
-                return new NoType();
+                return annotate(accessExpression, new NoType());
             }
             if(accessedType instanceof StringType)
-                return new StringType();
+                return annotate(accessExpression, new StringType());
             else
-                return ((ListType)accessedType).getType();
+                return annotate(accessExpression, ((ListType)accessedType).getType());
         }
-        return null;
+        return annotate(accessExpression, null);
     }
 
+    // a pointer passed where an earlier call passed another one is called from the same body with the same arguments
+    private void visitPointedFunction(FptrType passed, FptrType known){
+        FunctionItem passedItem = context.findFunction(passed.getFunctionName());
+        FunctionItem knownItem = context.findFunction(known.getFunctionName());
+        if (passedItem == null || knownItem == null || knownItem.getArgumentTypes() == null
+                || visited.contains(passed.getFunctionName()))
+            return;
+        // nothing is known about the arguments until the first call, which checks this one too
+        if (knownItem.getArgumentTypes().size() < knownItem.getFunctionDeclaration().getArgs().size()) {
+            pointedLater.computeIfAbsent(known.getFunctionName(), name -> new HashSet<>()).add(passed.getFunctionName());
+            return;
+        }
+        // what either one captures is its own, only the arguments of the call are shared
+        ArrayList<Type> argumentTypes = new ArrayList<>(capturedTypes.getOrDefault(passed.getFunctionName(), List.of()));
+        int knownCaptured = capturedTypes.getOrDefault(known.getFunctionName(), List.of()).size();
+        List<Type> knownArguments = knownItem.getArgumentTypes();
+        argumentTypes.addAll(knownArguments.subList(Math.min(knownCaptured, knownArguments.size()), knownArguments.size()));
+        passedItem.setArgumentTypes(argumentTypes);
+        passedItem.getFunctionDeclaration().accept(this);
+    }
     @Override
     public Type visit(ReturnStatement returnStatement){
         if(!returnStatement.hasRetExpression()){
             returnTypesStack.peek().add(new NoType());
             return new NoType();
         }
+        int unresolvedBefore = unresolvedCalls;
         Type returnType = returnStatement.getReturnExp().accept(this);
-        returnTypesStack.peek().add(returnType);
+        // a return built on a call still being resolved says nothing about the type yet
+        if (unresolvedCalls == unresolvedBefore)
+            returnTypesStack.peek().add(returnType);
         return returnType;
     }
     @Override
@@ -218,30 +267,18 @@ public class TypeChecker extends Visitor<Type> {
     }
     @Override
     public Type visit(ForStatement forStatement){
-        SymbolTable.push(SymbolTable.top.copy());
+        context.pushScope(context.getTop().makeChildScope());
         Type rangeTypeIter = forStatement.getRangeExpression().accept(this);
-        VarItem varItem = new VarItem(forStatement.getIteratorId());
-        varItem.setType(rangeTypeIter);
-        try{
-            SymbolTable.top.put(varItem);
-        }catch (ItemAlreadyExists ignored){
-            try {
-                var item = (VarItem) SymbolTable.top.getItem(VarItem.START_KEY + varItem.getName());
-                item.setType(rangeTypeIter);
-
-            } catch (ItemNotFound e) {
-                // ignore
-            }
-        }
+        context.defineVar(forStatement.getIteratorId(), rangeTypeIter);
 
         for(Statement statement : forStatement.getLoopBodyStmts())
             statement.accept(this);
-        SymbolTable.pop();
+        context.popScope();
         return null;
     }
     @Override
     public Type visit(IfStatement ifStatement){
-        SymbolTable.push(SymbolTable.top.copy());
+        context.pushScope(context.getTop().makeChildScope());
         for(Expression expression : ifStatement.getConditions())
             if(!(expression.accept(this) instanceof BoolType))
                 typeErrors.add(new ConditionIsNotBool(expression.getLine()));
@@ -249,15 +286,15 @@ public class TypeChecker extends Visitor<Type> {
             statement.accept(this);
         for(Statement statement : ifStatement.getElseBody())
             statement.accept(this);
-        SymbolTable.pop();
+        context.popScope();
         return new NoType();
     }
     @Override
     public Type visit(LoopDoStatement loopDoStatement){
-        SymbolTable.push(SymbolTable.top.copy());
+        context.pushScope(context.getTop().makeChildScope());
         for(Statement statement : loopDoStatement.getLoopBodyStmts())
             statement.accept(this);
-        SymbolTable.pop();
+        context.popScope();
         return new NoType();
     }
     @Override
@@ -273,21 +310,13 @@ public class TypeChecker extends Visitor<Type> {
                 typeErrors.add(new ListElementsInconsistentType(assignStatement.getLine()));
                 return new NoType();
             }
+            // the element keeps the type of the first pointer put in it, so this one is called wherever that one is
+            if(assignExpType instanceof FptrType passed && listType.getType() instanceof FptrType known)
+                visitPointedFunction(passed, known);
         }
         else{
             Type assignExpType = assignStatement.getAssignExpression().accept(this);
-            VarItem newVarItem = new VarItem(assignStatement.getAssignedId());
-            newVarItem.setType(assignExpType);
-            try {
-                SymbolTable.top.put(newVarItem);
-            }catch (ItemAlreadyExists ignored){
-                VarItem item = null;
-                try {
-                    item = (VarItem) SymbolTable.top.getItem(VarItem.START_KEY + newVarItem.getName());
-                } catch (ItemNotFound ignored1) {}
-                assert item != null;
-                item.setType(assignExpType);
-            }
+            context.defineVar(assignStatement.getAssignedId(), assignExpType);
         }
         return new NoType();
     }
@@ -339,19 +368,19 @@ public class TypeChecker extends Visitor<Type> {
     }
     @Override
     public Type visit(BoolValue boolValue){
-        return new BoolType();
+        return annotate(boolValue, new BoolType());
     }
     @Override
     public Type visit(IntValue intValue){
-        return new IntType();
+        return annotate(intValue, new IntType());
     }
     @Override
     public Type visit(FloatValue floatValue){
-        return new FloatType();
+        return annotate(floatValue, new FloatType());
     }
     @Override
     public Type visit(StringValue stringValue){
-        return new StringType();
+        return annotate(stringValue, new StringType());
     }
     @Override
     public Type visit(ListValue listValue){
@@ -361,13 +390,13 @@ public class TypeChecker extends Visitor<Type> {
         }
         if(listTypes.size() != 1){
             typeErrors.add(new ListElementsInconsistentType(listValue.getLine()));
-            return null;
+            return annotate(listValue, null);
         }
-        return new ListType(listTypes.stream().toList().getFirst());
+        return annotate(listValue, new ListType(listTypes.stream().toList().getFirst()));
     }
     @Override
     public Type visit(FunctionPointer functionPointer){
-        return new FptrType(functionPointer.getId().getName());
+        return annotate(functionPointer, new FptrType(functionPointer.getId().getName()));
     }
     @Override
     public Type visit(AppendExpression appendExpression){
@@ -375,26 +404,26 @@ public class TypeChecker extends Visitor<Type> {
         Set<Type> appendedTypes = new HashSet<>();
         if(!(appendeeType instanceof ListType) && !(appendeeType instanceof StringType)){
             typeErrors.add(new IsNotAppendable(appendExpression.getLine()));
-            return new NoType();
+            return annotate(appendExpression, new NoType());
         }
         for(Expression expression: appendExpression.getAppendeds())
             appendedTypes.add(expression.accept(this));
 
         if(appendedTypes.size() != 1){
             typeErrors.add(new AppendTypesMisMatch(appendExpression.getLine()));
-            return new NoType();
+            return annotate(appendExpression, new NoType());
         }
         Type apendedType = appendedTypes.stream().toList().getFirst();
         if(appendeeType instanceof ListType listType && !(apendedType.sameType(listType.getType()))){
             typeErrors.add(new AppendTypesMisMatch(appendExpression.getLine()));
-            return new NoType();
+            return annotate(appendExpression, new NoType());
         }
         else if(appendeeType instanceof StringType && !(apendedType instanceof StringType)){
             typeErrors.add(new AppendTypesMisMatch(appendExpression.getLine()));
-            return new NoType();
+            return annotate(appendExpression, new NoType());
         }
 
-        return appendeeType;
+        return annotate(appendExpression, appendeeType);
     }
     @Override
     public Type visit(BinaryExpression binaryExpression){
@@ -402,11 +431,20 @@ public class TypeChecker extends Visitor<Type> {
         Type rightOpType = binaryExpression.getSecondOperand().accept(this);
         if(!leftOpType.sameType(rightOpType) && !(leftOpType instanceof NoType) && !(rightOpType instanceof NoType)){
             typeErrors.add(new NonSameOperands(binaryExpression.getLine(), binaryExpression.getOperator()));
-            return new NoType();
+            return annotate(binaryExpression, new NoType());
         }
         BinaryOperator operator = binaryExpression.getOperator();
         boolean leftIsNoType = leftOpType instanceof NoType;
         boolean rightIsNoType = rightOpType instanceof NoType;
+        if(operator.equals(BinaryOperator.AND) || operator.equals(BinaryOperator.OR)){
+            if((!leftIsNoType && !(leftOpType instanceof BoolType)) || (!rightIsNoType && !(rightOpType instanceof BoolType))){
+                typeErrors.add(new UnsupportedOperandType(binaryExpression.getLine(), operator.toString()));
+                return annotate(binaryExpression, new NoType());
+            }
+            if(leftIsNoType || rightIsNoType)
+                return annotate(binaryExpression, new NoType());
+            return annotate(binaryExpression, new BoolType());
+        }
         if(operator.equals(BinaryOperator.DIVIDE)
                 || operator.equals(BinaryOperator.MINUS)
                 || operator.equals(BinaryOperator.MULT)
@@ -415,20 +453,20 @@ public class TypeChecker extends Visitor<Type> {
                 if(!(rightOpType instanceof IntType) && !(rightOpType instanceof FloatType)){
                     typeErrors.add(new UnsupportedOperandType(binaryExpression.getLine(), operator.toString()));
                 }
-                return new NoType();
+                return annotate(binaryExpression, new NoType());
             }
             else if (!leftIsNoType && rightIsNoType){
                 if(!(leftOpType instanceof IntType) && !(leftOpType instanceof FloatType)){
                     typeErrors.add(new UnsupportedOperandType(binaryExpression.getLine(), operator.toString()));
                 }
-                return new NoType();
+                return annotate(binaryExpression, new NoType());
             }
             else{
                 if(!(rightOpType instanceof IntType) && ! (rightOpType instanceof FloatType)){
                     typeErrors.add(new UnsupportedOperandType(binaryExpression.getLine(), operator.toString()));
-                    return new NoType();
+                    return annotate(binaryExpression, new NoType());
                 }
-                return rightOpType;
+                return annotate(binaryExpression, rightOpType);
             }
         }
         else{
@@ -436,20 +474,20 @@ public class TypeChecker extends Visitor<Type> {
                 if(!(rightOpType instanceof IntType) && !(rightOpType instanceof FloatType)){
                     typeErrors.add(new UnsupportedOperandType(binaryExpression.getLine(), operator.toString()));
                 }
-                return new NoType();
+                return annotate(binaryExpression, new NoType());
             }
             else if(!leftIsNoType && rightIsNoType){
                 if(!(leftOpType instanceof IntType) && !(leftOpType instanceof FloatType)){
                     typeErrors.add(new UnsupportedOperandType(binaryExpression.getLine(), operator.toString()));
                 }
-                return new NoType();
+                return annotate(binaryExpression, new NoType());
             }
             else{
                 if(!(rightOpType instanceof IntType) && ! (rightOpType instanceof FloatType)){
                     typeErrors.add(new UnsupportedOperandType(binaryExpression.getLine(), operator.toString()));
-                    return new NoType();
+                    return annotate(binaryExpression, new NoType());
                 }
-                return new BoolType();
+                return annotate(binaryExpression, new BoolType());
             }
         }
     }
@@ -461,76 +499,80 @@ public class TypeChecker extends Visitor<Type> {
 
         if(operandIsNoType){
             typeErrors.add(new UnsupportedOperandType(unaryExpression.getLine(), operator.toString()));
-            return new NoType();
+            return annotate(unaryExpression, new NoType());
         }
         else if(operator.equals(UnaryOperator.DEC)
                 || operator.equals(UnaryOperator.INC)
                 || operator.equals(UnaryOperator.MINUS)){
             if(!(operandType instanceof IntType) && !(operandType instanceof FloatType)){
                 typeErrors.add(new UnsupportedOperandType(unaryExpression.getLine(), operator.toString()));
-                return new NoType();
+                return annotate(unaryExpression, new NoType());
             }
-            return operandType;
+            return annotate(unaryExpression, operandType);
         }
         else if(operator.equals(UnaryOperator.NOT)){
             if(!(operandType instanceof BoolType)){
                 typeErrors.add(new UnsupportedOperandType(unaryExpression.getLine(), operator.toString()));
-                return new NoType();
+                return annotate(unaryExpression, new NoType());
             }
-            return operandType;
+            return annotate(unaryExpression, operandType);
         }
         else
-            return new NoType();
+            return annotate(unaryExpression, new NoType());
     }
     @Override
     public Type visit(ChompStatement chompStatement){
         if (!(chompStatement.getChompExpression().accept(this) instanceof StringType)) {
             typeErrors.add(new ChompArgumentTypeMisMatch(chompStatement.getLine()));
-            return new NoType();
+            return annotate(chompStatement, new NoType());
         }
 
-        return new StringType();
+        return annotate(chompStatement, new StringType());
     }
     @Override
     public Type visit(ChopStatement chopStatement){
         if (!(chopStatement.getChopExpression().accept(this) instanceof StringType)) {
             typeErrors.add(new ChopArgumentTypeMisMatch(chopStatement.getLine()));
-            return new NoType();
+            return annotate(chopStatement, new NoType());
         }
 
-        return new StringType();
+        return annotate(chopStatement, new StringType());
     }
     @Override
     public Type visit(Identifier identifier){
-        try {
-            VarItem varItem = (VarItem) SymbolTable.top.getItem(VarItem.START_KEY + identifier.getName());
-            return varItem.getType();
-
-        }catch (ItemNotFound ignored){}
-        return new NoType();
+        VarItem varItem = context.findVar(identifier.getSymbolId());
+        if(varItem != null)
+            return annotate(identifier, varItem.getType());
+        return annotate(identifier, new NoType());
     }
     @Override
     public Type visit(LambdaExpression lambdaExpression){
-        return new NoType();
+        // only lambdas the lifter turned into functions can be called
+        if (lambdaExpression.getFunctionName() == null)
+            return annotate(lambdaExpression, new NoType());
+        List<Type> captured = new ArrayList<>();
+        for (Expression capture : lambdaExpression.getCaptures())
+            captured.add(capture.accept(this));
+        capturedTypes.put(lambdaExpression.getFunctionName().getName(), captured);
+        return annotate(lambdaExpression, new FptrType(lambdaExpression.getFunctionName().getName()));
     }
     @Override
     public Type visit(LenStatement lenStatement){
         Type argType = lenStatement.getExpression().accept(this);
         if(!(argType instanceof StringType) && !(argType instanceof ListType)){
             typeErrors.add(new LenArgumentTypeMisMatch(lenStatement.getLine()));
-            return new NoType();
+            return annotate(lenStatement, new NoType());
         }
-        return new IntType();
+        return annotate(lenStatement, new IntType());
     }
     @Override
     public Type visit(MatchPatternStatement matchPatternStatement){
-        try{
-            PatternItem patternItem = (PatternItem)SymbolTable.root.getItem(PatternItem.START_KEY +
-                    matchPatternStatement.getPatternId().getName());
+        PatternItem patternItem = context.findPattern(matchPatternStatement.getPatternId().getSymbolId());
+        if(patternItem != null){
             patternItem.setTargetVarType(matchPatternStatement.getMatchArgument().accept(this));
-            return patternItem.getPatternDeclaration().accept(this);
-        }catch (ItemNotFound ignored){}
-        return new NoType();
+            return annotate(matchPatternStatement, patternItem.getPatternDeclaration().accept(this));
+        }
+        return annotate(matchPatternStatement, new NoType());
     }
     @Override
     public Type visit(RangeExpression rangeExpression){
@@ -538,11 +580,11 @@ public class TypeChecker extends Visitor<Type> {
         if(rangeType.equals(RangeType.IDENTIFIER)){
             Type rangeIdentifierType = rangeExpression.getRangeExpressions().getFirst().accept(this);
             if(rangeIdentifierType instanceof ListType listType){
-                return listType.getType();
+                return annotate(rangeExpression, listType.getType());
             }
             else{
                 typeErrors.add(new IsNotIterable(rangeExpression.getLine()));
-                return new NoType();
+                return annotate(rangeExpression, new NoType());
             }
         }
         else if(rangeType.equals(RangeType.LIST)){
@@ -552,19 +594,19 @@ public class TypeChecker extends Visitor<Type> {
 
             if(typesOfElements.size() != 1){
                 typeErrors.add(new ListElementsInconsistentType(rangeExpression.getLine()));
-                return new NoType();
+                return annotate(rangeExpression, new NoType());
             }
-            return typesOfElements.stream().toList().getFirst();
+            return annotate(rangeExpression, typesOfElements.stream().toList().getFirst());
         }
         else if(rangeType.equals(RangeType.DOUBLE_DOT)){
             Type beginRange = rangeExpression.getRangeExpressions().getFirst().accept(this);
             Type endRange = rangeExpression.getRangeExpressions().getLast().accept(this);
             if(!(beginRange instanceof IntType) || !(endRange instanceof IntType)){
                 typeErrors.add(new RangeValuesMisMatch(rangeExpression.getLine()));
-                return new NoType();
+                return annotate(rangeExpression, new NoType());
             }
-            return new IntType();
+            return annotate(rangeExpression, new IntType());
         }
-        return new NoType();
+        return annotate(rangeExpression, new NoType());
     }
 }
@@ -0,0 +1,30 @@
+package main;
+
+import main.symbolTable.utils.SymbolIds;
+import main.visitor.type.TypeChecker;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CompilationContextTest {
+    @Test
+    void lookingUpAnUnknownNameDoesNotInternIt() {
+        String name = "compilationContextTest$neverDeclared";
+        assertNull(new CompilationContext().findFunction(name));
+        assertEquals(SymbolIds.NONE, SymbolIds.find(name));
+    }
+
+    @Test
+    void declaredFunctionIsFoundByName() {
+        CompilationContext context = new CompilationContext();
+        new TypeChecker(context).visit(program(List.of(function("compilationContextTest$declared",
+                List.of(), ret(num(1))))));
+        assertNotNull(context.findFunction("compilationContextTest$declared"));
+        assertNull(context.findFunction("compilationContextTest$other"));
+    }
+}
@@ -0,0 +1,157 @@
+package main;
+
+import main.ast.nodes.Program;
+import main.ast.nodes.declaration.VarDeclaration;
+import main.ast.nodes.expression.LambdaExpression;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.value.primitive.BoolValue;
+import main.ast.nodes.statement.AssignOperator;
+import main.compileError.CompileError;
+import main.symbolTable.utils.SymbolIds;
+import main.visitor.optimizer.Inliner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// every compilation owns its CompilationContext, so compiling many programs at once must give exactly what compiling
+// them one after another gives, whatever order the shared symbol ids were handed out in
+class ConcurrentCompilationTest {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 6;
+
+    private record Compiled(List<String> errors, Map<String, byte[]> classFiles) {}
+
+    private static final List<Supplier<Program>> PROGRAMS = List.of(
+            () -> program(List.of(function("fact", List.of("n"),
+                            ifElse(binary(id("n"), BinaryOperator.LESS_EQUAL_THAN, num(1)), body(ret(num(1))), body()),
+                            ret(binary(id("n"), BinaryOperator.MULT, call("fact", binary(id("n"), BinaryOperator.MINUS, num(1))))))),
+                    put(call("fact", num(10)))),
+            () -> program(List.of(function("count", List.of("n", "acc"),
+                            ifElse(binary(id("n"), BinaryOperator.EQUAL, num(0)), body(ret(id("acc"))), body()),
+                            ret(call("count", binary(id("n"), BinaryOperator.MINUS, num(1)),
+                                    binary(id("acc"), BinaryOperator.PLUS, num(1)))))),
+                    put(call("count", num(1000), num(0)))),
+            () -> program(List.of(function("sq", List.of("x"), ret(binary(id("x"), BinaryOperator.MULT, id("x"))))),
+                    assign("total", num(0)),
+                    forRange("i", num(1), num(10), assign("total", AssignOperator.PLUS_ASSIGN, call("sq", id("i")))),
+                    assign("l", list(num(3), num(1), num(2))),
+                    forEach("v", id("l"), put(id("v"))),
+                    put(id("total"))),
+            () -> {
+                ArrayList<VarDeclaration> args = new ArrayList<>(List.of(new VarDeclaration(id("x"))));
+                LambdaExpression addK = new LambdaExpression(args, body(ret(binary(id("x"), BinaryOperator.PLUS, id("k")))));
+                return program(List.of(),
+                        assign("k", num(5)),
+                        assign("add", addK),
+                        put(call("add", num(37))));
+            },
+            // calls through a variable that lives in a lambda's cell
+            () -> program(List.of(),
+                    assign("f", lambda(List.of("x"), ret(binary(id("x"), BinaryOperator.PLUS, num(1))))),
+                    assign("g", lambda(List.of("x"), ret(binary(id("x"), BinaryOperator.MULT, num(2))))),
+                    assign("swap", lambda(List.of(), assign("f", id("g")), ret(num(0)))),
+                    put(call("f", num(5))),
+                    exec(call("swap")),
+                    put(call("f", num(5)))),
+            () -> program(List.of(),
+                    assign("flag", new BoolValue(true)),
+                    put(binary(num(1), BinaryOperator.PLUS, id("flag"))),
+                    put(binary(id("missing"), BinaryOperator.MINUS, num(2)))));
+
+    // keeps the class files in memory, so the folder they were written to can go right away
+    private static Compiled compile(Supplier<Program> program) {
+        Path outputPath;
+        try {
+            outputPath = Files.createTempDirectory("functionCraft");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            List<String> errors = new ArrayList<>();
+            for (CompileError error : FunctionCraft.compile(program.get(), outputPath + "/", false, Inliner.DEFAULT_BUDGET))
+                errors.add(error.getErrorMessage());
+            Map<String, byte[]> classFiles = new TreeMap<>();
+            try (Stream<Path> files = Files.list(outputPath)) {
+                for (Path file : files.toList())
+                    classFiles.put(file.getFileName().toString(), Files.readAllBytes(file));
+            }
+            return new Compiled(errors, classFiles);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteTree(outputPath);
+        }
+    }
+
+    private static void assertSameOutput(Compiled expected, Compiled actual, String what) {
+        assertEquals(expected.errors(), actual.errors(), what);
+        assertEquals(expected.classFiles().keySet(), actual.classFiles().keySet(), what);
+        for (String name : expected.classFiles().keySet())
+            assertArrayEquals(expected.classFiles().get(name), actual.classFiles().get(name), what + " " + name);
+    }
+
+    @Test
+    void concurrentCompilesMatchSerialOnes() throws Exception {
+        List<Compiled> serial = new ArrayList<>();
+        for (Supplier<Program> program : PROGRAMS)
+            serial.add(compile(program));
+        assertFalse(serial.getLast().errors().isEmpty());
+        // later compiles see different symbol ids for the same names
+        for (int i = 0; i < 1000; i++)
+            SymbolIds.intern("concurrentCompilationTest$" + i);
+
+        List<Callable<Compiled>> tasks = new ArrayList<>();
+        for (int round = 0; round < ROUNDS; round++)
+            for (Supplier<Program> program : PROGRAMS)
+                tasks.add(() -> compile(program));
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Compiled>> results = pool.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++)
+                assertSameOutput(serial.get(i % PROGRAMS.size()), results.get(i).get(), "program " + i % PROGRAMS.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentlyCompiledProgramsRunCorrectly(@TempDir Path outputDirectory) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> paths = new ArrayList<>();
+            for (int round = 0; round < ROUNDS; round++) {
+                Path directory = Files.createDirectory(outputDirectory.resolve("round" + round));
+                paths.add(pool.submit(() -> TestPrograms.compile(PROGRAMS.get(3).get(), Inliner.DEFAULT_BUDGET, directory)));
+            }
+            for (Future<String> path : paths) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                assertTrue(ProgramRunner.runInProcess(path.get(), new PrintStream(out, true), System.err));
+                assertEquals("42", out.toString().strip());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package main;
+
+import main.ast.nodes.Program;
+import main.ast.nodes.expression.BinaryExpression;
+import main.ast.nodes.expression.Expression;
+import main.ast.nodes.expression.Identifier;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.statement.IfStatement;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static main.TestPrograms.output;
+import static main.TestPrograms.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConditionGrammarTest {
+    private static List<Expression> conditionsOf(String condition) {
+        Program program = parse("def main()\n    if " + condition + "\n        puts(1);\n    end\nend\n");
+        return ((IfStatement) program.getMain().getBody().getFirst()).getConditions();
+    }
+
+    // prints the tree with every operator node parenthesized, and checks each node has a line
+    private static String shape(Expression expression) {
+        if (expression instanceof BinaryExpression binary) {
+            assertEquals(2, binary.getLine(), "line of " + binary.getOperator());
+            String operator = binary.getOperator() == BinaryOperator.AND ? " && " : " || ";
+            return "(" + shape(binary.getFirstOperand()) + operator + shape(binary.getSecondOperand()) + ")";
+        }
+        return ((Identifier) expression).getName();
+    }
+
+    private static String shapeOf(String condition) {
+        List<Expression> conditions = conditionsOf(condition);
+        assertEquals(1, conditions.size());
+        return shape(conditions.getFirst());
+    }
+
+    @Test
+    void andBindsTighterThanOr() {
+        assertEquals("((a && b) || c)", shapeOf("(a) && (b) || (c)"));
+        assertEquals("(a || (b && c))", shapeOf("(a) || (b) && (c)"));
+    }
+
+    @Test
+    void operatorsGroupToTheLeft() {
+        assertEquals("((a && b) && c)", shapeOf("(a) && (b) && (c)"));
+        assertEquals("((a || b) || c)", shapeOf("(a) || (b) || (c)"));
+    }
+
+    @Test
+    void parenthesesOverridePrecedence() {
+        assertEquals("(a && (b || c))", shapeOf("(a) && ((b) || (c))"));
+        assertEquals("((a || b) && c)", shapeOf("((a) || (b)) && (c)"));
+    }
+
+    @Test
+    void separateConditionsStayInTheList() {
+        List<Expression> conditions = conditionsOf("(a) (b) || (c)");
+        assertEquals(2, conditions.size());
+        assertEquals("a", shape(conditions.get(0)));
+        assertEquals("(b || c)", shape(conditions.get(1)));
+    }
+
+    @Test
+    void mixedConditionEvaluatesWithPrecedence() {
+        // grouped to the right this would be false && (false || true)
+        Program program = parse("""
+                def main()
+                    a = false;
+                    b = false;
+                    c = true;
+                    if (a) && (b) || (c)
+                        puts(1);
+                    else
+                        puts(2);
+                    end
+                end
+                """);
+        assertEquals(List.of("1"), output(program));
+    }
+}
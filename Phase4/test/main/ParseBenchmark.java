@@ -0,0 +1,80 @@
+package main;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import parsers.FunctionCraftLexer;
+import parsers.FunctionCraftParser;
+
+import java.util.function.Consumer;
+
+// times parsing a large generated program the way the compiler used to, full LL prediction while building a parse
+// tree, against what it does now, SLL prediction without a tree falling back to LL only when SLL bails out.
+// not a test, run it by hand: java -cp <test classes> main.ParseBenchmark [functions]
+public class ParseBenchmark {
+    private static final int ROUNDS = 5;
+
+    // every function exercises conditions, loops, lists, lambdas and patterns, so most decisions in the grammar run
+    private static String generate(int functions) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < functions; i++) {
+            source.append("""
+                    def f%1$d(n, [step = 1])
+                        total = 0;
+                        values = [n, n * 2, n - 3];
+                        for i in (0 .. n)
+                            if (i / 2 == 0) && (i > step) || (n < 3)
+                                total += values[0] + i * step;
+                            else
+                                total -= len(values);
+                            end
+                        end
+                        loop do
+                            total /= 2;
+                            break if (total < 10) (n > 0);
+                            next if (total == 11);
+                        end
+                        g = -> (x) { return x + step; };
+                        return g(total) + -n;
+                    end
+                    pattern p%1$d(x)
+                        | (x > 10) = x - 1
+                        | (x <= 10) = x + %1$d;
+                    """.formatted(i));
+        }
+        source.append("def main()\n    puts(f0(3));\nend\n");
+        return source.toString();
+    }
+
+    private static void before(String source) {
+        FunctionCraftParser parser = new FunctionCraftParser(new CommonTokenStream(
+                new FunctionCraftLexer(CharStreams.fromString(source))));
+        parser.program();
+        // a generated program the grammar rejects would time error recovery instead
+        if (parser.getNumberOfSyntaxErrors() > 0)
+            throw new IllegalStateException("generated program does not parse");
+    }
+
+    private static void after(String source) {
+        FunctionCraft.parse(CharStreams.fromString(source));
+    }
+
+    // best of a few rounds after a warm up, in milliseconds
+    private static double time(Consumer<String> parse, String source) {
+        parse.accept(source);
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            parse.accept(source);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+
+    public static void main(String[] args) {
+        int functions = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        String source = generate(functions);
+        System.out.printf("%d functions, %d lines%n", functions, source.lines().count());
+        System.out.printf("before: LL with parse tree     %8.1f ms%n", time(ParseBenchmark::before, source));
+        System.out.printf("after:  SLL without parse tree %8.1f ms%n", time(ParseBenchmark::after, source));
+    }
+}
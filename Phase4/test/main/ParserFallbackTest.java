@@ -0,0 +1,93 @@
+package main;
+
+import main.ast.nodes.Program;
+import main.ast.nodes.statement.ExpressionStatement;
+import main.ast.nodes.statement.IfStatement;
+import main.ast.nodes.statement.PutStatement;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.jupiter.api.Test;
+import parsers.FunctionCraftLexer;
+import parsers.FunctionCraftParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static main.TestPrograms.output;
+import static main.TestPrograms.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// the parser tries SLL prediction first and only falls back to full LL when that attempt bails out
+class ParserFallbackTest {
+    // a then body that starts with a parenthesis could still be another condition operand, which SLL,
+    // merging the contexts the condition was entered from, cannot rule out before it reaches the semicolon
+    private static final String NEEDS_LL = """
+            def main()
+                a = 1;
+                if (a > 0)
+                    (a + 1);
+                    puts(a);
+                end
+            end
+            """;
+
+    private static void parseSll(String source) {
+        FunctionCraftParser parser = new FunctionCraftParser(new CommonTokenStream(
+                new FunctionCraftLexer(CharStreams.fromString(source))));
+        parser.setBuildParseTree(false);
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.program();
+    }
+
+    // what the parser wrote to System.err while parsing source
+    private static String errorsOf(String source) {
+        PrintStream original = System.err;
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(errors, true));
+        try {
+            parse(source);
+        } finally {
+            System.setErr(original);
+        }
+        return errors.toString();
+    }
+
+    @Test
+    void inputOnlyLlAcceptsStillParses() {
+        assertThrows(ParseCancellationException.class, () -> parseSll(NEEDS_LL));
+        Program program = parse(NEEDS_LL);
+        IfStatement ifStatement = assertInstanceOf(IfStatement.class, program.getMain().getBody().get(1));
+        assertEquals(1, ifStatement.getConditions().size());
+        assertEquals(2, ifStatement.getThenBody().size());
+        assertInstanceOf(ExpressionStatement.class, ifStatement.getThenBody().get(0));
+        assertInstanceOf(PutStatement.class, ifStatement.getThenBody().get(1));
+        assertEquals(List.of("1"), output(program));
+    }
+
+    @Test
+    void fallbackIsSilentWhenLlSucceeds() {
+        assertEquals("", errorsOf(NEEDS_LL));
+    }
+
+    @Test
+    void syntaxErrorIsReportedOnce() {
+        // the SLL attempt bails out quietly, only the LL retry reports the missing semicolon
+        String errors = errorsOf("""
+                def main()
+                    puts(1)
+                end
+                """);
+        List<String> lines = errors.lines().toList();
+        assertEquals(1, lines.size(), errors);
+        assertTrue(lines.getFirst().startsWith("line 3:"), errors);
+    }
+}
@@ -0,0 +1,66 @@
+package main;
+
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.statement.AssignOperator;
+import main.visitor.optimizer.Inliner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgramRunnerTest {
+    @TempDir
+    Path outputDirectory;
+
+    @Test
+    void inProcessRunCapturesOutputAndRestoresStreams() {
+        PrintStream originalOut = System.out;
+        assertEquals(List.of("3"), output(program(List.of(), put(binary(num(1), BinaryOperator.PLUS, num(2))))));
+        assertSame(originalOut, System.out);
+    }
+
+    @Test
+    void uncaughtExceptionFailsTheRun() {
+        Run run = run(program(List.of(),
+                assign("z", num(0)),
+                put(binary(num(1), BinaryOperator.DIVIDE, id("z")))), Inliner.DEFAULT_BUDGET);
+        assertFalse(run.passed);
+        assertTrue(run.errors.contains("ArithmeticException"), run.errors);
+    }
+
+    @Test
+    void forkedProgramIsKilledWhenItRunsOutOfTime() {
+        // never finishes, the only thing this jvm prints about it is the timeout
+        String outputPath = compile(program(List.of(),
+                assign("n", num(0)),
+                loop(assign("n", AssignOperator.PLUS_ASSIGN, num(1)))), Inliner.DEFAULT_BUDGET, outputDirectory);
+        PrintStream originalErr = System.err;
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+        long start = System.nanoTime();
+        boolean passed;
+        try {
+            passed = ProgramRunner.runForked(outputPath, 500);
+        } finally {
+            System.setErr(originalErr);
+        }
+        assertFalse(passed);
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 10_000);
+    }
+
+    @Test
+    void forkedProgramReportsItsExitStatus() {
+        String outputPath = compile(program(List.of(), assign("z", num(0)),
+                assign("q", binary(num(1), BinaryOperator.DIVIDE, id("z")))), Inliner.DEFAULT_BUDGET, outputDirectory);
+        // the child's own stack trace goes straight to the inherited stderr
+        assertFalse(ProgramRunner.runForked(outputPath, 0));
+    }
+}
@@ -0,0 +1,228 @@
+package main;
+
+import main.ast.nodes.Program;
+import main.ast.nodes.declaration.FunctionDeclaration;
+import main.ast.nodes.declaration.MainDeclaration;
+import main.ast.nodes.declaration.VarDeclaration;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.value.FunctionPointer;
+import main.ast.nodes.expression.value.ListValue;
+import main.ast.nodes.expression.value.primitive.IntValue;
+import main.ast.nodes.statement.*;
+import main.compileError.CompileError;
+import main.visitor.optimizer.Inliner;
+import org.antlr.v4.runtime.CharStreams;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// builds programs straight as ASTs, so tests do not depend on the generated parser, and runs them in-process
+public class TestPrograms {
+    public static class Run {
+        public final boolean passed;
+        public final List<String> output;
+        public final String errors;
+
+        Run(boolean passed, List<String> output, String errors) {
+            this.passed = passed;
+            this.output = output;
+            this.errors = errors;
+        }
+    }
+
+    public static List<String> output(Program program) {
+        return output(program, Inliner.DEFAULT_BUDGET);
+    }
+
+    // fails unless the program compiles cleanly and runs to the end
+    public static List<String> output(Program program, int inlineBudget) {
+        Run run = run(program, inlineBudget);
+        if (!run.passed)
+            throw new AssertionError("program failed: " + run.errors);
+        return run.output;
+    }
+
+    // parses with the generated parser, for tests of the grammar itself
+    public static Program parse(String source) {
+        return FunctionCraft.parse(CharStreams.fromString(source));
+    }
+
+    // compiles into a scratch folder that is deleted again once the program has finished
+    public static Run run(Program program, int inlineBudget) {
+        Path directory;
+        try {
+            directory = Files.createTempDirectory("functionCraft");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            String outputPath = compile(program, inlineBudget, directory);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            boolean passed = ProgramRunner.runInProcess(outputPath, new PrintStream(out, true), new PrintStream(err, true));
+            List<String> lines = out.size() == 0 ? List.of() : Arrays.asList(out.toString().split("\\R"));
+            return new Run(passed, lines, err.toString());
+        } finally {
+            deleteTree(directory);
+        }
+    }
+
+    // compiles into the given folder and returns its path, fails on type errors
+    public static String compile(Program program, int inlineBudget, Path directory) {
+        String outputPath = directory.toString() + "/";
+        List<CompileError> typeErrors = FunctionCraft.compile(program, outputPath, false, inlineBudget);
+        if (!typeErrors.isEmpty())
+            throw new AssertionError("type errors: " + typeErrors.getFirst().getErrorMessage());
+        return outputPath;
+    }
+
+    public static void deleteTree(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Program program(List<FunctionDeclaration> functions, Statement... main) {
+        Program program = new Program();
+        for (FunctionDeclaration function : functions)
+            program.addFunctionDeclaration(function);
+        MainDeclaration mainDeclaration = new MainDeclaration();
+        mainDeclaration.setBody(body(main));
+        program.setMain(mainDeclaration);
+        return program;
+    }
+
+    public static FunctionDeclaration function(String name, List<String> args, Statement... statements) {
+        FunctionDeclaration function = new FunctionDeclaration();
+        function.setFunctionName(id(name));
+        for (String arg : args)
+            function.addArg(new VarDeclaration(id(arg)));
+        function.setBody(body(statements));
+        return function;
+    }
+
+    public static ArrayList<Statement> body(Statement... statements) {
+        return new ArrayList<>(List.of(statements));
+    }
+
+    public static Identifier id(String name) {
+        return new Identifier(name);
+    }
+
+    public static IntValue num(int value) {
+        return new IntValue(value);
+    }
+
+    public static ListValue list(Expression... elements) {
+        return new ListValue(new ArrayList<>(List.of(elements)));
+    }
+
+    public static LambdaExpression lambda(List<String> args, Statement... statements) {
+        ArrayList<VarDeclaration> declarations = new ArrayList<>();
+        for (String arg : args)
+            declarations.add(new VarDeclaration(id(arg)));
+        return new LambdaExpression(declarations, body(statements));
+    }
+
+    // method(:name)
+    public static FunctionPointer pointer(String function) {
+        return new FunctionPointer(id(function));
+    }
+
+    public static BinaryExpression binary(Expression first, BinaryOperator operator, Expression second) {
+        return new BinaryExpression(first, second, operator);
+    }
+
+    public static AccessExpression call(String function, Expression... args) {
+        AccessExpression call = new AccessExpression(id(function), new ArrayList<>(List.of(args)));
+        call.setIsFunctionCall(true);
+        return call;
+    }
+
+    public static AccessExpression index(Expression list, Expression index) {
+        AccessExpression access = new AccessExpression(list, new ArrayList<>());
+        access.setDimentionalAccess(new ArrayList<>(List.of(index)));
+        return access;
+    }
+
+    // a call made only for what it does
+    public static ExpressionStatement exec(Expression expression) {
+        return new ExpressionStatement(expression);
+    }
+
+    public static PutStatement put(Expression expression) {
+        return new PutStatement(expression);
+    }
+
+    public static AssignStatement assign(String name, Expression value) {
+        return assign(name, AssignOperator.ASSIGN, value);
+    }
+
+    public static AssignStatement assign(String name, AssignOperator operator, Expression value) {
+        return new AssignStatement(false, id(name), value, operator);
+    }
+
+    public static AssignStatement assignElement(String list, Expression index, AssignOperator operator, Expression value) {
+        AssignStatement assign = new AssignStatement(true, id(list), value, operator);
+        assign.setAccessListExpression(index);
+        return assign;
+    }
+
+    public static ReturnStatement ret(Expression value) {
+        ReturnStatement returnStatement = new ReturnStatement();
+        if (value != null)
+            returnStatement.setReturnExp(value);
+        return returnStatement;
+    }
+
+    public static IfStatement ifElse(Expression condition, ArrayList<Statement> thenBody, ArrayList<Statement> elseBody) {
+        IfStatement ifStatement = new IfStatement();
+        ifStatement.addCondition(new ArrayList<>(List.of(condition)));
+        ifStatement.setThenBody(thenBody);
+        ifStatement.setElseBody(elseBody);
+        return ifStatement;
+    }
+
+    public static BreakStatement breakIf(Expression... conditions) {
+        BreakStatement breakStatement = new BreakStatement();
+        breakStatement.setConditions(new ArrayList<>(List.of(conditions)));
+        return breakStatement;
+    }
+
+    public static NextStatement nextIf(Expression... conditions) {
+        NextStatement nextStatement = new NextStatement();
+        nextStatement.setConditions(new ArrayList<>(List.of(conditions)));
+        return nextStatement;
+    }
+
+    public static PushStatement push(Expression list, Expression element) {
+        return new PushStatement(list, element);
+    }
+
+    public static LoopDoStatement loop(Statement... statements) {
+        return new LoopDoStatement(body(statements));
+    }
+
+    public static ForStatement forRange(String iterator, Expression from, Expression to, Statement... statements) {
+        RangeExpression range = new RangeExpression(RangeType.DOUBLE_DOT, new ArrayList<>(List.of(from, to)));
+        return new ForStatement(id(iterator), range, body(statements));
+    }
+
+    public static ForStatement forEach(String iterator, Expression list, Statement... statements) {
+        RangeExpression range = new RangeExpression(RangeType.IDENTIFIER, new ArrayList<>(List.of(list)));
+        return new ForStatement(id(iterator), range, body(statements));
+    }
+}
@@ -0,0 +1,114 @@
+package main.bytecode;
+
+import main.bytecode.ir.ClassDefinition;
+import main.bytecode.ir.IincInstruction;
+import main.bytecode.ir.IntInstruction;
+import main.bytecode.ir.JumpInstruction;
+import main.bytecode.ir.Label;
+import main.bytecode.ir.MethodDefinition;
+import main.bytecode.ir.SimpleInstruction;
+import main.bytecode.ir.VarInstruction;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MethodWriterTest {
+    // each iinc is three bytes, so this many put a jump across them out of 16-bit range
+    private static final int PADDING = 12_000;
+
+    private static class Loader extends ClassLoader {
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static MethodDefinition method(ClassDefinition owner, String name) {
+        MethodDefinition method = owner.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, name, "(I)I");
+        method.add(new SimpleInstruction(Opcodes.ICONST_0));
+        method.add(new VarInstruction(Opcodes.ISTORE, 1));
+        return method;
+    }
+
+    private static void pad(MethodDefinition method) {
+        for (int i = 0; i < PADDING; i++)
+            method.add(new IincInstruction(1, 1));
+    }
+
+    private static int call(ClassDefinition owner, String name, int argument) throws ReflectiveOperationException {
+        // the class is verified when it is loaded, stack map frames included
+        Class<?> loaded = new Loader().define(owner.getName(), ClassFileWriter.write(owner));
+        Method method = loaded.getMethod(name, int.class);
+        return (int) method.invoke(null, argument);
+    }
+
+    @Test
+    void farConditionalJumpForwardIsWidened() throws ReflectiveOperationException {
+        ClassDefinition owner = new ClassDefinition(ClassFileWriter.ACC_PUBLIC, "FarConditional", "java/lang/Object");
+        MethodDefinition method = method(owner, "run");
+        Label far = new Label("Far");
+        method.add(new VarInstruction(Opcodes.ILOAD, 0));
+        method.add(new JumpInstruction(Opcodes.IFNE, far));
+        pad(method);
+        method.add(new VarInstruction(Opcodes.ILOAD, 1));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        method.add(far);
+        method.add(new SimpleInstruction(Opcodes.ICONST_M1));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        assertEquals(PADDING, call(owner, "run", 0));
+        assertEquals(-1, call(owner, "run", 1));
+    }
+
+    @Test
+    void farGotoForwardIsWidened() throws ReflectiveOperationException {
+        ClassDefinition owner = new ClassDefinition(ClassFileWriter.ACC_PUBLIC, "FarGoto", "java/lang/Object");
+        MethodDefinition method = method(owner, "run");
+        Label padding = new Label("Padding");
+        Label end = new Label("End");
+        method.add(new VarInstruction(Opcodes.ILOAD, 0));
+        method.add(new JumpInstruction(Opcodes.IFEQ, padding));
+        method.add(new JumpInstruction(Opcodes.GOTO, end));
+        method.add(padding);
+        pad(method);
+        method.add(new VarInstruction(Opcodes.ILOAD, 1));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        method.add(end);
+        method.add(new SimpleInstruction(Opcodes.ICONST_M1));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        assertEquals(PADDING, call(owner, "run", 0));
+        assertEquals(-1, call(owner, "run", 1));
+    }
+
+    @Test
+    void farConditionalJumpBackwardIsWidened() throws ReflectiveOperationException {
+        ClassDefinition owner = new ClassDefinition(ClassFileWriter.ACC_PUBLIC, "FarLoop", "java/lang/Object");
+        MethodDefinition method = method(owner, "run");
+        Label top = new Label("Top");
+        method.add(top);
+        pad(method);
+        method.add(new VarInstruction(Opcodes.ILOAD, 1));
+        method.add(new VarInstruction(Opcodes.ILOAD, 0));
+        method.add(new JumpInstruction(Opcodes.IF_ICMPLT, top));
+        method.add(new VarInstruction(Opcodes.ILOAD, 1));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        assertEquals(3 * PADDING, call(owner, "run", 3 * PADDING));
+        assertEquals(PADDING, call(owner, "run", 1));
+    }
+
+    @Test
+    void nearJumpsStillWork() throws ReflectiveOperationException {
+        ClassDefinition owner = new ClassDefinition(ClassFileWriter.ACC_PUBLIC, "Near", "java/lang/Object");
+        MethodDefinition method = method(owner, "run");
+        Label positive = new Label("Positive");
+        method.add(new VarInstruction(Opcodes.ILOAD, 0));
+        method.add(new JumpInstruction(Opcodes.IFGT, positive));
+        method.add(new IntInstruction(Opcodes.BIPUSH, 7));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        method.add(positive);
+        method.add(new IntInstruction(Opcodes.BIPUSH, 9));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        assertEquals(7, call(owner, "run", 0));
+        assertEquals(9, call(owner, "run", 1));
+    }
+}
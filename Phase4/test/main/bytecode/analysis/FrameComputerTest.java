@@ -0,0 +1,207 @@
+package main.bytecode.analysis;
+
+import main.ast.nodes.Program;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.value.primitive.BoolValue;
+import main.ast.nodes.expression.value.primitive.StringValue;
+import main.ast.nodes.statement.AssignOperator;
+import main.bytecode.ClassFileWriter;
+import main.bytecode.Opcodes;
+import main.bytecode.ir.ClassDefinition;
+import main.bytecode.ir.Instruction;
+import main.bytecode.ir.JumpInstruction;
+import main.bytecode.ir.Label;
+import main.bytecode.ir.MethodDefinition;
+import main.bytecode.ir.MethodInstruction;
+import main.bytecode.ir.SimpleInstruction;
+import main.bytecode.ir.VarInstruction;
+import main.visitor.optimizer.Inliner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// the stack map frames are checked by the jvm itself: every class here is loaded with verification on
+class FrameComputerTest {
+    @TempDir
+    Path outputDirectory;
+
+    private static class Loader extends ClassLoader {
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static MethodDefinition method(ClassDefinition owner) {
+        return owner.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, "run", "(I)I");
+    }
+
+    // allocates and sizes the method the way the code generator does, then loads the class and calls run
+    private static int loadAndCall(ClassDefinition owner, MethodDefinition method, int argument) throws ReflectiveOperationException {
+        method.setMaxLocals(LocalAllocator.allocate(method));
+        method.setMaxStack(StackAnalyzer.computeMaxStack(method));
+        Class<?> loaded = new Loader().define(owner.getName(), ClassFileWriter.write(owner));
+        return (int) loaded.getMethod("run", int.class).invoke(null, argument);
+    }
+
+    // stores a boxed Integer on one path and a boxed Long on the other into the same local
+    private static void boxOnEitherPath(MethodDefinition method, Label join) {
+        Label asLong = new Label("AsLong");
+        method.add(new VarInstruction(Opcodes.ILOAD, 0));
+        method.add(new JumpInstruction(Opcodes.IFEQ, asLong));
+        method.add(new VarInstruction(Opcodes.ILOAD, 0));
+        method.add(new MethodInstruction(Opcodes.INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;"));
+        method.add(new VarInstruction(Opcodes.ASTORE, 1));
+        method.add(new JumpInstruction(Opcodes.GOTO, join));
+        method.add(asLong);
+        method.add(new SimpleInstruction(Opcodes.LCONST_1));
+        method.add(new MethodInstruction(Opcodes.INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;"));
+        method.add(new VarInstruction(Opcodes.ASTORE, 1));
+        method.add(join);
+    }
+
+    @Test
+    void referencesMeetAtTheirCommonSuperclass() throws ReflectiveOperationException {
+        ClassDefinition owner = new ClassDefinition(ClassFileWriter.ACC_PUBLIC, "CommonSuper", "java/lang/Object");
+        MethodDefinition method = method(owner);
+        Label join = new Label("Join");
+        boxOnEitherPath(method, join);
+        // only a Number has intValue, so a frame that said Object here would not verify
+        method.add(new VarInstruction(Opcodes.ALOAD, 1));
+        method.add(new MethodInstruction(Opcodes.INVOKEVIRTUAL, "java/lang/Number", "intValue", "()I"));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        Frame frame = FrameComputer.compute(owner, method).getFrames().get(join);
+        assertEquals(VerificationType.object("java/lang/Number"), frame.getLocal(1));
+        assertEquals(5, loadAndCall(owner, method, 5));
+        assertEquals(1, loadAndCall(owner, method, 0));
+    }
+
+    @Test
+    void intAndReferenceMeetAsUnusable() throws ReflectiveOperationException {
+        ClassDefinition owner = new ClassDefinition(ClassFileWriter.ACC_PUBLIC, "Conflict", "java/lang/Object");
+        MethodDefinition method = method(owner);
+        Label other = new Label("Other");
+        Label join = new Label("Join");
+        method.add(new VarInstruction(Opcodes.ILOAD, 0));
+        method.add(new JumpInstruction(Opcodes.IFEQ, other));
+        method.add(new SimpleInstruction(Opcodes.ICONST_1));
+        method.add(new VarInstruction(Opcodes.ISTORE, 1));
+        method.add(new JumpInstruction(Opcodes.GOTO, join));
+        method.add(other);
+        method.add(new SimpleInstruction(Opcodes.ACONST_NULL));
+        method.add(new VarInstruction(Opcodes.ASTORE, 1));
+        method.add(join);
+        method.add(new VarInstruction(Opcodes.ILOAD, 0));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        Frame frame = FrameComputer.compute(owner, method).getFrames().get(join);
+        assertEquals(VerificationType.TOP, frame.getLocal(1));
+        assertEquals(4, loadAndCall(owner, method, 4));
+    }
+
+    @Test
+    void valueOnTheStackIsCarriedAcrossAJoin() throws ReflectiveOperationException {
+        ClassDefinition owner = new ClassDefinition(ClassFileWriter.ACC_PUBLIC, "StackJoin", "java/lang/Object");
+        MethodDefinition method = method(owner);
+        Label other = new Label("Other");
+        Label join = new Label("Join");
+        method.add(new VarInstruction(Opcodes.ILOAD, 0));
+        method.add(new JumpInstruction(Opcodes.IFEQ, other));
+        method.add(new SimpleInstruction(Opcodes.ICONST_1));
+        method.add(new JumpInstruction(Opcodes.GOTO, join));
+        method.add(other);
+        method.add(new SimpleInstruction(Opcodes.ICONST_2));
+        method.add(join);
+        method.add(new VarInstruction(Opcodes.ILOAD, 0));
+        method.add(new SimpleInstruction(Opcodes.IADD));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        Frame frame = FrameComputer.compute(owner, method).getFrames().get(join);
+        assertEquals(List.of(VerificationType.INTEGER), frame.getStack());
+        assertEquals(2, StackAnalyzer.computeMaxStack(method));
+        assertEquals(8, loadAndCall(owner, method, 7));
+        assertEquals(2, loadAndCall(owner, method, 0));
+    }
+
+    @Test
+    void longsCountTwiceTowardsTheStack() throws ReflectiveOperationException {
+        ClassDefinition owner = new ClassDefinition(ClassFileWriter.ACC_PUBLIC, "LongStack", "java/lang/Object");
+        MethodDefinition method = method(owner);
+        method.add(new VarInstruction(Opcodes.ILOAD, 0));
+        method.add(new SimpleInstruction(Opcodes.I2L));
+        method.add(new VarInstruction(Opcodes.ILOAD, 0));
+        method.add(new SimpleInstruction(Opcodes.I2L));
+        method.add(new SimpleInstruction(Opcodes.LADD));
+        method.add(new SimpleInstruction(Opcodes.L2I));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        assertEquals(4, StackAnalyzer.computeMaxStack(method));
+        assertEquals(6, loadAndCall(owner, method, 3));
+    }
+
+    @Test
+    void unreachableCodeIsLeftOut() throws ReflectiveOperationException {
+        ClassDefinition owner = new ClassDefinition(ClassFileWriter.ACC_PUBLIC, "Unreachable", "java/lang/Object");
+        MethodDefinition method = method(owner);
+        Label end = new Label("End");
+        Instruction dead = new SimpleInstruction(Opcodes.ICONST_5);
+        method.add(new JumpInstruction(Opcodes.GOTO, end));
+        // no frame could describe this, so it has to go rather than be written out
+        method.add(dead);
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        method.add(end);
+        method.add(new VarInstruction(Opcodes.ILOAD, 0));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        assertFalse(FrameComputer.compute(owner, method).getCode().contains(dead));
+        assertEquals(9, loadAndCall(owner, method, 9));
+    }
+
+    // branches, loops, a list, strings and a lambda give the generated methods joins with all kinds of locals
+    private static Program mixed() {
+        return program(List.of(function("describe", List.of("n"),
+                        ifElse(binary(id("n"), BinaryOperator.GREATER_THAN, num(2)),
+                                body(ret(new StringValue("\"big\""))),
+                                body(ret(new StringValue("\"small\"")))))),
+                assign("l", list(num(1), num(2), num(3))),
+                assign("total", num(0)),
+                forEach("v", id("l"),
+                        assign("word", call("describe", id("v"))),
+                        ifElse(binary(id("v"), BinaryOperator.EQUAL, num(2)),
+                                body(assign("half", lambda(List.of("x"), ret(binary(id("x"), BinaryOperator.DIVIDE, num(2))))),
+                                        assign("total", AssignOperator.PLUS_ASSIGN, call("half", num(10)))),
+                                body(assign("total", AssignOperator.PLUS_ASSIGN, id("v")))),
+                        put(id("word"))),
+                loop(assign("total", AssignOperator.MINUS_ASSIGN, num(4)),
+                        breakIf(binary(id("total"), BinaryOperator.LESS_THAN, num(0)))),
+                put(id("total")),
+                put(new BoolValue(true)));
+    }
+
+    @Test
+    void generatedClassesPassVerification() throws IOException, ClassNotFoundException {
+        compile(mixed(), Inliner.DEFAULT_BUDGET, outputDirectory);
+        List<String> classes;
+        try (Stream<Path> files = Files.list(outputDirectory)) {
+            classes = files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".class"))
+                    .map(name -> name.substring(0, name.length() - ".class".length()))
+                    .toList();
+        }
+        assertTrue(classes.contains("Main"), classes.toString());
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{outputDirectory.toUri().toURL()},
+                ClassLoader.getPlatformClassLoader())) {
+            // linking verifies the whole class, including methods that would never run here
+            for (String name : classes)
+                Class.forName(name, true, loader);
+        }
+        assertEquals(List.of("small", "small", "big", "-3", "1"), output(mixed()));
+    }
+}
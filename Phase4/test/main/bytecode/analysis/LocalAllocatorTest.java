@@ -0,0 +1,192 @@
+package main.bytecode.analysis;
+
+import main.ast.nodes.expression.Expression;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.statement.Statement;
+import main.bytecode.ClassFileWriter;
+import main.bytecode.Opcodes;
+import main.bytecode.ir.ClassDefinition;
+import main.bytecode.ir.IincInstruction;
+import main.bytecode.ir.IntInstruction;
+import main.bytecode.ir.JumpInstruction;
+import main.bytecode.ir.Label;
+import main.bytecode.ir.MethodDefinition;
+import main.bytecode.ir.SimpleInstruction;
+import main.bytecode.ir.VarInstruction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// slots past the parameters are virtual until the allocator maps them, sharing a slot wherever lifetimes allow
+class LocalAllocatorTest {
+    // more locals than a one byte operand can name, so the top ones need wide
+    private static final int MANY = 300;
+
+    private static class Loader extends ClassLoader {
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static MethodDefinition method(ClassDefinition owner) {
+        return owner.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, "run", "(I)I");
+    }
+
+    private static VarInstruction load(int slot) {
+        return new VarInstruction(Opcodes.ILOAD, slot);
+    }
+
+    private static VarInstruction store(int slot) {
+        return new VarInstruction(Opcodes.ISTORE, slot);
+    }
+
+    // sets the limits the way the code generator does, then loads the class, which verifies it, and calls run
+    private static int allocateAndCall(ClassDefinition owner, MethodDefinition method, int argument) throws ReflectiveOperationException {
+        method.setMaxLocals(LocalAllocator.allocate(method));
+        method.setMaxStack(StackAnalyzer.computeMaxStack(method));
+        Class<?> loaded = new Loader().define(owner.getName(), ClassFileWriter.write(owner));
+        return (int) loaded.getMethod("run", int.class).invoke(null, argument);
+    }
+
+    @Test
+    void disjointLiveRangesShareASlot() throws ReflectiveOperationException {
+        ClassDefinition owner = new ClassDefinition(ClassFileWriter.ACC_PUBLIC, "Disjoint", "java/lang/Object");
+        MethodDefinition method = method(owner);
+        VarInstruction first = store(100);
+        VarInstruction second = store(101);
+        method.add(load(0));
+        method.add(new SimpleInstruction(Opcodes.ICONST_1));
+        method.add(new SimpleInstruction(Opcodes.IADD));
+        method.add(first);
+        method.add(load(100));
+        method.add(new SimpleInstruction(Opcodes.ICONST_2));
+        method.add(new SimpleInstruction(Opcodes.IMUL));
+        // the first value is dead by the time the second is written
+        method.add(second);
+        method.add(load(101));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        assertEquals(8, allocateAndCall(owner, method, 3));
+        assertEquals(1, first.getSlot());
+        assertEquals(1, second.getSlot());
+        assertEquals(2, method.getMaxLocals());
+    }
+
+    @Test
+    void overlappingLiveRangesGetTheirOwnSlots() throws ReflectiveOperationException {
+        ClassDefinition owner = new ClassDefinition(ClassFileWriter.ACC_PUBLIC, "Overlapping", "java/lang/Object");
+        MethodDefinition method = method(owner);
+        VarInstruction first = store(100);
+        VarInstruction second = store(101);
+        method.add(load(0));
+        method.add(new SimpleInstruction(Opcodes.ICONST_1));
+        method.add(new SimpleInstruction(Opcodes.IADD));
+        method.add(first);
+        method.add(load(0));
+        method.add(new SimpleInstruction(Opcodes.ICONST_2));
+        method.add(new SimpleInstruction(Opcodes.IMUL));
+        method.add(second);
+        method.add(load(100));
+        method.add(load(101));
+        method.add(new SimpleInstruction(Opcodes.IADD));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        assertEquals(10, allocateAndCall(owner, method, 3));
+        assertNotEquals(first.getSlot(), second.getSlot());
+        assertEquals(3, method.getMaxLocals());
+    }
+
+    @Test
+    void liveLongKeepsBothOfItsSlots() throws ReflectiveOperationException {
+        ClassDefinition owner = new ClassDefinition(ClassFileWriter.ACC_PUBLIC, "Wide", "java/lang/Object");
+        MethodDefinition method = method(owner);
+        VarInstruction wide = new VarInstruction(Opcodes.LSTORE, 100);
+        VarInstruction narrow = store(101);
+        method.add(load(0));
+        method.add(new SimpleInstruction(Opcodes.I2L));
+        method.add(wide);
+        method.add(load(0));
+        method.add(narrow);
+        method.add(new VarInstruction(Opcodes.LLOAD, 100));
+        method.add(new SimpleInstruction(Opcodes.L2I));
+        method.add(load(101));
+        method.add(new SimpleInstruction(Opcodes.IADD));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        assertEquals(14, allocateAndCall(owner, method, 7));
+        assertTrue(narrow.getSlot() < wide.getSlot() || narrow.getSlot() > wide.getSlot() + 1,
+                "int in slot " + narrow.getSlot() + ", long in " + wide.getSlot());
+        assertEquals(4, method.getMaxLocals());
+    }
+
+    // sums the squares from n down to 1; the sum is live around the back edge, the square only within one pass
+    @Test
+    void valueLiveAroundALoopKeepsItsSlot() throws ReflectiveOperationException {
+        ClassDefinition owner = new ClassDefinition(ClassFileWriter.ACC_PUBLIC, "Loop", "java/lang/Object");
+        MethodDefinition method = method(owner);
+        Label top = new Label("Top");
+        Label end = new Label("End");
+        VarInstruction sum = store(100);
+        VarInstruction square = store(101);
+        method.add(new SimpleInstruction(Opcodes.ICONST_0));
+        method.add(sum);
+        method.add(top);
+        method.add(load(0));
+        method.add(new JumpInstruction(Opcodes.IFLE, end));
+        method.add(load(0));
+        method.add(load(0));
+        method.add(new SimpleInstruction(Opcodes.IMUL));
+        method.add(square);
+        method.add(load(100));
+        method.add(load(101));
+        method.add(new SimpleInstruction(Opcodes.IADD));
+        method.add(store(100));
+        method.add(new IincInstruction(0, -1));
+        method.add(new JumpInstruction(Opcodes.GOTO, top));
+        method.add(end);
+        method.add(load(100));
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        assertEquals(14, allocateAndCall(owner, method, 3));
+        assertEquals(0, allocateAndCall(owner, method, 0));
+        assertNotEquals(sum.getSlot(), square.getSlot());
+        assertEquals(3, method.getMaxLocals());
+    }
+
+    @Test
+    void moreThan255LiveLocalsUseWideSlots() throws ReflectiveOperationException {
+        ClassDefinition owner = new ClassDefinition(ClassFileWriter.ACC_PUBLIC, "Many", "java/lang/Object");
+        MethodDefinition method = method(owner);
+        for (int i = 0; i < MANY; i++) {
+            method.add(load(0));
+            method.add(new IntInstruction(Opcodes.SIPUSH, i));
+            method.add(new SimpleInstruction(Opcodes.IADD));
+            method.add(store(1000 + i));
+        }
+        // every value is read only here, so all of them are live at once
+        method.add(new SimpleInstruction(Opcodes.ICONST_0));
+        for (int i = 0; i < MANY; i++) {
+            method.add(load(1000 + i));
+            method.add(new SimpleInstruction(Opcodes.IADD));
+        }
+        method.add(new SimpleInstruction(Opcodes.IRETURN));
+        assertEquals(MANY + MANY * (MANY - 1) / 2, allocateAndCall(owner, method, 1));
+        assertEquals(MANY + 1, method.getMaxLocals());
+    }
+
+    @Test
+    void generatedMethodWithMoreThan255LiveVariablesRuns() {
+        // the values come out of a list, so constant folding cannot replace the variables
+        List<Statement> main = new ArrayList<>(List.of(assign("l", list(num(1)))));
+        Expression sum = num(0);
+        for (int i = 0; i < MANY; i++) {
+            main.add(assign("v" + i, binary(index(id("l"), num(0)), BinaryOperator.PLUS, num(i))));
+            sum = binary(sum, BinaryOperator.PLUS, id("v" + i));
+        }
+        main.add(put(sum));
+        assertEquals(List.of(String.valueOf(MANY + MANY * (MANY - 1) / 2)),
+                output(program(List.of(), main.toArray(Statement[]::new))));
+    }
+}
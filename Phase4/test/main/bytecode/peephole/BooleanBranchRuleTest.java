@@ -0,0 +1,78 @@
+package main.bytecode.peephole;
+
+import main.bytecode.Opcodes;
+import main.bytecode.ir.Instruction;
+import main.bytecode.ir.JumpInstruction;
+import main.bytecode.ir.Label;
+import main.bytecode.ir.SimpleInstruction;
+import main.bytecode.ir.VarInstruction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static main.bytecode.peephole.RuleTesting.assertRewrites;
+import static main.bytecode.peephole.RuleTesting.assertUnchanged;
+
+class BooleanBranchRuleTest {
+    private final PeepholeRule rule = new BooleanBranchRule();
+    private final Label isTrue = new Label("T");
+    private final Label join = new Label("J");
+    private final Label exit = new Label("X");
+
+    // if_icmplt T, iconst_0, goto J, T:, iconst_1, J:, <test> X, ..., X:
+    private List<Instruction> materialized(int test, Instruction... tail) {
+        List<Instruction> code = new ArrayList<>(List.of(
+                new VarInstruction(Opcodes.ILOAD, 1), new VarInstruction(Opcodes.ILOAD, 2),
+                new JumpInstruction(Opcodes.IF_ICMPLT, isTrue), new SimpleInstruction(Opcodes.ICONST_0),
+                new JumpInstruction(Opcodes.GOTO, join), isTrue, new SimpleInstruction(Opcodes.ICONST_1), join,
+                new JumpInstruction(test, exit), new SimpleInstruction(Opcodes.RETURN), exit));
+        code.addAll(List.of(tail));
+        return code;
+    }
+
+    @Test
+    void testForFalseJumpsOnTheNegatedComparison() {
+        assertRewrites(rule, materialized(Opcodes.IFEQ), "iload 1", "iload 2", "if_icmpge X", "return", "X:");
+    }
+
+    @Test
+    void testForTrueJumpsOnTheComparison() {
+        assertRewrites(rule, materialized(Opcodes.IFNE), "iload 1", "iload 2", "if_icmplt X", "return", "X:");
+    }
+
+    @Test
+    void otherJumpToTheTrueLabelBlocksTheRewrite() {
+        assertUnchanged(rule, materialized(Opcodes.IFEQ, new JumpInstruction(Opcodes.GOTO, isTrue))
+                .toArray(new Instruction[0]));
+    }
+
+    @Test
+    void otherJumpToTheJoinLabelBlocksTheRewrite() {
+        assertUnchanged(rule, materialized(Opcodes.IFEQ, new SimpleInstruction(Opcodes.ICONST_0),
+                new JumpInstruction(Opcodes.GOTO, join)).toArray(new Instruction[0]));
+    }
+
+    @Test
+    void labelBeforeTheTestBlocksTheRewrite() {
+        List<Instruction> code = materialized(Opcodes.IFEQ);
+        Label extra = new Label("E");
+        code.add(8, extra);
+        code.add(new JumpInstruction(Opcodes.GOTO, extra));
+        assertUnchanged(rule, code.toArray(new Instruction[0]));
+    }
+
+    @Test
+    void valueThatIsNotTestedStays() {
+        List<Instruction> code = materialized(Opcodes.IFEQ);
+        code.set(8, new VarInstruction(Opcodes.ISTORE, 3));
+        assertUnchanged(rule, code.toArray(new Instruction[0]));
+    }
+
+    @Test
+    void constantsOtherThanZeroAndOneStay() {
+        List<Instruction> code = materialized(Opcodes.IFEQ);
+        code.set(6, new SimpleInstruction(Opcodes.ICONST_2));
+        assertUnchanged(rule, code.toArray(new Instruction[0]));
+    }
+}
@@ -0,0 +1,43 @@
+package main.bytecode.peephole;
+
+import main.bytecode.ir.ConstantInstruction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static main.bytecode.peephole.RuleTesting.assertRewrites;
+import static main.bytecode.peephole.RuleTesting.assertUnchanged;
+
+class ConstantLoadRuleTest {
+    private final PeepholeRule rule = new ConstantLoadRule();
+
+    @Test
+    void smallIntsBecomeIconst() {
+        assertRewrites(rule, List.of(new ConstantInstruction(-1), new ConstantInstruction(0), new ConstantInstruction(5)),
+                "iconst_m1", "iconst_0", "iconst_5");
+    }
+
+    @Test
+    void byteRangeBecomesBipush() {
+        assertRewrites(rule, List.of(new ConstantInstruction(6), new ConstantInstruction(-128), new ConstantInstruction(127)),
+                "bipush 6", "bipush -128", "bipush 127");
+    }
+
+    @Test
+    void shortRangeBecomesSipush() {
+        assertRewrites(rule, List.of(new ConstantInstruction(128), new ConstantInstruction(-129),
+                        new ConstantInstruction(-32768), new ConstantInstruction(32767)),
+                "sipush 128", "sipush -129", "sipush -32768", "sipush 32767");
+    }
+
+    @Test
+    void largeIntsStayLdc() {
+        assertUnchanged(rule, new ConstantInstruction(32768), new ConstantInstruction(-32769),
+                new ConstantInstruction(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void otherConstantsStayLdc() {
+        assertUnchanged(rule, new ConstantInstruction("1"), new ConstantInstruction(1.0f), new ConstantInstruction(1L));
+    }
+}
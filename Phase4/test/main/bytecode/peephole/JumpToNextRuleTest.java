@@ -0,0 +1,53 @@
+package main.bytecode.peephole;
+
+import main.bytecode.Opcodes;
+import main.bytecode.ir.JumpInstruction;
+import main.bytecode.ir.Label;
+import main.bytecode.ir.SimpleInstruction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static main.bytecode.peephole.RuleTesting.assertRewrites;
+import static main.bytecode.peephole.RuleTesting.assertUnchanged;
+
+class JumpToNextRuleTest {
+    private final PeepholeRule rule = new JumpToNextRule();
+
+    @Test
+    void gotoTheNextLabelIsDropped() {
+        Label next = new Label("L");
+        assertRewrites(rule, List.of(new JumpInstruction(Opcodes.GOTO, next), next, new SimpleInstruction(Opcodes.RETURN)),
+                "L:", "return");
+    }
+
+    @Test
+    void otherLabelsInBetweenDoNotMatter() {
+        Label other = new Label("M");
+        Label next = new Label("L");
+        assertRewrites(rule, List.of(new JumpInstruction(Opcodes.GOTO, next), other, next, new SimpleInstruction(Opcodes.RETURN),
+                        new JumpInstruction(Opcodes.GOTO, other)),
+                "M:", "L:", "return", "goto M");
+    }
+
+    @Test
+    void instructionInBetweenKeepsTheJump() {
+        Label next = new Label("L");
+        assertUnchanged(rule, new JumpInstruction(Opcodes.GOTO, next), new SimpleInstruction(Opcodes.NOP), next,
+                new SimpleInstruction(Opcodes.RETURN));
+    }
+
+    @Test
+    void conditionalJumpToTheNextLabelStays() {
+        // dropping it would leave its operand on the stack
+        Label next = new Label("L");
+        assertUnchanged(rule, new SimpleInstruction(Opcodes.ICONST_0), new JumpInstruction(Opcodes.IFEQ, next), next,
+                new SimpleInstruction(Opcodes.RETURN));
+    }
+
+    @Test
+    void backwardJumpStays() {
+        Label top = new Label("L");
+        assertUnchanged(rule, top, new SimpleInstruction(Opcodes.NOP), new JumpInstruction(Opcodes.GOTO, top));
+    }
+}
@@ -0,0 +1,45 @@
+package main.bytecode.peephole;
+
+import main.bytecode.Opcodes;
+import main.bytecode.ir.JumpInstruction;
+import main.bytecode.ir.Label;
+import main.bytecode.ir.SimpleInstruction;
+import main.bytecode.ir.VarInstruction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static main.bytecode.peephole.RuleTesting.assertRewrites;
+import static main.bytecode.peephole.RuleTesting.assertUnchanged;
+
+class NegateAddRuleTest {
+    private final PeepholeRule rule = new NegateAddRule();
+
+    @Test
+    void negateThenAddBecomesSubtract() {
+        assertRewrites(rule, List.of(new VarInstruction(Opcodes.ILOAD, 1), new VarInstruction(Opcodes.ILOAD, 2),
+                        new SimpleInstruction(Opcodes.INEG), new SimpleInstruction(Opcodes.IADD)),
+                "iload 1", "iload 2", "isub");
+    }
+
+    @Test
+    void labelBetweenTheInstructionsBlocksTheRewrite() {
+        // a jump to L arrives with an un-negated value that iadd must still add
+        Label label = new Label("L");
+        assertUnchanged(rule, new SimpleInstruction(Opcodes.INEG), label, new SimpleInstruction(Opcodes.IADD),
+                new JumpInstruction(Opcodes.GOTO, label));
+    }
+
+    @Test
+    void otherNeighboursAreLeftAlone() {
+        assertUnchanged(rule, new SimpleInstruction(Opcodes.INEG), new SimpleInstruction(Opcodes.ISUB));
+        assertUnchanged(rule, new SimpleInstruction(Opcodes.IADD), new SimpleInstruction(Opcodes.INEG));
+        assertUnchanged(rule, new SimpleInstruction(Opcodes.INEG));
+    }
+
+    @Test
+    void negateLoadAddIsNotItsPattern() {
+        assertUnchanged(rule, new SimpleInstruction(Opcodes.INEG), new VarInstruction(Opcodes.ILOAD, 1),
+                new SimpleInstruction(Opcodes.IADD));
+    }
+}
@@ -0,0 +1,47 @@
+package main.bytecode.peephole;
+
+import main.bytecode.Opcodes;
+import main.bytecode.ir.JumpInstruction;
+import main.bytecode.ir.Label;
+import main.bytecode.ir.SimpleInstruction;
+import main.bytecode.ir.VarInstruction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static main.bytecode.peephole.RuleTesting.assertRewrites;
+import static main.bytecode.peephole.RuleTesting.assertUnchanged;
+
+class NegateLoadAddRuleTest {
+    private final PeepholeRule rule = new NegateLoadAddRule();
+
+    @Test
+    void negateLoadAddBecomesLoadSwapSubtract() {
+        assertRewrites(rule, List.of(new VarInstruction(Opcodes.ILOAD, 3), new SimpleInstruction(Opcodes.INEG),
+                        new VarInstruction(Opcodes.ILOAD, 1), new SimpleInstruction(Opcodes.IADD),
+                        new VarInstruction(Opcodes.ISTORE, 1)),
+                "iload 3", "iload 1", "swap", "isub", "istore 1");
+    }
+
+    @Test
+    void labelAfterTheNegateBlocksTheRewrite() {
+        Label label = new Label("L");
+        assertUnchanged(rule, new SimpleInstruction(Opcodes.INEG), label, new VarInstruction(Opcodes.ILOAD, 1),
+                new SimpleInstruction(Opcodes.IADD), new JumpInstruction(Opcodes.GOTO, label));
+    }
+
+    @Test
+    void labelBeforeTheAddBlocksTheRewrite() {
+        Label label = new Label("L");
+        assertUnchanged(rule, new SimpleInstruction(Opcodes.INEG), new VarInstruction(Opcodes.ILOAD, 1), label,
+                new SimpleInstruction(Opcodes.IADD), new JumpInstruction(Opcodes.GOTO, label));
+    }
+
+    @Test
+    void otherLoadsAndOperatorsAreLeftAlone() {
+        assertUnchanged(rule, new SimpleInstruction(Opcodes.INEG), new VarInstruction(Opcodes.ALOAD, 1),
+                new SimpleInstruction(Opcodes.IADD));
+        assertUnchanged(rule, new SimpleInstruction(Opcodes.INEG), new VarInstruction(Opcodes.ILOAD, 1),
+                new SimpleInstruction(Opcodes.IMUL));
+    }
+}
@@ -0,0 +1,33 @@
+package main.bytecode.peephole;
+
+import main.bytecode.Opcodes;
+import main.bytecode.ir.SimpleInstruction;
+import main.bytecode.ir.TypeInstruction;
+import main.bytecode.ir.VarInstruction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static main.bytecode.peephole.RuleTesting.assertRewrites;
+import static main.bytecode.peephole.RuleTesting.assertUnchanged;
+
+class ObjectCastRuleTest {
+    private final PeepholeRule rule = new ObjectCastRule();
+
+    @Test
+    void castToObjectIsDropped() {
+        assertRewrites(rule, List.of(new VarInstruction(Opcodes.ALOAD, 0),
+                        new TypeInstruction(Opcodes.CHECKCAST, "java/lang/Object"), new SimpleInstruction(Opcodes.ARETURN)),
+                "aload 0", "areturn");
+    }
+
+    @Test
+    void castToAnythingElseStays() {
+        assertUnchanged(rule, new VarInstruction(Opcodes.ALOAD, 0), new TypeInstruction(Opcodes.CHECKCAST, "java/lang/String"));
+    }
+
+    @Test
+    void instanceofObjectStays() {
+        assertUnchanged(rule, new VarInstruction(Opcodes.ALOAD, 0), new TypeInstruction(Opcodes.INSTANCEOF, "java/lang/Object"));
+    }
+}
@@ -0,0 +1,38 @@
+package main.bytecode.peephole;
+
+import main.bytecode.ir.Instruction;
+import main.bytecode.ir.MethodDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// runs a single rule to a fixpoint over an instruction list and compares the jasmin text before and after
+final class RuleTesting {
+    private RuleTesting() {}
+
+    static List<String> optimize(PeepholeRule rule, Instruction... code) {
+        MethodDefinition method = new MethodDefinition(0, "test", "()V");
+        for (Instruction instruction : code)
+            method.add(instruction);
+        new PeepholeOptimizer(List.of(rule)).optimize(method);
+        return texts(method.getInstructions());
+    }
+
+    static void assertRewrites(PeepholeRule rule, List<Instruction> before, String... after) {
+        assertEquals(List.of(after), optimize(rule, before.toArray(new Instruction[0])));
+    }
+
+    static void assertUnchanged(PeepholeRule rule, Instruction... before) {
+        List<String> expected = texts(List.of(before));
+        assertEquals(expected, optimize(rule, before));
+    }
+
+    private static List<String> texts(List<Instruction> code) {
+        List<String> texts = new ArrayList<>();
+        for (Instruction instruction : code)
+            texts.add(instruction.toString());
+        return texts;
+    }
+}
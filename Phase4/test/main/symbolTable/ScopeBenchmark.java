@@ -0,0 +1,84 @@
+package main.symbolTable;
+
+import main.ast.nodes.expression.Identifier;
+import main.symbolTable.exceptions.ItemAlreadyExists;
+import main.symbolTable.item.SymbolTableItem;
+import main.symbolTable.item.VarItem;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// times entering deeply nested blocks in a function with many variables, the way the type checker and code generator
+// walk them: each block defines a variable of its own and looks up a few from outside. the old scopes copied every
+// visible item into a fresh map per block, the new ones are empty tables linked to their parent.
+// not a test, run it by hand: java -cp <test classes> main.symbolTable.ScopeBenchmark [variables] [depth]
+public class ScopeBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int WALKS = 200;
+
+    private interface Walk {
+        int run() throws ItemAlreadyExists;
+    }
+
+    private static VarItem[] items(String prefix, int count) {
+        VarItem[] items = new VarItem[count];
+        for (int i = 0; i < count; i++)
+            items[i] = new VarItem(new Identifier(prefix + i));
+        return items;
+    }
+
+    // the number of lookups that found something, so the walk cannot be thrown away
+    private static int copied(VarItem[] outer, VarItem[] nested) {
+        Map<Integer, SymbolTableItem> top = new HashMap<>();
+        for (VarItem item : outer)
+            top.put(item.getKey(), item);
+        int found = 0;
+        for (VarItem item : nested) {
+            top = new HashMap<>(top);
+            top.put(item.getKey(), item);
+            for (int i = 0; i < 4; i++)
+                if (top.get(outer[i * outer.length / 4].getKey()) != null)
+                    found++;
+        }
+        return found;
+    }
+
+    private static int linked(VarItem[] outer, VarItem[] nested) throws ItemAlreadyExists {
+        SymbolTable top = new SymbolTable();
+        for (VarItem item : outer)
+            top.put(item);
+        int found = 0;
+        for (VarItem item : nested) {
+            top = top.makeChildScope();
+            top.put(item);
+            for (int i = 0; i < 4; i++)
+                if (top.lookup(outer[i * outer.length / 4].getKey()) != null)
+                    found++;
+        }
+        return found;
+    }
+
+    // best of a few rounds after a warm up, in microseconds per walk down all the blocks
+    private static double time(Walk walk) throws ItemAlreadyExists {
+        walk.run();
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < WALKS; i++)
+                if (walk.run() == 0)
+                    throw new AssertionError("no variable was found");
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e3 / WALKS;
+    }
+
+    public static void main(String[] args) throws ItemAlreadyExists {
+        int variables = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        VarItem[] outer = items("scopeBenchmark$outer", variables);
+        VarItem[] nested = items("scopeBenchmark$nested", depth);
+        System.out.printf("%d variables, %d nested blocks%n", variables, depth);
+        System.out.printf("copied scopes %10.1f us/walk%n", time(() -> copied(outer, nested)));
+        System.out.printf("linked scopes %10.1f us/walk%n", time(() -> linked(outer, nested)));
+    }
+}
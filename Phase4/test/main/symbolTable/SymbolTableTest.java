@@ -0,0 +1,59 @@
+package main.symbolTable;
+
+import main.ast.nodes.expression.Identifier;
+import main.symbolTable.exceptions.ItemAlreadyExists;
+import main.symbolTable.item.VarItem;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// a child scope behaves like the copy of its parent each block used to get, without copying anything
+class SymbolTableTest {
+    private static VarItem var(String name) {
+        return new VarItem(new Identifier(name));
+    }
+
+    private static int keyOf(String name) {
+        return VarItem.keyOf(new Identifier(name).getSymbolId());
+    }
+
+    @Test
+    void childSeesTheSameItemsAsItsAncestors() throws ItemAlreadyExists {
+        SymbolTable root = new SymbolTable();
+        VarItem x = var("symbolTableTest$x");
+        root.put(x);
+        SymbolTable grandchild = root.makeChildScope().makeChildScope();
+        assertSame(x, grandchild.lookup(keyOf("symbolTableTest$x")));
+    }
+
+    @Test
+    void nameVisibleFromAnEnclosingScopeCannotBePutAgain() throws ItemAlreadyExists {
+        SymbolTable root = new SymbolTable();
+        root.put(var("symbolTableTest$x"));
+        SymbolTable child = root.makeChildScope().makeChildScope();
+        assertThrows(ItemAlreadyExists.class, () -> child.put(var("symbolTableTest$x")));
+    }
+
+    @Test
+    void itemPutIntoAChildStaysInIt() throws ItemAlreadyExists {
+        SymbolTable root = new SymbolTable();
+        SymbolTable child = root.makeChildScope();
+        VarItem y = var("symbolTableTest$y");
+        child.put(y);
+        assertSame(y, child.makeChildScope().lookup(keyOf("symbolTableTest$y")));
+        assertNull(root.lookup(keyOf("symbolTableTest$y")));
+    }
+
+    @Test
+    void siblingScopesDoNotSeeEachOther() throws ItemAlreadyExists {
+        SymbolTable root = new SymbolTable();
+        SymbolTable first = root.makeChildScope();
+        first.put(var("symbolTableTest$y"));
+        SymbolTable second = root.makeChildScope();
+        assertNull(second.lookup(keyOf("symbolTableTest$y")));
+        // and the same name can be defined again in the sibling
+        second.put(var("symbolTableTest$y"));
+    }
+}
@@ -0,0 +1,75 @@
+package main.visitor.codeGenerator;
+
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.value.primitive.StringValue;
+import main.ast.nodes.statement.AssignOperator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ForStatementTest {
+    private static List<String> numbers(int from, int to, int factor) {
+        List<String> numbers = new ArrayList<>();
+        for (int i = from; i <= to; i++)
+            numbers.add(String.valueOf(i * factor));
+        return numbers;
+    }
+
+    @Test
+    void rangeIsInclusive() {
+        assertEquals(numbers(1, 5, 1), output(program(List.of(),
+                forRange("i", num(1), num(5), put(id("i"))))));
+    }
+
+    @Test
+    void emptyRangeRunsNoIteration() {
+        assertEquals(List.of("done"), output(program(List.of(),
+                forRange("i", num(5), num(1), put(id("i"))),
+                put(new StringValue("\"done\"")))));
+    }
+
+    @Test
+    void reassigningTheIteratorDoesNotChangeTheIteration() {
+        assertEquals(numbers(1, 20, 2), output(program(List.of(),
+                forRange("i", num(1), num(20),
+                        assign("i", binary(id("i"), BinaryOperator.MULT, num(2))),
+                        put(id("i"))))));
+    }
+
+    @Test
+    void reassigningTheIteratorOfAListLoopDoesNotChangeTheIteration() {
+        assertEquals(List.of("11", "12", "13"), output(program(List.of(),
+                assign("l", list(num(1), num(2), num(3))),
+                forEach("v", id("l"),
+                        assign("v", AssignOperator.PLUS_ASSIGN, num(10)),
+                        put(id("v"))))));
+    }
+
+    @Test
+    void nestedLoopsCanReuseTheIteratorName() {
+        assertEquals(List.of("9"), output(program(List.of(),
+                assign("count", num(0)),
+                forRange("i", num(1), num(3),
+                        forRange("i", num(1), num(3),
+                                assign("count", AssignOperator.PLUS_ASSIGN, num(1)))),
+                put(id("count")))));
+    }
+
+    @Test
+    void innerLoopOverTheSameNameLeavesTheOuterIterationAlone() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            expected.add(String.valueOf(i));
+            expected.add("10");
+            expected.add("20");
+        }
+        assertEquals(expected, output(program(List.of(),
+                forRange("i", num(1), num(3),
+                        put(id("i")),
+                        forEach("i", list(num(10), num(20)), put(id("i")))))));
+    }
+}
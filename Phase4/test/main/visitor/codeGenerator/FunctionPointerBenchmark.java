@@ -0,0 +1,109 @@
+package main.visitor.codeGenerator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+// times the shapes a call through a function pointer has compiled to: a plain invokestatic, a pointer object that
+// finds its method by name through reflection like the old Fptr utility class, and a MethodHandle called with
+// invokeExact, both as the ldc constant and as a handle passed in through a parameter.
+// not a test, run it by hand: java -cp <test classes> main.visitor.codeGenerator.FunctionPointerBenchmark [calls]
+public class FunctionPointerBenchmark {
+    private static final int ROUNDS = 5;
+    private static final MethodHandle STEP;
+
+    static {
+        try {
+            STEP = MethodHandles.lookup().findStatic(FunctionPointerBenchmark.class, "step",
+                    MethodType.methodType(int.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // a receiver and a method name, with the method looked up and called reflectively on every call
+    private static final class Fptr {
+        private final Object object;
+        private final String methodName;
+
+        Fptr(Object object, String methodName) {
+            this.object = object;
+            this.methodName = methodName;
+        }
+
+        Object invoke(ArrayList<Object> args) throws ReflectiveOperationException {
+            for (Method method : FunctionPointerBenchmark.class.getDeclaredMethods())
+                if (method.getName().equals(methodName) && method.getParameterCount() == args.size())
+                    return method.invoke(object, args.toArray());
+            throw new NoSuchMethodException(methodName);
+        }
+    }
+
+    private interface Calls {
+        int run(int calls) throws Throwable;
+    }
+
+    // a xorshift step, which the jit cannot fold across unrolled iterations
+    static int step(int x) {
+        x ^= x << 13;
+        x ^= x >>> 17;
+        return x ^ (x << 5);
+    }
+
+    private static int direct(int calls) {
+        int acc = 1;
+        for (int i = 0; i < calls; i++)
+            acc = step(acc);
+        return acc;
+    }
+
+    private static int fptr(Fptr pointer, int calls) throws ReflectiveOperationException {
+        int acc = 1;
+        for (int i = 0; i < calls; i++)
+            acc = (Integer) pointer.invoke(new ArrayList<>(List.of(acc)));
+        return acc;
+    }
+
+    private static int constantHandle(int calls) throws Throwable {
+        int acc = 1;
+        for (int i = 0; i < calls; i++)
+            acc = (int) STEP.invokeExact(acc);
+        return acc;
+    }
+
+    private static int passedHandle(MethodHandle handle, int calls) throws Throwable {
+        int acc = 1;
+        for (int i = 0; i < calls; i++)
+            acc = (int) handle.invokeExact(acc);
+        return acc;
+    }
+
+    // best of a few rounds after a warm up, in nanoseconds per call
+    private static double time(Calls calls, int count) throws Throwable {
+        int expected = direct(count);
+        calls.run(count);
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            int result = calls.run(count);
+            long elapsed = System.nanoTime() - start;
+            if (result != expected)
+                throw new AssertionError("expected " + expected + ", got " + result);
+            best = Math.min(best, (double) elapsed / count);
+        }
+        return best;
+    }
+
+    public static void main(String[] args) throws Throwable {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Fptr pointer = new Fptr(null, "step");
+        MethodHandle handle = STEP;
+        System.out.printf("direct invokestatic   %8.2f ns/call%n", time(FunctionPointerBenchmark::direct, count));
+        System.out.printf("Fptr by reflection    %8.2f ns/call%n", time(calls -> fptr(pointer, calls), count));
+        System.out.printf("MethodHandle constant %8.2f ns/call%n", time(FunctionPointerBenchmark::constantHandle, count));
+        System.out.printf("MethodHandle passed   %8.2f ns/call%n", time(calls -> passedHandle(handle, calls), count));
+    }
+}
@@ -0,0 +1,80 @@
+package main.visitor.codeGenerator;
+
+import main.FunctionCraft;
+import main.ast.nodes.Program;
+import main.ast.nodes.declaration.FunctionDeclaration;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.visitor.optimizer.Inliner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// a function pointer is a MethodHandle constant, and calls through one dispatch with invokeExact at run time
+class FunctionPointerTest {
+    @TempDir
+    Path outputDirectory;
+
+    private static List<FunctionDeclaration> arithmetic() {
+        return List.of(
+                function("inc", List.of("x"), ret(binary(id("x"), BinaryOperator.PLUS, num(1)))),
+                function("dbl", List.of("x"), ret(binary(id("x"), BinaryOperator.MULT, num(2)))),
+                function("apply", List.of("f", "x"), ret(call("f", id("x")))),
+                function("twice", List.of("f", "x"), ret(call("f", call("f", id("x"))))));
+    }
+
+    private static Program applied() {
+        return program(arithmetic(),
+                put(call("apply", pointer("inc"), num(1))),
+                put(call("apply", pointer("dbl"), num(5))),
+                put(call("apply", pointer("inc"), num(10))));
+    }
+
+    @Test
+    void pointerPassedThroughAParameterCallsTheFunctionPassed() {
+        // with inlining off apply really is called, and calls whatever it was handed
+        assertEquals(List.of("2", "10", "11"), output(applied(), 0));
+        assertEquals(List.of("2", "10", "11"), output(applied()));
+    }
+
+    @Test
+    void pointerPassedDownTwoLevels() {
+        assertEquals(List.of("24", "5"), output(program(arithmetic(),
+                put(call("apply", pointer("dbl"), call("twice", pointer("dbl"), num(3)))),
+                put(call("twice", pointer("inc"), num(3)))), 0));
+    }
+
+    @Test
+    void reassignedPointerCallsTheNewFunction() {
+        assertEquals(List.of("4", "6"), output(program(arithmetic(),
+                assign("f", pointer("inc")),
+                put(call("f", num(3))),
+                assign("f", pointer("dbl")),
+                put(call("f", num(3))))));
+    }
+
+    @Test
+    void pointerChosenInsideALoop() {
+        assertEquals(List.of("2", "2", "3", "4", "4", "6"), output(program(arithmetic(),
+                forRange("i", num(1), num(3),
+                        assign("f", pointer("inc")),
+                        put(call("apply", id("f"), id("i"))),
+                        assign("f", pointer("dbl")),
+                        put(call("apply", id("f"), id("i"))))), 0));
+    }
+
+    @Test
+    void pointerCompilesToAMethodHandleConstant() throws Exception {
+        Program program = program(arithmetic(), put(call("apply", pointer("inc"), num(1))));
+        assertTrue(FunctionCraft.compile(program, outputDirectory + "/", true, Inliner.DEFAULT_BUDGET).isEmpty());
+        String jasmin = Files.readString(outputDirectory.resolve("Main.j"));
+        assertTrue(jasmin.contains("ldc MethodHandle invokestatic Main/inc(I)I"), jasmin);
+        assertTrue(jasmin.contains("invokevirtual java/lang/invoke/MethodHandle/invokeExact(I)I"), jasmin);
+    }
+}
@@ -0,0 +1,154 @@
+package main.visitor.codeGenerator;
+
+import main.ast.nodes.declaration.FunctionDeclaration;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.value.primitive.BoolValue;
+import main.ast.nodes.expression.value.primitive.StringValue;
+import main.visitor.optimizer.Inliner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// functions that tail call each other share one method, so their recursion runs in constant stack
+class TailCallGroupTest {
+    // deep enough to overflow any default thread stack if every call took a frame
+    private static final int DEPTH = 1_000_000;
+
+    @TempDir
+    Path outputDirectory;
+
+    private static FunctionDeclaration parity(String name, boolean atZero, String other) {
+        return function(name, List.of("n"),
+                ifElse(binary(id("n"), BinaryOperator.EQUAL, num(0)), body(ret(new BoolValue(atZero))), body()),
+                ret(call(other, binary(id("n"), BinaryOperator.MINUS, num(1)))));
+    }
+
+    private static List<FunctionDeclaration> evenOdd() {
+        return List.of(parity("even", true, "odd"), parity("odd", false, "even"));
+    }
+
+    @Test
+    void mutualTailRecursionRunsInConstantStack() {
+        // booleans print as 1 and 0
+        assertEquals(List.of("1", "0", "0", "1"), output(program(evenOdd(),
+                put(call("even", num(DEPTH))),
+                put(call("odd", num(DEPTH))),
+                put(call("even", num(DEPTH + 1))),
+                put(call("odd", num(DEPTH + 1))))));
+    }
+
+    // a counts itself down past half way, then hands over to b every other step
+    private static List<FunctionDeclaration> selfAndMutual() {
+        return List.of(
+                function("a", List.of("n", "acc"),
+                        ifElse(binary(id("n"), BinaryOperator.EQUAL, num(0)), body(ret(id("acc"))), body()),
+                        ifElse(binary(id("n"), BinaryOperator.GREATER_THAN, num(DEPTH / 2)),
+                                body(ret(call("a", binary(id("n"), BinaryOperator.MINUS, num(1)),
+                                        binary(id("acc"), BinaryOperator.PLUS, num(1))))),
+                                body()),
+                        ret(call("b", binary(id("n"), BinaryOperator.MINUS, num(1)),
+                                binary(id("acc"), BinaryOperator.PLUS, num(2))))),
+                function("b", List.of("m", "total"),
+                        ifElse(binary(id("m"), BinaryOperator.EQUAL, num(0)), body(ret(id("total"))), body()),
+                        ret(call("a", binary(id("m"), BinaryOperator.MINUS, num(1)), id("total")))));
+    }
+
+    @Test
+    void groupMixingSelfAndMutualTailCalls() {
+        int expected = 0;
+        boolean inA = true;
+        for (int n = DEPTH; n > 0; n--) {
+            if (inA)
+                expected += n > DEPTH / 2 ? 1 : 2;
+            inA = !inA || n > DEPTH / 2;
+        }
+        assertEquals(List.of(String.valueOf(expected)), output(program(selfAndMutual(), put(call("a", num(DEPTH), num(0))))));
+    }
+
+    // members with different parameters, returning a string
+    private static List<FunctionDeclaration> pingPong() {
+        return List.of(
+                function("ping", List.of("n", "word"),
+                        ifElse(binary(id("n"), BinaryOperator.EQUAL, num(0)), body(ret(id("word"))), body()),
+                        ret(call("pong", binary(id("n"), BinaryOperator.MINUS, num(1))))),
+                function("pong", List.of("n"),
+                        ifElse(binary(id("n"), BinaryOperator.EQUAL, num(0)), body(ret(new StringValue("\"pong\""))), body()),
+                        ret(call("ping", binary(id("n"), BinaryOperator.MINUS, num(1)), new StringValue("\"ping\"")))));
+    }
+
+    @Test
+    void membersWithDifferentParametersShareTheGroup() {
+        assertEquals(List.of("pong", "ping", "start"), output(program(pingPong(),
+                put(call("ping", num(DEPTH + 1), new StringValue("\"start\""))),
+                put(call("ping", num(DEPTH), new StringValue("\"start\""))),
+                put(call("ping", num(0), new StringValue("\"start\""))))));
+    }
+
+    // members returning nothing tail call each other as their last statement
+    private static List<FunctionDeclaration> countdown() {
+        return List.of(
+                function("tick", List.of("n"),
+                        ifElse(binary(id("n"), BinaryOperator.EQUAL, num(0)), body(put(new StringValue("\"tick\""))),
+                                body(exec(call("tock", binary(id("n"), BinaryOperator.MINUS, num(1))))))),
+                function("tock", List.of("n"),
+                        ifElse(binary(id("n"), BinaryOperator.EQUAL, num(0)), body(put(new StringValue("\"tock\""))),
+                                body(exec(call("tick", binary(id("n"), BinaryOperator.MINUS, num(1))))))));
+    }
+
+    @Test
+    void groupReturningNothing() {
+        assertEquals(List.of("tick", "tock"), output(program(countdown(),
+                exec(call("tick", num(DEPTH))),
+                exec(call("tick", num(DEPTH + 1))))));
+    }
+
+    // up only tail calls down while n is large, below that it adds to what down returns
+    @Test
+    void callThatIsNotInTailPositionStillReturnsToItsCaller() {
+        assertEquals(List.of("5"), output(program(List.of(
+                        function("up", List.of("n"),
+                                ifElse(binary(id("n"), BinaryOperator.EQUAL, num(0)), body(ret(num(0))), body()),
+                                ifElse(binary(id("n"), BinaryOperator.GREATER_THAN, num(10)),
+                                        body(ret(call("down", binary(id("n"), BinaryOperator.MINUS, num(1))))), body()),
+                                ret(binary(num(1), BinaryOperator.PLUS, call("down", binary(id("n"), BinaryOperator.MINUS, num(1)))))),
+                        function("down", List.of("n"),
+                                ifElse(binary(id("n"), BinaryOperator.EQUAL, num(0)), body(ret(num(0))), body()),
+                                ret(call("up", binary(id("n"), BinaryOperator.MINUS, num(1)))))),
+                put(binary(call("up", num(20)), BinaryOperator.PLUS, call("down", num(1)))))));
+    }
+
+    @Test
+    void everyMemberKeepsAMethodWithItsOwnSignature() throws Exception {
+        List<FunctionDeclaration> functions = new ArrayList<>(evenOdd());
+        functions.addAll(pingPong());
+        functions.addAll(countdown());
+        compile(program(functions,
+                put(call("even", num(4))),
+                put(call("ping", num(3), new StringValue("\"a\""))),
+                exec(call("tick", num(2)))), Inliner.DEFAULT_BUDGET, outputDirectory);
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{outputDirectory.toUri().toURL()},
+                ClassLoader.getPlatformClassLoader())) {
+            Class<?> main = loader.loadClass("Main");
+            assertEquals(boolean.class, main.getMethod("even", int.class).getReturnType());
+            assertEquals(boolean.class, main.getMethod("odd", int.class).getReturnType());
+            assertEquals(String.class, main.getMethod("ping", int.class, String.class).getReturnType());
+            assertEquals(String.class, main.getMethod("pong", int.class).getReturnType());
+            assertEquals(void.class, main.getMethod("tick", int.class).getReturnType());
+            assertEquals(void.class, main.getMethod("tock", int.class).getReturnType());
+            // each wrapper enters the shared method at its own body
+            assertEquals(true, main.getMethod("even", int.class).invoke(null, 10));
+            assertEquals(true, main.getMethod("odd", int.class).invoke(null, 7));
+            assertEquals("pong", main.getMethod("ping", int.class, String.class).invoke(null, 1, "x"));
+            assertEquals("x", main.getMethod("ping", int.class, String.class).invoke(null, 0, "x"));
+            assertEquals("ping", main.getMethod("pong", int.class).invoke(null, 1));
+        }
+    }
+}
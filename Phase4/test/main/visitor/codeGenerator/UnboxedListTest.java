@@ -0,0 +1,167 @@
+package main.visitor.codeGenerator;
+
+import main.ast.nodes.expression.Expression;
+import main.ast.nodes.expression.LenStatement;
+import main.ast.nodes.expression.value.primitive.BoolValue;
+import main.ast.nodes.expression.value.primitive.StringValue;
+import main.ast.nodes.statement.AssignOperator;
+import main.ast.nodes.statement.Statement;
+import main.visitor.optimizer.Inliner;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// lists of int and bool compile to IntList and BoolList from the utility classes
+class UnboxedListTest {
+    private static boolean pattern(int i) {
+        return i % 3 == 0;
+    }
+
+    private static Statement[] printed(Expression list, int... indices) {
+        List<Statement> statements = new ArrayList<>();
+        for (int i : indices)
+            statements.add(put(index(list, num(i))));
+        return statements.toArray(Statement[]::new);
+    }
+
+    @Test
+    void intListGrowsPastItsInitialCapacity() {
+        Expression[] elements = new Expression[20];
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = num(i * i);
+            expected.add(String.valueOf(i * i));
+        }
+        expected.add("20");
+        assertEquals(expected, output(program(List.of(),
+                assign("l", list(elements)),
+                forEach("v", id("l"), put(id("v"))),
+                put(new LenStatement(id("l"))))));
+    }
+
+    // 130 bools span three words, so bits on both sides of each word boundary are checked
+    @Test
+    void boolListPacksBitsAcrossWords() {
+        Expression[] elements = new Expression[130];
+        for (int i = 0; i < elements.length; i++)
+            elements[i] = new BoolValue(pattern(i));
+        int[] indices = {0, 1, 2, 3, 62, 63, 64, 65, 66, 126, 127, 128, 129};
+        List<String> expected = new ArrayList<>();
+        for (int i : indices)
+            expected.add(pattern(i) ? "1" : "0");
+        expected.add("130");
+        List<Statement> main = new ArrayList<>(List.of(assign("l", list(elements))));
+        main.addAll(List.of(printed(id("l"), indices)));
+        main.add(put(new LenStatement(id("l"))));
+        assertEquals(expected, output(program(List.of(), main.toArray(Statement[]::new))));
+    }
+
+    @Test
+    void settingABoolLeavesItsNeighboursAlone() {
+        Expression[] elements = new Expression[70];
+        for (int i = 0; i < elements.length; i++)
+            elements[i] = new BoolValue(pattern(i));
+        List<Statement> main = new ArrayList<>(List.of(
+                assign("l", list(elements)),
+                assignElement("l", num(63), AssignOperator.ASSIGN, new BoolValue(false)),
+                assignElement("l", num(64), AssignOperator.ASSIGN, new BoolValue(true)),
+                assignElement("l", num(65), AssignOperator.ASSIGN, new BoolValue(true))));
+        main.addAll(List.of(printed(id("l"), 62, 63, 64, 65, 66)));
+        assertEquals(List.of("0", "0", "1", "1", "1"), output(program(List.of(), main.toArray(Statement[]::new))));
+    }
+
+    private static void assertOutOfRange(Expression list, int index) {
+        Run run = run(program(List.of(),
+                assign("l", list),
+                // the index is read back out of a list so nothing can fold it
+                assign("at", index(list(num(index)), num(0))),
+                put(index(id("l"), id("at")))), Inliner.DEFAULT_BUDGET);
+        assertFalse(run.passed);
+        assertTrue(run.errors.contains("IndexOutOfBoundsException"), run.errors);
+    }
+
+    @Test
+    void getPastTheSizeFailsEvenWithRoomLeft() {
+        assertOutOfRange(list(num(1), num(2), num(3)), 3);
+        assertOutOfRange(list(new BoolValue(true), new BoolValue(false)), 2);
+    }
+
+    @Test
+    void negativeIndexFails() {
+        assertOutOfRange(list(num(1), num(2), num(3)), -1);
+        assertOutOfRange(list(new BoolValue(true)), -1);
+    }
+
+    @Test
+    void setPastTheSizeFails() {
+        Run run = run(program(List.of(),
+                assign("l", list(new BoolValue(true))),
+                assign("at", index(list(num(1)), num(0))),
+                assignElement("l", id("at"), AssignOperator.ASSIGN, new BoolValue(false))), Inliner.DEFAULT_BUDGET);
+        assertFalse(run.passed);
+        assertTrue(run.errors.contains("IndexOutOfBoundsException"), run.errors);
+    }
+
+    @Test
+    void compoundElementAssignment() {
+        assertEquals(List.of("3", "16", "90", "1"), output(program(List.of(),
+                assign("l", list(num(10), num(20), num(30), num(7))),
+                assignElement("l", num(0), AssignOperator.DIVIDE_ASSIGN, num(3)),
+                assignElement("l", num(1), AssignOperator.MINUS_ASSIGN, num(5)),
+                assignElement("l", num(1), AssignOperator.PLUS_ASSIGN, num(1)),
+                assignElement("l", num(2), AssignOperator.MULT_ASSIGN, num(3)),
+                assignElement("l", num(3), AssignOperator.MOD_ASSIGN, num(3)),
+                put(index(id("l"), num(0))),
+                put(index(id("l"), num(1))),
+                put(index(id("l"), num(2))),
+                put(index(id("l"), num(3))))));
+    }
+
+    @Test
+    void compoundElementAssignmentEvaluatesTheIndexOnce() {
+        assertEquals(List.of("index", "25", "5"), output(program(List.of(function("at", List.of(),
+                        put(new StringValue("\"index\"")),
+                        ret(num(1)))),
+                assign("l", list(num(5), num(20))),
+                assignElement("l", call("at"), AssignOperator.PLUS_ASSIGN, num(5)),
+                put(index(id("l"), num(1))),
+                put(index(id("l"), num(0))))));
+    }
+
+    @Test
+    void compoundElementAssignmentInALoop() {
+        assertEquals(List.of("55", "-55"), output(program(List.of(),
+                assign("l", list(num(0), num(0))),
+                forRange("i", num(1), num(10),
+                        assignElement("l", num(0), AssignOperator.PLUS_ASSIGN, id("i")),
+                        assignElement("l", num(1), AssignOperator.MINUS_ASSIGN, id("i"))),
+                put(index(id("l"), num(0))),
+                put(index(id("l"), num(1))))));
+    }
+
+    @Test
+    void compoundDivisionByZeroFails() {
+        Run run = run(program(List.of(),
+                assign("l", list(num(4), num(0))),
+                assignElement("l", num(0), AssignOperator.DIVIDE_ASSIGN, index(id("l"), num(1)))), Inliner.DEFAULT_BUDGET);
+        assertFalse(run.passed);
+        assertTrue(run.errors.contains("ArithmeticException"), run.errors);
+    }
+
+    @Test
+    void nestedListsStayBoxed() {
+        assertEquals(List.of("4", "0"), output(program(List.of(),
+                assign("l", list(list(num(1), num(2)), list(num(3), num(4)))),
+                assign("inner", index(id("l"), num(1))),
+                put(index(id("inner"), num(1))),
+                assign("b", list(list(new BoolValue(false)))),
+                assign("first", index(id("b"), num(0))),
+                put(index(id("first"), num(0))))));
+    }
+}
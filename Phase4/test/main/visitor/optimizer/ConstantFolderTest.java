@@ -0,0 +1,189 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Program;
+import main.ast.nodes.expression.Identifier;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.value.primitive.BoolValue;
+import main.ast.nodes.expression.value.primitive.IntValue;
+import main.ast.nodes.expression.value.primitive.StringValue;
+import main.ast.nodes.statement.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConstantFolderTest {
+    // the folder only rewrites the tree, so its result can be read without compiling
+    private static List<Statement> folded(Statement... main) {
+        Program program = program(List.of(), main);
+        new ConstantFolder().visit(program);
+        return program.getMain().getBody();
+    }
+
+    private static int printedInt(Statement statement) {
+        return assertInstanceOf(IntValue.class, ((PutStatement) statement).getExpression()).getIntVal();
+    }
+
+    private static void assertPrintsVariable(String name, Statement statement) {
+        assertEquals(name, assertInstanceOf(Identifier.class, ((PutStatement) statement).getExpression()).getName());
+    }
+
+    @Test
+    void literalLocalsArePropagatedAndFolded() {
+        List<Statement> body = folded(
+                assign("x", num(3)),
+                put(binary(id("x"), BinaryOperator.MULT, binary(num(1), BinaryOperator.PLUS, num(1)))));
+        assertEquals(6, printedInt(body.getLast()));
+    }
+
+    @Test
+    void compoundAssignmentOfAKnownVariableBecomesAnAssignment() {
+        List<Statement> body = folded(
+                assign("x", num(1)),
+                assign("x", AssignOperator.PLUS_ASSIGN, num(2)),
+                assign("x", AssignOperator.MULT_ASSIGN, num(5)),
+                put(id("x")));
+        AssignStatement last = (AssignStatement) body.get(2);
+        assertEquals(AssignOperator.ASSIGN, last.getAssignOperator());
+        assertEquals(15, assertInstanceOf(IntValue.class, last.getAssignExpression()).getIntVal());
+        assertEquals(15, printedInt(body.getLast()));
+    }
+
+    @Test
+    void compoundAssignmentWithAnUnknownOperandForgetsTheVariable() {
+        List<Statement> body = folded(
+                assign("l", list(num(4))),
+                assign("x", num(1)),
+                assign("x", AssignOperator.PLUS_ASSIGN, index(id("l"), num(0))),
+                put(id("x")));
+        assertEquals(AssignOperator.PLUS_ASSIGN, ((AssignStatement) body.get(2)).getAssignOperator());
+        assertPrintsVariable("x", body.getLast());
+    }
+
+    @Test
+    void compoundDivisionByZeroIsLeftToFailAtRunTime() {
+        List<Statement> body = folded(
+                assign("x", num(1)),
+                assign("x", AssignOperator.DIVIDE_ASSIGN, num(0)),
+                put(id("x")));
+        assertEquals(AssignOperator.DIVIDE_ASSIGN, ((AssignStatement) body.get(1)).getAssignOperator());
+        assertPrintsVariable("x", body.getLast());
+    }
+
+    @Test
+    void variableWrittenInALoopIsUnknownFromTheTopOfTheLoop() {
+        List<Statement> body = folded(
+                assign("x", num(1)),
+                loop(put(id("x")),
+                        assign("x", binary(id("x"), BinaryOperator.PLUS, num(1))),
+                        breakIf(binary(id("x"), BinaryOperator.GREATER_THAN, num(3)))),
+                put(id("x")));
+        LoopDoStatement loop = (LoopDoStatement) body.get(1);
+        assertPrintsVariable("x", loop.getLoopBodyStmts().getFirst());
+        assertPrintsVariable("x", body.getLast());
+    }
+
+    @Test
+    void variableOnlyReadInALoopStaysKnown() {
+        List<Statement> body = folded(
+                assign("x", num(7)),
+                forRange("i", num(1), num(3), put(id("x"))));
+        assertEquals(7, printedInt(((ForStatement) body.getLast()).getLoopBodyStmts().getFirst()));
+    }
+
+    @Test
+    void loopBackEdgesRunCorrectly() {
+        assertEquals(List.of("1", "2", "3", "4"), output(program(List.of(),
+                assign("x", num(1)),
+                loop(put(id("x")),
+                        assign("x", AssignOperator.PLUS_ASSIGN, num(1)),
+                        breakIf(binary(id("x"), BinaryOperator.GREATER_THAN, num(3)))),
+                put(id("x")))));
+    }
+
+    @Test
+    void branchesThatDisagreeForgetTheVariable() {
+        List<Statement> body = folded(
+                assign("l", list(num(1))),
+                assign("x", num(1)),
+                ifElse(binary(index(id("l"), num(0)), BinaryOperator.EQUAL, num(1)), body(assign("x", num(2))), body()),
+                put(id("x")));
+        assertPrintsVariable("x", body.getLast());
+    }
+
+    @Test
+    void branchesThatAgreeKeepTheVariable() {
+        List<Statement> body = folded(
+                assign("l", list(num(1))),
+                ifElse(binary(index(id("l"), num(0)), BinaryOperator.EQUAL, num(1)),
+                        body(assign("x", num(2))), body(assign("x", num(2)))),
+                put(id("x")));
+        assertEquals(2, printedInt(body.getLast()));
+    }
+
+    @Test
+    void ifThatNeverHoldsIsReplacedByItsElseBody() {
+        List<Statement> body = folded(
+                assign("x", num(1)),
+                ifElse(binary(id("x"), BinaryOperator.GREATER_THAN, num(2)), body(put(num(10))), body(put(num(20)))));
+        assertEquals(2, body.size());
+        assertEquals(20, printedInt(body.getLast()));
+    }
+
+    @Test
+    void ifThatAlwaysHoldsIsReplacedByItsThenBody() {
+        List<Statement> body = folded(
+                ifElse(new BoolValue(true), body(put(num(10))), body(put(num(20)))));
+        assertEquals(1, body.size());
+        assertEquals(10, printedInt(body.getFirst()));
+    }
+
+    @Test
+    void breakAndNextThatNeverHoldAreDropped() {
+        List<Statement> body = folded(
+                assign("x", num(1)),
+                loop(breakIf(binary(id("x"), BinaryOperator.EQUAL, num(2))),
+                        nextIf(new BoolValue(false)),
+                        put(num(3)),
+                        breakIf(new BoolValue(true))));
+        List<Statement> loopBody = ((LoopDoStatement) body.getLast()).getLoopBodyStmts();
+        assertEquals(2, loopBody.size());
+        assertInstanceOf(PutStatement.class, loopBody.getFirst());
+        // a condition that always holds is dropped, leaving a plain break
+        assertTrue(((BreakStatement) loopBody.getLast()).getConditions().isEmpty());
+    }
+
+    @Test
+    void pushTargetIsNeverFoldedAndIsUnknownAfterwards() {
+        List<Statement> body = folded(
+                assign("s", new StringValue("\"ab\"")),
+                push(id("s"), new StringValue("\"c\"")),
+                put(id("s")));
+        assertEquals("s", assertInstanceOf(Identifier.class, ((PushStatement) body.get(1)).getInitial()).getName());
+        assertPrintsVariable("s", body.getLast());
+    }
+
+    @Test
+    void pushInOneBranchIsUnknownAfterTheJoin() {
+        List<Statement> body = folded(
+                assign("l", list(num(1))),
+                assign("s", new StringValue("\"ab\"")),
+                ifElse(binary(index(id("l"), num(0)), BinaryOperator.EQUAL, num(1)),
+                        body(push(id("s"), new StringValue("\"c\""))), body()),
+                put(id("s")));
+        assertPrintsVariable("s", body.getLast());
+    }
+
+    @Test
+    void pushedValueStillSeesTheOldLiteral() {
+        List<Statement> body = folded(
+                assign("x", num(4)),
+                assign("l", list(num(1))),
+                push(id("l"), id("x")));
+        assertEquals(4, assertInstanceOf(IntValue.class, ((PushStatement) body.getLast()).getToBeAdded()).getIntVal());
+    }
+}
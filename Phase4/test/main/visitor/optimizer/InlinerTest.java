@@ -0,0 +1,77 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Program;
+import main.ast.nodes.declaration.FunctionDeclaration;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InlinerTest {
+    private static FunctionDeclaration one() {
+        return function("one", List.of("x"), ret(num(1)));
+    }
+
+    private static FunctionDeclaration secondMinusFirst() {
+        return function("secondMinusFirst", List.of("a", "b"),
+                ret(binary(id("b"), BinaryOperator.MINUS, id("a"))));
+    }
+
+    // with inlining off and on, since each compile consumes its program
+    private static void assertThrowsInBothWays(String exception, Supplier<Program> program) {
+        for (int budget : new int[]{0, Inliner.DEFAULT_BUDGET}) {
+            Run run = run(program.get(), budget);
+            assertFalse(run.passed, "budget " + budget + " printed " + run.output);
+            assertTrue(run.errors.contains(exception), "budget " + budget + ": " + run.errors);
+        }
+    }
+
+    @Test
+    void safeArgumentsAreStillSubstituted() {
+        assertEquals(List.of("6", "7"), output(program(List.of(one(), secondMinusFirst()),
+                assign("z", num(0)),
+                put(binary(num(5), BinaryOperator.PLUS, call("one", id("z")))),
+                put(binary(num(5), BinaryOperator.PLUS, call("secondMinusFirst", num(1), num(3)))))));
+    }
+
+    @Test
+    void unusedArgumentThatDividesByZeroStillThrows() {
+        assertThrowsInBothWays("ArithmeticException", () -> program(List.of(one()),
+                assign("z", num(0)),
+                put(binary(num(5), BinaryOperator.PLUS, call("one", binary(num(10), BinaryOperator.DIVIDE, id("z")))))));
+    }
+
+    @Test
+    void unusedArgumentThatIndexesOutOfBoundsStillThrows() {
+        assertThrowsInBothWays("IndexOutOfBoundsException", () -> program(List.of(one()),
+                assign("l", list(num(1))),
+                put(binary(num(5), BinaryOperator.PLUS, call("one", index(id("l"), num(7)))))));
+    }
+
+    @Test
+    void leadingCallStillEvaluatesUnusedArgument() {
+        assertThrowsInBothWays("ArithmeticException", () -> program(List.of(one()),
+                assign("z", num(0)),
+                put(call("one", binary(num(10), BinaryOperator.DIVIDE, id("z"))))));
+    }
+
+    @Test
+    void argumentsThrowInCallOrder() {
+        // the callee reads b first, the call still evaluates a first
+        assertThrowsInBothWays("ArithmeticException", () -> program(List.of(secondMinusFirst()),
+                assign("z", num(0)),
+                assign("l", list(num(1))),
+                put(binary(num(5), BinaryOperator.PLUS, call("secondMinusFirst",
+                        binary(num(10), BinaryOperator.DIVIDE, id("z")), index(id("l"), num(7)))))));
+        assertThrowsInBothWays("ArithmeticException", () -> program(List.of(secondMinusFirst()),
+                assign("z", num(0)),
+                assign("l", list(num(1))),
+                put(call("secondMinusFirst", binary(num(10), BinaryOperator.DIVIDE, id("z")), index(id("l"), num(7))))));
+    }
+}
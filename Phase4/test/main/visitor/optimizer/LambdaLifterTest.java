@@ -0,0 +1,85 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Program;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.statement.AssignOperator;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LambdaLifterTest {
+    // f is reassigned inside a lambda, so it lives in a cell and calls to it go through the cell's element
+    private static Program swapped(boolean swapFirst) {
+        return program(List.of(),
+                assign("f", lambda(List.of("x"), ret(binary(id("x"), BinaryOperator.PLUS, num(1))))),
+                assign("g", lambda(List.of("x"), ret(binary(id("x"), BinaryOperator.MULT, num(2))))),
+                assign("swap", lambda(List.of(), assign("f", id("g")), ret(num(0)))),
+                swapFirst ? exec(call("swap")) : put(call("f", num(5))),
+                swapFirst ? put(call("f", num(5))) : exec(call("swap")),
+                put(call("f", num(5))));
+    }
+
+    @Test
+    void callsThroughAReassignedVariableSeeTheNewFunction() {
+        assertEquals(List.of("6", "10"), output(swapped(false)));
+    }
+
+    @Test
+    void functionStoredBeforeTheFirstCallIsStillCompiled() {
+        assertEquals(List.of("10", "10"), output(swapped(true)));
+    }
+
+    @Test
+    void lambdaSeesLaterWritesToWhatItCaptures() {
+        assertEquals(List.of("11"), output(program(List.of(),
+                assign("k", num(1)),
+                assign("add", lambda(List.of("x"), ret(binary(id("x"), BinaryOperator.PLUS, id("k"))))),
+                assign("k", num(10)),
+                put(call("add", num(1))))));
+    }
+
+    @Test
+    void writesInsideALambdaAreSeenOutsideIt() {
+        assertEquals(List.of("1", "2", "2"), output(program(List.of(),
+                assign("c", num(0)),
+                assign("bump", lambda(List.of(),
+                        assign("c", AssignOperator.PLUS_ASSIGN, num(1)),
+                        ret(id("c")))),
+                put(call("bump")),
+                put(call("bump")),
+                put(id("c")))));
+    }
+
+    @Test
+    void capturedValueThatNeverChangesIsCopied() {
+        assertEquals(List.of("42"), output(program(List.of(),
+                assign("k", num(5)),
+                assign("add", lambda(List.of("x"), ret(binary(id("x"), BinaryOperator.PLUS, id("k"))))),
+                put(call("add", num(37))))));
+    }
+
+    @Test
+    void parameterOfTheLambdaHidesTheCapturedName() {
+        assertEquals(List.of("3", "1"), output(program(List.of(),
+                assign("x", num(1)),
+                assign("set", lambda(List.of(), assign("x", num(2)), ret(num(0)))),
+                assign("twice", lambda(List.of("x"), ret(binary(id("x"), BinaryOperator.MULT, num(3))))),
+                put(call("twice", num(1))),
+                put(id("x")))));
+    }
+
+    @Test
+    void lambdaCallingACellThroughAnotherLambda() {
+        assertEquals(List.of("6", "10"), output(program(List.of(),
+                assign("f", lambda(List.of("x"), ret(binary(id("x"), BinaryOperator.PLUS, num(1))))),
+                assign("g", lambda(List.of("x"), ret(binary(id("x"), BinaryOperator.MULT, num(2))))),
+                assign("apply", lambda(List.of("y"), ret(call("f", id("y"))))),
+                assign("swap", lambda(List.of(), assign("f", id("g")), ret(num(0)))),
+                put(call("apply", num(5))),
+                exec(call("swap")),
+                put(call("apply", num(5))))));
+    }
+}
@@ -0,0 +1,185 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Program;
+import main.ast.nodes.expression.LenStatement;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.statement.AssignOperator;
+import main.ast.nodes.statement.AssignStatement;
+import main.ast.nodes.statement.Statement;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoopInvariantMoverTest {
+    @TempDir
+    Path outputDirectory;
+
+    // the temps main sets in front of its loops once the whole pipeline has run
+    private List<String> hoisted(Program program, int inlineBudget) {
+        compile(program, inlineBudget, outputDirectory);
+        List<String> temps = new ArrayList<>();
+        for (Statement statement : program.getMain().getBody())
+            if (statement instanceof AssignStatement assign && assign.getAssignedId().getName().startsWith("licm$"))
+                temps.add(assign.getAssignedId().getName());
+        return temps;
+    }
+
+    private List<String> hoisted(Program program) {
+        return hoisted(program, Inliner.DEFAULT_BUDGET);
+    }
+
+    // a and b come out of a list, so constant folding cannot see through them
+    private static Statement[] withOperands(int a, int b, Statement... rest) {
+        List<Statement> statements = new ArrayList<>(List.of(
+                assign("l", list(num(a), num(b))),
+                assign("a", index(id("l"), num(0))),
+                assign("b", index(id("l"), num(1)))));
+        statements.addAll(List.of(rest));
+        return statements.toArray(Statement[]::new);
+    }
+
+    private static Program squares() {
+        return program(List.of(), withOperands(3, 0,
+                assign("s", num(0)),
+                loop(assign("s", AssignOperator.PLUS_ASSIGN, binary(id("a"), BinaryOperator.MULT, id("a"))),
+                        breakIf(binary(id("s"), BinaryOperator.GREATER_THAN, num(20)))),
+                put(id("s"))));
+    }
+
+    @Test
+    void invariantExpressionIsMovedInFrontOfTheLoop() {
+        assertEquals(1, hoisted(squares()).size());
+        assertEquals(List.of("27"), output(squares()));
+    }
+
+    private static Program divisionInEmptyFor() {
+        return program(List.of(), withOperands(3, 0,
+                forRange("i", num(1), num(0), put(binary(id("a"), BinaryOperator.DIVIDE, id("b")))),
+                put(num(1))));
+    }
+
+    @Test
+    void throwingExpressionInAForThatMayNotRunStaysInside() {
+        assertTrue(hoisted(divisionInEmptyFor()).isEmpty());
+        assertEquals(List.of("1"), output(divisionInEmptyFor()));
+    }
+
+    private static Program divisionFirst() {
+        return program(List.of(), withOperands(12, 4,
+                assign("n", num(0)),
+                loop(assign("q", binary(id("a"), BinaryOperator.DIVIDE, id("b"))),
+                        assign("n", AssignOperator.PLUS_ASSIGN, id("q")),
+                        breakIf(binary(id("n"), BinaryOperator.GREATER_THAN, num(5)))),
+                put(id("n"))));
+    }
+
+    @Test
+    void throwingExpressionThatRunsFirstIsMoved() {
+        assertEquals(1, hoisted(divisionFirst()).size());
+        assertEquals(List.of("6"), output(divisionFirst()));
+    }
+
+    private static Program divisionAfterOutput() {
+        return program(List.of(), withOperands(1, 0,
+                loop(put(num(7)),
+                        assign("q", binary(id("a"), BinaryOperator.DIVIDE, id("b"))),
+                        breakIf(binary(id("q"), BinaryOperator.GREATER_THAN, num(0))))));
+    }
+
+    @Test
+    void throwingExpressionAfterOutputStaysInside() {
+        assertTrue(hoisted(divisionAfterOutput()).isEmpty());
+        Run run = run(divisionAfterOutput(), Inliner.DEFAULT_BUDGET);
+        assertFalse(run.passed);
+        assertEquals(List.of("7"), run.output);
+        assertTrue(run.errors.contains("ArithmeticException"), run.errors);
+    }
+
+    private static Program divisionBehindBreak() {
+        return program(List.of(), withOperands(1, 0,
+                assign("n", binary(id("a"), BinaryOperator.PLUS, num(4))),
+                loop(breakIf(binary(id("n"), BinaryOperator.GREATER_THAN, num(3))),
+                        put(binary(id("a"), BinaryOperator.DIVIDE, id("b")))),
+                put(num(2))));
+    }
+
+    @Test
+    void throwingExpressionBehindABreakConditionStaysInside() {
+        // only the break condition, which cannot throw, moves
+        assertEquals(1, hoisted(divisionBehindBreak()).size());
+        assertEquals(List.of("2"), output(divisionBehindBreak()));
+    }
+
+    private static Program invariantNextCondition() {
+        return program(List.of(), withOperands(2, 0,
+                assign("n", num(0)),
+                assign("s", num(0)),
+                loop(assign("n", AssignOperator.PLUS_ASSIGN, num(1)),
+                        breakIf(binary(id("n"), BinaryOperator.GREATER_THAN, num(5))),
+                        nextIf(binary(id("n"), BinaryOperator.LESS_THAN, binary(id("a"), BinaryOperator.MULT, num(2)))),
+                        assign("s", AssignOperator.PLUS_ASSIGN, id("n"))),
+                put(id("s"))));
+    }
+
+    @Test
+    void invariantPartOfANextConditionIsMoved() {
+        assertEquals(1, hoisted(invariantNextCondition()).size());
+        assertEquals(List.of("9"), output(invariantNextCondition()));
+    }
+
+    // the element read runs first, so only the write stops it from moving
+    private static Program elementWrittenInTheLoop() {
+        return program(List.of(),
+                assign("l", list(num(0))),
+                loop(assign("v", binary(index(id("l"), num(0)), BinaryOperator.MULT, num(2))),
+                        put(id("v")),
+                        assignElement("l", num(0), AssignOperator.PLUS_ASSIGN, num(1)),
+                        breakIf(binary(index(id("l"), num(0)), BinaryOperator.GREATER_THAN, num(2)))));
+    }
+
+    @Test
+    void elementReadIsNotMovedPastAnElementWrite() {
+        assertTrue(hoisted(elementWrittenInTheLoop()).isEmpty());
+        assertEquals(List.of("0", "2", "4"), output(elementWrittenInTheLoop()));
+    }
+
+    private static Program elementChangedByACall() {
+        return program(List.of(function("bump", List.of("list"),
+                        assignElement("list", num(0), AssignOperator.PLUS_ASSIGN, num(1)),
+                        ret(num(0)))),
+                assign("l", list(num(0))),
+                loop(assign("v", binary(index(id("l"), num(0)), BinaryOperator.MULT, num(2))),
+                        put(id("v")),
+                        assign("x", call("bump", id("l"))),
+                        breakIf(binary(index(id("l"), num(0)), BinaryOperator.GREATER_THAN, num(2)))));
+    }
+
+    @Test
+    void elementReadIsNotMovedPastACall() {
+        // with inlining off the call stays a call, which may write any list it is handed
+        assertTrue(hoisted(elementChangedByACall(), 0).isEmpty());
+        assertEquals(List.of("0", "2", "4"), output(elementChangedByACall(), 0));
+    }
+
+    private static Program lengthInAFor(boolean push) {
+        return program(List.of(),
+                assign("l", list(num(1))),
+                push
+                        ? forRange("i", num(1), num(3), push(id("l"), num(1)), put(new LenStatement(id("l"))))
+                        : forRange("i", num(1), num(3), put(new LenStatement(id("l")))));
+    }
+
+    @Test
+    void lengthIsNotMovedPastAPush() {
+        assertEquals(1, hoisted(lengthInAFor(false)).size());
+        assertTrue(hoisted(lengthInAFor(true)).isEmpty());
+    }
+}
@@ -0,0 +1,93 @@
+package main.visitor.type;
+
+import main.CompilationContext;
+import main.ast.nodes.Program;
+import main.ast.nodes.expression.Identifier;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.value.primitive.BoolValue;
+import main.ast.nodes.expression.value.primitive.StringValue;
+import main.ast.nodes.statement.AssignOperator;
+import main.ast.type.NoType;
+import main.ast.type.Type;
+import main.ast.type.primitiveType.IntType;
+import main.ast.type.primitiveType.StringType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+// an if, loop or for body is a scope of its own: it sees and retypes the variables around it, while the variables
+// it defines itself are gone once it ends
+class BlockScopeTest {
+    // the type the checker gave the identifier somewhere inside program
+    private static Type typeOf(Program program, Identifier identifier) {
+        TypeChecker typeChecker = new TypeChecker(new CompilationContext());
+        typeChecker.visit(program);
+        return typeChecker.expressionTypes.get(identifier);
+    }
+
+    @Test
+    void assignmentInNestedBlocksRetypesTheOuterVariable() {
+        Identifier after = id("x");
+        Program program = program(List.of(),
+                assign("x", num(1)),
+                ifElse(new BoolValue(true), body(
+                        loop(forEach("i", list(num(1)),
+                                        assign("x", new StringValue("\"s\""))),
+                                breakIf(new BoolValue(true)))), body()),
+                put(after));
+        assertInstanceOf(StringType.class, typeOf(program, after));
+    }
+
+    @Test
+    void variableDefinedInABlockIsGoneAfterIt() {
+        Identifier after = id("y");
+        Program program = program(List.of(),
+                ifElse(new BoolValue(true), body(loop(assign("y", num(1)), breakIf(new BoolValue(true)))), body()),
+                put(after));
+        assertInstanceOf(NoType.class, typeOf(program, after));
+    }
+
+    @Test
+    void variableDefinedInABlockIsSeenByTheBlocksInsideIt() {
+        Identifier inner = id("y");
+        Program program = program(List.of(),
+                ifElse(new BoolValue(true), body(
+                        assign("y", num(1)),
+                        loop(forRange("i", num(1), num(2), put(inner)), breakIf(new BoolValue(true)))), body()));
+        assertInstanceOf(IntType.class, typeOf(program, inner));
+    }
+
+    @Test
+    void laterBlockDoesNotSeeAnEarlierBlocksVariables() {
+        Identifier later = id("z");
+        Program program = program(List.of(),
+                forRange("i", num(1), num(2), assign("z", num(1))),
+                forRange("i", num(1), num(2), put(later)));
+        assertInstanceOf(NoType.class, typeOf(program, later));
+    }
+
+    @Test
+    void forIteratorNamedLikeAnOuterVariableRetypesIt() {
+        Identifier after = id("i");
+        Program program = program(List.of(),
+                assign("i", new StringValue("\"s\"")),
+                forEach("i", list(num(1), num(2))),
+                put(after));
+        assertInstanceOf(IntType.class, typeOf(program, after));
+    }
+
+    @Test
+    void nestedBlocksUpdateTheOuterVariableAtRunTime() {
+        assertEquals(List.of("5"), output(program(List.of(),
+                assign("x", num(0)),
+                forRange("i", num(1), num(3),
+                        ifElse(binary(id("i"), BinaryOperator.GREATER_THAN, num(1)),
+                                body(loop(assign("x", AssignOperator.PLUS_ASSIGN, id("i")), breakIf(new BoolValue(true)))),
+                                body())),
+                put(id("x")))));
+    }
+}
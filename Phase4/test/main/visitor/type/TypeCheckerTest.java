@@ -0,0 +1,80 @@
+package main.visitor.type;
+
+import main.CompilationContext;
+import main.ast.nodes.Program;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.value.primitive.BoolValue;
+import main.ast.nodes.statement.ExpressionStatement;
+import main.ast.type.primitiveType.IntType;
+import main.compileError.CompileError;
+import main.compileError.typeErrors.FunctionInconsistentReturnTypes;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static main.TestPrograms.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TypeCheckerTest {
+    private static List<CompileError> check(Program program) {
+        CompilationContext context = new CompilationContext();
+        new TypeChecker(context).visit(program);
+        return context.getTypeErrors();
+    }
+
+    private static void assertInconsistentReturns(List<CompileError> errors) {
+        assertEquals(1, errors.size(), errors.toString());
+        assertInstanceOf(FunctionInconsistentReturnTypes.class, errors.getFirst());
+    }
+
+    @Test
+    void recursiveFunctionGetsItsReturnType() {
+        Program program = program(List.of(function("fact", List.of("n"),
+                        ifElse(binary(id("n"), BinaryOperator.LESS_EQUAL_THAN, num(1)), body(ret(num(1))), body()),
+                        ret(binary(id("n"), BinaryOperator.MULT, call("fact", binary(id("n"), BinaryOperator.MINUS, num(1))))))),
+                assign("r", binary(call("fact", num(5)), BinaryOperator.PLUS, num(1))));
+        CompilationContext context = new CompilationContext();
+        new TypeChecker(context).visit(program);
+        assertTrue(context.getTypeErrors().isEmpty(), context.getTypeErrors().toString());
+        assertInstanceOf(IntType.class, context.findFunction("fact").getReturnType());
+    }
+
+    @Test
+    void mutuallyRecursiveFunctionsGetTheirReturnTypes() {
+        Program program = program(List.of(
+                        function("even", List.of("n"),
+                                ifElse(binary(id("n"), BinaryOperator.EQUAL, num(0)), body(ret(new BoolValue(true))), body()),
+                                ret(call("odd", binary(id("n"), BinaryOperator.MINUS, num(1))))),
+                        function("odd", List.of("n"),
+                                ifElse(binary(id("n"), BinaryOperator.EQUAL, num(0)), body(ret(new BoolValue(false))), body()),
+                                ret(call("even", binary(id("n"), BinaryOperator.MINUS, num(1)))))),
+                put(call("even", num(4))));
+        assertTrue(check(program).isEmpty());
+    }
+
+    @Test
+    void callingAVoidFunctionAgainDoesNotHideMixedReturns() {
+        // the second call to log meets a visited function without a return type, which is not recursion
+        Program program = program(List.of(
+                        function("log", List.of(), put(num(1))),
+                        function("f", List.of("n"),
+                                new ExpressionStatement(call("log")),
+                                new ExpressionStatement(call("log")),
+                                ifElse(binary(id("n"), BinaryOperator.GREATER_THAN, num(0)), body(ret(num(1))), body()),
+                                ret(null))),
+                new ExpressionStatement(call("f", num(1))));
+        assertInconsistentReturns(check(program));
+    }
+
+    @Test
+    void recursionDoesNotHideMixedReturns() {
+        Program program = program(List.of(function("g", List.of("n"),
+                        ifElse(binary(id("n"), BinaryOperator.EQUAL, num(0)), body(ret(null)), body()),
+                        ifElse(binary(id("n"), BinaryOperator.EQUAL, num(1)), body(ret(num(1))), body()),
+                        ret(call("g", binary(id("n"), BinaryOperator.MINUS, num(1)))))),
+                new ExpressionStatement(call("g", num(3))));
+        assertInconsistentReturns(check(program));
+    }
+}